@@ -0,0 +1,32 @@
+package ru.tinkoff.invest.openapi.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков с профилировщиком GC, чтобы вместе со временем всегда печатался объём
+ * выделяемой памяти на операцию ({@code gc.alloc.rate.norm}).
+ *
+ * <pre>
+ * mvn -pl benchmarks -am package
+ * java -jar benchmarks/target/benchmarks.jar [параметры JMH, например StreamingEventDecode -p event=candle]
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.tinkoff.invest.openapi.benchmarks;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Подписчик без ограничения спроса, считающий полученные события.
+ */
+public final class CountingSubscriber implements Subscriber<StreamingEvent> {
+
+    private final AtomicLong received = new AtomicLong();
+    private volatile boolean subscribed;
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+        subscribed = true;
+    }
+
+    @Override
+    public void onNext(final StreamingEvent event) {
+        received.lazySet(received.get() + 1);
+    }
+
+    @Override
+    public void onError(final Throwable error) {
+        error.printStackTrace(System.err);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    public long received() {
+        return received.get();
+    }
+
+    /**
+     * Ожидание, пока подписчик не получит заданное количество событий.
+     *
+     * @param count Ожидаемое количество событий с начала подписки.
+     */
+    public void awaitReceived(final long count) {
+        while (received.get() < count) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Ожидание вызова {@link #onSubscribe(Subscription)}.
+     *
+     * @param timeoutMillis Предельное время ожидания.
+     */
+    public void awaitSubscribed(final long timeoutMillis) throws InterruptedException, TimeoutException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!subscribed) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException("Подписка не установлена за " + timeoutMillis + " мс");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
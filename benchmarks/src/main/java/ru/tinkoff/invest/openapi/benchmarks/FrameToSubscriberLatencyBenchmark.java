@@ -0,0 +1,81 @@
+package ru.tinkoff.invest.openapi.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.mock.MockOpenApiServer;
+import ru.tinkoff.invest.openapi.mock.MockServerConfig;
+import ru.tinkoff.invest.openapi.okhttp.OkHttpOpenApi;
+import ru.tinkoff.invest.openapi.okhttp.RestInterceptor;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Задержка от отправки сообщения сервером Streaming API до получения события последним
+ * подписчиком: веб-сокет на локальном интерфейсе, разбор сообщения и доставка через
+ * подписки {@link OkHttpOpenApi}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrameToSubscriberLatencyBenchmark {
+
+    @Param({"1", "4"})
+    public int subscribers;
+
+    private MockOpenApiServer server;
+    private ExecutorService executor;
+    private OkHttpOpenApi api;
+    private CountingSubscriber[] counters;
+    private long sent;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new MockOpenApiServer(new MockServerConfig(Duration.ZERO, Duration.ZERO, 0.0, 0.0, 0.0, 1));
+        server.start();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        api = new OkHttpOpenApi("benchmark", false, executor, Collections.<RestInterceptor>emptyList(), server.openApiConfig());
+
+        final StreamingContext streaming = api.getStreamingContext();
+        counters = new CountingSubscriber[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            counters[i] = new CountingSubscriber();
+            streaming.subscribe(counters[i]);
+        }
+        for (final CountingSubscriber counter : counters) {
+            counter.awaitSubscribed(10_000);
+        }
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (server.getStreamingSessions() == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException("Клиент не подключился к Streaming API имитации");
+            }
+            Thread.sleep(1);
+        }
+        sent = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        api.close();
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void frameToSubscribers() {
+        server.broadcast(Frames.CANDLE);
+        sent++;
+        for (final CountingSubscriber counter : counters) {
+            counter.awaitReceived(sent);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.tinkoff.invest.openapi.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Образцы сообщений Streaming API и ответов REST API в том виде, в каком их присылает сервер.
+ */
+public final class Frames {
+
+    public static final String FIGI = "BBG000B9XRY4";
+
+    public static final String CANDLE =
+            "{\"event\":\"candle\",\"time\":\"2021-05-14T10:15:00.123456789Z\",\"payload\":{" +
+                    "\"o\":124.51,\"c\":124.67,\"h\":124.7,\"l\":124.48,\"v\":3105," +
+                    "\"time\":\"2021-05-14T10:15:00Z\",\"interval\":\"1min\",\"figi\":\"" + FIGI + "\"}}";
+
+    public static final String ORDERBOOK = orderbook(20);
+
+    public static final String INSTRUMENT_INFO =
+            "{\"event\":\"instrument_info\",\"time\":\"2021-05-14T10:15:00.123456789Z\",\"payload\":{" +
+                    "\"trade_status\":\"normal_trading\",\"min_price_increment\":0.01,\"lot\":1," +
+                    "\"limit_up\":130.73,\"limit_down\":118.29,\"figi\":\"" + FIGI + "\"}}";
+
+    public static final String ERROR =
+            "{\"event\":\"error\",\"time\":\"2021-05-14T10:15:00.123456789Z\",\"payload\":{" +
+                    "\"error\":\"Subscription candle:subscribe. FIGI NOOOOOOO not found\"," +
+                    "\"request_id\":\"d3b6a0f2-4d5c-4e8e-a1b0-6c1f0a2e9f11\"}}";
+
+    private Frames() {
+    }
+
+    /**
+     * @param name Тип события: candle, orderbook, instrument_info или error.
+     *
+     * @return Сообщение Streaming API заданного типа.
+     */
+    @NotNull
+    public static String event(@NotNull final String name) {
+        switch (name) {
+            case "candle":
+                return CANDLE;
+            case "orderbook":
+                return ORDERBOOK;
+            case "instrument_info":
+                return INSTRUMENT_INFO;
+            case "error":
+                return ERROR;
+            default:
+                throw new IllegalArgumentException("Неизвестный тип события " + name);
+        }
+    }
+
+    @NotNull
+    public static String orderbook(final int depth) {
+        final StringBuilder sb = new StringBuilder(128 + depth * 32);
+        sb.append("{\"event\":\"orderbook\",\"time\":\"2021-05-14T10:15:00.123456789Z\",\"payload\":{\"depth\":")
+                .append(depth).append(",\"bids\":[");
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('[').append(BigDecimal.valueOf(12451 - i, 2)).append(',').append(100 + i * 7).append(']');
+        }
+        sb.append("],\"asks\":[");
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('[').append(BigDecimal.valueOf(12452 + i, 2)).append(',').append(90 + i * 5).append(']');
+        }
+        sb.append("],\"figi\":\"").append(FIGI).append("\"}}");
+        return sb.toString();
+    }
+
+    /**
+     * @param count Количество свечей.
+     *
+     * @return Тело ответа на запрос исторических свечей.
+     */
+    @NotNull
+    public static String candlesResponse(final int count) {
+        final StringBuilder sb = new StringBuilder(64 + count * 160);
+        sb.append("{\"trackingId\":\"benchmark\",\"status\":\"Ok\",\"payload\":{\"figi\":\"").append(FIGI)
+                .append("\",\"interval\":\"1min\",\"candles\":[");
+        OffsetDateTime time = OffsetDateTime.of(2021, 5, 14, 7, 0, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < count; i++, time = time.plusMinutes(1)) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"figi\":\"").append(FIGI)
+                    .append("\",\"interval\":\"1min\",\"o\":124.51,\"c\":124.67,\"h\":124.7,\"l\":124.48,\"v\":")
+                    .append(1000 + i % 5000)
+                    .append(",\"time\":\"").append(time).append("\"}");
+        }
+        sb.append("]}}");
+        return sb.toString();
+    }
+
+    /**
+     * @param count Количество операций.
+     *
+     * @return Тело ответа на запрос операций, по одной сделке на операцию.
+     */
+    @NotNull
+    public static String operationsResponse(final int count) {
+        final StringBuilder sb = new StringBuilder(64 + count * 480);
+        sb.append("{\"trackingId\":\"benchmark\",\"status\":\"Ok\",\"payload\":{\"operations\":[");
+        OffsetDateTime time = OffsetDateTime.of(2021, 1, 11, 7, 0, 0, 0, ZoneOffset.ofHours(3));
+        for (int i = 0; i < count; i++, time = time.plusMinutes(7)) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"").append(100_000_000 + i)
+                    .append("\",\"status\":\"Done\",\"trades\":[{\"tradeId\":\"").append(200_000_000 + i)
+                    .append("\",\"date\":\"").append(time)
+                    .append("\",\"price\":124.51,\"quantity\":10}],")
+                    .append("\"commission\":{\"currency\":\"USD\",\"value\":-0.62},")
+                    .append("\"currency\":\"USD\",\"payment\":-1245.1,\"price\":124.51,\"quantity\":10,")
+                    .append("\"quantityExecuted\":10,\"figi\":\"").append(FIGI)
+                    .append("\",\"instrumentType\":\"Stock\",\"isMarginCall\":false,\"date\":\"").append(time)
+                    .append("\",\"operationType\":\"Buy\"}");
+        }
+        sb.append("]}}");
+        return sb.toString();
+    }
+}
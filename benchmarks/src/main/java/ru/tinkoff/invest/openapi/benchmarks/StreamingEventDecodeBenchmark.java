@@ -0,0 +1,44 @@
+package ru.tinkoff.invest.openapi.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор сообщения Streaming API так же, как это делает клиент при получении сообщения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamingEventDecodeBenchmark {
+
+    private static final TypeReference<StreamingEvent> streamingEventTypeReference =
+            new TypeReference<StreamingEvent>() {
+            };
+
+    @Param({"candle", "orderbook", "instrument_info", "error"})
+    public String event;
+
+    private ObjectMapper mapper;
+    private String frame;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        frame = Frames.event(event);
+    }
+
+    @Benchmark
+    public StreamingEvent decode() throws IOException {
+        return mapper.readValue(frame, streamingEventTypeReference);
+    }
+}
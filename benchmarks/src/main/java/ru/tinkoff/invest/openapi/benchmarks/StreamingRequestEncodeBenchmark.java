@@ -0,0 +1,52 @@
+package ru.tinkoff.invest.openapi.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.openapi.model.streaming.CandleInterval;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация запросов на подписку так же, как это делает клиент перед отправкой в веб-сокет.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamingRequestEncodeBenchmark {
+
+    @Param({"candle", "orderbook", "instrument_info"})
+    public String request;
+
+    private ObjectMapper mapper;
+    private StreamingRequest value;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        switch (request) {
+            case "candle":
+                value = StreamingRequest.subscribeCandle(Frames.FIGI, CandleInterval._1MIN);
+                break;
+            case "orderbook":
+                value = StreamingRequest.subscribeOrderbook(Frames.FIGI, 20);
+                break;
+            case "instrument_info":
+                value = StreamingRequest.subscribeInstrumentInfo(Frames.FIGI);
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестный тип запроса " + request);
+        }
+    }
+
+    @Benchmark
+    public String encode() throws JsonProcessingException {
+        return mapper.writeValueAsString(value);
+    }
+}
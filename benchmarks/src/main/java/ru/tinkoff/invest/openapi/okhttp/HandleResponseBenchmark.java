@@ -0,0 +1,91 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.openapi.benchmarks.Frames;
+import ru.tinkoff.invest.openapi.model.rest.CandlesResponse;
+import ru.tinkoff.invest.openapi.model.rest.OperationsResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор больших ответов REST API в {@link BaseContextImpl#handleResponse}: исторических свечей
+ * и операций.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandleResponseBenchmark {
+
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json");
+    private static final TypeReference<CandlesResponse> candlesTypeReference =
+            new TypeReference<CandlesResponse>() {
+            };
+    private static final TypeReference<OperationsResponse> operationsTypeReference =
+            new TypeReference<OperationsResponse>() {
+            };
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private RequestScheduler scheduler;
+    private MarketContextImpl context;
+    private Request request;
+    private byte[] candles;
+    private byte[] operations;
+
+    @Setup
+    public void setup() {
+        scheduler = new RequestScheduler();
+        final RestExecutor executor = new RestExecutor(
+                new OkHttpClient(),
+                scheduler,
+                Collections.<RestInterceptor>emptyList(),
+                RestExecutor.DEFAULT_ERROR_MAPPER
+        );
+        context = new MarketContextImpl(executor, "http://localhost/openapi/");
+        request = new Request.Builder().url("http://localhost/openapi/market/candles").build();
+        candles = Frames.candlesResponse(size).getBytes(StandardCharsets.UTF_8);
+        operations = Frames.operationsResponse(size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    @Benchmark
+    public CandlesResponse candles() throws Exception {
+        try (final Response response = response(candles)) {
+            return context.handleResponse(response, candlesTypeReference);
+        }
+    }
+
+    @Benchmark
+    public OperationsResponse operations() throws Exception {
+        try (final Response response = response(operations)) {
+            return context.handleResponse(response, operationsTypeReference);
+        }
+    }
+
+    private Response response(final byte[] body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, JSON_MEDIA_TYPE))
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.openapi.benchmarks.CountingSubscriber;
+import ru.tinkoff.invest.openapi.benchmarks.Frames;
+import ru.tinkoff.invest.openapi.metrics.NoopMetricsRegistry;
+import ru.tinkoff.invest.openapi.mock.MockOpenApiServer;
+import ru.tinkoff.invest.openapi.mock.MockServerConfig;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность раздачи событий подписчикам {@link StreamingContextImpl}: разбор
+ * сообщения и доставка через очереди подписок на исполнителе, без сетевого обмена.
+ *
+ * Веб-сокет подключён к имитации OpenAPI, которая сама событий не присылает; сообщения
+ * передаются контексту напрямую пачками, после каждой пачки бенчмарк ждёт, пока все подписчики
+ * её получат.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubscriptionDeliveryBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"1", "4", "16"})
+    public int subscribers;
+
+    private MockOpenApiServer server;
+    private OkHttpClient client;
+    private ExecutorService executor;
+    private StreamingContextImpl context;
+    private CountingSubscriber[] counters;
+    private long sent;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new MockOpenApiServer(new MockServerConfig(Duration.ZERO, Duration.ZERO, 0.0, 0.0, 0.0, 1));
+        server.start();
+        client = new OkHttpClient();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        context = new StreamingContextImpl(client, server.openApiConfig().streamingUrl, "Bearer benchmark", 1, executor, null,
+                NoopMetricsRegistry.INSTANCE);
+
+        counters = new CountingSubscriber[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            counters[i] = new CountingSubscriber();
+            context.subscribe(counters[i]);
+        }
+        for (final CountingSubscriber counter : counters) {
+            counter.awaitSubscribed(10_000);
+        }
+        sent = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        client.dispatcher().executorService().shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void deliver() {
+        for (int i = 0; i < BATCH; i++) {
+            context.onFrame(1, Frames.CANDLE);
+        }
+        sent += BATCH;
+        for (final CountingSubscriber counter : counters) {
+            counter.awaitReceived(sent);
+        }
+    }
+}
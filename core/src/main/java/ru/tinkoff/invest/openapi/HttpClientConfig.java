@@ -0,0 +1,83 @@
+package ru.tinkoff.invest.openapi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Параметры HTTP-клиента, через который идут запросы к OpenAPI.
+ *
+ * Нулевая длительность таймаута означает его отсутствие, нулевой размер буфера сокета -
+ * системное значение.
+ */
+public class HttpClientConfig {
+
+    /**
+     * Параметры по умолчанию.
+     */
+    public static final HttpClientConfig DEFAULT = new HttpClientConfig(
+            16,
+            Duration.ofMinutes(5),
+            64,
+            32,
+            Arrays.asList("h2", "http/1.1"),
+            Duration.ofSeconds(10),
+            Duration.ofSeconds(30),
+            Duration.ofSeconds(30),
+            Duration.ZERO,
+            Duration.ofSeconds(5),
+            0,
+            0
+    );
+
+    /** Максимальное количество простаивающих соединений в пуле. */
+    public final int maxIdleConnections;
+    /** Время жизни простаивающего соединения. */
+    @NotNull public final Duration keepAlive;
+    /** Максимальное количество одновременно исполняемых запросов. */
+    public final int maxRequests;
+    /** Максимальное количество одновременно исполняемых запросов к одному хосту. */
+    public final int maxRequestsPerHost;
+    /** Протоколы в порядке предпочтения ("h2", "http/1.1"). */
+    @NotNull public final List<String> protocols;
+    @NotNull public final Duration connectTimeout;
+    @NotNull public final Duration readTimeout;
+    @NotNull public final Duration writeTimeout;
+    /** Таймаут всего вызова, включая перенаправления. */
+    @NotNull public final Duration callTimeout;
+    /** Интервал ping-кадров HTTP/2 и WebSocket. */
+    @NotNull public final Duration pingInterval;
+    /** Размер буфера отправки сокета в байтах. */
+    public final int socketSendBufferSize;
+    /** Размер буфера приёма сокета в байтах. */
+    public final int socketReceiveBufferSize;
+
+    public HttpClientConfig(final int maxIdleConnections,
+                            @NotNull final Duration keepAlive,
+                            final int maxRequests,
+                            final int maxRequestsPerHost,
+                            @NotNull final List<String> protocols,
+                            @NotNull final Duration connectTimeout,
+                            @NotNull final Duration readTimeout,
+                            @NotNull final Duration writeTimeout,
+                            @NotNull final Duration callTimeout,
+                            @NotNull final Duration pingInterval,
+                            final int socketSendBufferSize,
+                            final int socketReceiveBufferSize) {
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAlive = keepAlive;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.protocols = Collections.unmodifiableList(protocols);
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.writeTimeout = writeTimeout;
+        this.callTimeout = callTimeout;
+        this.pingInterval = pingInterval;
+        this.socketSendBufferSize = socketSendBufferSize;
+        this.socketReceiveBufferSize = socketReceiveBufferSize;
+    }
+}
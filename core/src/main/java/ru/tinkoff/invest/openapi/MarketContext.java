@@ -1,6 +1,7 @@
 package ru.tinkoff.invest.openapi;
 
 import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Publisher;
 import ru.tinkoff.invest.openapi.model.rest.*;
 
 import java.time.OffsetDateTime;
@@ -45,6 +46,18 @@ public interface MarketContext extends Context {
     @NotNull
     CompletableFuture<MarketInstrumentList> getMarketCurrencies();
 
+    /**
+     * Потоковое получение списка инструментов заданного типа, доступных для торговли.
+     * Инструменты разбираются из ответа по мере запроса их подписчиком, поэтому весь список
+     * целиком в памяти не удерживается.
+     *
+     * @param type Тип инструментов.
+     *
+     * @return Поток инструментов. Запрос отправляется при первом запросе элементов.
+     */
+    @NotNull
+    Publisher<MarketInstrument> streamMarketInstruments(@NotNull InstrumentType type);
+
     /**
      * Асинхронное получение текущего состояния торгового "стакана".
      *
@@ -72,6 +85,25 @@ public interface MarketContext extends Context {
                                                           @NotNull OffsetDateTime to,
                                                           @NotNull CandleResolution interval);
 
+    /**
+     * Потоковое получение исторических данных по свечам.
+     * Свечи разбираются из ответа по мере запроса их подписчиком, поэтому расход памяти
+     * не зависит от размера ответа.
+     *
+     * @param figi     Идентификатор инструмента.
+     * @param from     Начальный момент рассматриваемого отрезка временного интервала.
+     * @param to       Конечный момент рассматриваемого отрезка временного интервала.
+     * @param interval Разрешающий интервал свечей.
+     *
+     * @return Поток свечей инструмента, пустой, если инструмент не найден. Запрос отправляется
+     * при первом запросе элементов.
+     */
+    @NotNull
+    Publisher<Candle> streamMarketCandles(@NotNull String figi,
+                                          @NotNull OffsetDateTime from,
+                                          @NotNull OffsetDateTime to,
+                                          @NotNull CandleResolution interval);
+
     /**
      * Асинхронный поиск инструментов по тикеру.
      *
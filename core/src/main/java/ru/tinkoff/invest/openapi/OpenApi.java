@@ -6,6 +6,9 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 abstract public class OpenApi implements Closeable {
@@ -15,14 +18,20 @@ abstract public class OpenApi implements Closeable {
     protected final String authToken;
 
     public OpenApi(@NotNull final String token, final boolean isSandboxMode) {
+        this(token, isSandboxMode, loadConfig());
+    }
+
+    /**
+     * Создание клиента с явно заданной конфигурацией, например указывающей на тестовый сервер.
+     *
+     * @param token         Токен авторизации.
+     * @param isSandboxMode Режим "песочницы".
+     * @param config        Параметры конфигурации.
+     */
+    public OpenApi(@NotNull final String token, final boolean isSandboxMode, @NotNull final OpenApiConfig config) {
         this.authToken = "Bearer " + token;
         this.isSandboxMode = isSandboxMode;
-
-        try {
-            this.config = extractConfig();
-        } catch (IOException ex) {
-            throw new RuntimeException("Не удалось считать внутренний конфигурационный файл");
-        }
+        this.config = config;
     }
 
     public boolean isSandboxMode() {
@@ -55,6 +64,20 @@ abstract public class OpenApi implements Closeable {
     @NotNull
     abstract public StreamingContext getStreamingContext();
 
+    /**
+     * Извлечение параметров конфигурации из внутреннего конфигурационного файла.
+     *
+     * @return Параметры конфигурации.
+     */
+    @NotNull
+    public static OpenApiConfig loadConfig() {
+        try {
+            return extractConfig();
+        } catch (IOException ex) {
+            throw new RuntimeException("Не удалось считать внутренний конфигурационный файл");
+        }
+    }
+
     /**
      * Извлечение параметров конфигурации.
      *
@@ -75,11 +98,91 @@ abstract public class OpenApi implements Closeable {
             prop.load(input);
         }
 
-        final String host = prop.getProperty("ru.tinkoff.invest.openapi.host");
-        final String sandboxHost = prop.getProperty("ru.tinkoff.invest.openapi.host-sandbox");
-        final String streamingHost = prop.getProperty("ru.tinkoff.invest.openapi.streaming");
-        final int streamingParallelism = Integer.parseInt(prop.getProperty("ru.tinkoff.invest.openapi.streaming-parallelism"));
+        final String host = property(prop, "ru.tinkoff.invest.openapi.host");
+        final String sandboxHost = property(prop, "ru.tinkoff.invest.openapi.host-sandbox");
+        final String streamingHost = property(prop, "ru.tinkoff.invest.openapi.streaming");
+        final int streamingParallelism = Integer.parseInt(property(prop, "ru.tinkoff.invest.openapi.streaming-parallelism"));
+
+        return new OpenApiConfig(host, sandboxHost, streamingHost, streamingParallelism,
+                extractHttpClientConfig(prop), extractStreamingJournalConfig(prop));
+    }
 
-        return new OpenApiConfig(host, sandboxHost, streamingHost, streamingParallelism);
+    /**
+     * Извлечение параметров HTTP-клиента. Каждый параметр можно переопределить одноимённым
+     * системным свойством JVM; отсутствующие параметры берутся из {@link HttpClientConfig#DEFAULT}.
+     *
+     * @param prop Содержимое конфигурационного файла.
+     *
+     * @return Параметры HTTP-клиента.
+     */
+    @NotNull
+    protected static HttpClientConfig extractHttpClientConfig(@NotNull final Properties prop) {
+        final HttpClientConfig defaults = HttpClientConfig.DEFAULT;
+        final String prefix = "ru.tinkoff.invest.openapi.http.";
+
+        final String protocolsValue = property(prop, prefix + "protocols");
+        final List<String> protocols;
+        if (protocolsValue == null) {
+            protocols = defaults.protocols;
+        } else {
+            protocols = new ArrayList<>();
+            for (final String protocol : protocolsValue.split(",")) {
+                if (!protocol.trim().isEmpty()) {
+                    protocols.add(protocol.trim());
+                }
+            }
+        }
+
+        return new HttpClientConfig(
+                intProperty(prop, prefix + "max-idle-connections", defaults.maxIdleConnections),
+                durationProperty(prop, prefix + "keep-alive-ms", defaults.keepAlive),
+                intProperty(prop, prefix + "max-requests", defaults.maxRequests),
+                intProperty(prop, prefix + "max-requests-per-host", defaults.maxRequestsPerHost),
+                protocols,
+                durationProperty(prop, prefix + "connect-timeout-ms", defaults.connectTimeout),
+                durationProperty(prop, prefix + "read-timeout-ms", defaults.readTimeout),
+                durationProperty(prop, prefix + "write-timeout-ms", defaults.writeTimeout),
+                durationProperty(prop, prefix + "call-timeout-ms", defaults.callTimeout),
+                durationProperty(prop, prefix + "ping-interval-ms", defaults.pingInterval),
+                intProperty(prop, prefix + "socket-send-buffer", defaults.socketSendBufferSize),
+                intProperty(prop, prefix + "socket-receive-buffer", defaults.socketReceiveBufferSize)
+        );
+    }
+
+    /**
+     * Извлечение параметров журнала Streaming API. Параметры, как и для HTTP-клиента, можно
+     * переопределить системными свойствами JVM; журнал включается заданием каталога.
+     *
+     * @param prop Содержимое конфигурационного файла.
+     *
+     * @return Параметры журнала.
+     */
+    @NotNull
+    protected static StreamingJournalConfig extractStreamingJournalConfig(@NotNull final Properties prop) {
+        final StreamingJournalConfig defaults = StreamingJournalConfig.DISABLED;
+        final String prefix = "ru.tinkoff.invest.openapi.streaming.journal-";
+
+        return new StreamingJournalConfig(
+                property(prop, prefix + "dir"),
+                intProperty(prop, prefix + "segment-size", defaults.segmentSize)
+        );
+    }
+
+    private static String property(@NotNull final Properties prop, @NotNull final String key) {
+        final String value = System.getProperty(key, prop.getProperty(key));
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static int intProperty(@NotNull final Properties prop, @NotNull final String key, final int defaultValue) {
+        final String value = property(prop, key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @NotNull
+    private static Duration durationProperty(@NotNull final Properties prop,
+                                             @NotNull final String key,
+                                             @NotNull final Duration defaultValue) {
+        final String value = property(prop, key);
+        return value == null ? defaultValue : Duration.ofMillis(Long.parseLong(value));
     }
 }
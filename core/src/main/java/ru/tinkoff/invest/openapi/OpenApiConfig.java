@@ -7,14 +7,35 @@ public class OpenApiConfig {
     @NotNull public final String sandboxApiUrl;
     @NotNull public final String streamingUrl;
     public final int streamingParallelism;
+    @NotNull public final HttpClientConfig httpClient;
+    @NotNull public final StreamingJournalConfig streamingJournal;
 
     public OpenApiConfig(@NotNull final String marketApiUrl,
                          @NotNull final String sandboxApiUrl,
                          @NotNull final String streamingUrl,
-                         final int streamingParallelism) {
+                         final int streamingParallelism,
+                         @NotNull final HttpClientConfig httpClient,
+                         @NotNull final StreamingJournalConfig streamingJournal) {
         this.marketApiUrl = marketApiUrl;
         this.sandboxApiUrl = sandboxApiUrl;
         this.streamingUrl = streamingUrl;
         this.streamingParallelism = streamingParallelism;
+        this.httpClient = httpClient;
+        this.streamingJournal = streamingJournal;
+    }
+
+    public OpenApiConfig(@NotNull final String marketApiUrl,
+                         @NotNull final String sandboxApiUrl,
+                         @NotNull final String streamingUrl,
+                         final int streamingParallelism,
+                         @NotNull final HttpClientConfig httpClient) {
+        this(marketApiUrl, sandboxApiUrl, streamingUrl, streamingParallelism, httpClient, StreamingJournalConfig.DISABLED);
+    }
+
+    public OpenApiConfig(@NotNull final String marketApiUrl,
+                         @NotNull final String sandboxApiUrl,
+                         @NotNull final String streamingUrl,
+                         final int streamingParallelism) {
+        this(marketApiUrl, sandboxApiUrl, streamingUrl, streamingParallelism, HttpClientConfig.DEFAULT);
     }
 }
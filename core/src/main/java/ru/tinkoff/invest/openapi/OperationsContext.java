@@ -2,6 +2,7 @@ package ru.tinkoff.invest.openapi;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
 import ru.tinkoff.invest.openapi.model.rest.*;
 
 import java.time.OffsetDateTime;
@@ -28,4 +29,22 @@ public interface OperationsContext extends Context {
                                                 @Nullable String figi,
                                                 @Nullable String brokerAccountId);
 
+    /**
+     * Потоковое получение списка прошедших операций по заданному инструменту за определённый промежуток времени.
+     * Операции разбираются из ответа по мере запроса их подписчиком, поэтому расход памяти
+     * не зависит от размера ответа.
+     *
+     * @param from Дата/время начала промежутка времени.
+     * @param to Дата/время конца промежутка времени.
+     * @param figi Идентификатор инструмента.
+     * @param brokerAccountId Идентификатор брокерского счёта.
+     *
+     * @return Поток операций. Запрос отправляется при первом запросе элементов.
+     */
+    @NotNull
+    Publisher<Operation> streamOperations(@NotNull OffsetDateTime from,
+                                          @NotNull OffsetDateTime to,
+                                          @Nullable String figi,
+                                          @Nullable String brokerAccountId);
+
 }
@@ -9,4 +9,23 @@ import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
 @SuppressWarnings("ReactiveStreamsPublisherImplementation")
 public interface StreamingContext extends Publisher<StreamingEvent> {
     void sendRequest(@NotNull StreamingRequest request);
+
+    /**
+     * Регистрация обработчика восстановления соединения. События, пришедшие во время разрыва,
+     * потеряны, поэтому состояние, собранное по потоку событий, после восстановления нужно
+     * загрузить заново. Реализации без переподключений обработчик не вызывают.
+     *
+     * @param listener Обработчик. Вызывается после повторной отправки активных подписок в потоке
+     *                 клиента Streaming API, поэтому не должен блокироваться.
+     */
+    default void addReconnectListener(@NotNull final Runnable listener) {
+    }
+
+    /**
+     * Отмена регистрации обработчика восстановления соединения.
+     *
+     * @param listener Обработчик, переданный в {@link #addReconnectListener}.
+     */
+    default void removeReconnectListener(@NotNull final Runnable listener) {
+    }
 }
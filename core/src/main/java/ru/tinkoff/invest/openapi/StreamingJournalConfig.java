@@ -0,0 +1,28 @@
+package ru.tinkoff.invest.openapi;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Параметры журнала сырых сообщений Streaming API.
+ */
+public class StreamingJournalConfig {
+
+    /**
+     * Журнал выключен.
+     */
+    public static final StreamingJournalConfig DISABLED = new StreamingJournalConfig(null, 64 * 1024 * 1024);
+
+    /** Каталог сегментов журнала. Если не задан, журнал не ведётся. */
+    @Nullable public final String directory;
+    /** Размер сегмента в байтах. */
+    public final int segmentSize;
+
+    public StreamingJournalConfig(@Nullable final String directory, final int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+}
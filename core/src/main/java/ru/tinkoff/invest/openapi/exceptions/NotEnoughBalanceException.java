@@ -1,6 +1,7 @@
 package ru.tinkoff.invest.openapi.exceptions;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -18,9 +19,10 @@ public class NotEnoughBalanceException extends OpenApiException {
         super(message, code);
 
         final Matcher matchResult = currencyExtractionPattern.matcher(message);
-        this.currency = matchResult.group(matchResult.groupCount());
+        this.currency = matchResult.matches() ? matchResult.group(1) : null;
     }
 
+    @Nullable
     public String getCurrency() {
         return currency;
     }
@@ -1,6 +1,7 @@
 package ru.tinkoff.invest.openapi.exceptions;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -18,9 +19,10 @@ public class OrderAlreadyCancelledException extends OpenApiException {
         super(message, code);
 
         final Matcher matchResult = orderIdExtractionPattern.matcher(message);
-        this.orderId = matchResult.group(matchResult.groupCount());
+        this.orderId = matchResult.matches() ? matchResult.group(1) : null;
     }
 
+    @Nullable
     public String getOrderId() {
         return orderId;
     }
@@ -0,0 +1,14 @@
+package ru.tinkoff.invest.openapi.metrics;
+
+/**
+ * Монотонно растущий счётчик.
+ */
+public interface Counter {
+
+    void increment();
+
+    /**
+     * @param amount Неотрицательное приращение.
+     */
+    void increment(long amount);
+}
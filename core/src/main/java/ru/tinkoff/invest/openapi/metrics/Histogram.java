@@ -0,0 +1,12 @@
+package ru.tinkoff.invest.openapi.metrics;
+
+/**
+ * Распределение значений, например длительностей в наносекундах или глубины очереди.
+ */
+public interface Histogram {
+
+    /**
+     * @param value Неотрицательное значение.
+     */
+    void record(long value);
+}
@@ -0,0 +1,73 @@
+package ru.tinkoff.invest.openapi.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Имя метрики вместе с тегами.
+ */
+public final class MeterId {
+
+    @NotNull private final String name;
+    @NotNull private final String[] tags;
+
+    /**
+     * @param name Имя метрики.
+     * @param tags Теги парами ключ-значение.
+     */
+    public MeterId(@NotNull final String name, @NotNull final String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Теги метрики " + name + " должны задаваться парами ключ-значение");
+        }
+        this.name = name;
+        this.tags = tags.clone();
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Теги в порядке объявления.
+     */
+    @NotNull
+    public Map<String, String> getTags() {
+        final Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            result.put(tags[i], tags[i + 1]);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MeterId other = (MeterId) o;
+        return name.equals(other.name) && Arrays.equals(tags, other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + Arrays.hashCode(tags);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(name);
+        if (tags.length > 0) {
+            sb.append('{');
+            for (int i = 0; i < tags.length; i += 2) {
+                if (i > 0) sb.append(", ");
+                sb.append(tags[i]).append('=').append(tags[i + 1]);
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.tinkoff.invest.openapi.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Реестр метрик, в который SDK пишет счётчики и гистограммы.
+ *
+ * Метрика определяется именем и набором тегов, которые передаются парами ключ-значение:
+ * {@code counter("openapi.streaming.events", "type", "candle")}. Повторный запрос метрики с теми
+ * же именем и тегами возвращает тот же объект. SDK получает метрики один раз при создании своих
+ * компонентов и дальше только пишет в них, поэтому реализации {@link Counter#increment()} и
+ * {@link Histogram#record(long)} не должны выделять память и блокироваться.
+ *
+ * По умолчанию используется {@link NoopMetricsRegistry}; для выгрузки метрик во внешнюю систему
+ * достаточно реализовать этот интерфейс поверх её клиента или воспользоваться
+ * {@code ru.tinkoff.invest.openapi.metrics.hdr.InMemoryMetricsRegistry} из модуля sdk-java8.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param name Имя метрики.
+     * @param tags Теги парами ключ-значение.
+     *
+     * @return Счётчик.
+     */
+    @NotNull
+    Counter counter(@NotNull String name, @NotNull String... tags);
+
+    /**
+     * @param name Имя метрики.
+     * @param tags Теги парами ключ-значение.
+     *
+     * @return Гистограмма.
+     */
+    @NotNull
+    Histogram histogram(@NotNull String name, @NotNull String... tags);
+}
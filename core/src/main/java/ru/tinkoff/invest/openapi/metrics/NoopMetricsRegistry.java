@@ -0,0 +1,39 @@
+package ru.tinkoff.invest.openapi.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Реестр, отбрасывающий все значения.
+ */
+public final class NoopMetricsRegistry implements MetricsRegistry {
+
+    public static final NoopMetricsRegistry INSTANCE = new NoopMetricsRegistry();
+
+    private static final Counter NOOP_COUNTER = new Counter() {
+        @Override
+        public void increment() {
+        }
+
+        @Override
+        public void increment(final long amount) {
+        }
+    };
+
+    private static final Histogram NOOP_HISTOGRAM = value -> {
+    };
+
+    private NoopMetricsRegistry() {
+    }
+
+    @NotNull
+    @Override
+    public Counter counter(@NotNull final String name, @NotNull final String... tags) {
+        return NOOP_COUNTER;
+    }
+
+    @NotNull
+    @Override
+    public Histogram histogram(@NotNull final String name, @NotNull final String... tags) {
+        return NOOP_HISTOGRAM;
+    }
+}
@@ -16,7 +16,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -28,6 +31,20 @@ import java.util.stream.Collectors;
 @JsonDeserialize(using = StreamingEvent.StreamingEventDeserializer.class)
 public abstract class StreamingEvent {
 
+    /**
+     * Время отправки сообщения сервером (поле {@code time} конверта события).
+     */
+    @Nullable
+    private Instant serverTime;
+
+    /**
+     * @return Время отправки сообщения сервером, если оно было в сообщении.
+     */
+    @Nullable
+    public Instant getServerTime() {
+        return serverTime;
+    }
+
     /**
      * Модель события с изменением свечи.
      */
@@ -528,6 +545,9 @@ public abstract class StreamingEvent {
 
         private static final long serialVersionUID = -4598785717730517692L;
 
+        // Создание ObjectMapper дорогое, а после настройки он потокобезопасен.
+        private static final ObjectMapper payloadMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
         public StreamingEventDeserializer() {
             this(null);
         }
@@ -554,27 +574,33 @@ public abstract class StreamingEvent {
                 throw new JsonParseException(p, "No data field 'payload'.");
             }
 
-            final ObjectMapper mapper = new ObjectMapper();
-            mapper.registerModule(new JavaTimeModule());
-
             StreamingEvent result;
             switch (eventName) {
                 case "candle":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), Candle.class);
+                    result = payloadMapper.treeToValue(payloadNode, Candle.class);
                     break;
                 case "orderbook":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), Orderbook.class);
+                    result = payloadMapper.treeToValue(payloadNode, Orderbook.class);
                     break;
                 case "instrument_info":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), InstrumentInfo.class);
+                    result = payloadMapper.treeToValue(payloadNode, InstrumentInfo.class);
                     break;
                 case "error":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), Error.class);
+                    result = payloadMapper.treeToValue(payloadNode, Error.class);
                     break;
                 default:
                     throw new JsonParseException(p, "Unknown event type.");
             }
 
+            final JsonNode timeNode = node.get("time");
+            if (timeNode != null && timeNode.isTextual()) {
+                try {
+                    result.serverTime = DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(timeNode.asText(), Instant::from);
+                } catch (DateTimeParseException ex) {
+                    // Время отправки служебное, событие без него остаётся полноценным.
+                }
+            }
+
             p.close();
 
             return result;
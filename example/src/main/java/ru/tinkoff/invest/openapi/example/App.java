@@ -2,6 +2,16 @@ package ru.tinkoff.invest.openapi.example;
 
 import io.reactivex.rxjava3.core.Flowable;
 import ru.tinkoff.invest.openapi.OpenApi;
+import ru.tinkoff.invest.openapi.example.aggregation.ElasticsearchBulkClient;
+import ru.tinkoff.invest.openapi.example.aggregation.EventCountAggregator;
+import ru.tinkoff.invest.openapi.example.monitoring.EventActivityTracker;
+import ru.tinkoff.invest.openapi.example.monitoring.MonitoringServer;
+import ru.tinkoff.invest.openapi.example.sink.BatchingEventSink;
+import ru.tinkoff.invest.openapi.example.sink.EventSinkGroup;
+import ru.tinkoff.invest.openapi.example.sink.OverflowPolicy;
+import ru.tinkoff.invest.openapi.example.sink.RollingNdjsonEventSink;
+import ru.tinkoff.invest.openapi.example.sink.TextFileEventSink;
+import ru.tinkoff.invest.openapi.metrics.hdr.InMemoryMetricsRegistry;
 import ru.tinkoff.invest.openapi.model.rest.MarketInstrument;
 import ru.tinkoff.invest.openapi.model.rest.SandboxRegisterRequest;
 import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
@@ -10,9 +20,15 @@ import ru.tinkoff.invest.openapi.okhttp.OkHttpOpenApi;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.LogManager;
 
 public class App {
@@ -50,8 +66,33 @@ public class App {
             return;
         }
 
+        //Поминутные счётчики событий отправляются напрямую в Elasticsearch
+        final var elasticsearch = new ElasticsearchBulkClient(
+                System.getProperty("es.url", "http://localhost:9200"),
+                System.getProperty("es.index", "tinkoff-events-per-minute"));
+
+        //Метрики SDK и активность по инструментам отдаются встроенным сервером мониторинга
+        final var registry = new InMemoryMetricsRegistry();
+        final var activity = new EventActivityTracker();
+
         //Создание подключения к Open API
-        try (final OpenApi api = new OkHttpOpenApi(parameters.ssoToken, parameters.sandboxMode)) {
+        try (final var sinks = createSinks();
+             final var aggregator = new EventCountAggregator(elasticsearch, Duration.ofSeconds(2));
+             final var api = new OkHttpOpenApi(
+                     parameters.ssoToken,
+                     parameters.sandboxMode,
+                     ForkJoinPool.commonPool(),
+                     Collections.emptyList(),
+                     OpenApi.loadConfig(),
+                     registry);
+             final var monitoring = new MonitoringServer(
+                     new InetSocketAddress(
+                             System.getProperty("monitoring.host", "127.0.0.1"),
+                             Integer.getInteger("monitoring.port", 9464)),
+                     registry,
+                     api,
+                     activity,
+                     sinks)) {
             logger.info("Создаём подключение... ");
             if (api.isSandboxMode()) {
                 // ОБЯЗАТЕЛЬНО нужно выполнить регистрацию в "песочнице"
@@ -64,7 +105,9 @@ public class App {
             final var rxSubscription = rxStreaming
                     .doOnError(stopNotifier::completeExceptionally)
                     .doOnComplete(() -> stopNotifier.complete(null))
-                    .forEach(event -> logger.info("Пришло новое событие из Streaming API\n" + event));
+                    .doOnNext(aggregator::record)
+                    .doOnNext(activity::record)
+                    .forEach(sinks::accept);
 
 
             for (int i = 0; i < parameters.tickers.length; i++) {
@@ -95,6 +138,32 @@ public class App {
         }
     }
 
+    /**
+     * Создание получателей событий. События пишутся в logs/events.ndjson по одному JSON-объекту
+     * на строку; файл ротируется раз в час или по достижении 128 МБ. При заданном свойстве
+     * events.log события ещё и пишутся в указанный текстовый файл по строке на событие. Запись идёт
+     * в фоновых потоках, так что медленный диск не задерживает поток событий.
+     */
+
+    private static EventSinkGroup createSinks() throws IOException {
+        final var events = new RollingNdjsonEventSink(
+                Paths.get("./logs/events.ndjson"),
+                128L * 1024 * 1024,
+                Duration.ofHours(1),
+                48,
+                false);
+        final List<BatchingEventSink> sinks = new ArrayList<>();
+        sinks.add(new BatchingEventSink(events, 65536, 1024, Duration.ofMillis(200), OverflowPolicy.DROP));
+
+        final var textPath = System.getProperty("events.log");
+        if (textPath != null) {
+            sinks.add(new BatchingEventSink(
+                    new TextFileEventSink(Paths.get(textPath)),
+                    65536, 512, Duration.ofMillis(200), OverflowPolicy.DROP));
+        }
+        return new EventSinkGroup(sinks);
+    }
+
     /**
      * Иницализация логгирования
      *
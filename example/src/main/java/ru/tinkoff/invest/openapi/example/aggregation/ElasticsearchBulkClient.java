@@ -0,0 +1,120 @@
+package ru.tinkoff.invest.openapi.example.aggregation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Отправка поминутных счётчиков в Elasticsearch одним запросом к {@code _bulk} API.
+ *
+ * Идентификатор документа строится из минуты, инструмента и типа события, поэтому повторная
+ * отправка той же минуты перезаписывает документ, а не дублирует его.
+ */
+public class ElasticsearchBulkClient {
+
+    private final HttpClient client;
+    private final URI bulkUri;
+    private final String index;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ElasticsearchBulkClient.class);
+
+    /**
+     * @param baseUrl Адрес Elasticsearch, например {@code http://localhost:9200}.
+     * @param index   Индекс для документов.
+     */
+    public ElasticsearchBulkClient(@NotNull final String baseUrl, @NotNull final String index) {
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.bulkUri = URI.create(baseUrl.endsWith("/") ? baseUrl + "_bulk" : baseUrl + "/_bulk");
+        this.index = index;
+    }
+
+    /**
+     * Индексация счётчиков.
+     *
+     * @param counts Счётчики.
+     *
+     * @throws IOException Если запрос не удался или Elasticsearch вернул ошибку.
+     */
+    public void index(@NotNull final List<MinuteCount> counts) throws IOException {
+        if (counts.isEmpty()) {
+            return;
+        }
+        send(render(counts));
+    }
+
+    /**
+     * Отправка готового тела {@code _bulk}-запроса.
+     *
+     * @param ndjson Строки действий и документов, каждая с переводом строки в конце.
+     *
+     * @throws IOException Если запрос не удался или Elasticsearch вернул ошибку.
+     */
+    public void send(@NotNull final String ndjson) throws IOException {
+        final HttpRequest request = HttpRequest.newBuilder(bulkUri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson))
+                .build();
+
+        final HttpResponse<String> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Отправка в Elasticsearch прервана", ex);
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Elasticsearch вернул код " + response.statusCode() + ": " + response.body());
+        }
+        if (response.body().contains("\"errors\":true")) {
+            logger.warn("Часть документов не проиндексирована: " + response.body());
+        }
+    }
+
+    /**
+     * @return Индекс для документов.
+     */
+    @NotNull
+    public String getIndex() {
+        return index;
+    }
+
+    @NotNull
+    String render(@NotNull final List<MinuteCount> counts) {
+        final StringBuilder body = new StringBuilder(counts.size() * 160);
+        for (final MinuteCount count : counts) {
+            body.append("{\"index\":{\"_index\":\"").append(escape(index))
+                    .append("\",\"_id\":\"").append(escape(count.documentId())).append("\"}}\n");
+            body.append("{\"@timestamp\":\"").append(count.minute)
+                    .append("\",\"figi\":\"").append(escape(count.figi))
+                    .append("\",\"event\":\"").append(count.type.getValue())
+                    .append("\",\"count\":").append(count.count)
+                    .append("}\n");
+        }
+        return body.toString();
+    }
+
+    @NotNull
+    private static String escape(@NotNull final String value) {
+        final StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
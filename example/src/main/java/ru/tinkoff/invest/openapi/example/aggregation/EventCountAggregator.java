@@ -0,0 +1,184 @@
+package ru.tinkoff.invest.openapi.example.aggregation;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Поминутный подсчёт событий Streaming API по инструментам и типам событий.
+ *
+ * События учитываются в минуте их получения. Счётчики текущей минуты - это {@link LongAdder},
+ * так что учёт события не требует блокировок и после первого события по инструменту в минуте
+ * не создаёт объектов. На границе минуты (с небольшой задержкой, чтобы успели учесться события,
+ * полученные в самом её конце) завершённые минуты отправляются в Elasticsearch одним
+ * {@code _bulk}-запросом.
+ */
+public class EventCountAggregator implements Closeable {
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final EventType[] TYPES = EventType.values();
+
+    private final ElasticsearchBulkClient output;
+    private final Clock clock;
+    private final AtomicReference<Bucket> current;
+    private final ConcurrentLinkedQueue<Bucket> completed;
+    private final ScheduledExecutorService flusher;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EventCountAggregator.class);
+
+    /**
+     * Создание агрегатора без автоматической отправки: минуты отправляются вызовом {@link #flush()}.
+     *
+     * @param output Получатель счётчиков.
+     * @param clock  Часы, по которым определяется минута события.
+     */
+    public EventCountAggregator(@NotNull final ElasticsearchBulkClient output, @NotNull final Clock clock) {
+        this.output = output;
+        this.clock = clock;
+        this.current = new AtomicReference<>(new Bucket(minuteOf(clock.millis())));
+        this.completed = new ConcurrentLinkedQueue<>();
+        this.flusher = null;
+    }
+
+    /**
+     * Создание агрегатора, отправляющего счётчики на каждой границе минуты.
+     *
+     * @param output Получатель счётчиков.
+     * @param grace  Задержка отправки после границы минуты.
+     */
+    public EventCountAggregator(@NotNull final ElasticsearchBulkClient output, @NotNull final Duration grace) {
+        this.output = output;
+        this.clock = Clock.systemUTC();
+        this.current = new AtomicReference<>(new Bucket(minuteOf(clock.millis())));
+        this.completed = new ConcurrentLinkedQueue<>();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "event-count-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long now = clock.millis();
+        final long firstDelay = minuteOf(now) + MINUTE_MILLIS - now + grace.toMillis();
+        this.flusher.scheduleAtFixedRate(this::flushSafely, firstDelay, MINUTE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Учёт события.
+     *
+     * @param event Событие Streaming API.
+     */
+    public void record(@NotNull final StreamingEvent event) {
+        final long minute = minuteOf(clock.millis());
+        Bucket bucket = current.get();
+        if (bucket.minute < minute) {
+            bucket = advance(minute);
+        }
+        bucket.counters(EventType.figiOf(event))[EventType.of(event).ordinal()].increment();
+    }
+
+    /**
+     * Отправка всех завершённых минут.
+     *
+     * @throws IOException Если отправка не удалась. Счётчики неотправленных минут теряются.
+     */
+    public void flush() throws IOException {
+        advance(minuteOf(clock.millis()));
+        output.index(drain());
+    }
+
+    /**
+     * Остановка отправки по расписанию и отправка всех минут, включая текущую.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        completed.add(current.getAndSet(new Bucket(Long.MAX_VALUE)));
+        output.index(drain());
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            logger.error("Не удалось отправить поминутные счётчики событий", ex);
+        }
+    }
+
+    @NotNull
+    private Bucket advance(final long minute) {
+        while (true) {
+            final Bucket bucket = current.get();
+            if (bucket.minute >= minute) {
+                return bucket;
+            }
+            final Bucket next = new Bucket(minute);
+            if (current.compareAndSet(bucket, next)) {
+                completed.add(bucket);
+                return next;
+            }
+        }
+    }
+
+    @NotNull
+    private List<MinuteCount> drain() {
+        final List<MinuteCount> result = new ArrayList<>();
+        Bucket bucket;
+        while ((bucket = completed.poll()) != null) {
+            final Instant minute = Instant.ofEpochMilli(bucket.minute);
+            for (final Map.Entry<String, LongAdder[]> entry : bucket.counts.entrySet()) {
+                final LongAdder[] adders = entry.getValue();
+                for (int i = 0; i < adders.length; i++) {
+                    final long count = adders[i].sum();
+                    if (count > 0) {
+                        result.add(new MinuteCount(minute, entry.getKey(), TYPES[i], count));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long minuteOf(final long millis) {
+        return millis - Math.floorMod(millis, MINUTE_MILLIS);
+    }
+
+    private static final class Bucket {
+        final long minute;
+        final ConcurrentHashMap<String, LongAdder[]> counts = new ConcurrentHashMap<>();
+
+        Bucket(final long minute) {
+            this.minute = minute;
+        }
+
+        @NotNull
+        LongAdder[] counters(@NotNull final String figi) {
+            final LongAdder[] existing = counts.get(figi);
+            if (existing != null) {
+                return existing;
+            }
+            return counts.computeIfAbsent(figi, k -> {
+                final LongAdder[] adders = new LongAdder[TYPES.length];
+                for (int i = 0; i < adders.length; i++) {
+                    adders[i] = new LongAdder();
+                }
+                return adders;
+            });
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.tinkoff.invest.openapi.example.aggregation;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+/**
+ * Тип события Streaming API в том виде, в котором он приходит в поле "event".
+ */
+public enum EventType {
+    CANDLE("candle"),
+    ORDERBOOK("orderbook"),
+    INSTRUMENT_INFO("instrument_info"),
+    ERROR("error");
+
+    private final String value;
+
+    EventType(final String value) {
+        this.value = value;
+    }
+
+    @NotNull
+    public String getValue() {
+        return value;
+    }
+
+    @NotNull
+    public static EventType of(@NotNull final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Candle) {
+            return CANDLE;
+        } else if (event instanceof StreamingEvent.Orderbook) {
+            return ORDERBOOK;
+        } else if (event instanceof StreamingEvent.InstrumentInfo) {
+            return INSTRUMENT_INFO;
+        } else {
+            return ERROR;
+        }
+    }
+
+    /**
+     * Идентификатор инструмента, к которому относится событие.
+     *
+     * @param event Событие.
+     *
+     * @return FIGI или пустая строка для событий без инструмента.
+     */
+    @NotNull
+    public static String figiOf(@NotNull final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Candle) {
+            return ((StreamingEvent.Candle) event).getFigi();
+        } else if (event instanceof StreamingEvent.Orderbook) {
+            return ((StreamingEvent.Orderbook) event).getFigi();
+        } else if (event instanceof StreamingEvent.InstrumentInfo) {
+            return ((StreamingEvent.InstrumentInfo) event).getFigi();
+        } else {
+            return "";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
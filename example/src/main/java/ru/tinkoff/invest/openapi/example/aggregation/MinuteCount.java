@@ -0,0 +1,45 @@
+package ru.tinkoff.invest.openapi.example.aggregation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+
+/**
+ * Количество событий одного типа по одному инструменту за одну минуту.
+ */
+public class MinuteCount {
+    @NotNull
+    public final Instant minute;
+    @NotNull
+    public final String figi;
+    @NotNull
+    public final EventType type;
+    public final long count;
+
+    public MinuteCount(@NotNull final Instant minute,
+                       @NotNull final String figi,
+                       @NotNull final EventType type,
+                       final long count) {
+        this.minute = minute;
+        this.figi = figi;
+        this.type = type;
+        this.count = count;
+    }
+
+    /**
+     * @return Идентификатор документа, одинаковый при повторной отправке той же минуты.
+     */
+    @NotNull
+    public String documentId() {
+        return minute.toEpochMilli() + "-" + (figi.isEmpty() ? "none" : figi) + "-" + type.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "MinuteCount(minute = " + minute +
+                ", figi = " + figi +
+                ", type = " + type +
+                ", count = " + count +
+                ")";
+    }
+}
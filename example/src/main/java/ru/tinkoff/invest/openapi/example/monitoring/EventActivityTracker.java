@@ -0,0 +1,133 @@
+package ru.tinkoff.invest.openapi.example.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.example.aggregation.EventType;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учёт активности Streaming API по инструментам: количество событий, время последнего события
+ * и скорость потока.
+ *
+ * Учёт события - это поиск в {@link ConcurrentHashMap}, инкремент {@link LongAdder} и запись
+ * volatile-поля, без блокировок и, после первого события по инструменту, без создания объектов.
+ * Скорость считается не при учёте, а в {@link #sample()}, который вызывается по расписанию
+ * потоком мониторинга.
+ */
+public class EventActivityTracker {
+
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Activity> activities = new ConcurrentHashMap<>();
+
+    public EventActivityTracker(@NotNull final Clock clock) {
+        this.clock = clock;
+    }
+
+    public EventActivityTracker() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Учёт события.
+     *
+     * @param event Событие Streaming API.
+     */
+    public void record(@NotNull final StreamingEvent event) {
+        final Activity activity = activities.computeIfAbsent(EventType.figiOf(event), figi -> new Activity());
+        activity.events.increment();
+        activity.lastEventAt = clock.millis();
+    }
+
+    /**
+     * Пересчёт скорости потока по каждому инструменту за время с предыдущего вызова.
+     */
+    public void sample() {
+        final long now = clock.millis();
+        for (final Activity activity : activities.values()) {
+            final long events = activity.events.sum();
+            if (activity.sampledAt > 0 && now > activity.sampledAt) {
+                activity.rate = (events - activity.sampledEvents) * 1000.0 / (now - activity.sampledAt);
+            }
+            activity.sampledAt = now;
+            activity.sampledEvents = events;
+        }
+    }
+
+    /**
+     * @return Снимки активности по FIGI; события без инструмента учитываются под пустой строкой.
+     */
+    @NotNull
+    public Map<String, Snapshot> snapshot() {
+        final long now = clock.millis();
+        final Map<String, Snapshot> result = new TreeMap<>();
+        for (final Map.Entry<String, Activity> entry : activities.entrySet()) {
+            final Activity activity = entry.getValue();
+            final long lastEventAt = activity.lastEventAt;
+            result.put(entry.getKey(), new Snapshot(
+                    activity.events.sum(),
+                    lastEventAt,
+                    Math.max(0, now - lastEventAt),
+                    activity.rate));
+        }
+        return result;
+    }
+
+    /**
+     * Активность по одному инструменту.
+     */
+    public static final class Snapshot {
+        private final long events;
+        private final long lastEventAt;
+        private final long lastEventAge;
+        private final double rate;
+
+        Snapshot(final long events, final long lastEventAt, final long lastEventAge, final double rate) {
+            this.events = events;
+            this.lastEventAt = lastEventAt;
+            this.lastEventAge = lastEventAge;
+            this.rate = rate;
+        }
+
+        /**
+         * @return Количество событий с момента запуска.
+         */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * @return Время последнего события в миллисекундах с начала эпохи.
+         */
+        public long getLastEventAt() {
+            return lastEventAt;
+        }
+
+        /**
+         * @return Сколько миллисекунд назад пришло последнее событие.
+         */
+        public long getLastEventAge() {
+            return lastEventAge;
+        }
+
+        /**
+         * @return Событий в секунду между двумя последними вызовами {@link #sample()}.
+         */
+        public double getRate() {
+            return rate;
+        }
+    }
+
+    private static final class Activity {
+        final LongAdder events = new LongAdder();
+        volatile long lastEventAt;
+        // Поля ниже читает и пишет только поток, вызывающий sample().
+        long sampledAt;
+        long sampledEvents;
+        volatile double rate;
+    }
+}
@@ -0,0 +1,251 @@
+package ru.tinkoff.invest.openapi.example.monitoring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.example.sink.BatchingEventSink;
+import ru.tinkoff.invest.openapi.example.sink.EventSinkGroup;
+import ru.tinkoff.invest.openapi.metrics.hdr.InMemoryMetricsRegistry;
+import ru.tinkoff.invest.openapi.okhttp.HttpClientMetrics;
+import ru.tinkoff.invest.openapi.okhttp.OkHttpOpenApi;
+import ru.tinkoff.invest.openapi.okhttp.RequestScheduler;
+import ru.tinkoff.invest.openapi.okhttp.StreamingStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Встроенный HTTP-сервер мониторинга приложения.
+ *
+ * <ul>
+ *     <li>{@code GET /metrics} - метрики в текстовом формате Prometheus: метрики реестра SDK,
+ *     состояния соединений Streaming API, активность по инструментам и очереди получателей;</li>
+ *     <li>{@code GET /health} - сводка в JSON; код ответа 200, если все соединения Streaming API
+ *     открыты, иначе 503.</li>
+ * </ul>
+ *
+ * Запросы обслуживает единственный собственный поток, который также раз в
+ * {@link #SAMPLE_INTERVAL_SECONDS} секунд пересчитывает скорость потока событий. Состояние
+ * собирается из снимков, которые читают счётчики и volatile-поля, поэтому опрос сервера не
+ * берёт блокировок, нужных потокам Streaming API и получателям событий.
+ */
+public class MonitoringServer implements Closeable {
+
+    public static final long SAMPLE_INTERVAL_SECONDS = 10;
+
+    private final HttpServer server;
+    private final ScheduledExecutorService executor;
+    private final InMemoryMetricsRegistry registry;
+    private final OkHttpOpenApi api;
+    private final EventActivityTracker activity;
+    private final EventSinkGroup sinks;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MonitoringServer.class);
+
+    /**
+     * Создание и запуск сервера.
+     *
+     * @param address  Адрес, на котором слушает сервер.
+     * @param registry Реестр метрик, переданный клиенту OpenAPI.
+     * @param api      Клиент OpenAPI.
+     * @param activity Учёт активности по инструментам.
+     * @param sinks    Получатели событий.
+     *
+     * @throws IOException Если не удалось открыть порт.
+     */
+    public MonitoringServer(@NotNull final InetSocketAddress address,
+                            @NotNull final InMemoryMetricsRegistry registry,
+                            @NotNull final OkHttpOpenApi api,
+                            @NotNull final EventActivityTracker activity,
+                            @NotNull final EventSinkGroup sinks) throws IOException {
+        this.registry = registry;
+        this.api = api;
+        this.activity = activity;
+        this.sinks = sinks;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "monitoring");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(
+                activity::sample, 0, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/metrics", exchange -> handle(exchange, false));
+        this.server.createContext("/health", exchange -> handle(exchange, true));
+        this.server.start();
+        logger.info("Мониторинг доступен на http://" + address.getHostString() + ":" + getPort());
+    }
+
+    /**
+     * @return Порт, на котором слушает сервер.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(@NotNull final HttpExchange exchange, final boolean health) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain; charset=utf-8", new byte[0]);
+            } else if (health) {
+                final StreamingStatus status = api.getStreamingStatus();
+                final int code = isUp(status) ? 200 : 503;
+                respond(exchange, code, "application/json; charset=utf-8", health(status));
+            } else {
+                respond(exchange, 200, PrometheusText.CONTENT_TYPE,
+                        metrics().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Не удалось сформировать ответ мониторинга", ex);
+            respond(exchange, 500, "text/plain; charset=utf-8", new byte[0]);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(@NotNull final HttpExchange exchange,
+                                final int code,
+                                @NotNull final String contentType,
+                                @NotNull final byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static boolean isUp(@NotNull final StreamingStatus status) {
+        if (status.getConnections().isEmpty()) {
+            return false;
+        }
+        for (final StreamingStatus.Connection connection : status.getConnections()) {
+            if (connection.getState() != StreamingStatus.ConnectionState.OPEN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private String metrics() {
+        final PrometheusText text = new PrometheusText().registry(registry);
+
+        final StreamingStatus status = api.getStreamingStatus();
+        for (final StreamingStatus.Connection connection : status.getConnections()) {
+            for (final StreamingStatus.ConnectionState state : StreamingStatus.ConnectionState.values()) {
+                text.gauge("app.streaming.connection.state", connection.getState() == state ? 1 : 0,
+                        "connection", Integer.toString(connection.getId()), "state", state.name().toLowerCase());
+            }
+        }
+        for (final StreamingStatus.Connection connection : status.getConnections()) {
+            text.gauge("app.streaming.connection.subscriptions", connection.getSubscriptions(),
+                    "connection", Integer.toString(connection.getId()));
+        }
+        text.gauge("app.streaming.subscriber.queued", status.getQueuedEvents());
+
+        final Map<String, EventActivityTracker.Snapshot> figis = activity.snapshot();
+        for (final Map.Entry<String, EventActivityTracker.Snapshot> entry : figis.entrySet()) {
+            text.counter("app.events", entry.getValue().getEvents(), "figi", entry.getKey());
+        }
+        for (final Map.Entry<String, EventActivityTracker.Snapshot> entry : figis.entrySet()) {
+            text.gauge("app.events.rate", entry.getValue().getRate(), "figi", entry.getKey());
+        }
+        for (final Map.Entry<String, EventActivityTracker.Snapshot> entry : figis.entrySet()) {
+            text.gauge("app.events.last.age.seconds", entry.getValue().getLastEventAge() / 1000.0,
+                    "figi", entry.getKey());
+        }
+
+        for (final BatchingEventSink sink : sinks.getSinks()) {
+            text.gauge("app.sink.queued", sink.getQueued(), "sink", sink.getName());
+        }
+        for (final BatchingEventSink sink : sinks.getSinks()) {
+            text.counter("app.sink.written", sink.getWritten(), "sink", sink.getName());
+        }
+        for (final BatchingEventSink sink : sinks.getSinks()) {
+            text.counter("app.sink.dropped", sink.getDropped(), "sink", sink.getName());
+        }
+        for (final BatchingEventSink sink : sinks.getSinks()) {
+            text.counter("app.sink.failed", sink.getFailed(), "sink", sink.getName());
+        }
+
+        final RequestScheduler scheduler = api.getRequestScheduler();
+        for (final RequestScheduler.EndpointGroup group : RequestScheduler.EndpointGroup.values()) {
+            text.gauge("app.rest.scheduler.queued", scheduler.getMetrics(group).getQueueDepth(),
+                    "group", group.name().toLowerCase());
+        }
+        final HttpClientMetrics http = api.getHttpClientMetrics();
+        text.gauge("app.rest.dispatcher.queued", http.getQueuedCalls());
+        text.gauge("app.rest.dispatcher.running", http.getRunningCalls());
+        return text.toString();
+    }
+
+    @NotNull
+    private byte[] health(@NotNull final StreamingStatus status) throws JsonProcessingException {
+        final ObjectNode root = mapper.createObjectNode();
+        root.put("status", isUp(status) ? "UP" : "DOWN");
+        root.put("time", Instant.now().toString());
+
+        final ArrayNode connections = root.putArray("connections");
+        for (final StreamingStatus.Connection connection : status.getConnections()) {
+            final ObjectNode node = connections.addObject();
+            node.put("id", connection.getId());
+            node.put("state", connection.getState().name());
+            node.put("subscriptions", connection.getSubscriptions());
+            if (connection.getLastMessageAt() > 0) {
+                node.put("last_message_at", Instant.ofEpochMilli(connection.getLastMessageAt()).toString());
+            } else {
+                node.putNull("last_message_at");
+            }
+        }
+
+        final ObjectNode instruments = root.putObject("instruments");
+        for (final Map.Entry<String, EventActivityTracker.Snapshot> entry : activity.snapshot().entrySet()) {
+            final EventActivityTracker.Snapshot snapshot = entry.getValue();
+            final ObjectNode node = instruments.putObject(entry.getKey());
+            node.put("events", snapshot.getEvents());
+            node.put("events_per_second", snapshot.getRate());
+            node.put("last_event_at", Instant.ofEpochMilli(snapshot.getLastEventAt()).toString());
+            node.put("last_event_age_ms", snapshot.getLastEventAge());
+        }
+
+        final ObjectNode buffers = root.putObject("buffers");
+        buffers.put("subscriber_queue", status.getQueuedEvents());
+        final ObjectNode sinkNodes = buffers.putObject("sinks");
+        for (final BatchingEventSink sink : sinks.getSinks()) {
+            final ObjectNode node = sinkNodes.putObject(sink.getName());
+            node.put("queued", sink.getQueued());
+            node.put("written", sink.getWritten());
+            node.put("dropped", sink.getDropped());
+            node.put("failed", sink.getFailed());
+        }
+        final ObjectNode scheduler = buffers.putObject("rest_scheduler");
+        for (final RequestScheduler.EndpointGroup group : RequestScheduler.EndpointGroup.values()) {
+            scheduler.put(group.name().toLowerCase(), api.getRequestScheduler().getMetrics(group).getQueueDepth());
+        }
+        buffers.put("http_dispatcher", api.getHttpClientMetrics().getQueuedCalls());
+
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(root);
+    }
+}
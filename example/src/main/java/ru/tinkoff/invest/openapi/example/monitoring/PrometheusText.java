@@ -0,0 +1,182 @@
+package ru.tinkoff.invest.openapi.example.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.metrics.MeterId;
+import ru.tinkoff.invest.openapi.metrics.hdr.InMemoryMetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Построение ответа в текстовом формате Prometheus (version 0.0.4).
+ *
+ * Имена метрик реестра переводятся в принятый в Prometheus вид: точки заменяются на
+ * подчёркивания, к счётчикам добавляется {@code _total}. Гистограммы выгружаются как summary с
+ * квантилями 0.5, 0.9, 0.99 и 0.999 в единицах реестра, то есть задержки - в наносекундах.
+ * Строки одной метрики идут подряд под одним заголовком {@code # TYPE}, как требует формат.
+ */
+public final class PrometheusText {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder(8192);
+    private String family;
+
+    /**
+     * Выгрузка всех метрик реестра.
+     *
+     * @param registry Реестр.
+     *
+     * @return this
+     */
+    @NotNull
+    public PrometheusText registry(@NotNull final InMemoryMetricsRegistry registry) {
+        final Map<String, List<Map.Entry<MeterId, Long>>> counters = new TreeMap<>();
+        for (final Map.Entry<MeterId, Long> entry : registry.getCounters().entrySet()) {
+            counters.computeIfAbsent(entry.getKey().getName(), name -> new ArrayList<>()).add(entry);
+        }
+        for (final Map.Entry<String, List<Map.Entry<MeterId, Long>>> group : counters.entrySet()) {
+            final String name = sanitize(group.getKey()) + "_total";
+            for (final Map.Entry<MeterId, Long> entry : group.getValue()) {
+                sample(name, "counter", "", labels(entry.getKey()), null, entry.getValue());
+            }
+        }
+
+        final Map<String, List<Map.Entry<MeterId, InMemoryMetricsRegistry.HistogramSnapshot>>> histograms =
+                new TreeMap<>();
+        for (final Map.Entry<MeterId, InMemoryMetricsRegistry.HistogramSnapshot> entry :
+                registry.getHistograms().entrySet()) {
+            histograms.computeIfAbsent(entry.getKey().getName(), name -> new ArrayList<>()).add(entry);
+        }
+        for (final Map.Entry<String, List<Map.Entry<MeterId, InMemoryMetricsRegistry.HistogramSnapshot>>> group :
+                histograms.entrySet()) {
+            final String name = sanitize(group.getKey());
+            for (final Map.Entry<MeterId, InMemoryMetricsRegistry.HistogramSnapshot> entry : group.getValue()) {
+                final String[] tags = labels(entry.getKey());
+                final InMemoryMetricsRegistry.HistogramSnapshot snapshot = entry.getValue();
+                for (final double quantile : QUANTILES) {
+                    sample(name, "summary", "", tags, Double.toString(quantile),
+                            snapshot.getValueAtPercentile(quantile * 100));
+                }
+                sample(name, "summary", "_sum", tags, null, snapshot.getSum());
+                sample(name, "summary", "_count", tags, null, snapshot.getCount());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Значение метрики типа gauge. Значения одной метрики с разными метками нужно добавлять
+     * подряд.
+     *
+     * @param name   Имя метрики.
+     * @param value  Значение.
+     * @param labels Пары имя-значение меток.
+     *
+     * @return this
+     */
+    @NotNull
+    public PrometheusText gauge(@NotNull final String name, final double value, @NotNull final String... labels) {
+        sample(sanitize(name), "gauge", "", labels, null, value);
+        return this;
+    }
+
+    /**
+     * Значение монотонного счётчика, который ведётся вне реестра. Суффикс {@code _total}
+     * добавляется к имени автоматически.
+     *
+     * @param name   Имя метрики.
+     * @param value  Значение.
+     * @param labels Пары имя-значение меток.
+     *
+     * @return this
+     */
+    @NotNull
+    public PrometheusText counter(@NotNull final String name, final double value, @NotNull final String... labels) {
+        sample(sanitize(name) + "_total", "counter", "", labels, null, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void sample(@NotNull final String name,
+                        @NotNull final String type,
+                        @NotNull final String suffix,
+                        @NotNull final String[] labels,
+                        final String quantile,
+                        final double value) {
+        if (!name.equals(family)) {
+            family = name;
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+        out.append(name).append(suffix);
+        if (labels.length > 0 || quantile != null) {
+            out.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) out.append(',');
+                out.append(sanitize(labels[i])).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+            if (quantile != null) {
+                if (labels.length > 0) out.append(',');
+                out.append("quantile=\"").append(quantile).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == (long) value) {
+            out.append((long) value);
+        } else if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    @NotNull
+    private static String[] labels(@NotNull final MeterId id) {
+        final String[] labels = new String[id.getTags().size() * 2];
+        int i = 0;
+        for (final Map.Entry<String, String> tag : id.getTags().entrySet()) {
+            labels[i++] = tag.getKey();
+            labels[i++] = tag.getValue();
+        }
+        return labels;
+    }
+
+    private void escape(@NotNull final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    @NotNull
+    static String sanitize(@NotNull final String name) {
+        final StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                    || (i > 0 && c >= '0' && c <= '9');
+            sb.append(valid ? c : '_');
+        }
+        return sb.toString();
+    }
+}
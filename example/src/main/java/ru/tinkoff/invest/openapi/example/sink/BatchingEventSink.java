@@ -0,0 +1,186 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронная пакетная запись событий в {@link EventSink}.
+ *
+ * События складываются в ограниченную очередь и записываются собственным потоком получателя
+ * пачками: пачка уходит, когда набрано {@code maxBatchSize} событий или с момента первого события
+ * пачки прошло {@code maxDelay}. Поток, доставляющий события, в вводе-выводе не участвует;
+ * при заполненной очереди он либо ждёт, либо событие отбрасывается - в зависимости от
+ * {@link OverflowPolicy}.
+ */
+public class BatchingEventSink implements Closeable {
+
+    private final EventSink sink;
+    private final BlockingQueue<ReceivedEvent> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread worker;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(BatchingEventSink.class);
+
+    private volatile boolean running = true;
+
+    /**
+     * @param sink           Получатель пачек.
+     * @param queueCapacity  Ёмкость очереди.
+     * @param maxBatchSize   Максимальный размер пачки.
+     * @param maxDelay       Максимальное время ожидания пачки после её первого события.
+     * @param overflowPolicy Поведение при заполненной очереди.
+     */
+    public BatchingEventSink(@NotNull final EventSink sink,
+                             final int queueCapacity,
+                             final int maxBatchSize,
+                             @NotNull final Duration maxDelay,
+                             @NotNull final OverflowPolicy overflowPolicy) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Размер пачки должен быть положительным");
+        }
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.worker = new Thread(this::run, "event-sink-" + sink.getName());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Постановка события в очередь записи.
+     *
+     * @param event Событие.
+     *
+     * @return false, если событие отброшено.
+     */
+    public boolean offer(@NotNull final ReceivedEvent event) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(event);
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (queue.offer(event)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    @NotNull
+    public String getName() {
+        return sink.getName();
+    }
+
+    /**
+     * @return Количество событий, ожидающих записи.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return Количество записанных событий.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return Количество событий, отброшенных из-за заполненной очереди.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Количество событий, потерянных из-за ошибок записи.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Запись оставшихся в очереди событий и закрытие получателя.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("Получатель событий " + sink.getName() + " не успел записать " + queue.size() + " событий");
+            worker.interrupt();
+        }
+        sink.close();
+    }
+
+    private void run() {
+        final List<ReceivedEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final ReceivedEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    final ReceivedEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(@NotNull final List<ReceivedEvent> batch) {
+        try {
+            sink.write(batch);
+            written.add(batch.size());
+        } catch (Exception ex) {
+            failed.add(batch.size());
+            logger.error("Получатель событий " + sink.getName() + " не смог записать " + batch.size() + " событий", ex);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.example.aggregation.EventType;
+
+import java.time.Instant;
+
+/**
+ * Представление события в JSON: тип события, момент получения и само событие.
+ */
+final class EventJson {
+
+    private final ObjectMapper mapper;
+
+    EventJson() {
+        this.mapper = new ObjectMapper();
+        this.mapper.registerModule(new JavaTimeModule());
+        this.mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @NotNull
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    @NotNull
+    ObjectNode toTree(@NotNull final ReceivedEvent received) {
+        final ObjectNode node = mapper.createObjectNode();
+        node.put("event", EventType.of(received.event).getValue());
+        node.put("received_at", Instant.ofEpochMilli(received.receivedAt).toString());
+        node.set("payload", mapper.valueToTree(received.event));
+        return node;
+    }
+
+    @NotNull
+    String render(@NotNull final ReceivedEvent received) throws JsonProcessingException {
+        return mapper.writeValueAsString(toTree(received));
+    }
+}
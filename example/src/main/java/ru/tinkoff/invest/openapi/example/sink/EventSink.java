@@ -0,0 +1,33 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Получатель пачек событий Streaming API.
+ *
+ * Реализации выполняют ввод-вывод синхронно и вызываются только из потока
+ * {@link BatchingEventSink}, поэтому могут не заботиться о потокобезопасности.
+ */
+public interface EventSink extends Closeable {
+
+    /**
+     * Запись пачки событий.
+     *
+     * @param batch События в порядке получения.
+     *
+     * @throws IOException Если запись не удалась. Пачка при этом считается потерянной.
+     */
+    void write(@NotNull List<ReceivedEvent> batch) throws IOException;
+
+    /**
+     * Название получателя для журнала и метрик.
+     *
+     * @return Название.
+     */
+    @NotNull
+    String getName();
+}
@@ -0,0 +1,62 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Параллельная доставка событий в несколько получателей. Каждый получатель пишет в своём
+ * потоке, так что медленный получатель не задерживает остальные.
+ */
+public class EventSinkGroup implements Closeable {
+
+    private final List<BatchingEventSink> sinks;
+
+    public EventSinkGroup(@NotNull final List<BatchingEventSink> sinks) {
+        this.sinks = Collections.unmodifiableList(new ArrayList<>(sinks));
+    }
+
+    /**
+     * Передача события всем получателям.
+     *
+     * @param event Событие.
+     */
+    public void accept(@NotNull final StreamingEvent event) {
+        final ReceivedEvent received = new ReceivedEvent(System.currentTimeMillis(), event);
+        for (final BatchingEventSink sink : sinks) {
+            sink.offer(received);
+        }
+    }
+
+    @NotNull
+    public List<BatchingEventSink> getSinks() {
+        return sinks;
+    }
+
+    /**
+     * Закрытие всех получателей. Ошибка закрытия одного не мешает закрыть остальные.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final BatchingEventSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.example.aggregation.ElasticsearchBulkClient;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Индексация событий в Elasticsearch: одна пачка событий - один {@code _bulk}-запрос.
+ */
+public class HttpBulkEventSink implements EventSink {
+
+    private final ElasticsearchBulkClient client;
+    private final EventJson json;
+
+    public HttpBulkEventSink(@NotNull final ElasticsearchBulkClient client) {
+        this.client = client;
+        this.json = new EventJson();
+    }
+
+    @Override
+    public void write(@NotNull final List<ReceivedEvent> batch) throws IOException {
+        final StringBuilder body = new StringBuilder(batch.size() * 256);
+        final ObjectNode action = json.mapper().createObjectNode();
+        action.putObject("index").put("_index", client.getIndex());
+        final String actionLine = json.mapper().writeValueAsString(action);
+
+        for (final ReceivedEvent received : batch) {
+            body.append(actionLine).append('\n');
+            body.append(json.render(received)).append('\n');
+        }
+        client.send(body.toString());
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "bulk:" + client.getIndex();
+    }
+
+    @Override
+    public void close() {
+        // Соединения HTTP-клиента закрываются вместе с ним.
+    }
+}
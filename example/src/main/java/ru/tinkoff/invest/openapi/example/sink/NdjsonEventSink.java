@@ -0,0 +1,51 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Запись событий в файл в формате NDJSON: по одному JSON-объекту на строку.
+ */
+public class NdjsonEventSink implements EventSink {
+
+    private final Path path;
+    private final BufferedWriter writer;
+    private final EventJson json;
+
+    public NdjsonEventSink(@NotNull final Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.path = path;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        this.json = new EventJson();
+    }
+
+    @Override
+    public void write(@NotNull final List<ReceivedEvent> batch) throws IOException {
+        for (final ReceivedEvent received : batch) {
+            writer.write(json.render(received));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "ndjson:" + path.getFileName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
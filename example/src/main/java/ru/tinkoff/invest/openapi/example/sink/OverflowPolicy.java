@@ -0,0 +1,15 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+/**
+ * Поведение при заполненной очереди получателя.
+ */
+public enum OverflowPolicy {
+    /**
+     * Новое событие отбрасывается и учитывается в счётчике потерянных.
+     */
+    DROP,
+    /**
+     * Поток, доставляющий события, ждёт освобождения места в очереди.
+     */
+    BLOCK
+}
@@ -0,0 +1,21 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+/**
+ * Событие Streaming API вместе с моментом его получения.
+ */
+public class ReceivedEvent {
+    /**
+     * Момент получения в миллисекундах эпохи.
+     */
+    public final long receivedAt;
+    @NotNull
+    public final StreamingEvent event;
+
+    public ReceivedEvent(final long receivedAt, @NotNull final StreamingEvent event) {
+        this.receivedAt = receivedAt;
+        this.event = event;
+    }
+}
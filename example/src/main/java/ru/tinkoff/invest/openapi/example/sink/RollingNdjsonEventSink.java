@@ -0,0 +1,391 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.example.aggregation.EventType;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Запись событий в файл в формате NDJSON: по одному компактному JSON-объекту на строку.
+ *
+ * Поля события пишутся напрямую одним {@link JsonGenerator}, который живёт всё время работы
+ * получателя, в буфер, сбрасываемый в {@link FileChannel}. Буфер сбрасывается (и, если задано,
+ * синхронизируется с диском) один раз на пачку событий, а не на каждое событие.
+ *
+ * Файл переименовывается в {@code <имя>-<UTC время>.<расширение>} и открывается заново, когда его
+ * размер достигает заданного или наступает граница интервала ротации. Хранится не больше заданного
+ * числа переименованных файлов. Файл открывается без блокировок и на дозапись, так что после
+ * перезапуска приложение продолжает писать в него же.
+ */
+public class RollingNdjsonEventSink implements EventSink {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final DateTimeFormatter ROLLED_SUFFIX =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final Path path;
+    private final String baseName;
+    private final String extension;
+    private final long maxFileSize;
+    private final long rollIntervalMillis;
+    private final int maxRolledFiles;
+    private final boolean fsync;
+    private final Clock clock;
+    private final JsonFactory factory;
+    private final ChannelOutput output;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RollingNdjsonEventSink.class);
+
+    private JsonGenerator generator;
+    private long rollAt;
+    private String lastRolledStamp;
+    private int lastRolledIndex;
+
+    /**
+     * @param path           Путь к файлу.
+     * @param maxFileSize    Размер файла в байтах, по достижении которого он ротируется.
+     * @param rollInterval   Интервал ротации по времени. Нулевой интервал отключает ротацию по времени.
+     * @param maxRolledFiles Количество хранимых ротированных файлов. 0 - хранить все.
+     * @param fsync          Синхронизировать ли файл с диском после каждой пачки.
+     */
+    public RollingNdjsonEventSink(@NotNull final Path path,
+                                  final long maxFileSize,
+                                  @NotNull final Duration rollInterval,
+                                  final int maxRolledFiles,
+                                  final boolean fsync) throws IOException {
+        this(path, maxFileSize, rollInterval, maxRolledFiles, fsync, Clock.systemUTC());
+    }
+
+    RollingNdjsonEventSink(@NotNull final Path path,
+                           final long maxFileSize,
+                           @NotNull final Duration rollInterval,
+                           final int maxRolledFiles,
+                           final boolean fsync,
+                           @NotNull final Clock clock) throws IOException {
+        if (maxFileSize < 1) {
+            throw new IllegalArgumentException("Размер файла должен быть положительным");
+        }
+        final Path absolute = path.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+
+        final String fileName = absolute.getFileName().toString();
+        final int dot = fileName.lastIndexOf('.');
+        this.path = absolute;
+        this.baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.extension = dot > 0 ? fileName.substring(dot) : "";
+        this.maxFileSize = maxFileSize;
+        this.rollIntervalMillis = rollInterval.toMillis();
+        this.maxRolledFiles = maxRolledFiles;
+        this.fsync = fsync;
+        this.clock = clock;
+        this.factory = new JsonFactory();
+        this.factory.setRootValueSeparator(null);
+        this.factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.factory.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        this.output = new ChannelOutput(BUFFER_SIZE);
+        this.generator = factory.createGenerator(output);
+
+        open();
+    }
+
+    @Override
+    public void write(@NotNull final List<ReceivedEvent> batch) throws IOException {
+        try {
+            if (clock.millis() >= rollAt) {
+                if (output.size() > 0) {
+                    roll();
+                } else {
+                    rollAt = nextRoll(clock.millis());
+                }
+            }
+            for (final ReceivedEvent received : batch) {
+                writeEvent(received);
+                generator.flush();
+                if (output.size() >= maxFileSize) {
+                    roll();
+                }
+            }
+            commit();
+        } catch (IOException | RuntimeException ex) {
+            rollback(ex);
+            throw ex;
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "ndjson:" + path.getFileName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            generator.flush();
+            commit();
+        } finally {
+            output.channel.close();
+        }
+    }
+
+    private void writeEvent(@NotNull final ReceivedEvent received) throws IOException {
+        final StreamingEvent event = received.event;
+        generator.writeStartObject();
+        generator.writeStringField("@timestamp", Instant.ofEpochMilli(received.receivedAt).toString());
+        generator.writeStringField("event", EventType.of(event).getValue());
+
+        if (event instanceof StreamingEvent.Candle) {
+            final StreamingEvent.Candle candle = (StreamingEvent.Candle) event;
+            generator.writeStringField("figi", candle.getFigi());
+            generator.writeStringField("interval", candle.getInterval().getValue());
+            generator.writeStringField("time", candle.getDateTime().toInstant().toString());
+            writeNumber("o", candle.getOpenPrice());
+            writeNumber("c", candle.getClosingPrice());
+            writeNumber("h", candle.getHighestPrice());
+            writeNumber("l", candle.getLowestPrice());
+            writeNumber("v", candle.getTradingValue());
+        } else if (event instanceof StreamingEvent.Orderbook) {
+            final StreamingEvent.Orderbook orderbook = (StreamingEvent.Orderbook) event;
+            generator.writeStringField("figi", orderbook.getFigi());
+            generator.writeNumberField("depth", orderbook.getDepth());
+            writeLevels("bids", orderbook.getBids());
+            writeLevels("asks", orderbook.getAsks());
+        } else if (event instanceof StreamingEvent.InstrumentInfo) {
+            final StreamingEvent.InstrumentInfo info = (StreamingEvent.InstrumentInfo) event;
+            generator.writeStringField("figi", info.getFigi());
+            generator.writeStringField("trade_status", info.getTradeStatus());
+            writeNumber("min_price_increment", info.getMinPriceIncrement());
+            generator.writeNumberField("lot", info.getLot());
+            writeNumber("accrued_interest", info.getAccruedInterest());
+            writeNumber("limit_up", info.getLimitUp());
+            writeNumber("limit_down", info.getLimitDown());
+        } else if (event instanceof StreamingEvent.Error) {
+            final StreamingEvent.Error error = (StreamingEvent.Error) event;
+            generator.writeStringField("error", error.getError());
+            generator.writeStringField("request_id", error.getRequestId());
+        }
+
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeNumber(@NotNull final String name, @Nullable final BigDecimal value) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(name);
+            generator.writeNumber(value);
+        }
+    }
+
+    private void writeLevels(@NotNull final String name, @NotNull final List<BigDecimal[]> levels) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (final BigDecimal[] level : levels) {
+            generator.writeStartArray();
+            generator.writeNumber(level[0]);
+            generator.writeNumber(level[1]);
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private void commit() throws IOException {
+        output.drain();
+        if (fsync) {
+            output.channel.force(false);
+        }
+        output.committed = output.written;
+    }
+
+    /**
+     * Отмена недописанной пачки. Буфер сбрасывается в файл и при заполнении посреди события, поэтому
+     * кроме отбрасывания буфера файл обрезается до конца последней завершённой пачки - иначе в нём
+     * осталась бы оборванная строка, к которой приклеилось бы следующее событие.
+     */
+    private void rollback(@NotNull final Exception cause) {
+        output.discard();
+        if (output.channel.isOpen() && output.written > output.committed) {
+            try {
+                output.channel.truncate(output.committed);
+                output.written = output.committed;
+            } catch (IOException ex) {
+                cause.addSuppressed(ex);
+            }
+        }
+        try {
+            generator = factory.createGenerator(output);
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    private void open() throws IOException {
+        output.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        output.written = output.channel.size();
+        output.committed = output.written;
+        rollAt = nextRoll(clock.millis());
+    }
+
+    private long nextRoll(final long now) {
+        return rollIntervalMillis > 0
+                ? now - Math.floorMod(now, rollIntervalMillis) + rollIntervalMillis
+                : Long.MAX_VALUE;
+    }
+
+    private void roll() throws IOException {
+        commit();
+        output.channel.close();
+
+        // Номер внутри секунды только растёт, даже если файлы с меньшими номерами уже удалены.
+        final String stamp = ROLLED_SUFFIX.format(Instant.ofEpochMilli(clock.millis()));
+        int index = stamp.equals(lastRolledStamp) ? lastRolledIndex + 1 : 0;
+        Path rolled = rolledPath(stamp, index);
+        while (Files.exists(rolled)) {
+            rolled = rolledPath(stamp, ++index);
+        }
+        Files.move(path, rolled);
+        lastRolledStamp = stamp;
+        lastRolledIndex = index;
+
+        open();
+        prune();
+    }
+
+    @NotNull
+    private Path rolledPath(@NotNull final String stamp, final int index) {
+        return path.resolveSibling(baseName + "-" + stamp + (index == 0 ? "" : "-" + index) + extension);
+    }
+
+    private void prune() {
+        if (maxRolledFiles <= 0) {
+            return;
+        }
+        final List<RolledFile> rolled = new ArrayList<>();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(), baseName + "-*" + extension)) {
+            for (final Path file : files) {
+                final RolledFile parsed = RolledFile.parse(file, baseName, extension);
+                if (parsed != null) {
+                    rolled.add(parsed);
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn("Не удалось получить список ротированных файлов " + path, ex);
+            return;
+        }
+
+        // По имени сравнивать нельзя: events-<время>-1 сортируется раньше более старого events-<время>.
+        rolled.sort(Comparator.comparing((RolledFile file) -> file.stamp).thenComparingInt(file -> file.index));
+        for (int i = 0; i < rolled.size() - maxRolledFiles; i++) {
+            final Path file = rolled.get(i).path;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                logger.warn("Не удалось удалить ротированный файл " + file, ex);
+            }
+        }
+    }
+
+    /**
+     * Ротированный файл с разобранными из имени временем ротации и порядковым номером внутри секунды.
+     */
+    private static final class RolledFile {
+        private static final Pattern NAME = Pattern.compile("(\\d{8}-\\d{6})(?:-(\\d+))?");
+
+        final Path path;
+        final String stamp;
+        final int index;
+
+        private RolledFile(@NotNull final Path path, @NotNull final String stamp, final int index) {
+            this.path = path;
+            this.stamp = stamp;
+            this.index = index;
+        }
+
+        @Nullable
+        static RolledFile parse(@NotNull final Path file, @NotNull final String baseName, @NotNull final String extension) {
+            final String name = file.getFileName().toString();
+            final String middle = name.substring(baseName.length() + 1, name.length() - extension.length());
+            final Matcher matcher = NAME.matcher(middle);
+            if (!matcher.matches()) {
+                return null;
+            }
+            try {
+                return new RolledFile(file, matcher.group(1),
+                        matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2)));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Буфер между генератором и файлом. Считает размер файла вместе с ещё не сброшенными байтами.
+     */
+    private static final class ChannelOutput extends OutputStream {
+        private final ByteBuffer buffer;
+        FileChannel channel;
+        long written;
+        long committed;
+
+        ChannelOutput(final int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        long size() {
+            return written + buffer.position();
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(@NotNull final byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                final int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void discard() {
+            buffer.clear();
+        }
+    }
+}
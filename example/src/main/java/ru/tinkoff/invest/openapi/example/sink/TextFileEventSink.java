@@ -0,0 +1,54 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Запись событий в текстовый файл по одной строке на событие в том же виде, в каком их
+ * раньше писал журнал приложения.
+ */
+public class TextFileEventSink implements EventSink {
+
+    private final Path path;
+    private final BufferedWriter writer;
+
+    public TextFileEventSink(@NotNull final Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.path = path;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void write(@NotNull final List<ReceivedEvent> batch) throws IOException {
+        for (final ReceivedEvent received : batch) {
+            writer.write('[');
+            writer.write(Instant.ofEpochMilli(received.receivedAt).toString());
+            writer.write("] ");
+            writer.write(received.event.toString());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "file:" + path.getFileName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,121 @@
+package ru.tinkoff.invest.openapi.example.aggregation;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.junit.Test;
+import ru.tinkoff.invest.openapi.model.streaming.CandleInterval;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EventCountAggregatorTest extends TestCase {
+
+    private HttpServer server;
+    private List<String> requests;
+    private String baseUrl;
+
+    @Override
+    protected void setUp() throws Exception {
+        requests = Collections.synchronizedList(new ArrayList<>());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/_bulk", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                requests.add(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            final byte[] answer = "{\"took\":1,\"errors\":false,\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, answer.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(answer);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testCountsAreFlushedPerMinute() throws IOException {
+        final MutableClock clock = new MutableClock(Instant.parse("2021-05-01T10:00:05Z"));
+        final EventCountAggregator aggregator =
+                new EventCountAggregator(new ElasticsearchBulkClient(baseUrl, "events"), clock);
+
+        aggregator.record(candle("BBG000B9XRY4"));
+        aggregator.record(candle("BBG000B9XRY4"));
+        aggregator.record(candle("BBG004730N88"));
+        aggregator.record(new StreamingEvent.Error("Subscription not found", "req-1"));
+
+        // Минута ещё не завершена - отправлять нечего.
+        aggregator.flush();
+        assertEquals(0, requests.size());
+
+        clock.now = Instant.parse("2021-05-01T10:01:00Z");
+        aggregator.record(candle("BBG000B9XRY4"));
+        aggregator.flush();
+
+        assertEquals(1, requests.size());
+        final String body = requests.get(0);
+        assertEquals(6, body.split("\n").length);
+        assertTrue(body.contains("\"_id\":\"1619863200000-BBG000B9XRY4-candle\""));
+        assertTrue(body.contains("\"@timestamp\":\"2021-05-01T10:00:00Z\",\"figi\":\"BBG000B9XRY4\",\"event\":\"candle\",\"count\":2}"));
+        assertTrue(body.contains("\"figi\":\"BBG004730N88\",\"event\":\"candle\",\"count\":1}"));
+        assertTrue(body.contains("\"figi\":\"\",\"event\":\"error\",\"count\":1}"));
+
+        // При закрытии отправляется и незавершённая минута.
+        aggregator.close();
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1).contains("\"@timestamp\":\"2021-05-01T10:01:00Z\",\"figi\":\"BBG000B9XRY4\",\"event\":\"candle\",\"count\":1}"));
+    }
+
+    private static StreamingEvent.Candle candle(final String figi) {
+        return new StreamingEvent.Candle(
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                BigDecimal.TEN,
+                ZonedDateTime.of(2021, 5, 1, 10, 0, 0, 0, ZoneOffset.UTC),
+                CandleInterval._1MIN,
+                figi
+        );
+    }
+
+    private static final class MutableClock extends Clock {
+        volatile Instant now;
+
+        MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.tinkoff.invest.openapi.example.monitoring;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import ru.tinkoff.invest.openapi.metrics.hdr.InMemoryMetricsRegistry;
+
+public class PrometheusTextTest extends TestCase {
+
+    @Test
+    public void testRegistryIsRenderedGroupedByMetric() {
+        final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.counter("openapi.streaming.events", "type", "candle").increment(3);
+        registry.counter("openapi.streaming.decode.errors").increment();
+        registry.counter("openapi.streaming.events", "type", "orderbook").increment(2);
+        registry.histogram("openapi.streaming.latency", "stage", "decode").record(1000);
+        registry.histogram("openapi.streaming.latency", "stage", "decode").record(3000);
+
+        final String text = new PrometheusText().registry(registry).toString();
+
+        assertEquals(1, occurrences(text, "# TYPE openapi_streaming_events_total counter\n"));
+        assertTrue(text.contains("openapi_streaming_events_total{type=\"candle\"} 3\n"));
+        assertTrue(text.contains("openapi_streaming_events_total{type=\"orderbook\"} 2\n"));
+        assertTrue(text.contains("openapi_streaming_decode_errors_total 1\n"));
+        assertEquals(1, occurrences(text, "# TYPE openapi_streaming_latency summary\n"));
+        assertTrue(text.contains("openapi_streaming_latency{stage=\"decode\",quantile=\"0.5\"} "));
+        assertTrue(text.contains("openapi_streaming_latency_sum{stage=\"decode\"} 4000\n"));
+        assertTrue(text.contains("openapi_streaming_latency_count{stage=\"decode\"} 2\n"));
+    }
+
+    @Test
+    public void testLabelValuesAreEscaped() {
+        final String text = new PrometheusText()
+                .gauge("app.events.rate", 2.5, "figi", "a\"b\\c\nd")
+                .toString();
+
+        assertEquals("# TYPE app_events_rate gauge\napp_events_rate{figi=\"a\\\"b\\\\c\\nd\"} 2.5\n", text);
+    }
+
+    private static int occurrences(final String text, final String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BatchingEventSinkTest extends TestCase {
+
+    @Test
+    public void testEventsAreWrittenInBatches() throws IOException {
+        final RecordingSink sink = new RecordingSink(null);
+        final BatchingEventSink batching =
+                new BatchingEventSink(sink, 100, 4, Duration.ofSeconds(10), OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(batching.offer(event(i)));
+        }
+        batching.close();
+
+        int total = 0;
+        for (final Integer size : sink.batches) {
+            assertTrue(size <= 4);
+            total += size;
+        }
+        assertEquals(10, total);
+        assertEquals(10, batching.getWritten());
+        assertEquals(0, batching.getDropped());
+        assertTrue(sink.closed);
+    }
+
+    @Test
+    public void testFullQueueDropsEvents() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingSink sink = new RecordingSink(release);
+        final BatchingEventSink batching =
+                new BatchingEventSink(sink, 2, 1, Duration.ZERO, OverflowPolicy.DROP);
+
+        // Первое событие забирает поток записи и застревает в получателе.
+        assertTrue(batching.offer(event(0)));
+        assertTrue(sink.started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(batching.offer(event(1)));
+        assertTrue(batching.offer(event(2)));
+        assertFalse(batching.offer(event(3)));
+        assertEquals(1, batching.getDropped());
+
+        release.countDown();
+        batching.close();
+        assertEquals(3, batching.getWritten());
+    }
+
+    private static ReceivedEvent event(final int i) {
+        return new ReceivedEvent(i, new StreamingEvent.Error("error " + i, "req-" + i));
+    }
+
+    private static final class RecordingSink implements EventSink {
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile boolean closed;
+
+        RecordingSink(final CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void write(final List<ReceivedEvent> batch) throws IOException {
+            started.countDown();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            batches.add(batch.size());
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ru.tinkoff.invest.openapi.example.sink;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import org.junit.Test;
+import ru.tinkoff.invest.openapi.model.streaming.CandleInterval;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RollingNdjsonEventSinkTest extends TestCase {
+
+    private Path directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("events");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        for (final Path file : files()) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testEventsAreWrittenAsJsonLines() throws IOException {
+        final MutableClock clock = new MutableClock(Instant.parse("2021-05-01T10:00:05Z"));
+        final Path path = directory.resolve("events.ndjson");
+        final RollingNdjsonEventSink sink =
+                new RollingNdjsonEventSink(path, 1024 * 1024, Duration.ofHours(1), 0, false, clock);
+
+        sink.write(Arrays.asList(
+                new ReceivedEvent(1619863205000L, candle("BBG000B9XRY4")),
+                new ReceivedEvent(1619863205001L, new StreamingEvent.Orderbook(
+                        1,
+                        Collections.singletonList(new BigDecimal[]{new BigDecimal("100.5"), BigDecimal.TEN}),
+                        Collections.singletonList(new BigDecimal[]{new BigDecimal("100.7"), BigDecimal.ONE}),
+                        "BBG000B9XRY4")),
+                new ReceivedEvent(1619863205002L, new StreamingEvent.Error("Subscription not found", "req-1"))));
+        sink.close();
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final JsonNode candle = mapper.readTree(lines.get(0));
+        assertEquals("2021-05-01T10:00:05Z", candle.get("@timestamp").asText());
+        assertEquals("candle", candle.get("event").asText());
+        assertEquals("BBG000B9XRY4", candle.get("figi").asText());
+        assertEquals("1min", candle.get("interval").asText());
+        assertEquals(new BigDecimal("10"), candle.get("v").decimalValue());
+
+        final JsonNode orderbook = mapper.readTree(lines.get(1));
+        assertEquals("orderbook", orderbook.get("event").asText());
+        assertEquals(100.5, orderbook.get("bids").get(0).get(0).asDouble());
+
+        final JsonNode error = mapper.readTree(lines.get(2));
+        assertEquals("req-1", error.get("request_id").asText());
+    }
+
+    @Test
+    public void testFileIsRolledBySizeAndTime() throws IOException {
+        final MutableClock clock = new MutableClock(Instant.parse("2021-05-01T10:00:05Z"));
+        final Path path = directory.resolve("events.ndjson");
+        final RollingNdjsonEventSink sink =
+                new RollingNdjsonEventSink(path, 300, Duration.ofHours(1), 2, false, clock);
+
+        // Каждая свеча занимает около 160 байт, так что файл ротируется каждые две свечи.
+        for (int i = 0; i < 5; i++) {
+            sink.write(Collections.singletonList(new ReceivedEvent(clock.millis(), candle("BBG000B9XRY4"))));
+            clock.now = clock.now.plusSeconds(1);
+        }
+        assertEquals(2, files().size() - 1);
+
+        clock.now = Instant.parse("2021-05-01T11:00:00Z");
+        sink.write(Collections.singletonList(new ReceivedEvent(clock.millis(), candle("BBG000B9XRY4"))));
+        sink.close();
+
+        // Старые ротированные файлы удаляются, текущий содержит только новое событие.
+        final List<Path> files = files();
+        assertEquals(3, files.size());
+        assertTrue(files.contains(directory.resolve("events-20210501-110000.ndjson")));
+        assertEquals(1, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void testRollsWithinOneSecondArePrunedOldestFirst() throws IOException {
+        final MutableClock clock = new MutableClock(Instant.parse("2021-05-01T10:00:05Z"));
+        final Path path = directory.resolve("events.ndjson");
+        final RollingNdjsonEventSink sink =
+                new RollingNdjsonEventSink(path, 100, Duration.ofHours(1), 2, false, clock);
+
+        // Каждая свеча больше 100 байт, так что файл ротируется после каждой, не меняя секунды.
+        for (int i = 0; i < 4; i++) {
+            sink.write(Collections.singletonList(new ReceivedEvent(clock.millis(), candle("BBG000B9XRY4"))));
+        }
+        sink.close();
+
+        final List<Path> files = files();
+        assertEquals(3, files.size());
+        assertTrue(files.contains(directory.resolve("events-20210501-100005-2.ndjson")));
+        assertTrue(files.contains(directory.resolve("events-20210501-100005-3.ndjson")));
+    }
+
+    @Test
+    public void testFailedBatchLeavesNoTornLine() throws IOException {
+        final MutableClock clock = new MutableClock(Instant.parse("2021-05-01T10:00:05Z"));
+        final Path path = directory.resolve("events.ndjson");
+        final RollingNdjsonEventSink sink =
+                new RollingNdjsonEventSink(path, 64L * 1024 * 1024, Duration.ofHours(1), 0, false, clock);
+
+        sink.write(Collections.singletonList(new ReceivedEvent(clock.millis(), candle("BBG000B9XRY4"))));
+
+        // Пачка больше буфера: часть её уходит в файл до того, как на последнем событии случится ошибка.
+        final List<ReceivedEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            batch.add(new ReceivedEvent(clock.millis(), candle("BBG000B9XRY4")));
+        }
+        batch.add(new ReceivedEvent(clock.millis(), new StreamingEvent.Candle(
+                BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.TEN,
+                null, CandleInterval._1MIN, "BBG000B9XRY4")));
+        try {
+            sink.write(batch);
+            fail("Пачка с несериализуемым событием должна завершиться ошибкой");
+        } catch (RuntimeException expected) {
+            // Событие без времени не сериализуется.
+        }
+
+        sink.write(Collections.singletonList(new ReceivedEvent(clock.millis(), candle("BBG004730N88"))));
+        sink.close();
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        final ObjectMapper mapper = new ObjectMapper();
+        assertEquals("BBG000B9XRY4", mapper.readTree(lines.get(0)).get("figi").asText());
+        assertEquals("BBG004730N88", mapper.readTree(lines.get(1)).get("figi").asText());
+    }
+
+    private List<Path> files() throws IOException {
+        final List<Path> result = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(result::add);
+        }
+        return result;
+    }
+
+    private static StreamingEvent.Candle candle(final String figi) {
+        return new StreamingEvent.Candle(
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                BigDecimal.TEN,
+                ZonedDateTime.of(2021, 5, 1, 10, 0, 0, 0, ZoneOffset.UTC),
+                CandleInterval._1MIN,
+                figi
+        );
+    }
+
+    private static final class MutableClock extends Clock {
+        volatile Instant now;
+
+        MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
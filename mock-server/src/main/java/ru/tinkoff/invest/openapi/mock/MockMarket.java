@@ -0,0 +1,156 @@
+package ru.tinkoff.invest.openapi.mock;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние имитируемого рынка: инструменты, их цены и активные заявки.
+ *
+ * Цены хранятся в сотых долях и меняются случайным блужданием на один шаг цены при каждом
+ * обращении, так что и REST-ответы, и события Streaming API выглядят живыми.
+ */
+final class MockMarket {
+
+    static final String[] SEGMENTS = {"stocks", "bonds", "etfs", "currencies"};
+    private static final String[] TYPES = {"Stock", "Bond", "Etf", "Currency"};
+
+    private final Map<String, List<Instrument>> segments;
+    private final ConcurrentHashMap<String, Instrument> byFigi;
+    private final ConcurrentHashMap<String, Order> orders;
+    private final AtomicLong orderIds;
+
+    MockMarket(final int instrumentCount) {
+        this.segments = new LinkedHashMap<>();
+        this.byFigi = new ConcurrentHashMap<>();
+        this.orders = new ConcurrentHashMap<>();
+        this.orderIds = new AtomicLong();
+
+        for (int s = 0; s < SEGMENTS.length; s++) {
+            final List<Instrument> list = new ArrayList<>(instrumentCount);
+            for (int i = 0; i < instrumentCount; i++) {
+                final String figi = String.format("MOCK%c%07d", TYPES[s].charAt(0), i);
+                final String ticker = TYPES[s].substring(0, 1) + i;
+                final Instrument instrument = new Instrument(figi, ticker, TYPES[s], 10_000 + (i % 100) * 100);
+                list.add(instrument);
+                byFigi.put(figi, instrument);
+            }
+            segments.put(SEGMENTS[s], Collections.unmodifiableList(list));
+        }
+    }
+
+    @NotNull
+    List<Instrument> segment(@NotNull final String segment) {
+        final List<Instrument> list = segments.get(segment);
+        return list == null ? Collections.<Instrument>emptyList() : list;
+    }
+
+    @Nullable
+    Instrument find(@NotNull final String figi) {
+        return byFigi.get(figi);
+    }
+
+    @Nullable
+    Instrument findByTicker(@NotNull final String ticker) {
+        for (final Instrument instrument : byFigi.values()) {
+            if (instrument.ticker.equals(ticker)) {
+                return instrument;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Получение инструмента для рыночных данных. Неизвестный FIGI не считается ошибкой: под него
+     * заводится новый инструмент, чтобы нагрузку можно было подавать с настоящими FIGI.
+     */
+    @NotNull
+    Instrument instrument(@NotNull final String figi) {
+        return byFigi.computeIfAbsent(figi, f -> new Instrument(f, f, "Stock", 10_000));
+    }
+
+    @NotNull
+    Order place(@NotNull final String figi,
+                @NotNull final String operation,
+                final int lots,
+                @NotNull final BigDecimal price,
+                @NotNull final String type) {
+        final Order order = new Order("mock-" + orderIds.incrementAndGet(), figi, operation, lots, price, type);
+        if ("Limit".equals(type)) {
+            orders.put(order.orderId, order);
+        }
+        return order;
+    }
+
+    @Nullable
+    Order cancel(@NotNull final String orderId) {
+        return orders.remove(orderId);
+    }
+
+    @NotNull
+    List<Order> orders() {
+        return new ArrayList<>(orders.values());
+    }
+
+    static final class Instrument {
+        final String figi;
+        final String ticker;
+        final String type;
+        final AtomicLong price;
+
+        Instrument(@NotNull final String figi,
+                   @NotNull final String ticker,
+                   @NotNull final String type,
+                   final long price) {
+            this.figi = figi;
+            this.ticker = ticker;
+            this.type = type;
+            this.price = new AtomicLong(price);
+        }
+
+        /**
+         * @return Новая цена в сотых долях после шага случайного блуждания.
+         */
+        long nextPrice() {
+            final long step = ThreadLocalRandom.current().nextInt(3) - 1;
+            return price.updateAndGet(p -> Math.max(1, p + step));
+        }
+
+        @NotNull
+        static BigDecimal toPrice(final long hundredths) {
+            return BigDecimal.valueOf(hundredths, 2);
+        }
+    }
+
+    static final class Order {
+        final String orderId;
+        final String figi;
+        final String operation;
+        final int lots;
+        final BigDecimal price;
+        final String type;
+
+        Order(@NotNull final String orderId,
+              @NotNull final String figi,
+              @NotNull final String operation,
+              final int lots,
+              @NotNull final BigDecimal price,
+              @NotNull final String type) {
+            this.orderId = orderId;
+            this.figi = figi;
+            this.operation = operation;
+            this.lots = lots;
+            this.price = price;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.tinkoff.invest.openapi.mock;
+
+import okhttp3.mockwebserver.MockWebServer;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import ru.tinkoff.invest.openapi.OpenApiConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Локальная имитация OpenAPI Тинькофф Инвестиций для нагрузочных тестов и измерения задержек
+ * без обращения к бирже.
+ *
+ * Отвечает на REST-методы, которыми пользуются контексты SDK, как в боевом режиме, так и в
+ * режиме песочницы, и отдаёт поток сгенерированных событий по Streaming API. Задержка ответов,
+ * доля ошибок и частота событий задаются {@link MockServerConfig}. Клиент SDK подключается к
+ * имитации через {@link #openApiConfig()}:
+ *
+ * <pre>{@code
+ * try (MockOpenApiServer server = new MockOpenApiServer(MockServerConfig.DEFAULT)) {
+ *     server.start();
+ *     OpenApi api = new OkHttpOpenApi("token", false, executor, Collections.emptyList(), server.openApiConfig());
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class MockOpenApiServer implements Closeable {
+
+    static final String STREAMING_PATH = "/openapi/md/v1/md-openapi/ws";
+
+    private final MockWebServer server;
+    private final StreamingHub streaming;
+    private final RestDispatcher dispatcher;
+    private final Logger logger;
+
+    public MockOpenApiServer(@NotNull final MockServerConfig config) {
+        final MockMarket market = new MockMarket(config.instrumentCount);
+        this.streaming = new StreamingHub(config, market);
+        this.dispatcher = new RestDispatcher(config, market, streaming);
+        this.server = new MockWebServer();
+        this.server.setDispatcher(dispatcher);
+        this.logger = org.slf4j.LoggerFactory.getLogger(MockOpenApiServer.class);
+    }
+
+    /**
+     * Запуск на свободном порту.
+     */
+    public void start() throws IOException {
+        start(0);
+    }
+
+    /**
+     * Запуск на заданном порту.
+     *
+     * @param port Порт; 0 - любой свободный.
+     */
+    public void start(final int port) throws IOException {
+        server.start(port);
+        logger.info("Имитация OpenAPI запущена на " + server.url("/openapi/"));
+    }
+
+    /**
+     * Параметры подключения SDK к имитации.
+     *
+     * @param streamingParallelism Количество потоков обработки событий Streaming API.
+     *
+     * @return Параметры для {@code OpenApi}.
+     */
+    @NotNull
+    public OpenApiConfig openApiConfig(final int streamingParallelism) {
+        return new OpenApiConfig(
+                server.url("/openapi/").toString(),
+                server.url("/openapi/sandbox/").toString(),
+                "ws://" + server.getHostName() + ":" + server.getPort() + STREAMING_PATH,
+                streamingParallelism
+        );
+    }
+
+    @NotNull
+    public OpenApiConfig openApiConfig() {
+        return openApiConfig(1);
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * @return Количество обработанных REST-запросов.
+     */
+    public long getRequestCount() {
+        return dispatcher.requests.sum();
+    }
+
+    /**
+     * @return Количество REST-запросов, на которые отвечено ошибкой, в том числе намеренной.
+     */
+    public long getErrorCount() {
+        return dispatcher.errors.sum();
+    }
+
+    /**
+     * @return Количество отправленных событий Streaming API.
+     */
+    public long getStreamedEvents() {
+        return streaming.events.sum();
+    }
+
+    /**
+     * Отправка произвольного сообщения всем подключённым клиентам Streaming API, например чтобы
+     * измерить задержку доставки конкретного события.
+     *
+     * @param frame Текст сообщения в формате Streaming API.
+     */
+    public void broadcast(@NotNull final String frame) {
+        streaming.broadcast(frame);
+    }
+
+    /**
+     * @return Количество открытых подключений к Streaming API.
+     */
+    public int getStreamingSessions() {
+        return streaming.sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            streaming.shutdown();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        server.shutdown();
+    }
+
+    /**
+     * Запуск имитации отдельным процессом. Порт задаётся первым аргументом, параметры имитации -
+     * системными свойствами (см. {@link MockServerConfig#fromSystemProperties()}).
+     */
+    public static void main(final String[] args) throws Exception {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        final MockOpenApiServer server = new MockOpenApiServer(MockServerConfig.fromSystemProperties());
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException ex) {
+                server.logger.warn("Не удалось остановить имитацию", ex);
+            } finally {
+                stopped.countDown();
+            }
+        }));
+        server.start(port);
+        stopped.await();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.tinkoff.invest.openapi.mock;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Параметры имитации OpenAPI.
+ *
+ * Доли ответов с ошибками задаются числом от 0 до 1 и применяются к каждому REST-запросу
+ * независимо. Частота событий задаётся на одну подписку Streaming API.
+ */
+public class MockServerConfig {
+
+    /**
+     * Параметры по умолчанию: без задержек и ошибок, 10 событий в секунду на подписку.
+     */
+    public static final MockServerConfig DEFAULT = new MockServerConfig(
+            Duration.ZERO,
+            Duration.ZERO,
+            0.0,
+            0.0,
+            10.0,
+            100
+    );
+
+    /** Задержка каждого REST-ответа. */
+    @NotNull public final Duration latency;
+    /** Дополнительная случайная задержка REST-ответа, равномерно распределённая от нуля до заданной. */
+    @NotNull public final Duration latencyJitter;
+    /** Доля REST-запросов, на которые отвечается 500 с ошибкой OpenAPI. */
+    public final double errorRate;
+    /** Доля REST-запросов, на которые отвечается 429. */
+    public final double throttleRate;
+    /** Количество событий в секунду на одну подписку Streaming API. */
+    public final double eventsPerSecond;
+    /** Количество инструментов в каждом из списков рынка. */
+    public final int instrumentCount;
+
+    public MockServerConfig(@NotNull final Duration latency,
+                            @NotNull final Duration latencyJitter,
+                            final double errorRate,
+                            final double throttleRate,
+                            final double eventsPerSecond,
+                            final int instrumentCount) {
+        this.latency = latency;
+        this.latencyJitter = latencyJitter;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.eventsPerSecond = eventsPerSecond;
+        this.instrumentCount = instrumentCount;
+    }
+
+    /**
+     * Чтение параметров из системных свойств {@code ru.tinkoff.invest.openapi.mock.*}. Отсутствующие
+     * параметры берутся из {@link #DEFAULT}.
+     *
+     * @return Параметры имитации.
+     */
+    @NotNull
+    public static MockServerConfig fromSystemProperties() {
+        final String prefix = "ru.tinkoff.invest.openapi.mock.";
+        return new MockServerConfig(
+                Duration.ofMillis(Long.getLong(prefix + "latency-ms", DEFAULT.latency.toMillis())),
+                Duration.ofMillis(Long.getLong(prefix + "latency-jitter-ms", DEFAULT.latencyJitter.toMillis())),
+                Double.parseDouble(System.getProperty(prefix + "error-rate", Double.toString(DEFAULT.errorRate))),
+                Double.parseDouble(System.getProperty(prefix + "throttle-rate", Double.toString(DEFAULT.throttleRate))),
+                Double.parseDouble(System.getProperty(prefix + "events-per-second", Double.toString(DEFAULT.eventsPerSecond))),
+                Integer.getInteger(prefix + "instrument-count", DEFAULT.instrumentCount)
+        );
+    }
+}
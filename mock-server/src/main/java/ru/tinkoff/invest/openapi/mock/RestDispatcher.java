@@ -0,0 +1,450 @@
+package ru.tinkoff.invest.openapi.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Обработка запросов к имитации: REST-методы, которыми пользуются контексты SDK, и подключение
+ * к Streaming API.
+ */
+final class RestDispatcher extends Dispatcher {
+
+    private static final String API_PREFIX = "/openapi/";
+    private static final int MAX_CANDLES = 2000;
+
+    private final MockServerConfig config;
+    private final MockMarket market;
+    private final StreamingHub streaming;
+    private final ObjectMapper mapper;
+    private final AtomicLong trackingIds = new AtomicLong();
+    private final AtomicLong sandboxAccounts = new AtomicLong();
+    final LongAdder requests = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    RestDispatcher(@NotNull final MockServerConfig config,
+                   @NotNull final MockMarket market,
+                   @NotNull final StreamingHub streaming) {
+        this.config = config;
+        this.market = market;
+        this.streaming = streaming;
+        this.mapper = new ObjectMapper();
+    }
+
+    @Override
+    public MockResponse dispatch(@NotNull final RecordedRequest request) {
+        final HttpUrl url = request.getRequestUrl();
+        if (url == null) {
+            return new MockResponse().setResponseCode(400);
+        }
+        if (url.encodedPath().equals(MockOpenApiServer.STREAMING_PATH)) {
+            return new MockResponse().withWebSocketUpgrade(streaming.newSession());
+        }
+
+        requests.increment();
+        final String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            errors.increment();
+            return delayed(new MockResponse().setResponseCode(401));
+        }
+
+        final double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < config.throttleRate) {
+            errors.increment();
+            return delayed(error(429, "Слишком много запросов", "TOO_MANY_REQUESTS"));
+        }
+        if (roll < config.throttleRate + config.errorRate) {
+            errors.increment();
+            return delayed(error(500, "Внутренняя ошибка имитации", "INTERNAL_ERROR"));
+        }
+
+        try {
+            return delayed(ok(route(request.getMethod(), relativePath(url), url, request)));
+        } catch (ApiError ex) {
+            errors.increment();
+            return delayed(error(ex.status, ex.getMessage(), ex.code));
+        } catch (IOException | RuntimeException ex) {
+            errors.increment();
+            return delayed(error(400, "Некорректный запрос: " + ex.getMessage(), "VALIDATION_ERROR"));
+        }
+    }
+
+    @NotNull
+    private JsonNode route(@Nullable final String method,
+                           @NotNull final String path,
+                           @NotNull final HttpUrl url,
+                           @NotNull final RecordedRequest request) throws IOException, ApiError {
+        final String route = method + " " + path;
+        switch (route) {
+            case "GET market/stocks":
+            case "GET market/bonds":
+            case "GET market/etfs":
+            case "GET market/currencies":
+                return instrumentList(market.segment(path.substring("market/".length())));
+            case "GET market/search/by-ticker": {
+                final MockMarket.Instrument instrument = market.findByTicker(required(url, "ticker"));
+                return instrumentList(instrument == null
+                        ? Collections.<MockMarket.Instrument>emptyList()
+                        : Collections.singletonList(instrument));
+            }
+            case "GET market/search/by-figi": {
+                final MockMarket.Instrument instrument = market.find(required(url, "figi"));
+                if (instrument == null) {
+                    throw new ApiError(500, "Инструмент не найден", "NOT_FOUND");
+                }
+                return instrument(instrument);
+            }
+            case "GET market/orderbook":
+                return orderbook(market.instrument(required(url, "figi")), Integer.parseInt(required(url, "depth")));
+            case "GET market/candles":
+                return candles(market.instrument(required(url, "figi")),
+                        OffsetDateTime.parse(required(url, "from")),
+                        OffsetDateTime.parse(required(url, "to")),
+                        required(url, "interval"));
+            case "GET orders":
+                return orders();
+            case "POST orders/limit-order":
+            case "POST orders/market-order":
+                return placeOrder(required(url, "figi"), path.endsWith("limit-order"), body(request));
+            case "POST orders/cancel": {
+                final String orderId = required(url, "orderId");
+                if (market.cancel(orderId) == null) {
+                    throw new ApiError(500, "Cannot find order by id " + orderId, "ORDER_ERROR");
+                }
+                return mapper.createObjectNode();
+            }
+            case "GET portfolio":
+                return portfolio();
+            case "GET portfolio/currencies":
+                return currencies();
+            case "GET operations":
+                return operations(OffsetDateTime.parse(required(url, "from")),
+                        OffsetDateTime.parse(required(url, "to")),
+                        url.queryParameter("figi"));
+            case "GET user/accounts": {
+                final ObjectNode payload = mapper.createObjectNode();
+                payload.putArray("accounts").addObject()
+                        .put("brokerAccountType", "Tinkoff")
+                        .put("brokerAccountId", "mock-account");
+                return payload;
+            }
+            case "POST sandbox/register":
+                return mapper.createObjectNode()
+                        .put("brokerAccountType", "Tinkoff")
+                        .put("brokerAccountId", "mock-sandbox-" + sandboxAccounts.incrementAndGet());
+            case "POST sandbox/currencies/balance":
+            case "POST sandbox/positions/balance":
+            case "POST sandbox/remove":
+            case "POST sandbox/clear":
+                return mapper.createObjectNode();
+            default:
+                throw new ApiError(404, "Метод не поддерживается имитацией: " + route, "NOT_FOUND");
+        }
+    }
+
+    @NotNull
+    private ObjectNode instrumentList(@NotNull final List<MockMarket.Instrument> instruments) {
+        final ObjectNode payload = mapper.createObjectNode();
+        payload.put("total", instruments.size());
+        final ArrayNode array = payload.putArray("instruments");
+        for (final MockMarket.Instrument instrument : instruments) {
+            array.add(instrument(instrument));
+        }
+        return payload;
+    }
+
+    @NotNull
+    private ObjectNode instrument(@NotNull final MockMarket.Instrument instrument) {
+        return mapper.createObjectNode()
+                .put("figi", instrument.figi)
+                .put("ticker", instrument.ticker)
+                .put("isin", "RU" + instrument.figi)
+                .put("minPriceIncrement", new BigDecimal("0.01"))
+                .put("lot", 1)
+                .put("currency", "RUB")
+                .put("name", "Mock " + instrument.ticker)
+                .put("type", instrument.type);
+    }
+
+    @NotNull
+    private ObjectNode orderbook(@NotNull final MockMarket.Instrument instrument, final int depth) {
+        final long price = instrument.nextPrice();
+        final ObjectNode payload = mapper.createObjectNode()
+                .put("figi", instrument.figi)
+                .put("depth", depth);
+        final ArrayNode bids = payload.putArray("bids");
+        final ArrayNode asks = payload.putArray("asks");
+        for (int i = 0; i < depth; i++) {
+            bids.addObject()
+                    .put("price", MockMarket.Instrument.toPrice(price - i))
+                    .put("quantity", 1 + ThreadLocalRandom.current().nextInt(1000));
+            asks.addObject()
+                    .put("price", MockMarket.Instrument.toPrice(price + 1 + i))
+                    .put("quantity", 1 + ThreadLocalRandom.current().nextInt(1000));
+        }
+        return payload
+                .put("tradeStatus", "NormalTrading")
+                .put("minPriceIncrement", new BigDecimal("0.01"))
+                .put("lastPrice", MockMarket.Instrument.toPrice(price))
+                .put("closePrice", MockMarket.Instrument.toPrice(price))
+                .put("limitUp", MockMarket.Instrument.toPrice(price * 2))
+                .put("limitDown", MockMarket.Instrument.toPrice(price / 2));
+    }
+
+    @NotNull
+    private ObjectNode candles(@NotNull final MockMarket.Instrument instrument,
+                               @NotNull final OffsetDateTime from,
+                               @NotNull final OffsetDateTime to,
+                               @NotNull final String interval) throws ApiError {
+        final Duration step = step(interval);
+        final ObjectNode payload = mapper.createObjectNode()
+                .put("figi", instrument.figi)
+                .put("interval", interval);
+        final ArrayNode candles = payload.putArray("candles");
+
+        long price = instrument.price.get();
+        OffsetDateTime time = from.withOffsetSameInstant(ZoneOffset.UTC);
+        for (int i = 0; i < MAX_CANDLES && time.isBefore(to); i++, time = time.plus(step)) {
+            final long open = price;
+            price = Math.max(1, price + ThreadLocalRandom.current().nextInt(21) - 10);
+            candles.addObject()
+                    .put("figi", instrument.figi)
+                    .put("interval", interval)
+                    .put("o", MockMarket.Instrument.toPrice(open))
+                    .put("c", MockMarket.Instrument.toPrice(price))
+                    .put("h", MockMarket.Instrument.toPrice(Math.max(open, price) + 5))
+                    .put("l", MockMarket.Instrument.toPrice(Math.max(1, Math.min(open, price) - 5)))
+                    .put("v", 1 + ThreadLocalRandom.current().nextInt(10_000))
+                    .put("time", time.toString());
+        }
+        return payload;
+    }
+
+    @NotNull
+    private ArrayNode orders() {
+        final ArrayNode payload = mapper.createArrayNode();
+        for (final MockMarket.Order order : market.orders()) {
+            payload.addObject()
+                    .put("orderId", order.orderId)
+                    .put("figi", order.figi)
+                    .put("operation", order.operation)
+                    .put("status", "New")
+                    .put("requestedLots", order.lots)
+                    .put("executedLots", 0)
+                    .put("type", order.type)
+                    .put("price", order.price);
+        }
+        return payload;
+    }
+
+    @NotNull
+    private ObjectNode placeOrder(@NotNull final String figi,
+                                  final boolean limit,
+                                  @NotNull final JsonNode body) {
+        final MockMarket.Instrument instrument = market.instrument(figi);
+        final String operation = body.path("operation").asText("Buy");
+        final int lots = body.path("lots").asInt(1);
+        final BigDecimal price = body.has("price")
+                ? body.get("price").decimalValue()
+                : MockMarket.Instrument.toPrice(instrument.nextPrice());
+        final MockMarket.Order order = market.place(figi, operation, lots, price, limit ? "Limit" : "Market");
+
+        final ObjectNode payload = mapper.createObjectNode()
+                .put("orderId", order.orderId)
+                .put("operation", operation)
+                .put("status", limit ? "New" : "Fill")
+                .put("requestedLots", lots)
+                .put("executedLots", limit ? 0 : lots);
+        if (!limit) {
+            payload.putObject("commission")
+                    .put("currency", "RUB")
+                    .put("value", price.multiply(BigDecimal.valueOf(lots)).multiply(new BigDecimal("0.0005")));
+        }
+        return payload;
+    }
+
+    @NotNull
+    private ObjectNode portfolio() {
+        final ObjectNode payload = mapper.createObjectNode();
+        final ArrayNode positions = payload.putArray("positions");
+        final List<MockMarket.Instrument> stocks = market.segment("stocks");
+        for (int i = 0; i < Math.min(10, stocks.size()); i++) {
+            final MockMarket.Instrument instrument = stocks.get(i);
+            final BigDecimal price = MockMarket.Instrument.toPrice(instrument.price.get());
+            final ObjectNode position = positions.addObject()
+                    .put("figi", instrument.figi)
+                    .put("ticker", instrument.ticker)
+                    .put("isin", "RU" + instrument.figi)
+                    .put("instrumentType", instrument.type)
+                    .put("balance", 10 * (i + 1))
+                    .put("blocked", 0)
+                    .put("lots", 10 * (i + 1))
+                    .put("name", "Mock " + instrument.ticker);
+            position.putObject("averagePositionPrice").put("currency", "RUB").put("value", price);
+            position.putObject("expectedYield").put("currency", "RUB").put("value", BigDecimal.ZERO);
+        }
+        return payload;
+    }
+
+    @NotNull
+    private ObjectNode currencies() {
+        final ObjectNode payload = mapper.createObjectNode();
+        final ArrayNode currencies = payload.putArray("currencies");
+        currencies.addObject().put("currency", "RUB").put("balance", new BigDecimal("100000.00")).put("blocked", 0);
+        currencies.addObject().put("currency", "USD").put("balance", new BigDecimal("1000.00")).put("blocked", 0);
+        return payload;
+    }
+
+    @NotNull
+    private ObjectNode operations(@NotNull final OffsetDateTime from,
+                                  @NotNull final OffsetDateTime to,
+                                  @Nullable final String figi) {
+        final ObjectNode payload = mapper.createObjectNode();
+        final ArrayNode operations = payload.putArray("operations");
+        final long span = Math.max(1, Duration.between(from, to).getSeconds());
+        final List<MockMarket.Instrument> stocks = market.segment("stocks");
+        for (int i = 0; i < 10; i++) {
+            final MockMarket.Instrument instrument = figi != null
+                    ? market.instrument(figi)
+                    : stocks.get(i % stocks.size());
+            final BigDecimal price = MockMarket.Instrument.toPrice(instrument.price.get());
+            final String date = from.plusSeconds(span * i / 10).toString();
+            final ObjectNode operation = operations.addObject()
+                    .put("id", "mock-operation-" + i)
+                    .put("status", "Done")
+                    .put("currency", "RUB")
+                    .put("payment", price.negate())
+                    .put("price", price)
+                    .put("quantity", 1)
+                    .put("figi", instrument.figi)
+                    .put("instrumentType", instrument.type)
+                    .put("isMarginCall", false)
+                    .put("date", date)
+                    .put("operationType", "Buy");
+            operation.putArray("trades").addObject()
+                    .put("tradeId", "mock-trade-" + i)
+                    .put("date", date)
+                    .put("price", price)
+                    .put("quantity", 1);
+            operation.putObject("commission").put("currency", "RUB").put("value", BigDecimal.ZERO);
+        }
+        return payload;
+    }
+
+    @NotNull
+    private MockResponse ok(@NotNull final JsonNode payload) throws IOException {
+        final ObjectNode answer = mapper.createObjectNode()
+                .put("trackingId", "mock-" + trackingIds.incrementAndGet())
+                .put("status", "Ok");
+        answer.set("payload", payload);
+        return json(200, answer);
+    }
+
+    @NotNull
+    private MockResponse error(final int status, @NotNull final String message, @NotNull final String code) {
+        final ObjectNode answer = mapper.createObjectNode()
+                .put("trackingId", "mock-" + trackingIds.incrementAndGet())
+                .put("status", "Error");
+        answer.putObject("payload").put("message", message).put("code", code);
+        try {
+            return json(status, answer);
+        } catch (IOException ex) {
+            return new MockResponse().setResponseCode(status);
+        }
+    }
+
+    @NotNull
+    private MockResponse json(final int status, @NotNull final JsonNode body) throws IOException {
+        return new MockResponse()
+                .setResponseCode(status)
+                .setHeader("Content-Type", "application/json")
+                .setBody(mapper.writeValueAsString(body));
+    }
+
+    @NotNull
+    private MockResponse delayed(@NotNull final MockResponse response) {
+        long delay = config.latency.toMillis();
+        final long jitter = config.latencyJitter.toMillis();
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        return delay > 0 ? response.setHeadersDelay(delay, TimeUnit.MILLISECONDS) : response;
+    }
+
+    @NotNull
+    private JsonNode body(@NotNull final RecordedRequest request) throws IOException {
+        final String body = request.getBody().readUtf8();
+        return body.isEmpty() ? mapper.createObjectNode() : mapper.readTree(body);
+    }
+
+    @NotNull
+    private static String relativePath(@NotNull final HttpUrl url) {
+        String path = url.encodedPath();
+        if (path.startsWith(API_PREFIX)) {
+            path = path.substring(API_PREFIX.length());
+        }
+        // Адрес песочницы отличается от боевого префиксом sandbox/, методы самой песочницы
+        // (sandbox/register и др.) лежат уже под ним.
+        if (path.startsWith("sandbox/")) {
+            path = path.substring("sandbox/".length());
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    @NotNull
+    private static String required(@NotNull final HttpUrl url, @NotNull final String name) throws ApiError {
+        final String value = url.queryParameter(name);
+        if (value == null) {
+            throw new ApiError(400, "Не задан параметр " + name, "VALIDATION_ERROR");
+        }
+        return value;
+    }
+
+    @NotNull
+    private static Duration step(@NotNull final String interval) throws ApiError {
+        switch (interval) {
+            case "1min": return Duration.ofMinutes(1);
+            case "2min": return Duration.ofMinutes(2);
+            case "3min": return Duration.ofMinutes(3);
+            case "5min": return Duration.ofMinutes(5);
+            case "10min": return Duration.ofMinutes(10);
+            case "15min": return Duration.ofMinutes(15);
+            case "30min": return Duration.ofMinutes(30);
+            case "hour": return Duration.ofHours(1);
+            case "day": return Duration.ofDays(1);
+            case "week": return Duration.ofDays(7);
+            case "month": return Duration.ofDays(30);
+            default: throw new ApiError(400, "Неизвестный интервал " + interval, "VALIDATION_ERROR");
+        }
+    }
+
+    private static final class ApiError extends Exception {
+        final int status;
+        final String code;
+
+        ApiError(final int status, @NotNull final String message, @NotNull final String code) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.tinkoff.invest.openapi.mock;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общие для всех подключений к Streaming API ресурсы: планировщик, по которому генерируются
+ * события, и счётчик отправленных событий.
+ */
+final class StreamingHub {
+
+    /** Период генерации событий. */
+    static final long TICK_MILLIS = 10;
+
+    final MockServerConfig config;
+    final MockMarket market;
+    final ScheduledExecutorService scheduler;
+    final LongAdder events = new LongAdder();
+    final Set<StreamingSession> sessions = ConcurrentHashMap.newKeySet();
+
+    StreamingHub(@NotNull final MockServerConfig config, @NotNull final MockMarket market) {
+        this.config = config;
+        this.market = market;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "mock-streaming");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @NotNull
+    StreamingSession newSession() {
+        return new StreamingSession(this);
+    }
+
+    void broadcast(@NotNull final String frame) {
+        for (final StreamingSession session : sessions) {
+            session.send(frame);
+        }
+    }
+
+    void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,243 @@
+package ru.tinkoff.invest.openapi.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одно подключение к имитации Streaming API.
+ *
+ * На каждую подписку на свечи или стакан с частотой {@link MockServerConfig#eventsPerSecond}
+ * отправляются сгенерированные события; подписка на информацию об инструменте отвечает одним
+ * событием. Если клиент не успевает забирать события и очередь отправки переполняется, лишние
+ * события отбрасываются, как это происходит у медленного потребителя настоящего API.
+ */
+final class StreamingSession extends WebSocketListener {
+
+    private static final long MAX_QUEUE_SIZE = 4 * 1024 * 1024;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final StreamingHub hub;
+    private final Logger logger;
+    private final ConcurrentHashMap<String, Feed> feeds;
+    private volatile WebSocket webSocket;
+    private volatile ScheduledFuture<?> ticker;
+
+    StreamingSession(@NotNull final StreamingHub hub) {
+        this.hub = hub;
+        this.logger = org.slf4j.LoggerFactory.getLogger(StreamingSession.class);
+        this.feeds = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void onOpen(@NotNull final WebSocket webSocket, @NotNull final Response response) {
+        this.webSocket = webSocket;
+        hub.sessions.add(this);
+        this.ticker = hub.scheduler.scheduleAtFixedRate(
+                this::tick, StreamingHub.TICK_MILLIS, StreamingHub.TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onMessage(@NotNull final WebSocket webSocket, @NotNull final String text) {
+        final JsonNode request;
+        try {
+            request = mapper.readTree(text);
+        } catch (IOException ex) {
+            sendError("Некорректный запрос", null);
+            return;
+        }
+        final String event = request.path("event").asText();
+        final String figi = request.path("figi").asText(null);
+        final String requestId = request.has("requestId")
+                ? request.get("requestId").asText()
+                : request.path("request_id").asText(null);
+        if (figi == null) {
+            sendError("Не задан figi", requestId);
+            return;
+        }
+
+        switch (event) {
+            case "candle:subscribe":
+            case "orderbook:subscribe": {
+                final Feed feed = "candle:subscribe".equals(event)
+                        ? new Feed(true, figi, request.path("interval").asText("1min"), 0)
+                        : new Feed(false, figi, null, Math.max(1, Math.min(20, request.path("depth").asInt(1))));
+                feeds.put(feed.key(), feed);
+                break;
+            }
+            case "candle:unsubscribe":
+                feeds.remove(Feed.key(true, figi, request.path("interval").asText("1min")));
+                break;
+            case "orderbook:unsubscribe":
+                feeds.remove(Feed.key(false, figi, null));
+                break;
+            case "instrument_info:subscribe":
+                sendInstrumentInfo(hub.market.instrument(figi));
+                break;
+            case "instrument_info:unsubscribe":
+                break;
+            default:
+                sendError("Неизвестное событие " + event, requestId);
+        }
+    }
+
+    @Override
+    public void onClosing(@NotNull final WebSocket webSocket, final int code, @NotNull final String reason) {
+        stop();
+        webSocket.close(1000, null);
+    }
+
+    @Override
+    public void onClosed(@NotNull final WebSocket webSocket, final int code, @NotNull final String reason) {
+        stop();
+    }
+
+    @Override
+    public void onFailure(@NotNull final WebSocket webSocket, @NotNull final Throwable t, @Nullable final Response response) {
+        logger.debug("Подключение к Streaming API оборвалось", t);
+        stop();
+    }
+
+    private void stop() {
+        hub.sessions.remove(this);
+        final ScheduledFuture<?> current = ticker;
+        if (current != null) {
+            current.cancel(false);
+        }
+        feeds.clear();
+    }
+
+    private void tick() {
+        final WebSocket socket = webSocket;
+        if (socket == null) {
+            return;
+        }
+        final double credit = hub.config.eventsPerSecond * StreamingHub.TICK_MILLIS / 1000.0;
+        for (final Feed feed : feeds.values()) {
+            feed.credit += credit;
+            while (feed.credit >= 1.0) {
+                feed.credit -= 1.0;
+                if (socket.queueSize() > MAX_QUEUE_SIZE) {
+                    continue;
+                }
+                final MockMarket.Instrument instrument = hub.market.instrument(feed.figi);
+                send(feed.candle ? candle(instrument, feed.interval) : orderbook(instrument, feed.depth));
+            }
+        }
+    }
+
+    @NotNull
+    private static String candle(@NotNull final MockMarket.Instrument instrument, @NotNull final String interval) {
+        final long open = instrument.price.get();
+        final long close = instrument.nextPrice();
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"event\":\"candle\",\"time\":\"").append(OffsetDateTime.now(ZoneOffset.UTC))
+                .append("\",\"payload\":{\"o\":").append(MockMarket.Instrument.toPrice(open))
+                .append(",\"c\":").append(MockMarket.Instrument.toPrice(close))
+                .append(",\"h\":").append(MockMarket.Instrument.toPrice(Math.max(open, close) + 1))
+                .append(",\"l\":").append(MockMarket.Instrument.toPrice(Math.max(1, Math.min(open, close) - 1)))
+                .append(",\"v\":").append(1 + ThreadLocalRandom.current().nextInt(1000))
+                .append(",\"time\":\"").append(OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MINUTES))
+                .append("\",\"interval\":\"").append(interval)
+                .append("\",\"figi\":\"").append(instrument.figi)
+                .append("\"}}");
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String orderbook(@NotNull final MockMarket.Instrument instrument, final int depth) {
+        final long price = instrument.nextPrice();
+        final StringBuilder sb = new StringBuilder(64 + depth * 40);
+        sb.append("{\"event\":\"orderbook\",\"time\":\"").append(OffsetDateTime.now(ZoneOffset.UTC))
+                .append("\",\"payload\":{\"depth\":").append(depth).append(",\"bids\":[");
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('[').append(MockMarket.Instrument.toPrice(Math.max(1, price - i)))
+                    .append(',').append(1 + ThreadLocalRandom.current().nextInt(1000)).append(']');
+        }
+        sb.append("],\"asks\":[");
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('[').append(MockMarket.Instrument.toPrice(price + 1 + i))
+                    .append(',').append(1 + ThreadLocalRandom.current().nextInt(1000)).append(']');
+        }
+        sb.append("],\"figi\":\"").append(instrument.figi).append("\"}}");
+        return sb.toString();
+    }
+
+    private void sendInstrumentInfo(@NotNull final MockMarket.Instrument instrument) {
+        final long price = instrument.price.get();
+        send("{\"event\":\"instrument_info\",\"time\":\"" + OffsetDateTime.now(ZoneOffset.UTC)
+                + "\",\"payload\":{\"trade_status\":\"normal_trading\",\"min_price_increment\":0.01,\"lot\":1"
+                + ",\"limit_up\":" + MockMarket.Instrument.toPrice(price * 2)
+                + ",\"limit_down\":" + MockMarket.Instrument.toPrice(price / 2)
+                + ",\"figi\":\"" + instrument.figi + "\"}}");
+    }
+
+    private void sendError(@NotNull final String error, @Nullable final String requestId) {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"event\":\"error\",\"time\":\"").append(OffsetDateTime.now(ZoneOffset.UTC))
+                .append("\",\"payload\":{\"error\":").append(quote(error));
+        if (requestId != null) {
+            sb.append(",\"request_id\":").append(quote(requestId));
+        }
+        sb.append("}}");
+        send(sb.toString());
+    }
+
+    void send(@NotNull final String text) {
+        final WebSocket socket = webSocket;
+        if (socket != null && socket.send(text)) {
+            hub.events.increment();
+        }
+    }
+
+    @NotNull
+    private static String quote(@NotNull final String value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (IOException ex) {
+            return "\"\"";
+        }
+    }
+
+    private static final class Feed {
+        final boolean candle;
+        final String figi;
+        @Nullable final String interval;
+        final int depth;
+        // Меняется только в потоке планировщика.
+        double credit;
+
+        Feed(final boolean candle, @NotNull final String figi, @Nullable final String interval, final int depth) {
+            this.candle = candle;
+            this.figi = figi;
+            this.interval = interval;
+            this.depth = depth;
+        }
+
+        @NotNull
+        String key() {
+            return key(candle, figi, interval);
+        }
+
+        @NotNull
+        static String key(final boolean candle, @NotNull final String figi, @Nullable final String interval) {
+            return candle ? "candle:" + figi + ":" + interval : "orderbook:" + figi;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.tinkoff.invest.openapi.journal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Журнал сырых сообщений Streaming API, записываемый в отображённые в память файлы-сегменты.
+ *
+ * Запись сообщения - это копирование байтов в отображённый сегмент без системных вызовов;
+ * сброс на диск выполняет операционная система. Поэтому запись почти ничего не стоит потоку,
+ * читающему веб-сокет, а уже записанные сообщения переживают аварийное завершение процесса.
+ *
+ * Формат записи: длина текста (int), номер соединения (int), момент получения в миллисекундах
+ * (long), текст в UTF-8. Длина пишется последней, так что оборванная запись выглядит как конец
+ * сегмента. Сегменты создаются заранее заданного размера и нумеруются по порядку; новый журнал
+ * в том же каталоге продолжает нумерацию.
+ *
+ * Следующий сегмент создаётся и отображается в память фоновым потоком, пока заполняется текущий,
+ * так что при переходе на него поток веб-сокета только подменяет буфер. Запись, не помещающаяся
+ * в сегмент, получает подготовленный сегмент, расширенный до её размера. Неиспользованный
+ * подготовленный сегмент удаляется при закрытии журнала; если процесс завершился аварийно, он
+ * остаётся пустым сегментом, который читатель пропускает.
+ */
+public final class FrameJournal implements Closeable {
+
+    static final int HEADER_SIZE = 16;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ExecutorService preparer;
+
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private Future<Segment> prepared;
+    private boolean closed;
+
+    /**
+     * @param directory   Каталог сегментов.
+     * @param segmentSize Размер сегмента в байтах.
+     */
+    public FrameJournal(@NotNull final Path directory, final int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Размер сегмента слишком мал: " + segmentSize);
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        final List<Path> existing = JournalReader.segments(directory);
+        this.segmentIndex = existing.isEmpty() ? 0 : indexOf(existing.get(existing.size() - 1)) + 1;
+        final Segment first = openSegment(segmentIndex, segmentSize);
+        this.channel = first.channel;
+        this.segment = first.buffer;
+        this.preparer = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "frame-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prepareNext();
+    }
+
+    /**
+     * Запись сообщения.
+     *
+     * @param connectionId Номер соединения, по которому пришло сообщение.
+     * @param receivedAt   Момент получения в миллисекундах от начала эпохи.
+     * @param text         Текст сообщения.
+     *
+     * @throws IOException Если не удалось создать следующий сегмент или поток прервали во время
+     *                     ожидания его подготовки.
+     */
+    public synchronized void append(final int connectionId,
+                                    final long receivedAt,
+                                    @NotNull final String text) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Журнал закрыт");
+        }
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) {
+            // Нулевая длина означает конец сегмента, а пустое сообщение всё равно не разобрать.
+            return;
+        }
+        final int recordSize = HEADER_SIZE + bytes.length;
+        if (segment.remaining() < recordSize) {
+            nextSegment(recordSize);
+        }
+
+        final int start = segment.position();
+        segment.position(start + 4);
+        segment.putInt(connectionId);
+        segment.putLong(receivedAt);
+        segment.put(bytes);
+        segment.putInt(start, bytes.length);
+    }
+
+    /**
+     * Принудительный сброс текущего сегмента на диск.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            segment.force();
+        }
+    }
+
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segment.force();
+        channel.close();
+        preparer.shutdown();
+        discardPrepared();
+    }
+
+    private void nextSegment(final int recordSize) throws IOException {
+        final Segment next = takePrepared();
+        // Заполненный сегмент сбрасывает на диск операционная система: синхронный сброс
+        // остановил бы поток веб-сокета на время записи всего сегмента.
+        channel.close();
+        segmentIndex = next.index;
+        channel = next.channel;
+        segment = next.buffer.capacity() < recordSize
+                ? channel.map(FileChannel.MapMode.READ_WRITE, 0, recordSize)
+                : next.buffer;
+        prepareNext();
+    }
+
+    private void prepareNext() {
+        final long index = segmentIndex + 1;
+        prepared = preparer.submit(() -> openSegment(index, segmentSize));
+    }
+
+    @NotNull
+    private Segment takePrepared() throws IOException {
+        try {
+            return prepared.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Прервано ожидание следующего сегмента журнала");
+        } catch (ExecutionException ex) {
+            // Фоновая подготовка не удалась - пробуем ещё раз сами, чтобы ошибка дошла до вызывающего.
+            return openSegment(segmentIndex + 1, segmentSize);
+        }
+    }
+
+    private void discardPrepared() throws IOException {
+        final Segment unused;
+        try {
+            unused = prepared.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException ex) {
+            return;
+        }
+        unused.channel.close();
+        try {
+            Files.delete(unused.path);
+        } catch (IOException ignored) {
+            // Пока буфер отображён, некоторые системы не дают удалить файл; пустой сегмент безвреден.
+        }
+    }
+
+    @NotNull
+    private Segment openSegment(final long index, final int size) throws IOException {
+        final Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new Segment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException ex) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw ex;
+        }
+    }
+
+    private static long indexOf(@NotNull final Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Segment {
+        final long index;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(final long index,
+                @NotNull final Path path,
+                @NotNull final FileChannel channel,
+                @NotNull final MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.tinkoff.invest.openapi.journal;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Сообщение Streaming API, прочитанное из журнала.
+ */
+public final class JournalFrame {
+
+    /** Номер соединения, по которому пришло сообщение. */
+    public final int connectionId;
+    /** Момент получения в миллисекундах от начала эпохи. */
+    public final long receivedAt;
+    /** Текст сообщения. */
+    @NotNull public final String text;
+
+    public JournalFrame(final int connectionId, final long receivedAt, @NotNull final String text) {
+        this.connectionId = connectionId;
+        this.receivedAt = receivedAt;
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalFrame(" +
+                "connectionId=" + connectionId +
+                ", receivedAt=" + receivedAt +
+                ", text=" + text +
+                ")";
+    }
+}
@@ -0,0 +1,97 @@
+package ru.tinkoff.invest.openapi.journal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Последовательное чтение сообщений из всех сегментов журнала {@link FrameJournal}.
+ */
+public final class JournalReader implements Iterator<JournalFrame> {
+
+    private final Iterator<Path> segments;
+
+    private MappedByteBuffer segment;
+    private JournalFrame next;
+
+    /**
+     * @param directory Каталог сегментов.
+     */
+    public JournalReader(@NotNull final Path directory) throws IOException {
+        this.segments = segments(directory).iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNext();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    @NotNull
+    public JournalFrame next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JournalFrame result = next;
+        next = null;
+        return result;
+    }
+
+    private JournalFrame readNext() throws IOException {
+        while (true) {
+            if (segment != null && segment.remaining() >= FrameJournal.HEADER_SIZE) {
+                final int length = segment.getInt(segment.position());
+                if (length > 0 && segment.remaining() >= FrameJournal.HEADER_SIZE + length) {
+                    segment.position(segment.position() + 4);
+                    final int connectionId = segment.getInt();
+                    final long receivedAt = segment.getLong();
+                    final byte[] bytes = new byte[length];
+                    segment.get(bytes);
+                    return new JournalFrame(connectionId, receivedAt, new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+            if (!segments.hasNext()) {
+                return null;
+            }
+            try (final FileChannel channel = FileChannel.open(segments.next(), StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+    }
+
+    @NotNull
+    static List<Path> segments(@NotNull final Path directory) throws IOException {
+        final List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        final String glob = FrameJournal.SEGMENT_PREFIX + "*" + FrameJournal.SEGMENT_SUFFIX;
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (final Path path : stream) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
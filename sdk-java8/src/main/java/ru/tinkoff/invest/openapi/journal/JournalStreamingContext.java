@@ -0,0 +1,175 @@
+package ru.tinkoff.invest.openapi.journal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Воспроизведение журнала {@link FrameJournal} в виде {@link StreamingContext}.
+ *
+ * Каждый подписчик получает все сообщения журнала с самого начала в собственном потоке.
+ * Сообщения разбираются так же, как при живом подключении, и выдаются с исходными интервалами,
+ * делёнными на коэффициент ускорения; при неположительном коэффициенте - без пауз. Запрошенное
+ * подписчиком количество событий соблюдается. Запросы на подписку игнорируются: воспроизводится
+ * всё, что было записано.
+ */
+public final class JournalStreamingContext implements StreamingContext {
+
+    private static final TypeReference<StreamingEvent> streamingEventTypeReference =
+            new TypeReference<StreamingEvent>() {
+            };
+
+    private final Path directory;
+    private final double speed;
+    private final ObjectMapper mapper;
+    private final Logger logger;
+
+    /**
+     * @param directory Каталог сегментов журнала.
+     * @param speed     Коэффициент ускорения: 1 - исходная скорость, 0 - максимальная.
+     */
+    public JournalStreamingContext(@NotNull final Path directory, final double speed) {
+        this.directory = directory;
+        this.speed = speed;
+        this.mapper = new ObjectMapper();
+        this.mapper.registerModule(new JavaTimeModule());
+        this.logger = org.slf4j.LoggerFactory.getLogger(JournalStreamingContext.class);
+    }
+
+    @Override
+    public void sendRequest(@NotNull final StreamingRequest request) {
+        logger.debug("При воспроизведении журнала запрос не отправляется: " + request.onOffPairId());
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super StreamingEvent> subscriber) {
+        final Thread thread = new Thread(new ReplaySubscription(subscriber), "journal-replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private final class ReplaySubscription implements Subscription, Runnable {
+        private final Subscriber<? super StreamingEvent> subscriber;
+        private final Object lock = new Object();
+
+        private long demand;
+        private boolean cancelled;
+        private Throwable violation;
+
+        ReplaySubscription(@NotNull final Subscriber<? super StreamingEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            synchronized (lock) {
+                if (n < 1) {
+                    violation = new IllegalArgumentException(subscriber + " violated the Reactive Streams rule 3.9 by requesting a non-positive number of elements.");
+                } else if (demand + n < 1) {
+                    demand = Long.MAX_VALUE;
+                } else {
+                    demand += n;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (lock) {
+                cancelled = true;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            subscriber.onSubscribe(this);
+            try {
+                final JournalReader reader = new JournalReader(directory);
+                final long startNanos = System.nanoTime();
+                long firstReceivedAt = -1;
+
+                while (reader.hasNext()) {
+                    final JournalFrame frame = reader.next();
+                    if (firstReceivedAt < 0) {
+                        firstReceivedAt = frame.receivedAt;
+                    }
+                    if (speed > 0) {
+                        final long offset = (long) (TimeUnit.MILLISECONDS.toNanos(frame.receivedAt - firstReceivedAt) / speed);
+                        pauseUntil(startNanos + offset);
+                    }
+
+                    final StreamingEvent event;
+                    try {
+                        event = mapper.readValue(frame.text, streamingEventTypeReference);
+                    } catch (JsonProcessingException ex) {
+                        logger.error("Не удалось десериализовать JSON из журнала Streaming API", ex);
+                        continue;
+                    }
+                    if (!awaitDemand()) {
+                        return;
+                    }
+                    subscriber.onNext(event);
+                }
+                if (!isCancelled()) {
+                    subscriber.onComplete();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                if (!isCancelled()) {
+                    subscriber.onError(ex);
+                }
+            }
+        }
+
+        private void pauseUntil(final long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0 && !isCancelled()) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+
+        /**
+         * @return false, если подписка отменена.
+         */
+        private boolean awaitDemand() throws InterruptedException {
+            synchronized (lock) {
+                while (demand == 0 && !cancelled && violation == null) {
+                    lock.wait();
+                }
+                if (violation != null) {
+                    cancelled = true;
+                    subscriber.onError(violation);
+                    return false;
+                }
+                if (cancelled) {
+                    return false;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+                return true;
+            }
+        }
+
+        private boolean isCancelled() {
+            synchronized (lock) {
+                return cancelled;
+            }
+        }
+    }
+}
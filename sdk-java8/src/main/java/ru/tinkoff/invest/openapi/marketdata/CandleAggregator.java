@@ -0,0 +1,350 @@
+package ru.tinkoff.invest.openapi.marketdata;
+
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.model.streaming.CandleInterval;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение свечей старших интервалов из потока минутных свечей Streaming API.
+ *
+ * Достаточно подписаться только на минутные свечи: свечи 2, 3, 5, 10, 15, 30 минут, 1, 2, 4 часов
+ * и дня обновляются по каждому минутному событию без пересчёта по истории. Состояние каждого
+ * инструмента хранится в массивах {@code long}, так что обработка события после разбора цен не
+ * создаёт объектов.
+ *
+ * Streaming API присылает незавершённую минутную свечу многократно с уточнёнными значениями.
+ * Повтор той же минуты учитывается как замена: объём предыдущей версии минуты вычитается,
+ * максимум и минимум расширяются (внутри минуты они могут только расширяться), цена закрытия
+ * заменяется. События по минутам раньше текущей не учитываются и подсчитываются в
+ * {@link #getLateUpdates()}.
+ *
+ * Часовые и более короткие интервалы выравниваются по UTC, 2- и 4-часовые и дневные - по
+ * полуночи в часовом поясе биржи.
+ *
+ * Экземпляр не потокобезопасен: события должны поступать последовательно, как того требует
+ * Reactive Streams.
+ */
+public final class CandleAggregator implements Subscriber<StreamingEvent> {
+
+    /**
+     * Получатель обновлённых свечей. Цены выражены в единицах {@code 10^-priceScale}.
+     */
+    public interface Listener {
+
+        /**
+         * @param figi        Идентификатор инструмента.
+         * @param interval    Интервал свечи.
+         * @param startMillis Начало свечи в миллисекундах эпохи.
+         * @param open        Цена открытия.
+         * @param high        Максимальная цена.
+         * @param low         Минимальная цена.
+         * @param close       Цена закрытия.
+         * @param volume      Объём торгов.
+         * @param completed   Признак того, что свеча завершена и больше не изменится.
+         */
+        void onCandle(@NotNull String figi,
+                      @NotNull CandleInterval interval,
+                      long startMillis,
+                      long open,
+                      long high,
+                      long low,
+                      long close,
+                      long volume,
+                      boolean completed);
+    }
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final CandleInterval[] intervals;
+    private final long[] lengths;
+    private final boolean[] zoned;
+    private final ZoneId zone;
+    private final int priceScale;
+    private final Listener listener;
+    private final Map<String, FigiState> states;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CandleAggregator.class);
+
+    private Subscription subscription;
+    private long lateUpdates;
+
+    /**
+     * @param intervals  Строимые интервалы свечей.
+     * @param zone       Часовой пояс биржи для дневных и многочасовых свечей.
+     * @param priceScale Количество знаков после запятой, сохраняемое в ценах.
+     * @param listener   Получатель свечей.
+     */
+    public CandleAggregator(@NotNull final Collection<CandleInterval> intervals,
+                            @NotNull final ZoneId zone,
+                            final int priceScale,
+                            @NotNull final Listener listener) {
+        final EnumSet<CandleInterval> unique = EnumSet.noneOf(CandleInterval.class);
+        unique.addAll(intervals);
+        this.intervals = unique.toArray(new CandleInterval[0]);
+        this.lengths = new long[this.intervals.length];
+        this.zoned = new boolean[this.intervals.length];
+        for (int i = 0; i < this.intervals.length; i++) {
+            this.lengths[i] = lengthOf(this.intervals[i]);
+            this.zoned[i] = this.lengths[i] > HOUR;
+        }
+        this.zone = zone;
+        this.priceScale = priceScale;
+        this.listener = listener;
+        this.states = new HashMap<>();
+    }
+
+    /**
+     * Создание агрегатора всех поддерживаемых интервалов по московскому времени с точностью
+     * цен в 6 знаков после запятой.
+     *
+     * @param listener Получатель свечей.
+     */
+    public CandleAggregator(@NotNull final Listener listener) {
+        this(EnumSet.of(
+                CandleInterval._2MIN,
+                CandleInterval._3MIN,
+                CandleInterval._5MIN,
+                CandleInterval._10MIN,
+                CandleInterval._15MIN,
+                CandleInterval._30MIN,
+                CandleInterval.HOUR,
+                CandleInterval._2HOUR,
+                CandleInterval._4HOUR,
+                CandleInterval.DAY
+        ), ZoneId.of("Europe/Moscow"), 6, listener);
+    }
+
+    /**
+     * @return Количество минутных событий, пришедших после начала следующей минуты и потому
+     * не учтённых.
+     */
+    public long getLateUpdates() {
+        return lateUpdates;
+    }
+
+    /**
+     * Учёт минутной свечи.
+     *
+     * @param candle Событие свечи. Свечи других интервалов игнорируются.
+     */
+    public void update(@NotNull final StreamingEvent.Candle candle) {
+        if (candle.getInterval() != CandleInterval._1MIN) {
+            return;
+        }
+        update(
+                candle.getFigi(),
+                candle.getDateTime().toInstant().toEpochMilli(),
+                toUnits(candle.getOpenPrice()),
+                toUnits(candle.getHighestPrice()),
+                toUnits(candle.getLowestPrice()),
+                toUnits(candle.getClosingPrice()),
+                candle.getTradingValue().longValue()
+        );
+    }
+
+    /**
+     * Учёт минутной свечи, заданной примитивными значениями.
+     *
+     * @param figi        Идентификатор инструмента.
+     * @param minuteStart Начало минуты в миллисекундах эпохи.
+     * @param open        Цена открытия.
+     * @param high        Максимальная цена.
+     * @param low         Минимальная цена.
+     * @param close       Цена закрытия.
+     * @param volume      Объём торгов за минуту.
+     */
+    public void update(@NotNull final String figi,
+                       final long minuteStart,
+                       final long open,
+                       final long high,
+                       final long low,
+                       final long close,
+                       final long volume) {
+        FigiState state = states.get(figi);
+        if (state == null) {
+            state = new FigiState(intervals.length);
+            states.put(figi, state);
+        }
+
+        final long minute = minuteStart - Math.floorMod(minuteStart, MINUTE);
+        final boolean revision;
+        if (minute == state.minute) {
+            revision = true;
+        } else if (minute > state.minute) {
+            revision = false;
+        } else {
+            lateUpdates++;
+            logger.debug("Пропущено запоздавшее обновление минутной свечи " + figi + " за " + minute);
+            return;
+        }
+        final long volumeDelta = revision ? volume - state.minuteVolume : volume;
+        state.minute = minute;
+        state.minuteVolume = volume;
+
+        if (minute >= state.zoneEnd) {
+            final long offset = TimeUnit.SECONDS.toMillis(
+                    zone.getRules().getOffset(Instant.ofEpochMilli(minute)).getTotalSeconds());
+            state.zoneOffset = offset;
+            state.zoneEnd = Math.floorDiv(minute + offset, DAY) * DAY + DAY - offset;
+        }
+
+        for (int i = 0; i < intervals.length; i++) {
+            final long shift = zoned[i] ? state.zoneOffset : 0;
+            final long start = Math.floorDiv(minute + shift, lengths[i]) * lengths[i] - shift;
+
+            if (start != state.start[i]) {
+                if (state.start[i] != Long.MIN_VALUE) {
+                    emit(figi, state, i, true);
+                }
+                state.start[i] = start;
+                state.open[i] = open;
+                state.high[i] = high;
+                state.low[i] = low;
+                state.volume[i] = volume;
+            } else {
+                if (high > state.high[i]) {
+                    state.high[i] = high;
+                }
+                if (low < state.low[i]) {
+                    state.low[i] = low;
+                }
+                state.volume[i] += volumeDelta;
+            }
+            state.close[i] = close;
+            emit(figi, state, i, false);
+        }
+    }
+
+    /**
+     * Завершение всех текущих свечей инструмента, например по окончании торговой сессии.
+     *
+     * @param figi Идентификатор инструмента.
+     */
+    public void flush(@NotNull final String figi) {
+        final FigiState state = states.remove(figi);
+        if (state == null) {
+            return;
+        }
+        for (int i = 0; i < intervals.length; i++) {
+            if (state.start[i] != Long.MIN_VALUE) {
+                emit(figi, state, i, true);
+            }
+        }
+    }
+
+    @NotNull
+    public BigDecimal toPrice(final long units) {
+        return BigDecimal.valueOf(units, priceScale);
+    }
+
+    @Override
+    public void onSubscribe(final Subscription s) {
+        this.subscription = s;
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Candle) {
+            update((StreamingEvent.Candle) event);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        logger.error("Поток минутных свечей прерван", t);
+    }
+
+    @Override
+    public void onComplete() {
+        logger.info("Поток минутных свечей завершён");
+    }
+
+    /**
+     * Отписка от потока событий.
+     */
+    public void cancel() {
+        final Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+    }
+
+    private void emit(@NotNull final String figi,
+                      @NotNull final FigiState state,
+                      final int index,
+                      final boolean completed) {
+        listener.onCandle(figi, intervals[index], state.start[index], state.open[index], state.high[index],
+                state.low[index], state.close[index], state.volume[index], completed);
+    }
+
+    private long toUnits(@NotNull final BigDecimal price) {
+        return price.setScale(priceScale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static long lengthOf(@NotNull final CandleInterval interval) {
+        switch (interval) {
+            case _1MIN:
+                return MINUTE;
+            case _2MIN:
+                return 2 * MINUTE;
+            case _3MIN:
+                return 3 * MINUTE;
+            case _5MIN:
+                return 5 * MINUTE;
+            case _10MIN:
+                return 10 * MINUTE;
+            case _15MIN:
+                return 15 * MINUTE;
+            case _30MIN:
+                return 30 * MINUTE;
+            case HOUR:
+                return HOUR;
+            case _2HOUR:
+                return 2 * HOUR;
+            case _4HOUR:
+                return 4 * HOUR;
+            case DAY:
+                return DAY;
+            default:
+                throw new IllegalArgumentException("Интервал " + interval + " не поддерживается");
+        }
+    }
+
+    private static final class FigiState {
+        long minute = Long.MIN_VALUE;
+        long minuteVolume;
+        long zoneOffset;
+        long zoneEnd = Long.MIN_VALUE;
+        final long[] start;
+        final long[] open;
+        final long[] high;
+        final long[] low;
+        final long[] close;
+        final long[] volume;
+
+        FigiState(final int size) {
+            this.start = new long[size];
+            this.open = new long[size];
+            this.high = new long[size];
+            this.low = new long[size];
+            this.close = new long[size];
+            this.volume = new long[size];
+            Arrays.fill(this.start, Long.MIN_VALUE);
+        }
+    }
+}
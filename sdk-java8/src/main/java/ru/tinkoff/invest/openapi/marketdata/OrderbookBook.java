@@ -0,0 +1,472 @@
+package ru.tinkoff.invest.openapi.marketdata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.MarketContext;
+import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.model.rest.OrderResponse;
+import ru.tinkoff.invest.openapi.model.rest.Orderbook;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальная копия биржевых стаканов, поддерживаемая по событиям Streaming API.
+ *
+ * Для каждого инструмента хранится последний полученный стакан в виде неизменяемого
+ * {@link Snapshot} с ценами и количествами в массивах {@code long}. Снимок заменяется целиком,
+ * поэтому чтение не требует блокировок и всегда видит согласованный стакан.
+ *
+ * Цены хранятся в виде целого числа единиц {@code 10^-priceScale}, что позволяет сравнивать
+ * и вычитать их без создания BigDecimal.
+ *
+ * При начале отслеживания инструмента, а также при обнаружении разрыва (перекрёстный стакан,
+ * ошибка или завершение потока событий, восстановление соединения) стакан загружается через
+ * REST API. О восстановлении соединения книга узнаёт, только если подписана через
+ * {@link #subscribeTo} или если {@link #onReconnect} вызывается из обработчика
+ * {@link StreamingContext#addReconnectListener}. Снимок из REST
+ * не заменяет уже полученный из потока более свежий стакан. На каждый инструмент одновременно
+ * идёт не больше одной загрузки: разрывы, обнаруженные во время загрузки, присоединяются к ней.
+ *
+ * События по неотслеживаемым инструментам и с глубиной, отличной от глубины книги, пропускаются,
+ * а загрузка, завершившаяся после {@link #untrack}, не возвращает стакан в книгу.
+ */
+public final class OrderbookBook implements Subscriber<StreamingEvent> {
+
+    /**
+     * Источник данных снимка стакана.
+     */
+    public enum Source {
+        /** Ответ REST API. */
+        REST,
+        /** Событие Streaming API. */
+        STREAM
+    }
+
+    private final MarketContext marketContext;
+    private final int depth;
+    private final int priceScale;
+    private final Map<String, Snapshot> books;
+    private final Set<String> tracked;
+    private final Map<String, CompletableFuture<Void>> resyncs;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OrderbookBook.class);
+
+    private final Runnable reconnectListener;
+
+    private volatile Subscription subscription;
+    private volatile StreamingContext streamingContext;
+
+    /**
+     * @param marketContext Контекст, через который загружаются стаканы при старте и разрывах.
+     * @param depth         Глубина стакана, запрашиваемая через REST API.
+     * @param priceScale    Количество знаков после запятой, сохраняемое в ценах.
+     */
+    public OrderbookBook(@NotNull final MarketContext marketContext, final int depth, final int priceScale) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Глубина стакана должна быть положительной");
+        }
+        if (priceScale < 0 || priceScale > 9) {
+            throw new IllegalArgumentException("Точность цены должна быть от 0 до 9 знаков");
+        }
+        this.marketContext = marketContext;
+        this.depth = depth;
+        this.priceScale = priceScale;
+        this.books = new ConcurrentHashMap<>();
+        this.tracked = ConcurrentHashMap.newKeySet();
+        this.resyncs = new ConcurrentHashMap<>();
+        this.reconnectListener = this::onReconnect;
+    }
+
+    /**
+     * Создание копии стаканов с точностью цен в 6 знаков после запятой.
+     *
+     * @param marketContext Контекст, через который загружаются стаканы при старте и разрывах.
+     * @param depth         Глубина стакана, запрашиваемая через REST API.
+     */
+    public OrderbookBook(@NotNull final MarketContext marketContext, final int depth) {
+        this(marketContext, depth, 6);
+    }
+
+    /**
+     * Начало отслеживания стакана инструмента. Стакан сразу загружается через REST API.
+     * Подписку на стакан в Streaming API нужно оформить отдельно.
+     *
+     * @param figi Идентификатор инструмента.
+     *
+     * @return Завершается после загрузки стакана.
+     */
+    @NotNull
+    public CompletableFuture<Void> track(@NotNull final String figi) {
+        tracked.add(figi);
+        return resync(figi);
+    }
+
+    /**
+     * Прекращение отслеживания стакана инструмента.
+     *
+     * @param figi Идентификатор инструмента.
+     */
+    public void untrack(@NotNull final String figi) {
+        tracked.remove(figi);
+        books.remove(figi);
+    }
+
+    /**
+     * Загрузка стакана через REST API, например после разрыва потока событий. Если загрузка по
+     * инструменту уже идёт, возвращается она. Стакан неотслеживаемого инструмента не сохраняется.
+     *
+     * @param figi Идентификатор инструмента.
+     *
+     * @return Завершается после загрузки стакана.
+     */
+    @NotNull
+    public CompletableFuture<Void> resync(@NotNull final String figi) {
+        final CompletableFuture<Void> created = new CompletableFuture<>();
+        final CompletableFuture<Void> running = resyncs.putIfAbsent(figi, created);
+        if (running != null) {
+            return running;
+        }
+
+        final long requestedAt = System.nanoTime();
+        marketContext.getMarketOrderbook(figi, depth).thenAccept(result -> {
+            if (!result.isPresent()) {
+                logger.warn("Стакан по инструменту " + figi + " не получен");
+                return;
+            }
+            final Snapshot snapshot = fromRest(result.get());
+            books.compute(figi, (key, current) -> {
+                if (!tracked.contains(key)) {
+                    return null;
+                }
+                return current == null || current.stale || current.receivedAt < requestedAt ? snapshot : current;
+            });
+        }).whenComplete((ignored, error) -> {
+            resyncs.remove(figi, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(null);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Получение последнего снимка стакана.
+     *
+     * @param figi Идентификатор инструмента.
+     *
+     * @return Снимок или null, если стакан ещё не получен.
+     */
+    @Nullable
+    public Snapshot get(@NotNull final String figi) {
+        return books.get(figi);
+    }
+
+    /**
+     * Обновление стакана по событию Streaming API. События по неотслеживаемым инструментам и с
+     * другой глубиной пропускаются.
+     *
+     * @param event Событие стакана.
+     */
+    public void update(@NotNull final StreamingEvent.Orderbook event) {
+        if (event.getDepth() != depth || !tracked.contains(event.getFigi())) {
+            return;
+        }
+        final Snapshot snapshot = fromStream(event);
+        // Проверка внутри compute не даёт событию вернуть стакан, снятый с отслеживания параллельно.
+        if (books.compute(event.getFigi(), (key, current) -> tracked.contains(key) ? snapshot : null) == null) {
+            return;
+        }
+        if (snapshot.isCrossed()) {
+            if (!resyncs.containsKey(event.getFigi())) {
+                logger.warn("Получен перекрёстный стакан по инструменту " + event.getFigi() + ", загружаем снимок");
+            }
+            markStale(event.getFigi());
+        }
+    }
+
+    /**
+     * Подписка на поток событий вместе с обработчиком восстановления соединения.
+     *
+     * @param streaming Контекст Streaming API.
+     */
+    public void subscribeTo(@NotNull final StreamingContext streaming) {
+        this.streamingContext = streaming;
+        streaming.addReconnectListener(reconnectListener);
+        streaming.subscribe(this);
+    }
+
+    /**
+     * Обработка восстановления соединения: события, пропущенные во время разрыва, не придут,
+     * поэтому все стаканы помечаются устаревшими и загружаются заново.
+     */
+    public void onReconnect() {
+        logger.info("Соединение Streaming API восстановлено, загружаем стаканы");
+        markAllStale();
+    }
+
+    @Override
+    public void onSubscribe(final Subscription s) {
+        this.subscription = s;
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Orderbook) {
+            update((StreamingEvent.Orderbook) event);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        logger.error("Поток событий стаканов прерван", t);
+        markAllStale();
+    }
+
+    @Override
+    public void onComplete() {
+        logger.info("Поток событий стаканов завершён");
+        markAllStale();
+    }
+
+    /**
+     * Отписка от потока событий.
+     */
+    public void cancel() {
+        final StreamingContext streaming = streamingContext;
+        if (streaming != null) {
+            streaming.removeReconnectListener(reconnectListener);
+        }
+        final Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+    }
+
+    /**
+     * Перевод цены из единиц {@code 10^-priceScale} в BigDecimal.
+     *
+     * @param units Цена в единицах.
+     *
+     * @return Цена.
+     */
+    @NotNull
+    public BigDecimal toPrice(final long units) {
+        return BigDecimal.valueOf(units, priceScale);
+    }
+
+    /**
+     * Перевод цены в единицы {@code 10^-priceScale}.
+     *
+     * @param price Цена.
+     *
+     * @return Цена в единицах.
+     */
+    public long toUnits(@NotNull final BigDecimal price) {
+        return price.setScale(priceScale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private void markAllStale() {
+        for (final String figi : tracked) {
+            markStale(figi);
+        }
+    }
+
+    private void markStale(@NotNull final String figi) {
+        books.computeIfPresent(figi, (key, current) -> current.stale ? current : current.asStale());
+        resync(figi).exceptionally(ex -> {
+            logger.error("Не удалось загрузить стакан по инструменту " + figi, ex);
+            return null;
+        });
+    }
+
+    @NotNull
+    private Snapshot fromStream(@NotNull final StreamingEvent.Orderbook event) {
+        final List<BigDecimal[]> bids = event.getBids();
+        final List<BigDecimal[]> asks = event.getAsks();
+        final long[] bidPrices = new long[bids.size()];
+        final long[] bidQuantities = new long[bids.size()];
+        final long[] askPrices = new long[asks.size()];
+        final long[] askQuantities = new long[asks.size()];
+        for (int i = 0; i < bidPrices.length; i++) {
+            final BigDecimal[] level = bids.get(i);
+            bidPrices[i] = toUnits(level[0]);
+            bidQuantities[i] = level[1].longValue();
+        }
+        for (int i = 0; i < askPrices.length; i++) {
+            final BigDecimal[] level = asks.get(i);
+            askPrices[i] = toUnits(level[0]);
+            askQuantities[i] = level[1].longValue();
+        }
+        return new Snapshot(event.getFigi(), Source.STREAM, System.nanoTime(), false,
+                bidPrices, bidQuantities, askPrices, askQuantities);
+    }
+
+    @NotNull
+    private Snapshot fromRest(@NotNull final Orderbook orderbook) {
+        final List<OrderResponse> bids = orderbook.getBids();
+        final List<OrderResponse> asks = orderbook.getAsks();
+        final long[] bidPrices = new long[bids.size()];
+        final long[] bidQuantities = new long[bids.size()];
+        final long[] askPrices = new long[asks.size()];
+        final long[] askQuantities = new long[asks.size()];
+        for (int i = 0; i < bidPrices.length; i++) {
+            final OrderResponse level = bids.get(i);
+            bidPrices[i] = toUnits(level.getPrice());
+            bidQuantities[i] = level.getQuantity();
+        }
+        for (int i = 0; i < askPrices.length; i++) {
+            final OrderResponse level = asks.get(i);
+            askPrices[i] = toUnits(level.getPrice());
+            askQuantities[i] = level.getQuantity();
+        }
+        return new Snapshot(orderbook.getFigi(), Source.REST, System.nanoTime(), false,
+                bidPrices, bidQuantities, askPrices, askQuantities);
+    }
+
+    /**
+     * Неизменяемый снимок стакана. Уровни упорядочены от лучшей цены к худшей, цены выражены
+     * в единицах {@code 10^-priceScale} книги, из которой получен снимок.
+     */
+    public static final class Snapshot {
+        private final String figi;
+        private final Source source;
+        private final long receivedAt;
+        private final boolean stale;
+        private final long[] bidPrices;
+        private final long[] bidQuantities;
+        private final long[] askPrices;
+        private final long[] askQuantities;
+
+        Snapshot(@NotNull final String figi,
+                 @NotNull final Source source,
+                 final long receivedAt,
+                 final boolean stale,
+                 @NotNull final long[] bidPrices,
+                 @NotNull final long[] bidQuantities,
+                 @NotNull final long[] askPrices,
+                 @NotNull final long[] askQuantities) {
+            this.figi = figi;
+            this.source = source;
+            this.receivedAt = receivedAt;
+            this.stale = stale;
+            this.bidPrices = bidPrices;
+            this.bidQuantities = bidQuantities;
+            this.askPrices = askPrices;
+            this.askQuantities = askQuantities;
+        }
+
+        @NotNull
+        Snapshot asStale() {
+            return new Snapshot(figi, source, receivedAt, true, bidPrices, bidQuantities, askPrices, askQuantities);
+        }
+
+        @NotNull
+        public String getFigi() {
+            return figi;
+        }
+
+        @NotNull
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * @return Момент получения снимка по {@link System#nanoTime()}.
+         */
+        public long getReceivedAt() {
+            return receivedAt;
+        }
+
+        /**
+         * @return Признак того, что после снимка был обнаружен разрыв и идёт загрузка нового.
+         */
+        public boolean isStale() {
+            return stale;
+        }
+
+        public int getBidDepth() {
+            return bidPrices.length;
+        }
+
+        public int getAskDepth() {
+            return askPrices.length;
+        }
+
+        public long getBidPrice(final int level) {
+            return bidPrices[level];
+        }
+
+        public long getBidQuantity(final int level) {
+            return bidQuantities[level];
+        }
+
+        public long getAskPrice(final int level) {
+            return askPrices[level];
+        }
+
+        public long getAskQuantity(final int level) {
+            return askQuantities[level];
+        }
+
+        public boolean hasBid() {
+            return bidPrices.length > 0;
+        }
+
+        public boolean hasAsk() {
+            return askPrices.length > 0;
+        }
+
+        /**
+         * @return Лучшая цена покупки. Перед вызовом нужно проверить {@link #hasBid()}.
+         */
+        public long getBestBid() {
+            return bidPrices[0];
+        }
+
+        /**
+         * @return Лучшая цена продажи. Перед вызовом нужно проверить {@link #hasAsk()}.
+         */
+        public long getBestAsk() {
+            return askPrices[0];
+        }
+
+        /**
+         * @return Разница между лучшими ценами продажи и покупки.
+         */
+        public long getSpread() {
+            return askPrices[0] - bidPrices[0];
+        }
+
+        /**
+         * @return Середина между лучшими ценами в единицах цены книги.
+         */
+        public double getMid() {
+            return (askPrices[0] + bidPrices[0]) * 0.5;
+        }
+
+        boolean isCrossed() {
+            return hasBid() && hasAsk() && bidPrices[0] >= askPrices[0];
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot(figi = " + figi +
+                    ", source = " + source +
+                    ", stale = " + stale +
+                    ", bidDepth = " + bidPrices.length +
+                    ", askDepth = " + askPrices.length +
+                    ")";
+        }
+    }
+}
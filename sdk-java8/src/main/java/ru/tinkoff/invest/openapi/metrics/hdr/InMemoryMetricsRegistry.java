@@ -0,0 +1,164 @@
+package ru.tinkoff.invest.openapi.metrics.hdr;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.metrics.Counter;
+import ru.tinkoff.invest.openapi.metrics.Histogram;
+import ru.tinkoff.invest.openapi.metrics.MeterId;
+import ru.tinkoff.invest.openapi.metrics.MetricsRegistry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Реестр, накапливающий метрики в памяти процесса, откуда их можно периодически забирать
+ * снимками и выгружать.
+ *
+ * Гистограммы построены на HdrHistogram с точностью в три значащие цифры: запись не
+ * блокируется и не выделяет память, пока значения укладываются в уже покрытый диапазон, а
+ * снимок содержит полное распределение, которое можно выгрузить как есть.
+ */
+public final class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentHashMap<MeterId, Object> meters = new ConcurrentHashMap<>();
+
+    @NotNull
+    @Override
+    public Counter counter(@NotNull final String name, @NotNull final String... tags) {
+        final Object meter = meters.computeIfAbsent(new MeterId(name, tags), id -> new AdderCounter());
+        if (!(meter instanceof AdderCounter)) {
+            throw new IllegalArgumentException("Метрика " + name + " уже зарегистрирована как гистограмма");
+        }
+        return (Counter) meter;
+    }
+
+    @NotNull
+    @Override
+    public Histogram histogram(@NotNull final String name, @NotNull final String... tags) {
+        final Object meter = meters.computeIfAbsent(new MeterId(name, tags), id -> new HdrHistogram());
+        if (!(meter instanceof HdrHistogram)) {
+            throw new IllegalArgumentException("Метрика " + name + " уже зарегистрирована как счётчик");
+        }
+        return (Histogram) meter;
+    }
+
+    /**
+     * @return Текущие значения счётчиков.
+     */
+    @NotNull
+    public Map<MeterId, Long> getCounters() {
+        final Map<MeterId, Long> result = new LinkedHashMap<>();
+        for (final Map.Entry<MeterId, Object> entry : meters.entrySet()) {
+            if (entry.getValue() instanceof AdderCounter) {
+                result.put(entry.getKey(), ((AdderCounter) entry.getValue()).value.sum());
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return Снимки гистограмм с момента их создания.
+     */
+    @NotNull
+    public Map<MeterId, HistogramSnapshot> getHistograms() {
+        final Map<MeterId, HistogramSnapshot> result = new LinkedHashMap<>();
+        for (final Map.Entry<MeterId, Object> entry : meters.entrySet()) {
+            if (entry.getValue() instanceof HdrHistogram) {
+                result.put(entry.getKey(), ((HdrHistogram) entry.getValue()).snapshot());
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Снимок гистограммы.
+     */
+    public static final class HistogramSnapshot {
+        private final long sum;
+        private final org.HdrHistogram.Histogram distribution;
+
+        HistogramSnapshot(final long sum, @NotNull final org.HdrHistogram.Histogram distribution) {
+            this.sum = sum;
+            this.distribution = distribution;
+        }
+
+        public long getCount() {
+            return distribution.getTotalCount();
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return distribution.getMaxValue();
+        }
+
+        public double getMean() {
+            return distribution.getMean();
+        }
+
+        /**
+         * @param percentile Перцентиль от 0 до 100.
+         *
+         * @return Значение перцентиля с точностью гистограммы.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            return distribution.getValueAtPercentile(percentile);
+        }
+
+        /**
+         * @return Копия распределения, например для
+         * {@link org.HdrHistogram.AbstractHistogram#outputPercentileDistribution(java.io.PrintStream, Double)}
+         * или записи в журнал гистограмм.
+         */
+        @NotNull
+        public org.HdrHistogram.Histogram getDistribution() {
+            return distribution;
+        }
+
+        @Override
+        public String toString() {
+            return "HistogramSnapshot(count = " + getCount() +
+                    ", mean = " + getMean() +
+                    ", p50 = " + getValueAtPercentile(50) +
+                    ", p99 = " + getValueAtPercentile(99) +
+                    ", p999 = " + getValueAtPercentile(99.9) +
+                    ", max = " + getMax() +
+                    ")";
+        }
+    }
+
+    private static final class AdderCounter implements Counter {
+        final LongAdder value = new LongAdder();
+
+        @Override
+        public void increment() {
+            value.increment();
+        }
+
+        @Override
+        public void increment(final long amount) {
+            value.add(amount);
+        }
+    }
+
+    private static final class HdrHistogram implements Histogram {
+        final ConcurrentHistogram distribution = new ConcurrentHistogram(3);
+        final LongAdder sum = new LongAdder();
+
+        @Override
+        public void record(final long value) {
+            final long v = Math.max(0, value);
+            distribution.recordValue(v);
+            sum.add(v);
+        }
+
+        HistogramSnapshot snapshot() {
+            return new HistogramSnapshot(sum.sum(), distribution.copy());
+        }
+    }
+}
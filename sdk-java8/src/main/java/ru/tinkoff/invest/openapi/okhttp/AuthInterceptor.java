@@ -0,0 +1,26 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Callback;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Добавление авторизационного заголовка ко всем запросам.
+ */
+final class AuthInterceptor implements RestInterceptor {
+
+    private final String authToken;
+
+    AuthInterceptor(@NotNull final String authToken) {
+        this.authToken = authToken;
+    }
+
+    @Override
+    public void intercept(@NotNull final RestCall call,
+                          @NotNull final Chain chain,
+                          @NotNull final Callback callback) {
+        final RestCall authorized = call.withRequest(call.getRequest().newBuilder()
+                .header("Authorization", authToken)
+                .build());
+        chain.proceed(authorized, callback);
+    }
+}
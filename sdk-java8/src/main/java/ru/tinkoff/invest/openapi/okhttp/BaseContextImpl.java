@@ -1,15 +1,21 @@
 package ru.tinkoff.invest.openapi.okhttp;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
+import okhttp3.MediaType;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
 import ru.tinkoff.invest.openapi.Context;
 import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
 import ru.tinkoff.invest.openapi.exceptions.WrongTokenException;
@@ -20,6 +26,10 @@ import ru.tinkoff.invest.openapi.model.rest.ErrorPayload;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public abstract class BaseContextImpl implements Context {
 
@@ -30,34 +40,180 @@ public abstract class BaseContextImpl implements Context {
             new TypeReference<Empty>() {
             };
 
-    protected final String authToken;
+    protected static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json");
+
     protected final HttpUrl finalUrl;
-    protected final OkHttpClient client;
+    protected final RestExecutor executor;
+    protected final RequestScheduler.EndpointGroup endpointGroup;
     protected final ObjectMapper mapper;
     protected final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(this.getClass());
 
-    public BaseContextImpl(@NotNull final OkHttpClient client,
-                           @NotNull final String url,
-                           @NotNull final String authToken) {
+    public BaseContextImpl(@NotNull final RestExecutor executor,
+                           @NotNull final String url) {
 
-        this.authToken = authToken;
         this.finalUrl = Objects.requireNonNull(HttpUrl.parse(url))
                 .newBuilder()
                 .addPathSegment(this.getPath())
                 .build();
-        this.client = client;
-        this.mapper = new ObjectMapper();
+        this.executor = executor;
+        this.endpointGroup = RequestScheduler.EndpointGroup.forPath(this.getPath());
+        this.mapper = createMapper();
+    }
 
+    /**
+     * @return Настроенный для моделей OpenAPI сериализатор.
+     */
+    @NotNull
+    static ObjectMapper createMapper() {
+        final ObjectMapper mapper = new ObjectMapper();
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         mapper.registerModule(new JavaTimeModule());
         mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+        return mapper;
     }
 
     @NotNull
     protected Request.Builder prepareRequest(@NotNull final HttpUrl requestUrl) {
         return new Request.Builder()
-                .url(requestUrl)
-                .addHeader("Authorization", this.authToken);
+                .url(requestUrl);
+    }
+
+    /**
+     * Подготовка GET-запроса. GET-запросы считаются идемпотентными.
+     *
+     * @param requestUrl Адрес запроса.
+     * @param priority   Приоритет запроса в очереди группы.
+     *
+     * @return Вызов REST API.
+     */
+    @NotNull
+    protected RestCall get(@NotNull final HttpUrl requestUrl,
+                           @NotNull final RequestScheduler.Priority priority) {
+        return new RestCall(prepareRequest(requestUrl).build(), endpointGroup, priority, true);
+    }
+
+    /**
+     * Подготовка POST-запроса.
+     *
+     * @param requestUrl Адрес запроса.
+     * @param body       Тело запроса.
+     * @param priority   Приоритет запроса в очереди группы.
+     * @param idempotent Можно ли повторять запрос, если неизвестно, исполнил ли его сервер.
+     *
+     * @return Вызов REST API.
+     */
+    @NotNull
+    protected RestCall post(@NotNull final HttpUrl requestUrl,
+                            @NotNull final RequestBody body,
+                            @NotNull final RequestScheduler.Priority priority,
+                            final boolean idempotent) {
+        return new RestCall(prepareRequest(requestUrl).post(body).build(), endpointGroup, priority, idempotent);
+    }
+
+    @NotNull
+    protected RequestBody jsonBody(@NotNull final Object value) throws JsonProcessingException {
+        return RequestBody.create(mapper.writeValueAsBytes(value), JSON_MEDIA_TYPE);
+    }
+
+    @NotNull
+    protected RequestBody emptyBody() {
+        return RequestBody.create(new byte[]{});
+    }
+
+    /**
+     * Исполнение вызова с разбором ответа.
+     *
+     * @param call      Вызов.
+     * @param tr        Тип ответа.
+     * @param extractor Извлечение результата из ответа.
+     *
+     * @return Результат вызова.
+     */
+    @NotNull
+    protected <R, T> CompletableFuture<T> execute(@NotNull final RestCall call,
+                                                  @NotNull final TypeReference<R> tr,
+                                                  @NotNull final Function<? super R, ? extends T> extractor) {
+        final ResultFuture<R, T> future = new ResultFuture<>(call, tr, extractor, null, null);
+        executor.enqueue(call, future);
+        return future;
+    }
+
+    /**
+     * Исполнение вызова, для которого ошибка с заданным кодом означает отсутствие результата.
+     *
+     * @param call            Вызов.
+     * @param tr              Тип ответа.
+     * @param extractor       Извлечение результата из ответа.
+     * @param emptyResultCode Код ошибки OpenAPI, означающий отсутствие результата.
+     *
+     * @return Результат вызова.
+     */
+    @NotNull
+    protected <R, T> CompletableFuture<Optional<T>> executeOptional(@NotNull final RestCall call,
+                                                                    @NotNull final TypeReference<R> tr,
+                                                                    @NotNull final Function<? super R, ? extends T> extractor,
+                                                                    @NotNull final String emptyResultCode) {
+        final ResultFuture<R, Optional<T>> future = new ResultFuture<>(
+                call,
+                tr,
+                result -> Optional.of(extractor.apply(result)),
+                emptyResultCode,
+                Optional.empty()
+        );
+        executor.enqueue(call, future);
+        return future;
+    }
+
+    /**
+     * Исполнение вызова, ответ на который не содержит данных.
+     *
+     * @param call Вызов.
+     *
+     * @return Признак завершения вызова.
+     */
+    @NotNull
+    protected CompletableFuture<Void> executeEmpty(@NotNull final RestCall call) {
+        return execute(call, emptyPayloadTypeReference, result -> null);
+    }
+
+    @NotNull
+    protected static <T> CompletableFuture<T> failed(@NotNull final Throwable ex) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    /**
+     * Подготовка потокового получения элементов массива из ответа на запрос.
+     *
+     * @param call             Вызов.
+     * @param elementType      Тип элемента массива.
+     * @param emptyResultCodes Коды ошибок OpenAPI, при которых результат считается пустым.
+     * @param path             Путь из имён полей от корня ответа до массива.
+     *
+     * @return Publisher, отправляющий запрос при первом запросе элементов.
+     */
+    @NotNull
+    protected <T> Publisher<T> streamArray(@NotNull final RestCall call,
+                                           @NotNull final Class<T> elementType,
+                                           @NotNull final Set<String> emptyResultCodes,
+                                           @NotNull final String... path) {
+        final RestCall streamed = call.asStreamed();
+        return new JsonArrayPublisher<>(
+                callback -> executor.enqueue(streamed, callback),
+                response -> {
+                    try {
+                        handleResponse(response, emptyPayloadTypeReference);
+                    } catch (OpenApiException ex) {
+                        throw executor.mapError(streamed, ex);
+                    }
+                },
+                emptyResultCodes,
+                mapper,
+                elementType,
+                executor.responseExecutor(),
+                path
+        );
     }
 
     @NotNull
@@ -79,4 +235,52 @@ public abstract class BaseContextImpl implements Context {
         }
     }
 
+    /**
+     * Результат вызова, одновременно служащий обработчиком ответа, чтобы на вызов приходилось
+     * по одному объекту вместо будущего результата и анонимного обработчика.
+     */
+    private final class ResultFuture<R, T> extends CompletableFuture<T> implements Callback {
+        private final RestCall call;
+        private final TypeReference<R> tr;
+        private final Function<? super R, ? extends T> extractor;
+        private final String emptyResultCode;
+        private final T emptyValue;
+
+        ResultFuture(@NotNull final RestCall call,
+                     @NotNull final TypeReference<R> tr,
+                     @NotNull final Function<? super R, ? extends T> extractor,
+                     @Nullable final String emptyResultCode,
+                     @Nullable final T emptyValue) {
+            this.call = call;
+            this.tr = tr;
+            this.extractor = extractor;
+            this.emptyResultCode = emptyResultCode;
+            this.emptyValue = emptyValue;
+        }
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            logger.error("При запросе к REST API произошла ошибка", e);
+            completeExceptionally(e);
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) {
+            try {
+                final R result = handleResponse(response, tr);
+                complete(extractor.apply(result));
+            } catch (OpenApiException ex) {
+                if (ex.getCode().equals(emptyResultCode)) {
+                    complete(emptyValue);
+                } else {
+                    completeExceptionally(executor.mapError(this.call, ex));
+                }
+            } catch (Exception ex) {
+                completeExceptionally(ex);
+            } finally {
+                response.close();
+            }
+        }
+    }
+
 }
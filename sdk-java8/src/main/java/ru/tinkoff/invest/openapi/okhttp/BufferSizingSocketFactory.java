@@ -0,0 +1,72 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Фабрика сокетов, задающая размеры буферов отправки и приёма.
+ *
+ * OkHttp создаёт неподключённый сокет и подключает его сам, так что размеры буферов
+ * успевают повлиять на окно TCP при установке соединения.
+ */
+final class BufferSizingSocketFactory extends SocketFactory {
+
+    private final SocketFactory delegate;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+
+    BufferSizingSocketFactory(@NotNull final SocketFactory delegate,
+                              final int sendBufferSize,
+                              final int receiveBufferSize) {
+        this.delegate = delegate;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(final String host,
+                               final int port,
+                               final InetAddress localHost,
+                               final int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress host, final int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress address,
+                               final int port,
+                               final InetAddress localAddress,
+                               final int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    @NotNull
+    private Socket configure(@NotNull final Socket socket) throws SocketException {
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        return socket;
+    }
+}
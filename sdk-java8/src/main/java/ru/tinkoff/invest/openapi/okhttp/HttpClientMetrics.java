@@ -0,0 +1,74 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+/**
+ * Снимок состояния диспетчера и пула соединений HTTP-клиента.
+ */
+public final class HttpClientMetrics {
+    private final int queuedCalls;
+    private final int runningCalls;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final int connections;
+    private final int idleConnections;
+
+    HttpClientMetrics(final int queuedCalls,
+                      final int runningCalls,
+                      final int maxRequests,
+                      final int maxRequestsPerHost,
+                      final int connections,
+                      final int idleConnections) {
+        this.queuedCalls = queuedCalls;
+        this.runningCalls = runningCalls;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.connections = connections;
+        this.idleConnections = idleConnections;
+    }
+
+    /**
+     * @return Количество запросов, ожидающих в очереди диспетчера из-за его лимитов.
+     */
+    public int getQueuedCalls() {
+        return queuedCalls;
+    }
+
+    /**
+     * @return Количество исполняемых запросов.
+     */
+    public int getRunningCalls() {
+        return runningCalls;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * @return Количество открытых соединений в пуле.
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return Количество простаивающих соединений в пуле.
+     */
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientMetrics(queuedCalls = " + queuedCalls +
+                ", runningCalls = " + runningCalls +
+                ", maxRequests = " + maxRequests +
+                ", maxRequestsPerHost = " + maxRequestsPerHost +
+                ", connections = " + connections +
+                ", idleConnections = " + idleConnections +
+                ")";
+    }
+}
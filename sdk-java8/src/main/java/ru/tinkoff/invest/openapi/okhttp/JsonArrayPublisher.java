@@ -0,0 +1,276 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Publisher элементов массива, вложенного в JSON-ответ REST API.
+ *
+ * Запрос отправляется при первом запросе элементов подписчиком. Элементы массива разбираются
+ * прямо из потока тела ответа и только в пределах запрошенного подписчиком количества, так что
+ * в памяти одновременно находится лишь один элемент, а не весь ответ.
+ *
+ * Каждая подписка выполняет собственный запрос.
+ *
+ * @param <T> Тип элемента массива.
+ */
+final class JsonArrayPublisher<T> implements Publisher<T> {
+
+    /**
+     * Обработка ответа с кодом, отличным от 200. Должна выбросить соответствующее исключение.
+     */
+    interface ErrorHandler {
+        void handle(@NotNull Response response) throws IOException, OpenApiException;
+    }
+
+    private final Consumer<Callback> starter;
+    private final ErrorHandler errorHandler;
+    private final Set<String> emptyResultCodes;
+    private final ObjectMapper mapper;
+    private final Class<T> elementType;
+    private final String[] path;
+    private final Executor executor;
+
+    /**
+     * @param starter          Отправка запроса с заданным обработчиком.
+     * @param errorHandler     Обработчик ошибочных ответов.
+     * @param emptyResultCodes Коды ошибок OpenAPI, означающие пустой результат.
+     * @param mapper           Настроенный ObjectMapper.
+     * @param elementType      Тип элемента массива.
+     * @param executor         Исполнитель, на котором читается тело ответа.
+     * @param path             Путь из имён полей от корня ответа до массива.
+     */
+    JsonArrayPublisher(@NotNull final Consumer<Callback> starter,
+                       @NotNull final ErrorHandler errorHandler,
+                       @NotNull final Set<String> emptyResultCodes,
+                       @NotNull final ObjectMapper mapper,
+                       @NotNull final Class<T> elementType,
+                       @NotNull final Executor executor,
+                       @NotNull final String... path) {
+        this.starter = starter;
+        this.errorHandler = errorHandler;
+        this.emptyResultCodes = emptyResultCodes;
+        this.mapper = mapper;
+        this.elementType = elementType;
+        this.executor = executor;
+        this.path = path;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        final ArraySubscription subscription = new ArraySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    // Перемещает парсер на начало искомого массива. Возвращает false, если массива в ответе нет.
+    private boolean moveToArray(@NotNull final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        int depth = 0;
+        while (depth < path.length) {
+            final JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_OBJECT) {
+                return false;
+            }
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (path[depth].equals(field)) {
+                final boolean last = depth == path.length - 1;
+                if (last && value == JsonToken.START_ARRAY) {
+                    return true;
+                } else if (!last && value == JsonToken.START_OBJECT) {
+                    depth++;
+                } else {
+                    return false;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    private final class ArraySubscription implements Subscription, Callback, Runnable {
+        final Subscriber<? super T> subscriber;
+        final AtomicLong demand = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicBoolean started = new AtomicBoolean(false);
+
+        volatile boolean cancelled = false;
+        volatile boolean ready = false;
+        volatile Throwable error;
+        volatile Response response;
+        volatile JsonParser parser;
+
+        ArraySubscription(final Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n < 1) {
+                error = new IllegalArgumentException(subscriber + " violated the Reactive Streams rule 3.9 by requesting a non-positive number of elements.");
+                schedule();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, next));
+
+            if (started.compareAndSet(false, true)) {
+                starter.accept(this);
+            } else {
+                schedule();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            error = e;
+            ready = true;
+            schedule();
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) {
+            this.response = response;
+            try {
+                if (response.code() != 200) {
+                    errorHandler.handle(response);
+                    throw new IOException("Неожиданный код ответа " + response.code());
+                }
+                final JsonParser jsonParser = mapper.getFactory()
+                        .createParser(Objects.requireNonNull(response.body()).byteStream());
+                if (moveToArray(jsonParser)) {
+                    this.parser = jsonParser;
+                } else {
+                    jsonParser.close();
+                }
+            } catch (OpenApiException ex) {
+                if (!emptyResultCodes.contains(ex.getCode())) {
+                    error = ex;
+                }
+            } catch (Exception ex) {
+                error = ex;
+            }
+            ready = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (Throwable t) {
+                    cancelled = true;
+                    release();
+                    subscriber.onError(new IllegalStateException("Publisher terminated due to unavailable Executor.", t));
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (cancelled) {
+                    release();
+                } else if (error != null) {
+                    terminate();
+                    subscriber.onError(error);
+                } else if (ready) {
+                    drain();
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void drain() {
+            final JsonParser jsonParser = parser;
+            try {
+                while (!cancelled && demand.get() > 0) {
+                    final JsonToken token = jsonParser == null ? JsonToken.END_ARRAY : jsonParser.nextToken();
+                    if (token != JsonToken.START_OBJECT) {
+                        terminate();
+                        if (token == JsonToken.END_ARRAY) {
+                            subscriber.onComplete();
+                        } else {
+                            subscriber.onError(new IOException("Неожиданный элемент массива в ответе: " + token));
+                        }
+                        return;
+                    }
+                    final T element = mapper.readValue(jsonParser, elementType);
+                    demand.decrementAndGet();
+                    subscriber.onNext(element);
+                }
+                if (jsonParser == null && !cancelled) {
+                    // Пустой результат завершаем, не дожидаясь запроса элементов.
+                    terminate();
+                    subscriber.onComplete();
+                }
+            } catch (IOException ex) {
+                terminate();
+                subscriber.onError(ex);
+            } catch (Throwable t) {
+                // Сюда попадаем, только если подписчик выбросил исключение из onNext, что нарушает правило 2.13.
+                terminate();
+                (new IllegalStateException(subscriber + " violated the Reactive Streams rule 2.13 by throwing an exception from onNext or onComplete.", t)).printStackTrace(System.err);
+            }
+        }
+
+        private void terminate() {
+            cancelled = true;
+            release();
+        }
+
+        private void release() {
+            final JsonParser jsonParser = parser;
+            parser = null;
+            if (jsonParser != null) {
+                try {
+                    jsonParser.close();
+                } catch (IOException ignored) {
+                    // Тело ответа закроется ниже.
+                }
+            }
+            final Response currentResponse = response;
+            response = null;
+            if (currentResponse != null) {
+                currentResponse.close();
+            }
+        }
+    }
+}
@@ -2,15 +2,15 @@ package ru.tinkoff.invest.openapi.okhttp;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import okhttp3.*;
+import okhttp3.HttpUrl;
 import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Publisher;
 import ru.tinkoff.invest.openapi.MarketContext;
-import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
 import ru.tinkoff.invest.openapi.model.rest.*;
 
-import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -32,10 +32,9 @@ final class MarketContextImpl extends BaseContextImpl implements MarketContext {
             new TypeReference<SearchMarketInstrumentResponse>() {
             };
 
-    public MarketContextImpl(@NotNull final OkHttpClient client,
-                             @NotNull final String url,
-                             @NotNull final String authToken) {
-        super(client, url, authToken);
+    public MarketContextImpl(@NotNull final RestExecutor executor,
+                             @NotNull final String url) {
+        super(executor, url);
     }
 
     @NotNull
@@ -47,164 +46,66 @@ final class MarketContextImpl extends BaseContextImpl implements MarketContext {
     @Override
     @NotNull
     public CompletableFuture<MarketInstrumentList> getMarketStocks() {
-        final CompletableFuture<MarketInstrumentList> future = new CompletableFuture<>();
-        final HttpUrl requestUrl = finalUrl.newBuilder()
-                .addPathSegment("stocks")
-                .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final MarketInstrumentListResponse result = handleResponse(response, instrumentsListTypeReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return getInstruments("stocks");
     }
 
     @Override
     @NotNull
     public CompletableFuture<MarketInstrumentList> getMarketBonds() {
-        final CompletableFuture<MarketInstrumentList> future = new CompletableFuture<>();
-        final HttpUrl requestUrl = finalUrl.newBuilder()
-                .addPathSegment("bonds")
-                .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final MarketInstrumentListResponse result = handleResponse(response, instrumentsListTypeReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return getInstruments("bonds");
     }
 
     @Override
     @NotNull
     public CompletableFuture<MarketInstrumentList> getMarketEtfs() {
-        final CompletableFuture<MarketInstrumentList> future = new CompletableFuture<>();
-        final HttpUrl requestUrl = finalUrl.newBuilder()
-                .addPathSegment("etfs")
-                .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final MarketInstrumentListResponse result = handleResponse(response, instrumentsListTypeReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return getInstruments("etfs");
     }
 
     @Override
     @NotNull
     public CompletableFuture<MarketInstrumentList> getMarketCurrencies() {
-        final CompletableFuture<MarketInstrumentList> future = new CompletableFuture<>();
+        return getInstruments("currencies");
+    }
+
+    @Override
+    @NotNull
+    public Publisher<MarketInstrument> streamMarketInstruments(@NotNull final InstrumentType type) {
+        final String segment;
+        switch (type) {
+            case STOCK:
+                segment = "stocks";
+                break;
+            case BOND:
+                segment = "bonds";
+                break;
+            case ETF:
+                segment = "etfs";
+                break;
+            case CURRENCY:
+                segment = "currencies";
+                break;
+            default:
+                throw new IllegalArgumentException("Неподдерживаемый тип инструментов: " + type);
+        }
         final HttpUrl requestUrl = finalUrl.newBuilder()
-                .addPathSegment("currencies")
-                .build();
-        final Request request = prepareRequest(requestUrl)
+                .addPathSegment(segment)
                 .build();
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final MarketInstrumentListResponse result = handleResponse(response, instrumentsListTypeReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return streamArray(get(requestUrl, RequestScheduler.Priority.NORMAL), MarketInstrument.class,
+                Collections.emptySet(), "payload", "instruments");
     }
 
     @Override
     @NotNull
     public CompletableFuture<Optional<Orderbook>> getMarketOrderbook(@NotNull final String figi, final int depth) {
-        final CompletableFuture<Optional<Orderbook>> future = new CompletableFuture<>();
         final HttpUrl requestUrl = finalUrl.newBuilder()
                 .addPathSegment("orderbook")
                 .addQueryParameter("figi", figi)
                 .addQueryParameter("depth", Integer.toString(depth))
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
 
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final OrderbookResponse result = handleResponse(response, orderbookTypeReference);
-                    future.complete(Optional.of(result.getPayload()));
-                } catch (OpenApiException ex) {
-                    if (ex.getCode().equals(INSTRUMENT_ERROR_MESSAGE_CODE)) {
-                        future.complete(Optional.empty());
-                    } else {
-                        future.completeExceptionally(ex);
-                    }
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return executeOptional(get(requestUrl, RequestScheduler.Priority.NORMAL),
+                orderbookTypeReference, OrderbookResponse::getPayload, INSTRUMENT_ERROR_MESSAGE_CODE);
     }
 
     @Override
@@ -213,124 +114,85 @@ final class MarketContextImpl extends BaseContextImpl implements MarketContext {
                                                                  @NotNull final OffsetDateTime from,
                                                                  @NotNull final OffsetDateTime to,
                                                                  @NotNull final CandleResolution interval) {
-        final CompletableFuture<Optional<Candles>> future = new CompletableFuture<>();
-        String renderedInterval;
+        final HttpUrl requestUrl;
         try {
-            renderedInterval = mapper.writeValueAsString(interval);
-            renderedInterval = renderedInterval.substring(1, renderedInterval.length() - 1);
+            requestUrl = candlesUrl(figi, from, to, interval);
         } catch (JsonProcessingException ex) {
-            future.completeExceptionally(ex);
-            return future;
+            return failed(ex);
         }
 
-        final HttpUrl requestUrl = finalUrl.newBuilder()
-                .addPathSegment("candles")
-                .addQueryParameter("figi", figi)
-                .addQueryParameter("from", from.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
-                .addQueryParameter("to", to.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
-                .addQueryParameter("interval", renderedInterval)
-                .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
+        return executeOptional(get(requestUrl, RequestScheduler.Priority.LOW),
+                historicalCandlesTypeReference, CandlesResponse::getPayload, INSTRUMENT_ERROR_MESSAGE_CODE);
+    }
 
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final CandlesResponse result =
-                            handleResponse(response, historicalCandlesTypeReference);
-                    future.complete(Optional.of(result.getPayload()));
-                } catch (OpenApiException ex) {
-                    if (ex.getCode().equals(INSTRUMENT_ERROR_MESSAGE_CODE)) {
-                        future.complete(Optional.empty());
-                    } else {
-                        future.completeExceptionally(ex);
-                    }
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
+    @Override
+    @NotNull
+    public Publisher<Candle> streamMarketCandles(@NotNull final String figi,
+                                                 @NotNull final OffsetDateTime from,
+                                                 @NotNull final OffsetDateTime to,
+                                                 @NotNull final CandleResolution interval) {
+        final HttpUrl requestUrl;
+        try {
+            requestUrl = candlesUrl(figi, from, to, interval);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Не удалось сериализовать интервал свечей " + interval, ex);
+        }
 
-        return future;
+        return streamArray(get(requestUrl, RequestScheduler.Priority.LOW), Candle.class,
+                Collections.singleton(INSTRUMENT_ERROR_MESSAGE_CODE), "payload", "candles");
     }
 
     @Override
     @NotNull
     public CompletableFuture<MarketInstrumentList> searchMarketInstrumentsByTicker(@NotNull final String ticker) {
-        final CompletableFuture<MarketInstrumentList> future = new CompletableFuture<>();
         final HttpUrl requestUrl = finalUrl.newBuilder()
                 .addPathSegment("search")
                 .addPathSegment("by-ticker")
                 .addQueryParameter("ticker", ticker)
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
 
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final MarketInstrumentListResponse result = handleResponse(response, instrumentsListTypeReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return execute(get(requestUrl, RequestScheduler.Priority.NORMAL),
+                instrumentsListTypeReference, MarketInstrumentListResponse::getPayload);
     }
 
     @Override
     @NotNull
     public CompletableFuture<Optional<SearchMarketInstrument>> searchMarketInstrumentByFigi(@NotNull final String figi) {
-        final CompletableFuture<Optional<SearchMarketInstrument>> future = new CompletableFuture<>();
         final HttpUrl requestUrl = finalUrl.newBuilder()
                 .addPathSegment("search")
                 .addPathSegment("by-figi")
                 .addQueryParameter("figi", figi)
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
+        return executeOptional(get(requestUrl, RequestScheduler.Priority.NORMAL),
+                instrumentTypeReference, SearchMarketInstrumentResponse::getPayload, NOT_FOUND_MESSAGE_CODE);
+    }
+
+    @NotNull
+    private CompletableFuture<MarketInstrumentList> getInstruments(@NotNull final String segment) {
+        final HttpUrl requestUrl = finalUrl.newBuilder()
+                .addPathSegment(segment)
+                .build();
 
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final SearchMarketInstrumentResponse result = handleResponse(response, instrumentTypeReference);
-                    future.complete(Optional.of(result.getPayload()));
-                } catch (OpenApiException ex) {
-                    if (ex.getCode().equals(NOT_FOUND_MESSAGE_CODE)) {
-                        future.complete(Optional.empty());
-                    } else {
-                        future.completeExceptionally(ex);
-                    }
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
+        return execute(get(requestUrl, RequestScheduler.Priority.NORMAL),
+                instrumentsListTypeReference, MarketInstrumentListResponse::getPayload);
+    }
 
-        return future;
+    @NotNull
+    private HttpUrl candlesUrl(@NotNull final String figi,
+                               @NotNull final OffsetDateTime from,
+                               @NotNull final OffsetDateTime to,
+                               @NotNull final CandleResolution interval) throws JsonProcessingException {
+        String renderedInterval = mapper.writeValueAsString(interval);
+        renderedInterval = renderedInterval.substring(1, renderedInterval.length() - 1);
+
+        return finalUrl.newBuilder()
+                .addPathSegment("candles")
+                .addQueryParameter("figi", figi)
+                .addQueryParameter("from", from.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                .addQueryParameter("to", to.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                .addQueryParameter("interval", renderedInterval)
+                .build();
     }
 
 }
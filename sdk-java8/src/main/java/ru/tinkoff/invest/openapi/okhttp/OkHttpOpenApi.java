@@ -1,18 +1,36 @@
 package ru.tinkoff.invest.openapi.okhttp;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.jetbrains.annotations.NotNull;
 import ru.tinkoff.invest.openapi.*;
+import ru.tinkoff.invest.openapi.journal.FrameJournal;
+import ru.tinkoff.invest.openapi.metrics.MetricsRegistry;
+import ru.tinkoff.invest.openapi.metrics.NoopMetricsRegistry;
 
-import java.time.Duration;
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public final class OkHttpOpenApi extends OpenApi {
 
     private final Executor executor;
+    private final MetricsRegistry metrics;
     private final OkHttpClient client;
+    private final RequestScheduler scheduler;
+    private final RetryPolicy retryPolicy;
+    private final List<RestInterceptor> restInterceptors;
+    private final RestExecutor restExecutor;
     private final String apiUrl;
 
     private SandboxContext sandboxContext;
@@ -21,33 +39,195 @@ public final class OkHttpOpenApi extends OpenApi {
     private MarketContext marketContext;
     private OperationsContext operationsContext;
     private UserContext userContext;
-    private StreamingContext streamingContext;
+    private volatile StreamingContext streamingContext;
+    private FrameJournal streamingJournal;
+    private OkHttpClient orderClient;
+    private OrderChannel orderChannel;
 
+    /**
+     * Создание клиента с дополнительными перехватчиками REST-запросов.
+     *
+     * @param token        Токен авторизации.
+     * @param sandboxMode  Режим "песочницы".
+     * @param executor     Исполнитель обработчиков потоковых событий.
+     * @param interceptors Перехватчики, через которые проходят все REST-запросы до встроенных.
+     */
     public OkHttpOpenApi(@NotNull final String token,
                          final boolean sandboxMode,
-                         @NotNull final Executor executor) {
-        super(token, sandboxMode);
+                         @NotNull final Executor executor,
+                         @NotNull final List<RestInterceptor> interceptors) {
+        this(token, sandboxMode, executor, interceptors, loadConfig());
+    }
+
+    /**
+     * Создание клиента с явно заданной конфигурацией, например указывающей на тестовый сервер.
+     *
+     * @param token        Токен авторизации.
+     * @param sandboxMode  Режим "песочницы".
+     * @param executor     Исполнитель обработчиков потоковых событий.
+     * @param interceptors Перехватчики, через которые проходят все REST-запросы до встроенных.
+     * @param config       Параметры конфигурации.
+     */
+    public OkHttpOpenApi(@NotNull final String token,
+                         final boolean sandboxMode,
+                         @NotNull final Executor executor,
+                         @NotNull final List<RestInterceptor> interceptors,
+                         @NotNull final OpenApiConfig config) {
+        this(token, sandboxMode, executor, interceptors, config, NoopMetricsRegistry.INSTANCE);
+    }
+
+    /**
+     * Создание клиента с записью метрик REST-запросов и Streaming API.
+     *
+     * @param token        Токен авторизации.
+     * @param sandboxMode  Режим "песочницы".
+     * @param executor     Исполнитель обработчиков потоковых событий.
+     * @param interceptors Перехватчики, через которые проходят все REST-запросы до встроенных.
+     * @param config       Параметры конфигурации.
+     * @param metrics      Реестр метрик.
+     */
+    public OkHttpOpenApi(@NotNull final String token,
+                         final boolean sandboxMode,
+                         @NotNull final Executor executor,
+                         @NotNull final List<RestInterceptor> interceptors,
+                         @NotNull final OpenApiConfig config,
+                         @NotNull final MetricsRegistry metrics) {
+        super(token, sandboxMode, config);
         this.executor = executor;
-        this.client = new OkHttpClient.Builder()
-                .pingInterval(Duration.ofSeconds(5))
-                .build();
+        this.metrics = metrics;
+        this.client = buildClient(this.config.httpClient);
+        this.scheduler = new RequestScheduler(Collections.emptyMap(), metrics);
+        this.retryPolicy = new RetryPolicy();
+
+        final List<RestInterceptor> chain = new ArrayList<>(interceptors);
+        chain.add(new SingleFlightInterceptor());
+        chain.add(retryPolicy);
+        chain.add(new AuthInterceptor(authToken));
+        this.restInterceptors = Collections.unmodifiableList(chain);
+        this.restExecutor = new RestExecutor(client, scheduler, restInterceptors, RestExecutor.DEFAULT_ERROR_MAPPER);
         this.apiUrl = sandboxMode ? this.config.sandboxApiUrl : this.config.marketApiUrl;
     }
 
+    public OkHttpOpenApi(@NotNull final String token,
+                         final boolean sandboxMode,
+                         @NotNull final Executor executor) {
+        this(token, sandboxMode, executor, Collections.emptyList());
+    }
+
     public OkHttpOpenApi(@NotNull final String token, final boolean sandboxMode) {
         this(token, sandboxMode, ForkJoinPool.commonPool());
     }
 
+    @NotNull
+    private static OkHttpClient buildClient(@NotNull final HttpClientConfig httpConfig) {
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(httpConfig.maxRequests);
+        dispatcher.setMaxRequestsPerHost(httpConfig.maxRequestsPerHost);
+
+        final List<Protocol> protocols = new ArrayList<>(httpConfig.protocols.size());
+        for (final String protocol : httpConfig.protocols) {
+            try {
+                protocols.add(Protocol.get(protocol));
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Неизвестный протокол в конфигурации HTTP-клиента: " + protocol, ex);
+            }
+        }
+
+        final OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(
+                        httpConfig.maxIdleConnections,
+                        httpConfig.keepAlive.toMillis(),
+                        TimeUnit.MILLISECONDS))
+                .protocols(protocols)
+                .connectTimeout(httpConfig.connectTimeout)
+                .readTimeout(httpConfig.readTimeout)
+                .writeTimeout(httpConfig.writeTimeout)
+                .callTimeout(httpConfig.callTimeout)
+                .pingInterval(httpConfig.pingInterval);
+        if (httpConfig.socketSendBufferSize > 0 || httpConfig.socketReceiveBufferSize > 0) {
+            builder.socketFactory(new BufferSizingSocketFactory(
+                    SocketFactory.getDefault(),
+                    httpConfig.socketSendBufferSize,
+                    httpConfig.socketReceiveBufferSize));
+        }
+        return builder.build();
+    }
+
     @Override
-    public void close() {
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.orderChannel != null) {
+                this.orderChannel.close();
+                this.orderClient.dispatcher().executorService().shutdown();
+            }
+        }
+        this.scheduler.close();
         this.client.dispatcher().executorService().shutdown();
+        if (this.streamingJournal != null) {
+            this.streamingJournal.close();
+        }
+    }
+
+    /**
+     * Получение планировщика REST-запросов, через который проходят все запросы контекстов.
+     *
+     * @return Планировщик запросов.
+     */
+    @NotNull
+    public RequestScheduler getRequestScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Получение политики повторов REST-запросов вместе с её счётчиками.
+     *
+     * @return Политика повторов.
+     */
+    @NotNull
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Получение текущего состояния диспетчера и пула соединений HTTP-клиента. Ненулевая очередь
+     * диспетчера означает, что запросы ждут из-за его лимитов, а не из-за лимитов OpenAPI.
+     *
+     * @return Снимок состояния HTTP-клиента.
+     */
+    @NotNull
+    public HttpClientMetrics getHttpClientMetrics() {
+        final Dispatcher dispatcher = this.client.dispatcher();
+        final ConnectionPool pool = this.client.connectionPool();
+        return new HttpClientMetrics(
+                dispatcher.queuedCallsCount(),
+                dispatcher.runningCallsCount(),
+                dispatcher.getMaxRequests(),
+                dispatcher.getMaxRequestsPerHost(),
+                pool.connectionCount(),
+                pool.idleConnectionCount());
+    }
+
+    /**
+     * Получение состояния клиентов Streaming API: соединений, подписок на них и очередей
+     * событий подписчиков. Снимок собирается без блокировок и не задерживает обработку сообщений.
+     *
+     * @return Снимок состояния Streaming API; без соединений, если он ещё не использовался.
+     */
+    @NotNull
+    public StreamingStatus getStreamingStatus() {
+        final StreamingContext context = this.streamingContext;
+        if (context instanceof StreamingContextImpl) {
+            return ((StreamingContextImpl) context).getStatus();
+        }
+        return new StreamingStatus(Collections.emptyList(), 0);
     }
 
     @NotNull
     public SandboxContext getSandboxContext() {
         if (this.isSandboxMode) {
             if (this.sandboxContext == null) {
-                this.sandboxContext = new SandboxContextImpl(client, apiUrl, authToken);
+                this.sandboxContext = new SandboxContextImpl(restExecutor, apiUrl);
             }
             return this.sandboxContext;
         } else {
@@ -58,15 +238,47 @@ public final class OkHttpOpenApi extends OpenApi {
     @NotNull
     public OrdersContext getOrdersContext() {
         if (this.ordersContext == null) {
-            this.ordersContext = new OrdersContextImpl(client, apiUrl, authToken);
+            this.ordersContext = new OrdersContextImpl(restExecutor, apiUrl);
         }
         return this.ordersContext;
     }
 
+    /**
+     * Получение канала выставления заявок с минимальной задержкой: с отдельными от остальных
+     * запросов диспетчером и пулом соединений, прогретым соединением и шаблонами тел заявок.
+     * Канал реализует {@link OrdersContext} и может использоваться вместо
+     * {@link #getOrdersContext()}.
+     *
+     * @return Канал заявок.
+     */
+    @NotNull
+    public synchronized OrderChannel getOrderChannel() {
+        if (this.orderChannel == null) {
+            final HttpClientConfig httpConfig = this.config.httpClient;
+            final Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(httpConfig.maxRequestsPerHost);
+            dispatcher.setMaxRequestsPerHost(httpConfig.maxRequestsPerHost);
+            this.orderClient = client.newBuilder()
+                    .dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(
+                            httpConfig.maxRequestsPerHost,
+                            httpConfig.keepAlive.toMillis(),
+                            TimeUnit.MILLISECONDS))
+                    .build();
+            this.orderChannel = new OrderChannel(
+                    new RestExecutor(orderClient, scheduler, restInterceptors, RestExecutor.DEFAULT_ERROR_MAPPER),
+                    scheduler,
+                    apiUrl,
+                    httpConfig.keepAlive.dividedBy(2),
+                    metrics);
+        }
+        return this.orderChannel;
+    }
+
     @NotNull
     public PortfolioContext getPortfolioContext() {
         if (Objects.isNull(this.portfolioContext)) {
-            this.portfolioContext = new PortfolioContextImpl(client, apiUrl, authToken);
+            this.portfolioContext = new PortfolioContextImpl(restExecutor, apiUrl);
         }
         return this.portfolioContext;
     }
@@ -74,7 +286,7 @@ public final class OkHttpOpenApi extends OpenApi {
     @NotNull
     public MarketContext getMarketContext() {
         if (this.marketContext == null) {
-            this.marketContext = new MarketContextImpl(client, apiUrl, authToken);
+            this.marketContext = new MarketContextImpl(restExecutor, apiUrl);
         }
         return this.marketContext;
     }
@@ -82,7 +294,7 @@ public final class OkHttpOpenApi extends OpenApi {
     @NotNull
     public OperationsContext getOperationsContext() {
         if (this.operationsContext == null) {
-            this.operationsContext = new OperationsContextImpl(client, apiUrl, authToken);
+            this.operationsContext = new OperationsContextImpl(restExecutor, apiUrl);
         }
         return this.operationsContext;
     }
@@ -90,7 +302,7 @@ public final class OkHttpOpenApi extends OpenApi {
     @NotNull
     public UserContext getUserContext() {
         if (this.userContext == null) {
-            this.userContext = new UserContextImpl(client, apiUrl, authToken);
+            this.userContext = new UserContextImpl(restExecutor, apiUrl);
         }
         return this.userContext;
     }
@@ -98,12 +310,24 @@ public final class OkHttpOpenApi extends OpenApi {
     @NotNull
     public StreamingContext getStreamingContext() {
         if (this.streamingContext == null) {
+            final StreamingJournalConfig journalConfig = this.config.streamingJournal;
+            if (journalConfig.isEnabled()) {
+                try {
+                    this.streamingJournal = new FrameJournal(
+                            Paths.get(journalConfig.directory),
+                            journalConfig.segmentSize);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Не удалось открыть журнал Streaming API", ex);
+                }
+            }
             this.streamingContext = new StreamingContextImpl(
                     client,
                     this.config.streamingUrl,
                     authToken,
                     this.config.streamingParallelism,
-                    executor
+                    executor,
+                    streamingJournal,
+                    metrics
             );
         }
         return this.streamingContext;
@@ -1,15 +1,16 @@
 package ru.tinkoff.invest.openapi.okhttp;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import okhttp3.*;
+import okhttp3.HttpUrl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
 import ru.tinkoff.invest.openapi.OperationsContext;
 import ru.tinkoff.invest.openapi.model.rest.*;
 
-import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
@@ -19,10 +20,9 @@ final class OperationsContextImpl extends BaseContextImpl implements OperationsC
             new TypeReference<OperationsResponse>() {
             };
 
-    public OperationsContextImpl(@NotNull final OkHttpClient client,
-                                 @NotNull final String url,
-                                 @NotNull final String authToken) {
-        super(client, url, authToken);
+    public OperationsContextImpl(@NotNull final RestExecutor executor,
+                                 @NotNull final String url) {
+        super(executor, url);
     }
 
     @NotNull
@@ -37,38 +37,34 @@ final class OperationsContextImpl extends BaseContextImpl implements OperationsC
                                                        @NotNull final OffsetDateTime to,
                                                        @Nullable final String figi,
                                                        @Nullable final String brokerAccountId) {
-        final CompletableFuture<Operations> future = new CompletableFuture<>();
+        return execute(get(operationsUrl(from, to, figi, brokerAccountId), RequestScheduler.Priority.LOW),
+                operationsListTypeReference, OperationsResponse::getPayload);
+    }
+
+    @Override
+    @NotNull
+    public Publisher<Operation> streamOperations(@NotNull final OffsetDateTime from,
+                                                 @NotNull final OffsetDateTime to,
+                                                 @Nullable final String figi,
+                                                 @Nullable final String brokerAccountId) {
+        return streamArray(get(operationsUrl(from, to, figi, brokerAccountId), RequestScheduler.Priority.LOW),
+                Operation.class, Collections.emptySet(), "payload", "operations");
+    }
+
+    @NotNull
+    private HttpUrl operationsUrl(@NotNull final OffsetDateTime from,
+                                  @NotNull final OffsetDateTime to,
+                                  @Nullable final String figi,
+                                  @Nullable final String brokerAccountId) {
         HttpUrl.Builder builder = finalUrl.newBuilder();
         if (Objects.nonNull(figi) && !figi.isEmpty())
             builder.addQueryParameter("figi", figi);
         if (Objects.nonNull(brokerAccountId) && !brokerAccountId.isEmpty())
             builder.addQueryParameter("brokerAccountId", brokerAccountId);
-        final HttpUrl requestUrl = builder
+        return builder
                 .addQueryParameter("from", from.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
                 .addQueryParameter("to", to.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull final Call call, @NotNull final Response response) {
-                try {
-                    final OperationsResponse result = handleResponse(response, operationsListTypeReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
     }
 
 }
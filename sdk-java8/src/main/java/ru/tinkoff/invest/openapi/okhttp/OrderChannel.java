@@ -0,0 +1,418 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.HttpUrl;
+import okhttp3.RequestBody;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.OrdersContext;
+import ru.tinkoff.invest.openapi.metrics.Histogram;
+import ru.tinkoff.invest.openapi.metrics.MetricsRegistry;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderResponse;
+import ru.tinkoff.invest.openapi.model.rest.MarketOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.MarketOrderResponse;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.OrdersResponse;
+import ru.tinkoff.invest.openapi.model.rest.PlacedLimitOrder;
+import ru.tinkoff.invest.openapi.model.rest.PlacedMarketOrder;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Канал выставления заявок с минимальной задержкой.
+ *
+ * Запросы канала идут через собственный HTTP-клиент с отдельными диспетчером и пулом
+ * соединений, поэтому не ждут в очереди диспетчера за выкачиванием свечей и другими массовыми
+ * запросами. Пока по каналу нет заявок, он раз в {@code warmInterval} отправляет лёгкий запрос
+ * списка счетов, чтобы соединение не закрылось по простою и первая заявка не платила за TCP и TLS.
+ * Лимит OpenAPI на группу orders общий, поэтому запросы канала по-прежнему проходят через
+ * {@link RequestScheduler}: выставление и отзыв заявок - с высшим приоритетом, список заявок - с
+ * обычным, чтобы опрос не обгонял заявки в очереди группы.
+ *
+ * Тела заявок не сериализуются Jackson на каждый вызов: JSON для каждого направления сделки
+ * собирается один раз, а при выставлении в готовые байты подставляются количество лотов и цена.
+ * Адреса запросов кэшируются по FIGI и счёту. Время от вызова до ответа каждой заявки пишется в
+ * гистограмму {@code openapi.orders.submit.latency}.
+ */
+public final class OrderChannel extends BaseContextImpl implements OrdersContext, Closeable {
+
+    private static final TypeReference<OrdersResponse> listOrderTypeReference =
+            new TypeReference<OrdersResponse>() {};
+    private static final TypeReference<LimitOrderResponse> placedLimitOrderTypeReference =
+            new TypeReference<LimitOrderResponse>() {};
+    private static final TypeReference<MarketOrderResponse> placedMarketOrderTypeReference =
+            new TypeReference<MarketOrderResponse>() {};
+
+    // Значения-метки, по которым в сериализованном шаблоне находятся места подстановки.
+    private static final int LOTS_MARKER = 1987654321;
+    private static final BigDecimal PRICE_MARKER = new BigDecimal("98765.43210987");
+
+    private final RequestScheduler scheduler;
+    private final UserContextImpl warmUpContext;
+    private final long warmIntervalNanos;
+    private final Map<OperationType, BodyTemplate> limitTemplates = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, BodyTemplate> marketTemplates = new EnumMap<>(OperationType.class);
+    private final Map<String, HttpUrl> limitUrls = new ConcurrentHashMap<>();
+    private final Map<String, HttpUrl> marketUrls = new ConcurrentHashMap<>();
+    private final Histogram limitLatency;
+    private final Histogram marketLatency;
+    private final Histogram cancelLatency;
+
+    private volatile long lastRequestAt;
+    private volatile boolean closed;
+
+    /**
+     * @param executor     Исполнитель REST-запросов поверх выделенного HTTP-клиента.
+     * @param scheduler    Планировщик, через который исполнитель отправляет запросы.
+     * @param url          Адрес OpenAPI.
+     * @param warmInterval Период прогревающих запросов при простое канала.
+     * @param metrics      Реестр метрик.
+     */
+    OrderChannel(@NotNull final RestExecutor executor,
+                 @NotNull final RequestScheduler scheduler,
+                 @NotNull final String url,
+                 @NotNull final Duration warmInterval,
+                 @NotNull final MetricsRegistry metrics) {
+        super(executor, url);
+        this.scheduler = scheduler;
+        this.warmUpContext = new UserContextImpl(executor, url);
+        this.warmIntervalNanos = warmInterval.toNanos();
+        this.limitLatency = metrics.histogram("openapi.orders.submit.latency", "type", "limit");
+        this.marketLatency = metrics.histogram("openapi.orders.submit.latency", "type", "market");
+        this.cancelLatency = metrics.histogram("openapi.orders.submit.latency", "type", "cancel");
+
+        for (final OperationType operation : OperationType.values()) {
+            limitTemplates.put(operation, template(BodyTemplate.limit(mapper, operation)));
+            marketTemplates.put(operation, template(BodyTemplate.market(mapper, operation)));
+        }
+
+        // Первый прогревающий запрос уходит сразу.
+        this.lastRequestAt = System.nanoTime() - warmIntervalNanos;
+        warmUp();
+    }
+
+    @NotNull
+    @Override
+    public String getPath() {
+        return "orders";
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<List<Order>> getOrders(@Nullable final String brokerAccountId) {
+        final HttpUrl.Builder builder = finalUrl.newBuilder();
+        if (brokerAccountId != null && !brokerAccountId.isEmpty())
+            builder.addQueryParameter("brokerAccountId", brokerAccountId);
+
+        return execute(get(builder.build(), RequestScheduler.Priority.NORMAL),
+                listOrderTypeReference, OrdersResponse::getPayload);
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<PlacedLimitOrder> placeLimitOrder(@NotNull final String figi,
+                                                               @NotNull final LimitOrderRequest limitOrder,
+                                                               @Nullable final String brokerAccountId) {
+        final long startedAt = System.nanoTime();
+        lastRequestAt = startedAt;
+        final RequestBody body;
+        try {
+            body = limitTemplates.get(limitOrder.getOperation())
+                    .render(this, limitOrder, limitOrder.getLots(), limitOrder.getPrice());
+        } catch (JsonProcessingException | RuntimeException ex) {
+            return failed(ex);
+        }
+        final HttpUrl requestUrl = limitUrls.computeIfAbsent(urlKey(figi, brokerAccountId),
+                key -> orderUrl("limit-order", figi, brokerAccountId));
+
+        final CompletableFuture<PlacedLimitOrder> result = execute(
+                post(requestUrl, body, RequestScheduler.Priority.HIGH, false),
+                placedLimitOrderTypeReference, LimitOrderResponse::getPayload);
+        result.whenComplete((placed, error) -> recordLatency(limitLatency, startedAt, placed == null ? null : placed.getOrderId()));
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<PlacedMarketOrder> placeMarketOrder(@NotNull final String figi,
+                                                                 @NotNull final MarketOrderRequest marketOrder,
+                                                                 @Nullable final String brokerAccountId) {
+        final long startedAt = System.nanoTime();
+        lastRequestAt = startedAt;
+        final RequestBody body;
+        try {
+            body = marketTemplates.get(marketOrder.getOperation())
+                    .render(this, marketOrder, marketOrder.getLots(), null);
+        } catch (JsonProcessingException | RuntimeException ex) {
+            return failed(ex);
+        }
+        final HttpUrl requestUrl = marketUrls.computeIfAbsent(urlKey(figi, brokerAccountId),
+                key -> orderUrl("market-order", figi, brokerAccountId));
+
+        final CompletableFuture<PlacedMarketOrder> result = execute(
+                post(requestUrl, body, RequestScheduler.Priority.HIGH, false),
+                placedMarketOrderTypeReference, MarketOrderResponse::getPayload);
+        result.whenComplete((placed, error) -> recordLatency(marketLatency, startedAt, placed == null ? null : placed.getOrderId()));
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<Void> cancelOrder(@NotNull final String orderId,
+                                               @Nullable final String brokerAccountId) {
+        final long startedAt = System.nanoTime();
+        lastRequestAt = startedAt;
+        final HttpUrl.Builder builder = finalUrl.newBuilder();
+        if (brokerAccountId != null && !brokerAccountId.isEmpty())
+            builder.addQueryParameter("brokerAccountId", brokerAccountId);
+        final HttpUrl requestUrl = builder
+                .addPathSegment("cancel")
+                .addQueryParameter("orderId", orderId)
+                .build();
+
+        final CompletableFuture<Void> result =
+                executeEmpty(post(requestUrl, emptyBody(), RequestScheduler.Priority.HIGH, false));
+        result.whenComplete((ignored, error) -> recordLatency(cancelLatency, startedAt, orderId));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @NotNull
+    private static String urlKey(@NotNull final String figi, @Nullable final String brokerAccountId) {
+        return brokerAccountId == null ? figi : figi + '/' + brokerAccountId;
+    }
+
+    @NotNull
+    private HttpUrl orderUrl(@NotNull final String segment,
+                             @NotNull final String figi,
+                             @Nullable final String brokerAccountId) {
+        final HttpUrl.Builder builder = finalUrl.newBuilder();
+        if (brokerAccountId != null && !brokerAccountId.isEmpty())
+            builder.addQueryParameter("brokerAccountId", brokerAccountId);
+        return builder
+                .addPathSegment(segment)
+                .addQueryParameter("figi", figi)
+                .build();
+    }
+
+    @NotNull
+    private BodyTemplate template(@NotNull final BodyTemplate template) {
+        if (!template.isCompiled()) {
+            // Модель сериализуется непредвиденным образом: тело будет собираться через Jackson.
+            logger.warn("Шаблон тела заявки не построен, используется сериализация Jackson");
+        }
+        return template;
+    }
+
+    private void recordLatency(@NotNull final Histogram histogram,
+                               final long startedAt,
+                               @Nullable final String orderId) {
+        final long latency = System.nanoTime() - startedAt;
+        histogram.record(latency);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Заявка {} обработана за {} мкс", orderId, latency / 1_000);
+        }
+    }
+
+    private void warmUp() {
+        if (closed) {
+            return;
+        }
+        final long idle = System.nanoTime() - lastRequestAt;
+        final long delay;
+        if (idle >= warmIntervalNanos) {
+            lastRequestAt = System.nanoTime();
+            warmUpContext.getAccounts().whenComplete((accounts, error) -> {
+                if (error != null) {
+                    logger.warn("Прогревающий запрос канала заявок завершился ошибкой", error);
+                }
+            });
+            delay = warmIntervalNanos;
+        } else {
+            delay = warmIntervalNanos - idle;
+        }
+        scheduler.schedule(this::warmUp, delay);
+    }
+
+    /**
+     * Сериализованное тело заявки, разрезанное по местам подстановки лотов и цены.
+     */
+    static final class BodyTemplate {
+        private final byte[][] segments;
+        private final boolean lotsFirst;
+
+        private BodyTemplate(@Nullable final byte[][] segments, final boolean lotsFirst) {
+            this.segments = segments;
+            this.lotsFirst = lotsFirst;
+        }
+
+        @NotNull
+        static BodyTemplate limit(@NotNull final ObjectMapper mapper, @NotNull final OperationType operation) {
+            return build(mapper, new LimitOrderRequest().lots(LOTS_MARKER).operation(operation).price(PRICE_MARKER));
+        }
+
+        @NotNull
+        static BodyTemplate market(@NotNull final ObjectMapper mapper, @NotNull final OperationType operation) {
+            return build(mapper, new MarketOrderRequest().lots(LOTS_MARKER).operation(operation));
+        }
+
+        @NotNull
+        private static BodyTemplate build(@NotNull final ObjectMapper mapper, @NotNull final Object sample) {
+            final byte[] json;
+            try {
+                json = mapper.writeValueAsBytes(sample);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("Не удалось подготовить шаблон тела заявки", ex);
+            }
+            final int lotsAt = indexOf(json, Integer.toString(LOTS_MARKER));
+            final int priceAt = sample instanceof LimitOrderRequest
+                    ? indexOf(json, PRICE_MARKER.toString())
+                    : Integer.MAX_VALUE;
+            if (lotsAt < 0 || priceAt < 0) {
+                return new BodyTemplate(null, true);
+            }
+
+            final int lotsLength = Integer.toString(LOTS_MARKER).length();
+            if (priceAt == Integer.MAX_VALUE) {
+                return new BodyTemplate(new byte[][]{
+                        slice(json, 0, lotsAt),
+                        slice(json, lotsAt + lotsLength, json.length)
+                }, true);
+            }
+            final int priceLength = PRICE_MARKER.toString().length();
+            final boolean lotsFirst = lotsAt < priceAt;
+            final int firstAt = lotsFirst ? lotsAt : priceAt;
+            final int firstEnd = firstAt + (lotsFirst ? lotsLength : priceLength);
+            final int secondAt = lotsFirst ? priceAt : lotsAt;
+            final int secondEnd = secondAt + (lotsFirst ? priceLength : lotsLength);
+            return new BodyTemplate(new byte[][]{
+                    slice(json, 0, firstAt),
+                    slice(json, firstEnd, secondAt),
+                    slice(json, secondEnd, json.length)
+            }, lotsFirst);
+        }
+
+        /**
+         * @return true, если тело собирается из шаблона, а не через Jackson.
+         */
+        boolean isCompiled() {
+            return segments != null;
+        }
+
+        @NotNull
+        RequestBody render(@NotNull final OrderChannel channel,
+                           @NotNull final Object request,
+                           @Nullable final Integer lots,
+                           @Nullable final BigDecimal price) throws JsonProcessingException {
+            final byte[] body = fill(lots, price);
+            return body == null ? channel.jsonBody(request) : RequestBody.create(body, JSON_MEDIA_TYPE);
+        }
+
+        /**
+         * Цена записывается так же, как её пишет Jackson по умолчанию, - через
+         * {@link BigDecimal#toString()}, в том числе в экспоненциальной форме.
+         *
+         * @return Тело заявки или null, если шаблон неприменим и тело нужно сериализовать целиком.
+         */
+        @Nullable
+        byte[] fill(@Nullable final Integer lots, @Nullable final BigDecimal price) {
+            if (segments == null || lots == null || (segments.length == 3) != (price != null)) {
+                return null;
+            }
+
+            final int lotsLength = digits(lots);
+            final byte[] priceBytes = price == null
+                    ? null
+                    : price.toString().getBytes(StandardCharsets.US_ASCII);
+            int length = lotsLength + (priceBytes == null ? 0 : priceBytes.length);
+            for (final byte[] segment : segments) {
+                length += segment.length;
+            }
+
+            final byte[] body = new byte[length];
+            int position = copy(segments[0], body, 0);
+            if (priceBytes == null) {
+                position = writeInt(lots, lotsLength, body, position);
+            } else if (lotsFirst) {
+                position = writeInt(lots, lotsLength, body, position);
+                position = copy(segments[1], body, position);
+                position = copy(priceBytes, body, position);
+            } else {
+                position = copy(priceBytes, body, position);
+                position = copy(segments[1], body, position);
+                position = writeInt(lots, lotsLength, body, position);
+            }
+            copy(segments[segments.length - 1], body, position);
+            return body;
+        }
+
+        private static int indexOf(@NotNull final byte[] json, @NotNull final String marker) {
+            final byte[] needle = marker.getBytes(StandardCharsets.US_ASCII);
+            int found = -1;
+            for (int i = 0; i + needle.length <= json.length; i++) {
+                int j = 0;
+                while (j < needle.length && json[i + j] == needle[j]) {
+                    j++;
+                }
+                if (j == needle.length) {
+                    if (found >= 0) {
+                        return -1;
+                    }
+                    found = i;
+                }
+            }
+            return found;
+        }
+
+        @NotNull
+        private static byte[] slice(@NotNull final byte[] source, final int from, final int to) {
+            final byte[] result = new byte[to - from];
+            System.arraycopy(source, from, result, 0, result.length);
+            return result;
+        }
+
+        private static int copy(@NotNull final byte[] source, @NotNull final byte[] target, final int position) {
+            System.arraycopy(source, 0, target, position, source.length);
+            return position + source.length;
+        }
+
+        private static int digits(final int value) {
+            long remaining = Math.abs((long) value);
+            int count = value < 0 ? 2 : 1;
+            while (remaining >= 10) {
+                remaining /= 10;
+                count++;
+            }
+            return count;
+        }
+
+        private static int writeInt(final int value, final int length, @NotNull final byte[] target, final int position) {
+            long remaining = Math.abs((long) value);
+            int i = position + length - 1;
+            do {
+                target[i--] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining > 0);
+            if (value < 0) {
+                target[position] = '-';
+            }
+            return position + length;
+        }
+    }
+}
@@ -0,0 +1,723 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okio.Timeout;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.metrics.Histogram;
+import ru.tinkoff.invest.openapi.metrics.MetricsRegistry;
+import ru.tinkoff.invest.openapi.metrics.NoopMetricsRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Планировщик REST-запросов к OpenAPI.
+ *
+ * Для каждой группы методов (market, orders, portfolio, operations, ...) ведётся свой
+ * token bucket. Запросы, для которых не нашлось свободного токена, не отклоняются, а ждут
+ * в очереди группы. Очередь разбита на полосы по приоритетам, так что выставление заявок
+ * обгоняет, например, выкачивание истории свечей.
+ */
+public final class RequestScheduler implements Closeable {
+
+    /**
+     * Группа методов OpenAPI, на которую сервер накладывает общий лимит запросов.
+     */
+    public enum EndpointGroup {
+        MARKET("market", 240),
+        ORDERS("orders", 100),
+        PORTFOLIO("portfolio", 120),
+        OPERATIONS("operations", 120),
+        USER("user", 100),
+        SANDBOX("sandbox", 120);
+
+        private final String path;
+        private final int defaultRequestsPerMinute;
+
+        EndpointGroup(final String path, final int defaultRequestsPerMinute) {
+            this.path = path;
+            this.defaultRequestsPerMinute = defaultRequestsPerMinute;
+        }
+
+        @NotNull
+        public String getPath() {
+            return path;
+        }
+
+        public int getDefaultRequestsPerMinute() {
+            return defaultRequestsPerMinute;
+        }
+
+        @NotNull
+        public static EndpointGroup forPath(@NotNull final String path) {
+            for (final EndpointGroup group : values()) {
+                if (group.path.equals(path)) {
+                    return group;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестная группа методов OpenAPI: " + path);
+        }
+    }
+
+    /**
+     * Приоритет запроса. Запросы с более высоким приоритетом покидают очередь группы первыми.
+     */
+    public enum Priority {
+        /**
+         * Торговые операции: выставление и отмена заявок.
+         */
+        HIGH,
+        /**
+         * Обычные запросы состояния.
+         */
+        NORMAL,
+        /**
+         * Фоновые запросы: история свечей, операций.
+         */
+        LOW
+    }
+
+    /**
+     * Снимок метрик по группе методов.
+     */
+    public static final class GroupMetrics {
+        private final EndpointGroup group;
+        private final long submitted;
+        private final long dispatched;
+        private final long throttled;
+        private final long tooManyRequests;
+        private final int queueDepth;
+        private final long totalQueueTimeNanos;
+        private final long maxQueueTimeNanos;
+        private final long completed;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+
+        GroupMetrics(final EndpointGroup group,
+                     final long submitted,
+                     final long dispatched,
+                     final long throttled,
+                     final long tooManyRequests,
+                     final int queueDepth,
+                     final long totalQueueTimeNanos,
+                     final long maxQueueTimeNanos,
+                     final long completed,
+                     final long totalLatencyNanos,
+                     final long maxLatencyNanos) {
+            this.group = group;
+            this.submitted = submitted;
+            this.dispatched = dispatched;
+            this.throttled = throttled;
+            this.tooManyRequests = tooManyRequests;
+            this.queueDepth = queueDepth;
+            this.totalQueueTimeNanos = totalQueueTimeNanos;
+            this.maxQueueTimeNanos = maxQueueTimeNanos;
+            this.completed = completed;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+        }
+
+        @NotNull
+        public EndpointGroup getGroup() {
+            return group;
+        }
+
+        /**
+         * @return Количество запросов, поступивших в планировщик.
+         */
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        /**
+         * @return Количество запросов, отправленных на сервер.
+         */
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        /**
+         * @return Количество запросов, которым пришлось ждать токена в очереди.
+         */
+        public long getThrottled() {
+            return throttled;
+        }
+
+        /**
+         * @return Количество ответов 429, полученных несмотря на ограничение частоты.
+         */
+        public long getTooManyRequests() {
+            return tooManyRequests;
+        }
+
+        /**
+         * @return Текущая длина очереди группы.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getTotalQueueTimeNanos() {
+            return totalQueueTimeNanos;
+        }
+
+        public long getMaxQueueTimeNanos() {
+            return maxQueueTimeNanos;
+        }
+
+        /**
+         * @return Количество запросов, на которые получен ответ или ошибка.
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getTotalLatencyNanos() {
+            return totalLatencyNanos;
+        }
+
+        public long getMaxLatencyNanos() {
+            return maxLatencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "GroupMetrics(group = " + group +
+                    ", submitted = " + submitted +
+                    ", dispatched = " + dispatched +
+                    ", throttled = " + throttled +
+                    ", tooManyRequests = " + tooManyRequests +
+                    ", queueDepth = " + queueDepth +
+                    ", avgQueueTimeNanos = " + (dispatched == 0 ? 0 : totalQueueTimeNanos / dispatched) +
+                    ", maxQueueTimeNanos = " + maxQueueTimeNanos +
+                    ", avgLatencyNanos = " + (completed == 0 ? 0 : totalLatencyNanos / completed) +
+                    ", maxLatencyNanos = " + maxLatencyNanos +
+                    ")";
+        }
+    }
+
+    private final Map<EndpointGroup, Bucket> buckets;
+    private final MetricsRegistry metrics;
+    private final ConcurrentHashMap<String, EndpointMeters> endpoints;
+    private final ScheduledExecutorService timer;
+    private final LongSupplier clock;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RequestScheduler.class);
+
+    private volatile boolean closed;
+
+    /**
+     * Создание планировщика с лимитами по умолчанию.
+     */
+    public RequestScheduler() {
+        this(new EnumMap<>(EndpointGroup.class));
+    }
+
+    /**
+     * Создание планировщика.
+     *
+     * @param requestsPerMinute Лимиты запросов в минуту по группам. Для отсутствующих групп
+     *                          используется значение по умолчанию.
+     */
+    public RequestScheduler(@NotNull final Map<EndpointGroup, Integer> requestsPerMinute) {
+        this(requestsPerMinute, NoopMetricsRegistry.INSTANCE);
+    }
+
+    /**
+     * Создание планировщика с записью метрик.
+     *
+     * В реестр пишутся время ожидания в очереди {@code openapi.rest.queue.time{group}} и время
+     * исполнения запроса {@code openapi.rest.latency{endpoint, status}}, оба в наносекундах.
+     * Запросы, завершившиеся ошибкой ввода-вывода, учитываются со статусом {@code io_error}.
+     *
+     * @param requestsPerMinute Лимиты запросов в минуту по группам. Для отсутствующих групп
+     *                          используется значение по умолчанию.
+     * @param metrics           Реестр метрик.
+     */
+    public RequestScheduler(@NotNull final Map<EndpointGroup, Integer> requestsPerMinute,
+                            @NotNull final MetricsRegistry metrics) {
+        this(requestsPerMinute, metrics, System::nanoTime);
+    }
+
+    /**
+     * Создание планировщика с собственными часами, по которым пополняются токены и отсчитываются
+     * сроки запросов.
+     *
+     * @param requestsPerMinute Лимиты запросов в минуту по группам.
+     * @param metrics           Реестр метрик.
+     * @param clock             Монотонные часы в наносекундах.
+     */
+    RequestScheduler(@NotNull final Map<EndpointGroup, Integer> requestsPerMinute,
+                     @NotNull final MetricsRegistry metrics,
+                     @NotNull final LongSupplier clock) {
+        this.metrics = metrics;
+        this.clock = clock;
+        this.endpoints = new ConcurrentHashMap<>();
+        this.buckets = new EnumMap<>(EndpointGroup.class);
+        for (final EndpointGroup group : EndpointGroup.values()) {
+            final int limit = requestsPerMinute.getOrDefault(group, group.getDefaultRequestsPerMinute());
+            if (limit < 1) {
+                throw new IllegalArgumentException("Лимит запросов для группы " + group + " должен быть положительным");
+            }
+            this.buckets.put(group, new Bucket(group, limit, clock.getAsLong(),
+                    metrics.histogram("openapi.rest.queue.time", "group", group.getPath())));
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "openapi-request-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.closed = false;
+    }
+
+    /**
+     * Постановка запроса в очередь.
+     *
+     * Запрос будет отправлен сразу, если в группе есть свободный токен и нет ожидающих запросов,
+     * иначе дождётся своей очереди.
+     *
+     * @param group    Группа методов.
+     * @param priority Приоритет запроса.
+     * @param call     Подготовленный вызов.
+     * @param callback Обработчик результата вызова.
+     */
+    public void enqueue(@NotNull final EndpointGroup group,
+                        @NotNull final Priority priority,
+                        @NotNull final Call call,
+                        @NotNull final Callback callback) {
+        enqueue(group, priority, call, callback, RestCall.NO_DEADLINE, false);
+    }
+
+    /**
+     * Постановка в очередь запроса со сроком. Запрос, не дождавшийся отправки до срока, завершается
+     * ошибкой без расхода токена; отправленному остаток срока выставляется таймаутом вызова.
+     *
+     * Таймаут вызова OkHttp охватывает и чтение тела ответа, поэтому для потоковых вызовов срок
+     * ограничивает только ожидание заголовков: тело такого ответа читается по мере спроса
+     * подписчика и может читаться сколь угодно долго.
+     *
+     * @param group      Группа методов.
+     * @param priority   Приоритет запроса.
+     * @param call       Подготовленный вызов.
+     * @param callback   Обработчик результата вызова.
+     * @param deadlineAt Срок по {@link System#nanoTime()} или {@link RestCall#NO_DEADLINE}.
+     * @param streamed   Разбирается ли тело ответа потоком.
+     */
+    void enqueue(@NotNull final EndpointGroup group,
+                 @NotNull final Priority priority,
+                 @NotNull final Call call,
+                 @NotNull final Callback callback,
+                 final long deadlineAt,
+                 final boolean streamed) {
+        final Bucket bucket = buckets.get(group);
+        final Pending pending = new Pending(bucket, endpointMeters(call), call, callback, clock, deadlineAt, streamed);
+        bucket.submitted.increment();
+
+        if (closed) {
+            callback.onFailure(call, new IOException("Планировщик запросов остановлен"));
+            return;
+        }
+
+        final boolean dispatchNow;
+        synchronized (bucket) {
+            bucket.refill(pending.enqueuedAt);
+            if (bucket.queueDepth == 0 && bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                dispatchNow = true;
+            } else {
+                bucket.lanes[priority.ordinal()].addLast(pending);
+                bucket.queueDepth++;
+                bucket.throttled.increment();
+                scheduleDrain(bucket);
+                dispatchNow = false;
+            }
+        }
+
+        if (dispatchNow) {
+            dispatch(pending);
+        } else if (deadlineAt != RestCall.NO_DEADLINE) {
+            schedule(() -> expire(pending), deadlineAt - pending.enqueuedAt);
+        }
+    }
+
+    /**
+     * Отложенное выполнение задачи на потоке планировщика.
+     *
+     * @param task       Задача.
+     * @param delayNanos Задержка в наносекундах.
+     *
+     * @return false, если планировщик уже остановлен.
+     */
+    boolean schedule(@NotNull final Runnable task, final long delayNanos) {
+        if (closed) {
+            return false;
+        }
+        try {
+            timer.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Получение метрик по группе методов.
+     *
+     * @param group Группа методов.
+     *
+     * @return Снимок метрик.
+     */
+    @NotNull
+    public GroupMetrics getMetrics(@NotNull final EndpointGroup group) {
+        final Bucket bucket = buckets.get(group);
+        final int queueDepth;
+        synchronized (bucket) {
+            queueDepth = bucket.queueDepth;
+        }
+        return new GroupMetrics(
+                group,
+                bucket.submitted.sum(),
+                bucket.dispatched.sum(),
+                bucket.throttled.sum(),
+                bucket.tooManyRequests.sum(),
+                queueDepth,
+                bucket.totalQueueTimeNanos.sum(),
+                bucket.maxQueueTimeNanos.get(),
+                bucket.completed.sum(),
+                bucket.totalLatencyNanos.sum(),
+                bucket.maxLatencyNanos.get()
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+
+        final List<Pending> abandoned = new ArrayList<>();
+        for (final Bucket bucket : buckets.values()) {
+            synchronized (bucket) {
+                for (final ArrayDeque<Pending> lane : bucket.lanes) {
+                    abandoned.addAll(lane);
+                    lane.clear();
+                }
+                bucket.queueDepth = 0;
+            }
+        }
+        for (final Pending pending : abandoned) {
+            pending.callback.onFailure(pending.call, new IOException("Планировщик запросов остановлен"));
+        }
+    }
+
+    // Должен вызываться под монитором bucket.
+    private void scheduleDrain(final Bucket bucket) {
+        if (bucket.drainScheduled || closed) {
+            return;
+        }
+        bucket.drainScheduled = true;
+        try {
+            timer.schedule(() -> drain(bucket), bucket.nanosUntilToken(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            bucket.drainScheduled = false;
+            logger.warn("Не удалось запланировать отправку отложенных запросов группы " + bucket.group, ex);
+        }
+    }
+
+    /**
+     * Отправка ожидающих запросов группы, на которые хватает токенов. Обычно выполняется по таймеру,
+     * как только должен появиться очередной токен.
+     *
+     * @param group Группа методов.
+     */
+    void drain(@NotNull final EndpointGroup group) {
+        drain(buckets.get(group));
+    }
+
+    private void drain(final Bucket bucket) {
+        final List<Pending> ready = new ArrayList<>();
+        final List<Pending> expired = new ArrayList<>();
+        synchronized (bucket) {
+            bucket.drainScheduled = false;
+            final long now = clock.getAsLong();
+            bucket.refill(now);
+            while (bucket.tokens >= 1 && bucket.queueDepth > 0) {
+                final Pending pending = bucket.poll();
+                if (pending.isExpired(now)) {
+                    expired.add(pending);
+                } else {
+                    ready.add(pending);
+                    bucket.tokens -= 1;
+                }
+            }
+            if (bucket.queueDepth > 0) {
+                scheduleDrain(bucket);
+            }
+        }
+
+        for (final Pending pending : expired) {
+            pending.callback.onFailure(pending.call,
+                    new InterruptedIOException("Срок вызова истёк до отправки запроса"));
+        }
+        for (final Pending pending : ready) {
+            dispatch(pending);
+        }
+    }
+
+    // Запрос, срок которого истёк в очереди, снимается с неё сразу, не дожидаясь токена.
+    private void expire(final Pending pending) {
+        final Bucket bucket = pending.bucket;
+        boolean removed = false;
+        synchronized (bucket) {
+            for (final ArrayDeque<Pending> lane : bucket.lanes) {
+                if (lane.remove(pending)) {
+                    bucket.queueDepth--;
+                    removed = true;
+                    break;
+                }
+            }
+        }
+        if (removed) {
+            pending.callback.onFailure(pending.call,
+                    new InterruptedIOException("Срок вызова истёк до отправки запроса"));
+        }
+    }
+
+    private void dispatch(final Pending pending) {
+        pending.dispatchedAt = clock.getAsLong();
+        if (pending.deadlineAt != RestCall.NO_DEADLINE) {
+            final long remaining = pending.deadlineAt - pending.dispatchedAt;
+            if (remaining <= 0) {
+                pending.callback.onFailure(pending.call,
+                        new InterruptedIOException("Срок вызова истёк до отправки запроса"));
+                return;
+            }
+            if (pending.headersPending != null) {
+                if (!schedule(pending::headersTimedOut, remaining)) {
+                    pending.headersPending.set(false);
+                }
+            } else {
+                // Таймаут клиента сохраняется, если он короче остатка срока.
+                final Timeout timeout = pending.call.timeout();
+                if (timeout.timeoutNanos() == 0 || remaining < timeout.timeoutNanos()) {
+                    timeout.timeout(remaining, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+        final long queueTime = pending.dispatchedAt - pending.enqueuedAt;
+        final Bucket bucket = pending.bucket;
+        bucket.dispatched.increment();
+        bucket.totalQueueTimeNanos.add(queueTime);
+        updateMax(bucket.maxQueueTimeNanos, queueTime);
+        bucket.queueTime.record(queueTime);
+
+        pending.call.enqueue(pending);
+    }
+
+    @NotNull
+    private EndpointMeters endpointMeters(@NotNull final Call call) {
+        final String endpoint = call.request().url().encodedPath();
+        final EndpointMeters meters = endpoints.get(endpoint);
+        return meters != null ? meters : endpoints.computeIfAbsent(endpoint, e -> new EndpointMeters(metrics, e));
+    }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static final class Bucket {
+        final EndpointGroup group;
+        final double capacity;
+        final double tokensPerNano;
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Pending>[] lanes = new ArrayDeque[Priority.values().length];
+
+        double tokens;
+        long lastRefill;
+        int queueDepth;
+        boolean drainScheduled;
+
+        final LongAdder submitted = new LongAdder();
+        final LongAdder dispatched = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+        final LongAdder tooManyRequests = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder totalQueueTimeNanos = new LongAdder();
+        final LongAdder totalLatencyNanos = new LongAdder();
+        final AtomicLong maxQueueTimeNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        final Histogram queueTime;
+
+        Bucket(final EndpointGroup group, final int requestsPerMinute, final long now, final Histogram queueTime) {
+            this.group = group;
+            this.queueTime = queueTime;
+            // Допускаем всплеск не более чем в 10 секунд лимита, чтобы не выбрать минутный лимит разом.
+            this.capacity = Math.max(1.0, requestsPerMinute / 6.0);
+            this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = now;
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new ArrayDeque<>();
+            }
+        }
+
+        void refill(final long now) {
+            final long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                lastRefill = now;
+            }
+        }
+
+        long nanosUntilToken() {
+            if (tokens >= 1) {
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        Pending poll() {
+            for (final ArrayDeque<Pending> lane : lanes) {
+                final Pending pending = lane.pollFirst();
+                if (pending != null) {
+                    queueDepth--;
+                    return pending;
+                }
+            }
+            throw new IllegalStateException("Очередь группы " + group + " пуста");
+        }
+
+        // Сервер всё же ответил 429 - значит, наша оценка лимита слишком оптимистична.
+        synchronized void penalize(final long now) {
+            tokens = Math.min(tokens, 0);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * Гистограммы времени исполнения запросов к одному методу API по кодам ответа. Гистограмма
+     * для кода заводится при первом его появлении, дальше запись не выделяет память.
+     */
+    private static final class EndpointMeters {
+        private static final int MAX_STATUS = 600;
+
+        final MetricsRegistry metrics;
+        final String endpoint;
+        final AtomicReferenceArray<Histogram> byStatus = new AtomicReferenceArray<>(MAX_STATUS);
+        final Histogram failures;
+
+        EndpointMeters(final MetricsRegistry metrics, final String endpoint) {
+            this.metrics = metrics;
+            this.endpoint = endpoint;
+            this.failures = metrics.histogram("openapi.rest.latency", "endpoint", endpoint, "status", "io_error");
+        }
+
+        Histogram latency(final int status) {
+            final int index = status > 0 && status < MAX_STATUS ? status : 0;
+            Histogram histogram = byStatus.get(index);
+            if (histogram == null) {
+                // Реестр возвращает одну и ту же гистограмму, так что гонка здесь безвредна.
+                histogram = metrics.histogram("openapi.rest.latency", "endpoint", endpoint, "status", Integer.toString(index));
+                byStatus.set(index, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    private static final class Pending implements Callback {
+        final Bucket bucket;
+        final EndpointMeters endpoint;
+        final Call call;
+        final Callback callback;
+        final LongSupplier clock;
+        final long enqueuedAt;
+        final long deadlineAt;
+        // У потокового вызова со сроком: true, пока не получены заголовки ответа и срок не истёк.
+        final AtomicBoolean headersPending;
+        long dispatchedAt;
+
+        Pending(final Bucket bucket,
+                final EndpointMeters endpoint,
+                final Call call,
+                final Callback callback,
+                final LongSupplier clock,
+                final long deadlineAt,
+                final boolean streamed) {
+            this.bucket = bucket;
+            this.endpoint = endpoint;
+            this.call = call;
+            this.callback = callback;
+            this.clock = clock;
+            this.enqueuedAt = clock.getAsLong();
+            this.deadlineAt = deadlineAt;
+            this.headersPending = streamed && deadlineAt != RestCall.NO_DEADLINE ? new AtomicBoolean(true) : null;
+        }
+
+        void headersTimedOut() {
+            if (headersPending.compareAndSet(true, false)) {
+                call.cancel();
+            }
+        }
+
+        // false, если вызов уже отменён по истечении срока ожидания заголовков.
+        private boolean headersReceived() {
+            return headersPending == null || headersPending.getAndSet(false) || !call.isCanceled();
+        }
+
+        boolean isExpired(final long now) {
+            return deadlineAt != RestCall.NO_DEADLINE && deadlineAt - now <= 0;
+        }
+
+        private long recordCompletion() {
+            final long latency = clock.getAsLong() - dispatchedAt;
+            bucket.completed.increment();
+            bucket.totalLatencyNanos.add(latency);
+            updateMax(bucket.maxLatencyNanos, latency);
+            return latency;
+        }
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            endpoint.failures.record(recordCompletion());
+            if (headersReceived()) {
+                callback.onFailure(call, e);
+            } else {
+                callback.onFailure(call, new InterruptedIOException("Срок вызова истёк до получения ответа"));
+            }
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) throws IOException {
+            if (!headersReceived()) {
+                response.close();
+                onFailure(call, new InterruptedIOException("Срок вызова истёк до получения ответа"));
+                return;
+            }
+            endpoint.latency(response.code()).record(recordCompletion());
+            if (response.code() == 429) {
+                bucket.tooManyRequests.increment();
+                bucket.penalize(clock.getAsLong());
+            }
+            callback.onResponse(call, response);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Request;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Описание одного вызова REST API: запрос и параметры его исполнения.
+ */
+public final class RestCall {
+
+    /**
+     * Значение {@link #getDeadlineAt()} у вызова, срок которого ещё не отсчитывается.
+     */
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private final Request request;
+    private final RequestScheduler.EndpointGroup group;
+    private final RequestScheduler.Priority priority;
+    private final boolean idempotent;
+    private final boolean streamed;
+    private final Duration deadline;
+    private final long deadlineAt;
+
+    /**
+     * @param request    HTTP-запрос.
+     * @param group      Группа методов OpenAPI, к которой относится запрос.
+     * @param priority   Приоритет запроса в очереди группы.
+     * @param idempotent Можно ли повторять запрос, если неизвестно, исполнил ли его сервер.
+     */
+    public RestCall(@NotNull final Request request,
+                    @NotNull final RequestScheduler.EndpointGroup group,
+                    @NotNull final RequestScheduler.Priority priority,
+                    final boolean idempotent) {
+        this(request, group, priority, idempotent, false, null, NO_DEADLINE);
+    }
+
+    private RestCall(@NotNull final Request request,
+                     @NotNull final RequestScheduler.EndpointGroup group,
+                     @NotNull final RequestScheduler.Priority priority,
+                     final boolean idempotent,
+                     final boolean streamed,
+                     @Nullable final Duration deadline,
+                     final long deadlineAt) {
+        this.request = request;
+        this.group = group;
+        this.priority = priority;
+        this.idempotent = idempotent;
+        this.streamed = streamed;
+        this.deadline = deadline;
+        this.deadlineAt = deadlineAt;
+    }
+
+    @NotNull
+    public Request getRequest() {
+        return request;
+    }
+
+    @NotNull
+    public RequestScheduler.EndpointGroup getGroup() {
+        return group;
+    }
+
+    @NotNull
+    public RequestScheduler.Priority getPriority() {
+        return priority;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * @return true, если тело ответа разбирается потоком и не должно буферизоваться целиком.
+     */
+    public boolean isStreamed() {
+        return streamed;
+    }
+
+    /**
+     * @return Срок, отведённый на все попытки вызова, или null, если действует срок
+     * {@link RetryPolicy}.
+     */
+    @Nullable
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Момент по {@link System#nanoTime()}, после которого вызов завершается ошибкой, или
+     * {@link #NO_DEADLINE}, пока срок не начал отсчитываться. Выставляется {@link RetryPolicy}.
+     */
+    long getDeadlineAt() {
+        return deadlineAt;
+    }
+
+    /**
+     * @return Путь метода API без параметров запроса.
+     */
+    @NotNull
+    public String getEndpoint() {
+        return request.url().encodedPath();
+    }
+
+    /**
+     * Копия вызова с другим HTTP-запросом.
+     *
+     * @param request Новый запрос.
+     *
+     * @return Вызов с теми же параметрами исполнения.
+     */
+    @NotNull
+    public RestCall withRequest(@NotNull final Request request) {
+        return new RestCall(request, group, priority, idempotent, streamed, deadline, deadlineAt);
+    }
+
+    /**
+     * Копия вызова с собственным сроком вместо срока {@link RetryPolicy}.
+     *
+     * @param deadline Срок, отведённый на все попытки вызова.
+     *
+     * @return Вызов с теми же параметрами исполнения.
+     */
+    @NotNull
+    public RestCall withDeadline(@NotNull final Duration deadline) {
+        return new RestCall(request, group, priority, idempotent, streamed, deadline, deadlineAt);
+    }
+
+    @NotNull
+    RestCall withDeadlineAt(final long deadlineAt) {
+        return new RestCall(request, group, priority, idempotent, streamed, deadline, deadlineAt);
+    }
+
+    /**
+     * Копия вызова, ответ на который будет разбираться потоком.
+     *
+     * @return Вызов с теми же параметрами исполнения.
+     */
+    @NotNull
+    public RestCall asStreamed() {
+        return new RestCall(request, group, priority, idempotent, true, deadline, deadlineAt);
+    }
+
+    @Override
+    public String toString() {
+        return "RestCall(method = " + request.method() +
+                ", endpoint = " + getEndpoint() +
+                ", group = " + group +
+                ", priority = " + priority +
+                ", idempotent = " + idempotent +
+                ", streamed = " + streamed +
+                ", deadline = " + deadline +
+                ")";
+    }
+}
@@ -0,0 +1,146 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.exceptions.NotEnoughBalanceException;
+import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
+import ru.tinkoff.invest.openapi.exceptions.OrderAlreadyCancelledException;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Исполнитель REST-запросов, общий для всех контекстов.
+ *
+ * Вызов проходит через цепочку перехватчиков (авторизация, повторы, объединение одинаковых
+ * запросов, пользовательские перехватчики) и в конце попадает в планировщик запросов, который
+ * и отправляет его на сервер. Ошибки OpenAPI преобразуются в специализированные исключения
+ * единым {@link ErrorMapper}.
+ */
+public final class RestExecutor {
+
+    private static final String NOT_ENOUGH_BALANCE_CODE = "NOT_ENOUGH_BALANCE";
+    private static final String ORDER_ERROR_CODE = "ORDER_ERROR";
+
+    /**
+     * Преобразование ошибок OpenAPI в исключения, специфичные для вызова.
+     */
+    public interface ErrorMapper {
+
+        /**
+         * @param call Вызов, завершившийся ошибкой.
+         * @param ex   Ошибка, полученная от OpenAPI.
+         *
+         * @return Исключение, которым будет завершён вызов.
+         */
+        @NotNull
+        OpenApiException map(@NotNull RestCall call, @NotNull OpenApiException ex);
+    }
+
+    /**
+     * Преобразование ошибок по умолчанию: нехватка средств при работе с заявками и
+     * отмена уже отменённой заявки.
+     */
+    public static final ErrorMapper DEFAULT_ERROR_MAPPER = (call, ex) -> {
+        if (call.getGroup() != RequestScheduler.EndpointGroup.ORDERS) {
+            return ex;
+        }
+        if (ex.getCode().equals(NOT_ENOUGH_BALANCE_CODE)) {
+            return new NotEnoughBalanceException(ex.getMessage(), ex.getCode());
+        }
+        if (ex.getCode().equals(ORDER_ERROR_CODE) && call.getEndpoint().endsWith("/cancel")) {
+            return new OrderAlreadyCancelledException(ex.getMessage(), ex.getCode());
+        }
+        return ex;
+    };
+
+    private final OkHttpClient client;
+    private final RequestScheduler scheduler;
+    private final RestInterceptor[] interceptors;
+    private final RestInterceptor.Chain[] chains;
+    private final ErrorMapper errorMapper;
+
+    /**
+     * @param client       HTTP-клиент.
+     * @param scheduler    Планировщик, отправляющий запросы на сервер.
+     * @param interceptors Перехватчики в порядке от внешнего к внутреннему.
+     * @param errorMapper  Преобразование ошибок OpenAPI.
+     */
+    public RestExecutor(@NotNull final OkHttpClient client,
+                        @NotNull final RequestScheduler scheduler,
+                        @NotNull final List<RestInterceptor> interceptors,
+                        @NotNull final ErrorMapper errorMapper) {
+        this.client = client;
+        this.scheduler = scheduler;
+        this.interceptors = interceptors.toArray(new RestInterceptor[0]);
+        this.errorMapper = errorMapper;
+
+        // Звенья цепочки не хранят состояния вызова, поэтому создаются один раз.
+        this.chains = new RestInterceptor.Chain[this.interceptors.length + 1];
+        for (int i = 0; i < this.chains.length; i++) {
+            this.chains[i] = new IndexedChain(i);
+        }
+    }
+
+    /**
+     * Исполнение вызова.
+     *
+     * @param call     Вызов.
+     * @param callback Обработчик результата.
+     */
+    public void enqueue(@NotNull final RestCall call, @NotNull final Callback callback) {
+        chains[0].proceed(call, callback);
+    }
+
+    /**
+     * Преобразование ошибки OpenAPI, полученной в ответ на вызов.
+     *
+     * @param call Вызов.
+     * @param ex   Ошибка.
+     *
+     * @return Исключение, которым следует завершить вызов.
+     */
+    @NotNull
+    public OpenApiException mapError(@NotNull final RestCall call, @NotNull final OpenApiException ex) {
+        return errorMapper.map(call, ex);
+    }
+
+    /**
+     * @return Исполнитель, на котором можно выполнять работу по обработке ответов.
+     */
+    @NotNull
+    Executor responseExecutor() {
+        return client.dispatcher().executorService();
+    }
+
+    @NotNull
+    OkHttpClient client() {
+        return client;
+    }
+
+    private final class IndexedChain implements RestInterceptor.Chain {
+        private final int index;
+
+        IndexedChain(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void proceed(@NotNull final RestCall call, @NotNull final Callback callback) {
+            if (index == interceptors.length) {
+                scheduler.enqueue(call.getGroup(), call.getPriority(), client.newCall(call.getRequest()), callback,
+                        call.getDeadlineAt(), call.isStreamed());
+            } else {
+                interceptors[index].intercept(call, chains[index + 1], callback);
+            }
+        }
+
+        @Override
+        public boolean proceedAfter(@NotNull final RestCall call,
+                                    @NotNull final Callback callback,
+                                    final long delayNanos) {
+            return scheduler.schedule(() -> proceed(call, callback), delayNanos);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Callback;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Звено конвейера исполнения REST-запросов.
+ *
+ * Перехватчик получает вызов и обработчик его результата и должен передать вызов дальше по
+ * цепочке (возможно, изменённым, с обёрнутым обработчиком или несколько раз), либо сам
+ * завершить его через обработчик.
+ */
+public interface RestInterceptor {
+
+    /**
+     * Обработка вызова.
+     *
+     * @param call     Вызов.
+     * @param chain    Оставшаяся часть конвейера.
+     * @param callback Обработчик результата вызова.
+     */
+    void intercept(@NotNull RestCall call, @NotNull Chain chain, @NotNull Callback callback);
+
+    /**
+     * Оставшаяся часть конвейера после текущего перехватчика.
+     */
+    interface Chain {
+
+        /**
+         * Передача вызова следующему звену.
+         *
+         * @param call     Вызов.
+         * @param callback Обработчик результата.
+         */
+        void proceed(@NotNull RestCall call, @NotNull Callback callback);
+
+        /**
+         * Передача вызова следующему звену через заданное время.
+         *
+         * @param call       Вызов.
+         * @param callback   Обработчик результата.
+         * @param delayNanos Задержка в наносекундах.
+         *
+         * @return false, если исполнитель уже остановлен и вызов передан не будет.
+         */
+        boolean proceedAfter(@NotNull RestCall call, @NotNull Callback callback, long delayNanos);
+    }
+}
@@ -0,0 +1,293 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Политика повторов REST-запросов.
+ *
+ * Повторяются запросы, завершившиеся сетевой ошибкой или ответом 429/5xx. Идемпотентные
+ * запросы (все GET и явно помеченные POST) повторяются при любой такой ошибке. Неидемпотентные
+ * (выставление заявок) повторяются только тогда, когда известно, что сервер запрос не исполнил:
+ * соединение не было установлено или пришёл ответ 429.
+ *
+ * Паузы между попытками растут экспоненциально со случайным разбросом ("full jitter"), а общее
+ * время всех попыток ограничено сроком вызова: собственным ({@link RestCall#withDeadline}) или
+ * сроком политики по умолчанию. Остаток срока становится таймаутом каждой попытки, так что
+ * попытка, начатая незадолго до срока, прерывается по его истечении, а не по таймауту чтения.
+ * У потоковых вызовов ({@link RestCall#isStreamed()}) срок ограничивает только ожидание
+ * заголовков ответа: тело читается в темпе подписчика.
+ */
+public final class RetryPolicy implements RestInterceptor {
+
+    /**
+     * Снимок счётчиков повторов по одному методу API.
+     */
+    public static final class EndpointMetrics {
+        private final String endpoint;
+        private final long calls;
+        private final long retries;
+        private final long recovered;
+        private final long exhausted;
+
+        EndpointMetrics(final String endpoint,
+                        final long calls,
+                        final long retries,
+                        final long recovered,
+                        final long exhausted) {
+            this.endpoint = endpoint;
+            this.calls = calls;
+            this.retries = retries;
+            this.recovered = recovered;
+            this.exhausted = exhausted;
+        }
+
+        @NotNull
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * @return Количество вызовов метода (без учёта повторов).
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return Количество выполненных повторов.
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return Количество вызовов, успешно завершившихся после повтора.
+         */
+        public long getRecovered() {
+            return recovered;
+        }
+
+        /**
+         * @return Количество вызовов, для которых повторы не помогли.
+         */
+        public long getExhausted() {
+            return exhausted;
+        }
+
+        @Override
+        public String toString() {
+            return "EndpointMetrics(endpoint = " + endpoint +
+                    ", calls = " + calls +
+                    ", retries = " + retries +
+                    ", recovered = " + recovered +
+                    ", exhausted = " + exhausted +
+                    ")";
+        }
+    }
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long deadlineNanos;
+    private final Map<String, Counters> counters;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RetryPolicy.class);
+
+    /**
+     * Создание политики с параметрами по умолчанию: 4 попытки, паузы от 200мс до 5с,
+     * общий срок вызова 30с.
+     */
+    public RetryPolicy() {
+        this(4, Duration.ofMillis(200), Duration.ofSeconds(5), Duration.ofSeconds(30));
+    }
+
+    /**
+     * Создание политики.
+     *
+     * @param maxAttempts    Максимальное количество попыток, включая первую.
+     * @param initialBackoff Пауза перед первым повтором.
+     * @param maxBackoff     Максимальная пауза между попытками.
+     * @param deadline       Срок, отведённый на все попытки вызова, если у вызова нет своего.
+     */
+    public RetryPolicy(final int maxAttempts,
+                       @NotNull final Duration initialBackoff,
+                       @NotNull final Duration maxBackoff,
+                       @NotNull final Duration deadline) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Количество попыток должно быть положительным");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.deadlineNanos = deadline.toNanos();
+        this.counters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Политика, отключающая повторы.
+     *
+     * @return Политика с единственной попыткой.
+     */
+    @NotNull
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy(1, Duration.ZERO, Duration.ZERO, Duration.ofDays(1));
+    }
+
+    /**
+     * Получение счётчиков повторов по методам API.
+     *
+     * @return Счётчики, упорядоченные по пути метода.
+     */
+    @NotNull
+    public Map<String, EndpointMetrics> getMetrics() {
+        final Map<String, EndpointMetrics> result = new TreeMap<>();
+        for (final Map.Entry<String, Counters> entry : counters.entrySet()) {
+            final Counters c = entry.getValue();
+            result.put(entry.getKey(), new EndpointMetrics(
+                    entry.getKey(),
+                    c.calls.sum(),
+                    c.retries.sum(),
+                    c.recovered.sum(),
+                    c.exhausted.sum()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public void intercept(@NotNull final RestCall call,
+                          @NotNull final Chain chain,
+                          @NotNull final Callback callback) {
+        final Counters endpointCounters = counters.computeIfAbsent(call.getEndpoint(), k -> new Counters());
+        endpointCounters.calls.increment();
+        final long budget = call.getDeadline() != null ? call.getDeadline().toNanos() : deadlineNanos;
+        final RestCall bounded = call.withDeadlineAt(System.nanoTime() + budget);
+        chain.proceed(bounded, new RetryingCallback(bounded, chain, callback, endpointCounters));
+    }
+
+    static boolean isRetryableStatus(final int code) {
+        return code == 429 || (code >= 500 && code <= 599);
+    }
+
+    // Ошибки, при которых запрос гарантированно не дошёл до сервера.
+    static boolean isNotSent(@NotNull final IOException e) {
+        return e instanceof ConnectException ||
+                e instanceof UnknownHostException ||
+                e instanceof NoRouteToHostException ||
+                e instanceof SSLHandshakeException;
+    }
+
+    private long backoffNanos(final int attempt, @Nullable final Response response) {
+        final long exponential = initialBackoffNanos << Math.min(attempt - 1, 30);
+        final long cap = Math.min(maxBackoffNanos, exponential < 0 ? maxBackoffNanos : exponential);
+        long delay = cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+
+        if (response != null) {
+            final String retryAfter = response.header("Retry-After");
+            if (retryAfter != null) {
+                try {
+                    delay = Math.max(delay, TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim())));
+                } catch (NumberFormatException ignored) {
+                    // Формат HTTP-date не поддерживаем, используем собственную паузу.
+                }
+            }
+        }
+        return delay;
+    }
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder recovered = new LongAdder();
+        final LongAdder exhausted = new LongAdder();
+    }
+
+    private final class RetryingCallback implements Callback {
+        final RestCall call;
+        final Chain chain;
+        final Callback delegate;
+        final Counters endpointCounters;
+        final long deadlineAt;
+        int attempt;
+
+        RetryingCallback(final RestCall call,
+                         final Chain chain,
+                         final Callback delegate,
+                         final Counters endpointCounters) {
+            this.call = call;
+            this.chain = chain;
+            this.delegate = delegate;
+            this.endpointCounters = endpointCounters;
+            this.deadlineAt = call.getDeadlineAt();
+            this.attempt = 1;
+        }
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            final boolean safe = this.call.isIdempotent() || isNotSent(e);
+            if (!call.isCanceled() && safe && tryRetry(null, e.toString())) {
+                return;
+            }
+            if (attempt > 1) {
+                endpointCounters.exhausted.increment();
+            }
+            delegate.onFailure(call, e);
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) throws IOException {
+            final int code = response.code();
+            if (isRetryableStatus(code)) {
+                final boolean safe = this.call.isIdempotent() || code == 429;
+                if (safe && tryRetry(response, "HTTP " + code)) {
+                    response.close();
+                    return;
+                }
+                if (attempt > 1) {
+                    endpointCounters.exhausted.increment();
+                }
+            } else if (attempt > 1) {
+                endpointCounters.recovered.increment();
+            }
+            delegate.onResponse(call, response);
+        }
+
+        private boolean tryRetry(@Nullable final Response response, @NotNull final String reason) {
+            if (attempt >= maxAttempts) {
+                return false;
+            }
+            final long delay = backoffNanos(attempt, response);
+            if (System.nanoTime() + delay >= deadlineAt) {
+                return false;
+            }
+
+            attempt++;
+            final boolean scheduled = chain.proceedAfter(call, this, delay);
+            if (!scheduled) {
+                attempt--;
+                return false;
+            }
+
+            endpointCounters.retries.increment();
+            logger.warn("Повтор запроса " + call.getRequest().method() + " " + call.getEndpoint() +
+                    " (попытка " + attempt + " из " + maxAttempts + ") после ошибки: " + reason);
+            return true;
+        }
+    }
+}
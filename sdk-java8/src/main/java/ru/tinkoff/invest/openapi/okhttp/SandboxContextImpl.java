@@ -2,13 +2,13 @@ package ru.tinkoff.invest.openapi.okhttp;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import okhttp3.*;
+import okhttp3.HttpUrl;
+import okhttp3.RequestBody;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.tinkoff.invest.openapi.SandboxContext;
 import ru.tinkoff.invest.openapi.model.rest.*;
 
-import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
@@ -18,10 +18,9 @@ final class SandboxContextImpl extends BaseContextImpl implements SandboxContext
             new TypeReference<SandboxRegisterResponse>() {
             };
 
-    public SandboxContextImpl(@NotNull final OkHttpClient client,
-                              @NotNull final String url,
-                              @NotNull final String authToken) {
-        super(client, url, authToken);
+    public SandboxContextImpl(@NotNull final RestExecutor executor,
+                              @NotNull final String url) {
+        super(executor, url);
     }
 
     @Override
@@ -33,55 +32,29 @@ final class SandboxContextImpl extends BaseContextImpl implements SandboxContext
     @Override
     @NotNull
     public CompletableFuture<SandboxAccount> performRegistration(@NotNull final SandboxRegisterRequest registerRequest) {
-        final CompletableFuture<SandboxAccount> future = new CompletableFuture<>();
         final HttpUrl requestUrl = finalUrl.newBuilder()
                 .addPathSegment("register")
                 .build();
-        final String renderedBody;
+        final RequestBody body;
         try {
-            renderedBody = mapper.writeValueAsString(registerRequest);
+            body = jsonBody(registerRequest);
         } catch (JsonProcessingException ex) {
-            future.completeExceptionally(ex);
-            return future;
+            return failed(ex);
         }
-        final RequestBody requestBody = RequestBody.create(renderedBody, MediaType.get("application/json"));
 
-        final Request request = prepareRequest(requestUrl)
-                .post(requestBody)
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    final SandboxRegisterResponse result = handleResponse(response, sandboxRegisterResponseReference);
-                    future.complete(result.getPayload());
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return execute(post(requestUrl, body, RequestScheduler.Priority.NORMAL, false),
+                sandboxRegisterResponseReference, SandboxRegisterResponse::getPayload);
     }
 
     @Override
     @NotNull
     public CompletableFuture<Void> setCurrencyBalance(@NotNull final SandboxSetCurrencyBalanceRequest balanceRequest,
                                                       @Nullable String brokerAccountId) {
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-        final String renderedBody;
+        final RequestBody body;
         try {
-            renderedBody = mapper.writeValueAsString(balanceRequest);
+            body = jsonBody(balanceRequest);
         } catch (JsonProcessingException ex) {
-            future.completeExceptionally(ex);
-            return future;
+            return failed(ex);
         }
 
         HttpUrl.Builder builder = finalUrl.newBuilder();
@@ -91,42 +64,19 @@ final class SandboxContextImpl extends BaseContextImpl implements SandboxContext
                 .addPathSegment("currencies")
                 .addPathSegment("balance")
                 .build();
-        Request request = prepareRequest(requestUrl)
-                .post(RequestBody.create(renderedBody, MediaType.get("application/json")))
-                .build();
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    handleResponse(response, emptyPayloadTypeReference);
-                    future.complete(null);
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return executeEmpty(post(requestUrl, body, RequestScheduler.Priority.NORMAL, true));
     }
 
     @Override
     @NotNull
     public CompletableFuture<Void> setPositionBalance(@NotNull final SandboxSetPositionBalanceRequest balanceRequest,
                                                       @Nullable String brokerAccountId) {
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-        final String renderedBody;
+        final RequestBody body;
         try {
-            renderedBody = mapper.writeValueAsString(balanceRequest);
+            body = jsonBody(balanceRequest);
         } catch (JsonProcessingException ex) {
-            future.completeExceptionally(ex);
-            return future;
+            return failed(ex);
         }
 
         HttpUrl.Builder builder = finalUrl.newBuilder();
@@ -136,101 +86,34 @@ final class SandboxContextImpl extends BaseContextImpl implements SandboxContext
                 .addPathSegment("positions")
                 .addPathSegment("balance")
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .post(RequestBody.create(renderedBody, MediaType.get("application/json")))
-                .build();
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    handleResponse(response, emptyPayloadTypeReference);
-                    future.complete(null);
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return executeEmpty(post(requestUrl, body, RequestScheduler.Priority.NORMAL, true));
     }
 
     @Override
     @NotNull
     public CompletableFuture<Void> removeAccount(@Nullable String brokerAccountId) {
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-
         HttpUrl.Builder builder = finalUrl.newBuilder();
         if (Objects.nonNull(brokerAccountId) && !brokerAccountId.isEmpty())
             builder.addQueryParameter("brokerAccountId", brokerAccountId);
         final HttpUrl requestUrl = builder
                 .addPathSegment("remove")
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .post(RequestBody.create(new byte[] {}))
-                .build();
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    handleResponse(response, emptyPayloadTypeReference);
-                    future.complete(null);
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return executeEmpty(post(requestUrl, emptyBody(), RequestScheduler.Priority.NORMAL, false));
     }
 
     @Override
     @NotNull
     public CompletableFuture<Void> clearAll(@Nullable final String brokerAccountId) {
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-
         HttpUrl.Builder builder = finalUrl.newBuilder();
         if (Objects.nonNull(brokerAccountId) && !brokerAccountId.isEmpty())
             builder.addQueryParameter("brokerAccountId", brokerAccountId);
         final HttpUrl requestUrl = builder
                 .addPathSegment("clear")
                 .build();
-        final Request request = prepareRequest(requestUrl)
-                .post(RequestBody.create(new byte[] {}))
-                .build();
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                logger.error("При запросе к REST API произошла ошибка", e);
-                future.completeExceptionally(e);
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) {
-                try {
-                    handleResponse(response, emptyPayloadTypeReference);
-                    future.complete(null);
-                } catch (Exception ex) {
-                    future.completeExceptionally(ex);
-                }
-            }
-        });
-
-        return future;
+        return executeEmpty(post(requestUrl, emptyBody(), RequestScheduler.Priority.NORMAL, true));
     }
 
 }
@@ -0,0 +1,124 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Объединение одинаковых одновременных GET-запросов.
+ *
+ * Пока запрос с некоторым URL выполняется, все последующие запросы с тем же URL
+ * не уходят на сервер, а ждут ответа первого. Тело ответа буферизуется, и каждый ожидающий
+ * получает собственную копию ответа, так что разбор и модели результата у вызывающих остаются
+ * независимыми.
+ *
+ * Вызовы, ответ на которые разбирается потоком ({@link RestCall#isStreamed()}), не объединяются ни
+ * между собой, ни с обычными: буферизация сделала бы расход памяти зависящим от размера ответа.
+ *
+ * Объединяются только вызовы с одинаковым приоритетом, иначе срочный запрос ждал бы в очереди
+ * вместе с фоновым. Присоединившийся вызов получает результат первого, в том числе ошибку по
+ * истечении его срока: собственный срок присоединившегося вызова при этом не учитывается.
+ */
+final class SingleFlightInterceptor implements RestInterceptor {
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    @Override
+    public void intercept(@NotNull final RestCall call,
+                          @NotNull final Chain chain,
+                          @NotNull final Callback callback) {
+        if (call.isStreamed() || !"GET".equals(call.getRequest().method())) {
+            chain.proceed(call, callback);
+            return;
+        }
+
+        final String key = call.getPriority().name() + ' ' + call.getRequest().url();
+        while (true) {
+            final Flight existing = flights.get(key);
+            if (existing == null) {
+                final Flight flight = new Flight(key, callback);
+                if (flights.putIfAbsent(key, flight) == null) {
+                    chain.proceed(call, flight);
+                    return;
+                }
+            } else if (existing.join(callback)) {
+                return;
+            }
+            // Найденный запрос уже завершается - пробуем снова.
+        }
+    }
+
+    private final class Flight implements Callback {
+        final String key;
+        final List<Callback> callbacks;
+        boolean completed;
+
+        Flight(final String key, final Callback leader) {
+            this.key = key;
+            this.callbacks = new ArrayList<>(2);
+            this.callbacks.add(leader);
+            this.completed = false;
+        }
+
+        synchronized boolean join(final Callback callback) {
+            if (completed) {
+                return false;
+            }
+            callbacks.add(callback);
+            return true;
+        }
+
+        private List<Callback> complete() {
+            flights.remove(key, this);
+            synchronized (this) {
+                completed = true;
+                return callbacks;
+            }
+        }
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            for (final Callback callback : complete()) {
+                callback.onFailure(call, e);
+            }
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) throws IOException {
+            final List<Callback> waiting = complete();
+            if (waiting.size() == 1) {
+                waiting.get(0).onResponse(call, response);
+                return;
+            }
+
+            final byte[] content;
+            final ResponseBody body = Objects.requireNonNull(response.body());
+            try {
+                content = body.bytes();
+            } catch (IOException ex) {
+                for (final Callback callback : waiting) {
+                    callback.onFailure(call, ex);
+                }
+                return;
+            } finally {
+                response.close();
+            }
+
+            for (final Callback callback : waiting) {
+                final Response copy = response.newBuilder()
+                        .body(ResponseBody.create(content, body.contentType()))
+                        .build();
+                callback.onResponse(call, copy);
+            }
+        }
+    }
+}
@@ -13,13 +13,18 @@ import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 
 import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.journal.FrameJournal;
+import ru.tinkoff.invest.openapi.metrics.MetricsRegistry;
 import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
 import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class StreamingContextImpl implements StreamingContext {
 
@@ -28,13 +33,17 @@ class StreamingContextImpl implements StreamingContext {
             };
 
     private final WebSocket[] wsClients;
+    private final StreamingApiListener[] listeners;
     private final ArrayList<Set<StreamingRequest.ActivatingRequest>> requestsHistory;
     private final ObjectMapper mapper;
     private final Logger logger;
     private final List<SubscriptionImpl> subscriptions;
+    private final List<Runnable> reconnectListeners;
     private final OkHttpClient client;
     private final Executor executor;
     private final okhttp3.Request wsRequest;
+    @Nullable private final FrameJournal journal;
+    private final StreamingMetrics metrics;
 
     private boolean isTerminated;
 
@@ -42,20 +51,27 @@ class StreamingContextImpl implements StreamingContext {
                          @NotNull final String streamingUrl,
                          @NotNull final String authToken,
                          final int streamingParallelism,
-                         @NotNull final Executor executor) {
+                         @NotNull final Executor executor,
+                         @Nullable final FrameJournal journal,
+                         @NotNull final MetricsRegistry metrics) {
         this.logger = org.slf4j.LoggerFactory.getLogger(StreamingContextImpl.class);
         this.client = client;
-        this.subscriptions = new LinkedList<>();
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.reconnectListeners = new CopyOnWriteArrayList<>();
         this.executor = executor;
+        this.journal = journal;
+        this.metrics = new StreamingMetrics(metrics, streamingParallelism);
         this.mapper = new ObjectMapper();
         this.mapper.registerModule(new JavaTimeModule());
         this.isTerminated = false;
 
         this.wsClients = new WebSocket[streamingParallelism];
+        this.listeners = new StreamingApiListener[streamingParallelism];
         this.requestsHistory = new ArrayList<>(streamingParallelism);
         this.wsRequest = new okhttp3.Request.Builder().url(streamingUrl).header("Authorization", authToken).build();
         for (int i = 0; i < streamingParallelism; i++) {
             final StreamingApiListener streamingCallback = new StreamingApiListener(i + 1);
+            this.listeners[i] = streamingCallback;
             this.wsClients[i] = this.client.newWebSocket(this.wsRequest, streamingCallback);
             this.requestsHistory.add(new HashSet<>());
         }
@@ -86,11 +102,89 @@ class StreamingContextImpl implements StreamingContext {
         }
     }
 
+    @Override
+    public void addReconnectListener(@NotNull final Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    @Override
+    public void removeReconnectListener(@NotNull final Runnable listener) {
+        reconnectListeners.remove(listener);
+    }
+
+    /**
+     * Обработка сообщения, пришедшего от клиента Streaming API: запись в журнал, разбор и
+     * раздача подписчикам.
+     *
+     * @param clientId Номер клиента, получившего сообщение.
+     * @param text     Текст сообщения.
+     */
+    void onFrame(final int clientId, @NotNull final String text) {
+        final long receivedAt = System.nanoTime();
+        metrics.message(clientId);
+        if (journal != null) {
+            try {
+                journal.append(clientId, System.currentTimeMillis(), text);
+            } catch (IOException ex) {
+                logger.error("Не удалось записать сообщение Streaming API в журнал", ex);
+            }
+        }
+
+        try {
+            final StreamingEvent event = mapper.readValue(text, streamingEventTypeReference);
+            final long decodedAt = System.nanoTime();
+            metrics.decode.record(decodedAt - receivedAt);
+            metrics.event(event);
+
+            if (metrics.tracing) {
+                metrics.network(event.getServerTime(), System.currentTimeMillis());
+                for (final SubscriptionImpl sub : subscriptions) {
+                    final long enqueuedAt = System.nanoTime();
+                    metrics.enqueue.record(enqueuedAt - decodedAt);
+                    sub.signal(new Send(event, receivedAt, enqueuedAt));
+                }
+            } else {
+                final Signal signal = new Send(event);
+                for (final SubscriptionImpl sub : subscriptions) {
+                    sub.signal(signal);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            metrics.decodeErrors.increment();
+            logger.error("Не удалось десериализовать JSON пришедший из Streaming API", ex);
+        }
+    }
+
+    /**
+     * Снимок состояния клиентов. Читает только поля, которые клиенты и так обновляют, поэтому
+     * не задерживает обработку сообщений.
+     *
+     * @return Состояние клиентов и очередей подписок.
+     */
+    @NotNull
+    StreamingStatus getStatus() {
+        final List<StreamingStatus.Connection> connections = new ArrayList<>(listeners.length);
+        for (int i = 0; i < listeners.length; i++) {
+            final StreamingApiListener listener = listeners[i];
+            connections.add(new StreamingStatus.Connection(
+                    listener.id,
+                    listener.state,
+                    requestsHistory.get(i).size(),
+                    listener.lastMessageAt));
+        }
+        int queuedEvents = 0;
+        for (final SubscriptionImpl sub : subscriptions) {
+            queuedEvents += sub.queuedEvents.get();
+        }
+        return new StreamingStatus(connections, queuedEvents);
+    }
+
     private void restore(@NotNull final StreamingApiListener listener) throws Exception {
         final int id = listener.id;
         final int index = listener.id - 1;
         final WebSocket webSocket = Objects.requireNonNull(this.wsClients[index]);
         logger.info("Попытка восстановления Streaming API клиента #" + id);
+        metrics.reconnect(id);
         webSocket.close(1000, null);
 
         Thread.sleep(1000);
@@ -104,11 +198,23 @@ class StreamingContextImpl implements StreamingContext {
             final String message = mapper.writeValueAsString(request);
             newWsClient.send(message);
         }
+
+        // Подписки уже отправлены заново, так что загруженное обработчиками состояние не старше
+        // событий, которые придут после восстановления.
+        for (final Runnable reconnectListener : reconnectListeners) {
+            try {
+                reconnectListener.run();
+            } catch (RuntimeException ex) {
+                logger.error("Обработчик восстановления Streaming API клиента #" + id + " завершился с ошибкой", ex);
+            }
+        }
     }
 
     private class StreamingApiListener extends WebSocketListener {
 
         final int id;
+        volatile StreamingStatus.ConnectionState state = StreamingStatus.ConnectionState.CONNECTING;
+        volatile long lastMessageAt;
 
         StreamingApiListener(final int id) {
             this.id = id;
@@ -117,6 +223,7 @@ class StreamingContextImpl implements StreamingContext {
         @Override
         public void onOpen(@NotNull final WebSocket webSocket, @NotNull final Response response) {
             super.onOpen(webSocket, response);
+            state = StreamingStatus.ConnectionState.OPEN;
 
             logger.info("Streaming API клиент #" + id + " подключён");
         }
@@ -125,20 +232,14 @@ class StreamingContextImpl implements StreamingContext {
         public void onMessage(@NotNull final WebSocket webSocket, @NotNull final String text) {
             super.onMessage(webSocket, text);
 
-            try {
-                final StreamingEvent event = mapper.readValue(text, streamingEventTypeReference);
-                final Signal signal = new Send(event);
-                for (final SubscriptionImpl sub : subscriptions) {
-                    sub.signal(signal);
-                }
-            } catch (JsonProcessingException ex) {
-                logger.error("Не удалось десериализовать JSON пришедший из Streaming API", ex);
-            }
+            lastMessageAt = System.currentTimeMillis();
+            onFrame(id, text);
         }
 
         @Override
         public void onClosed(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
             super.onClosed(webSocket, code, reason);
+            state = StreamingStatus.ConnectionState.CLOSED;
 
             logger.info("Streaming API #" + id + " клиент остановлен");
             for (final Subscription sub: subscriptions) sub.cancel();
@@ -169,6 +270,9 @@ class StreamingContextImpl implements StreamingContext {
                 if (responseCode == 401 || responseCode == 403) {
                     isTerminated = true;
                     logger.error("Для Streaming API передан неверный токен.", t);
+                    for (final StreamingApiListener listener : listeners) {
+                        listener.state = StreamingStatus.ConnectionState.CLOSED;
+                    }
                     for (final WebSocket ws : wsClients) ws.close(1000, null);
                     for (final Subscription sub: subscriptions) sub.cancel();
                     return;
@@ -177,9 +281,11 @@ class StreamingContextImpl implements StreamingContext {
 
             try {
                 logger.error("Что-то произошло в Streaming API клиенте #" + id, t);
+                state = StreamingStatus.ConnectionState.RECONNECTING;
                 restore(this);
             } catch (Exception ex) {
                 isTerminated = true;
+                state = StreamingStatus.ConnectionState.CLOSED;
                 for (final Subscription sub: subscriptions) sub.cancel();
                 logger.error("При восстановлении Streaming API клиента #" + id + " что-то произошло", ex);
             }
@@ -216,8 +322,16 @@ class StreamingContextImpl implements StreamingContext {
     }
     static final class Send implements Signal {
         @NotNull final StreamingEvent payload;
+        // Отметки System.nanoTime() для метрик задержки; 0, если событие не отслеживается.
+        final long receivedAt;
+        final long enqueuedAt;
         Send(@NotNull final StreamingEvent payload) {
+            this(payload, 0, 0);
+        }
+        Send(@NotNull final StreamingEvent payload, final long receivedAt, final long enqueuedAt) {
             this.payload = payload;
+            this.receivedAt = receivedAt;
+            this.enqueuedAt = enqueuedAt;
         }
         @Override
         public String toString() {
@@ -247,6 +361,9 @@ class StreamingContextImpl implements StreamingContext {
         // This `ConcurrentLinkedQueue` will track signals that are sent to this `Subscription`, like `request` and `cancel`
         private final ConcurrentLinkedDeque<Signal> inboundSignals = new ConcurrentLinkedDeque<>();
 
+        // Количество событий в inboundSignals; размер самой очереди считается за линейное время.
+        private final AtomicInteger queuedEvents = new AtomicInteger();
+
         // We are using this `AtomicBoolean` to make sure that this `Subscription` doesn't run concurrently with itself,
         // which would violate rule 1.3 among others (no concurrent notifications).
         private final AtomicBoolean on = new AtomicBoolean(false);
@@ -284,10 +401,14 @@ class StreamingContextImpl implements StreamingContext {
         }
 
         // This is our behavior for producing elements downstream
-        private void doSend(@NotNull final StreamingEvent next) {
+        private void doSend(@NotNull final Send next) {
             try {
-                subscriber.onNext(next); // Then we signal the next element downstream to the `Subscriber`
+                final long deliveredAt = next.enqueuedAt != 0 ? System.nanoTime() : 0;
+                subscriber.onNext(next.payload); // Then we signal the next element downstream to the `Subscriber`
                 --demand;    // This makes sure that rule 1.1 is upheld (sending more than was demanded)
+                if (deliveredAt != 0) {
+                    metrics.delivery(next.receivedAt, next.enqueuedAt, deliveredAt, System.nanoTime());
+                }
             } catch(final Throwable t) {
                 // We can only get here if `onNext` or `onComplete` threw, and they are not allowed to according to 2.13, so we can only cancel and log here.
                 doCancel(); // Make sure that we are cancelled, since we cannot do anything else since the `Subscriber` is faulty.
@@ -308,6 +429,7 @@ class StreamingContextImpl implements StreamingContext {
         // What `signal` does is that it sends signals to the `Subscription` asynchronously
         private void signal(final Signal signal) {
             if (signal instanceof Send) {
+                metrics.queueDepth.record(queuedEvents.incrementAndGet());
                 inboundSignals.offerLast(signal);
             } else {
                 inboundSignals.offerFirst(signal);
@@ -328,7 +450,8 @@ class StreamingContextImpl implements StreamingContext {
                             doRequest(((Request)s).n);
                         } else if (s instanceof Send && demand > 0) {
                             inboundSignals.poll();
-                            doSend(((Send)s).payload);
+                            queuedEvents.decrementAndGet();
+                            doSend((Send)s);
                         } else if (s == Cancel.Instance) {
                             inboundSignals.poll();
                             doCancel();
@@ -336,6 +459,9 @@ class StreamingContextImpl implements StreamingContext {
                             inboundSignals.poll();
                             doSubscribe();
                         }
+                    } else {
+                        // Отменённой подписке события уже не нужны.
+                        dropSignals();
                     }
                 } finally {
                     on.set(false); // establishes a happens-before relationship with the beginning of the next run
@@ -357,7 +483,7 @@ class StreamingContextImpl implements StreamingContext {
                         try {
                             terminateDueTo(new IllegalStateException("Publisher terminated due to unavailable Executor.", t));
                         } finally {
-                            inboundSignals.clear(); // We're not going to need these anymore
+                            dropSignals(); // We're not going to need these anymore
                             // This subscription is cancelled by now, but letting it become schedulable again means
                             // that we can drain the inboundSignals queue if anything arrives after clearing
                             on.set(false);
@@ -367,6 +493,16 @@ class StreamingContextImpl implements StreamingContext {
             }
         }
 
+        private void dropSignals() {
+            Signal s;
+            while ((s = inboundSignals.poll()) != null) {
+                if (s instanceof Send) {
+                    queuedEvents.decrementAndGet();
+                    metrics.dropped.increment();
+                }
+            }
+        }
+
         // Our implementation of `Subscription.request` sends a signal to the Subscription that more elements are in demand
         @Override public void request(final long n) {
             signal(new Request(n));
@@ -0,0 +1,137 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.metrics.Counter;
+import ru.tinkoff.invest.openapi.metrics.Histogram;
+import ru.tinkoff.invest.openapi.metrics.MetricsRegistry;
+import ru.tinkoff.invest.openapi.metrics.NoopMetricsRegistry;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.time.Instant;
+
+/**
+ * Метрики Streaming API, полученные из реестра один раз при создании контекста.
+ *
+ * <ul>
+ *     <li>{@code openapi.streaming.messages{connection}} - сообщения, полученные клиентом;</li>
+ *     <li>{@code openapi.streaming.events{type}} - разобранные события по типам;</li>
+ *     <li>{@code openapi.streaming.decode.errors} - сообщения, которые не удалось разобрать;</li>
+ *     <li>{@code openapi.streaming.subscriber.queue.depth} - число событий в очереди подписчика
+ *     в момент постановки в неё нового;</li>
+ *     <li>{@code openapi.streaming.subscriber.dropped} - события, выброшенные из очереди
+ *     отменённой подписки;</li>
+ *     <li>{@code openapi.streaming.reconnects{connection}} - попытки восстановления соединения;</li>
+ *     <li>{@code openapi.streaming.latency{stage}} - задержки по этапам доставки события, нс.</li>
+ * </ul>
+ *
+ * Этапы задержки:
+ * <ul>
+ *     <li>{@code network} - от времени отправки, указанного сервером, до получения сообщения;
+ *     считается по системным часам, поэтому включает их расхождение с часами сервера, а
+ *     отрицательные значения записываются как ноль;</li>
+ *     <li>{@code decode} - разбор сообщения;</li>
+ *     <li>{@code enqueue} - от конца разбора до постановки в очередь подписки, то есть ожидание
+ *     своей очереди при раздаче события подписчикам;</li>
+ *     <li>{@code queue} - ожидание в очереди подписки и в исполнителе;</li>
+ *     <li>{@code subscriber} - исполнение {@code onNext} подписчика;</li>
+ *     <li>{@code total} - от получения сообщения до возврата из {@code onNext}.</li>
+ * </ul>
+ * Все этапы, кроме {@code network}, измеряются монотонными часами {@link System#nanoTime()}.
+ * Для этапов очереди и подписчика каждой подписке передаётся своя отметка времени, поэтому с
+ * реестром по умолчанию ({@link NoopMetricsRegistry}) они не измеряются вовсе.
+ */
+final class StreamingMetrics {
+
+    private final Counter[] messages;
+    private final Counter[] reconnects;
+    private final Counter candles;
+    private final Counter orderbooks;
+    private final Counter instrumentInfos;
+    private final Counter errors;
+    final Counter decodeErrors;
+    final boolean tracing;
+    final Histogram network;
+    final Histogram decode;
+    final Histogram enqueue;
+    final Histogram queue;
+    final Histogram subscriber;
+    final Histogram total;
+    final Histogram queueDepth;
+    final Counter dropped;
+
+    StreamingMetrics(@NotNull final MetricsRegistry registry, final int connections) {
+        this.messages = new Counter[connections];
+        this.reconnects = new Counter[connections];
+        for (int i = 0; i < connections; i++) {
+            final String connection = Integer.toString(i + 1);
+            this.messages[i] = registry.counter("openapi.streaming.messages", "connection", connection);
+            this.reconnects[i] = registry.counter("openapi.streaming.reconnects", "connection", connection);
+        }
+        this.candles = registry.counter("openapi.streaming.events", "type", "candle");
+        this.orderbooks = registry.counter("openapi.streaming.events", "type", "orderbook");
+        this.instrumentInfos = registry.counter("openapi.streaming.events", "type", "instrument_info");
+        this.errors = registry.counter("openapi.streaming.events", "type", "error");
+        this.decodeErrors = registry.counter("openapi.streaming.decode.errors");
+        this.tracing = registry != NoopMetricsRegistry.INSTANCE;
+        this.network = registry.histogram("openapi.streaming.latency", "stage", "network");
+        this.decode = registry.histogram("openapi.streaming.latency", "stage", "decode");
+        this.enqueue = registry.histogram("openapi.streaming.latency", "stage", "enqueue");
+        this.queue = registry.histogram("openapi.streaming.latency", "stage", "queue");
+        this.subscriber = registry.histogram("openapi.streaming.latency", "stage", "subscriber");
+        this.total = registry.histogram("openapi.streaming.latency", "stage", "total");
+        this.queueDepth = registry.histogram("openapi.streaming.subscriber.queue.depth");
+        this.dropped = registry.counter("openapi.streaming.subscriber.dropped");
+    }
+
+    /**
+     * @param clientId Номер клиента Streaming API, начиная с единицы.
+     */
+    void message(final int clientId) {
+        messages[clientId - 1].increment();
+    }
+
+    /**
+     * @param clientId Номер клиента Streaming API, начиная с единицы.
+     */
+    void reconnect(final int clientId) {
+        reconnects[clientId - 1].increment();
+    }
+
+    /**
+     * @param serverTime     Время отправки сообщения сервером.
+     * @param receivedMillis Время получения по системным часам.
+     */
+    void network(@Nullable final Instant serverTime, final long receivedMillis) {
+        if (serverTime != null) {
+            final long sentNanos = serverTime.getEpochSecond() * 1_000_000_000L + serverTime.getNano();
+            network.record(Math.max(0, receivedMillis * 1_000_000L - sentNanos));
+        }
+    }
+
+    /**
+     * Запись этапов доставки события подписчику.
+     *
+     * @param receivedAt  Получение сообщения.
+     * @param enqueuedAt  Постановка в очередь подписки.
+     * @param deliveredAt Вызов {@code onNext}.
+     * @param completedAt Возврат из {@code onNext}.
+     */
+    void delivery(final long receivedAt, final long enqueuedAt, final long deliveredAt, final long completedAt) {
+        queue.record(deliveredAt - enqueuedAt);
+        subscriber.record(completedAt - deliveredAt);
+        total.record(completedAt - receivedAt);
+    }
+
+    void event(@NotNull final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Candle) {
+            candles.increment();
+        } else if (event instanceof StreamingEvent.Orderbook) {
+            orderbooks.increment();
+        } else if (event instanceof StreamingEvent.InstrumentInfo) {
+            instrumentInfos.increment();
+        } else if (event instanceof StreamingEvent.Error) {
+            errors.increment();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Снимок состояния клиентов Streaming API.
+ */
+public final class StreamingStatus {
+
+    /**
+     * Состояние соединения клиента Streaming API.
+     */
+    public enum ConnectionState {
+        /** Соединение устанавливается. */
+        CONNECTING,
+        /** Соединение открыто. */
+        OPEN,
+        /** Соединение разорвано, идёт его восстановление. */
+        RECONNECTING,
+        /** Соединение закрыто и восстанавливаться не будет. */
+        CLOSED
+    }
+
+    /**
+     * Снимок состояния одного клиента Streaming API.
+     */
+    public static final class Connection {
+        private final int id;
+        private final ConnectionState state;
+        private final int subscriptions;
+        private final long lastMessageAt;
+
+        Connection(final int id,
+                   @NotNull final ConnectionState state,
+                   final int subscriptions,
+                   final long lastMessageAt) {
+            this.id = id;
+            this.state = state;
+            this.subscriptions = subscriptions;
+            this.lastMessageAt = lastMessageAt;
+        }
+
+        /**
+         * @return Номер клиента, начиная с единицы.
+         */
+        public int getId() {
+            return id;
+        }
+
+        @NotNull
+        public ConnectionState getState() {
+            return state;
+        }
+
+        /**
+         * @return Количество активных подписок, которые клиент восстановит при переподключении.
+         */
+        public int getSubscriptions() {
+            return subscriptions;
+        }
+
+        /**
+         * @return Время получения последнего сообщения в миллисекундах с начала эпохи или 0, если
+         * сообщений ещё не было.
+         */
+        public long getLastMessageAt() {
+            return lastMessageAt;
+        }
+
+        @Override
+        public String toString() {
+            return "Connection(id = " + id +
+                    ", state = " + state +
+                    ", subscriptions = " + subscriptions +
+                    ", lastMessageAt = " + lastMessageAt +
+                    ")";
+        }
+    }
+
+    private final List<Connection> connections;
+    private final int queuedEvents;
+
+    StreamingStatus(@NotNull final List<Connection> connections, final int queuedEvents) {
+        this.connections = Collections.unmodifiableList(connections);
+        this.queuedEvents = queuedEvents;
+    }
+
+    /**
+     * @return Состояния клиентов; пусто, если Streaming API ещё не использовался.
+     */
+    @NotNull
+    public List<Connection> getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return Количество событий, ожидающих доставки во всех подписках.
+     */
+    public int getQueuedEvents() {
+        return queuedEvents;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingStatus(connections = " + connections +
+                ", queuedEvents = " + queuedEvents +
+                ")";
+    }
+}
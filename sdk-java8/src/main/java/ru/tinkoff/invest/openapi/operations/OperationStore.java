@@ -0,0 +1,583 @@
+package ru.tinkoff.invest.openapi.operations;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.OperationsContext;
+import ru.tinkoff.invest.openapi.model.rest.Operation;
+import ru.tinkoff.invest.openapi.model.rest.OperationStatus;
+import ru.tinkoff.invest.openapi.model.rest.Operations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Локальная копия истории операций с инкрементальной синхронизацией.
+ *
+ * Операции каждого счёта хранятся в файле {@code <счёт>.ndjson} в каталоге хранилища, по одной
+ * операции на строку. Файл только дописывается: новая или изменившаяся операция (например,
+ * исполненная после {@link OperationStatus#PROGRESS}) добавляется строкой в конец, а при чтении
+ * последняя строка с тем же идентификатором заменяет предыдущие. Когда замещённых строк
+ * становится больше, чем актуальных, файл переписывается при следующем открытии.
+ *
+ * Строка, недописанная при аварийной остановке, отрезается при открытии файла, чтобы следующая
+ * запись не склеилась с ней; неразборчивые строки в середине файла удаляются переписыванием.
+ * Если запись на диск не удалась, операции счёта перечитываются из файла, так что в памяти
+ * никогда не оказывается операций, которых нет на диске.
+ *
+ * Синхронизация счёта запрашивает только хвост истории - от отметки {@link Watermark} (время и
+ * идентификатор последней завершённой операции) за вычетом {@code overlap}, либо от самой ранней
+ * ещё не завершённой операции, если она старше. Первая синхронизация загружает окно с
+ * {@code initialFrom}. Длинное окно делится на страницы по {@code pageSize}, которые
+ * запрашиваются одновременно; пересечения страниц и повторно полученные операции отбрасываются
+ * по идентификатору.
+ *
+ * Синхронизация и чтение одного счёта упорядочены его монитором; разные счета не мешают друг
+ * другу.
+ */
+public final class OperationStore implements Closeable {
+
+    public static final Duration DEFAULT_PAGE_SIZE = Duration.ofDays(30);
+    public static final Duration DEFAULT_OVERLAP = Duration.ofDays(1);
+
+    private static final String DEFAULT_ACCOUNT = "default";
+
+    private final OperationsContext context;
+    private final Path directory;
+    private final Duration pageSize;
+    private final Duration overlap;
+    private final Clock clock;
+    private final ObjectMapper mapper;
+    private final Map<String, AccountLog> accounts = new HashMap<>();
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OperationStore.class);
+
+    /**
+     * @param context   Контекст операций.
+     * @param directory Каталог хранилища; создаётся при необходимости.
+     * @param pageSize  Длина окна одного запроса.
+     * @param overlap   Насколько раньше отметки начинается запрос хвоста, чтобы получить
+     *                  операции, проведённые задним числом.
+     * @param clock     Часы, по которым определяется конец окна синхронизации.
+     *
+     * @throws IOException Если каталог не удалось создать.
+     */
+    public OperationStore(@NotNull final OperationsContext context,
+                          @NotNull final Path directory,
+                          @NotNull final Duration pageSize,
+                          @NotNull final Duration overlap,
+                          @NotNull final Clock clock) throws IOException {
+        if (pageSize.isNegative() || pageSize.isZero()) {
+            throw new IllegalArgumentException("Длина страницы должна быть положительной");
+        }
+        this.context = context;
+        this.directory = Files.createDirectories(directory);
+        this.pageSize = pageSize;
+        this.overlap = overlap;
+        this.clock = clock;
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.mapper.registerModule(new JavaTimeModule());
+        this.mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+        this.mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+
+    /**
+     * Создание хранилища со страницами по 30 дней и перекрытием в сутки.
+     *
+     * @param context   Контекст операций.
+     * @param directory Каталог хранилища.
+     *
+     * @throws IOException Если каталог не удалось создать.
+     */
+    public OperationStore(@NotNull final OperationsContext context, @NotNull final Path directory) throws IOException {
+        this(context, directory, DEFAULT_PAGE_SIZE, DEFAULT_OVERLAP, Clock.systemUTC());
+    }
+
+    /**
+     * Синхронизация операций счёта.
+     *
+     * @param brokerAccountId Идентификатор брокерского счёта или null для счёта по умолчанию.
+     * @param initialFrom     Начало истории при первой синхронизации счёта.
+     *
+     * @return Итог синхронизации. Завершается после записи полученных операций на диск.
+     */
+    @NotNull
+    public CompletableFuture<SyncResult> sync(@Nullable final String brokerAccountId,
+                                              @NotNull final OffsetDateTime initialFrom) {
+        final AccountLog log;
+        final OffsetDateTime from;
+        try {
+            log = account(brokerAccountId);
+            synchronized (log) {
+                from = log.syncFrom(initialFrom);
+            }
+        } catch (IOException ex) {
+            final CompletableFuture<SyncResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+        final OffsetDateTime to = OffsetDateTime.now(clock);
+
+        final List<CompletableFuture<Operations>> pages = new ArrayList<>();
+        for (OffsetDateTime pageFrom = from; pageFrom.isBefore(to); pageFrom = pageFrom.plus(pageSize)) {
+            final OffsetDateTime pageTo = pageFrom.plus(pageSize).isBefore(to) ? pageFrom.plus(pageSize) : to;
+            pages.add(context.getOperations(pageFrom, pageTo, null, brokerAccountId));
+        }
+
+        return CompletableFuture.allOf(pages.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            int fetched = 0;
+            int added = 0;
+            int updated = 0;
+            synchronized (log) {
+                try {
+                    for (final CompletableFuture<Operations> page : pages) {
+                        for (final Operation operation : page.join().getOperations()) {
+                            fetched++;
+                            switch (log.merge(operation)) {
+                                case ADDED:
+                                    added++;
+                                    break;
+                                case UPDATED:
+                                    updated++;
+                                    break;
+                                default:
+                                    break;
+                            }
+                        }
+                    }
+                    log.flush();
+                } catch (IOException ex) {
+                    log.recover(ex);
+                    throw new UncheckedIOException("Не удалось сохранить операции счёта " + log.account, ex);
+                }
+            }
+            final SyncResult result = new SyncResult(from, to, pages.size(), fetched, added, updated);
+            logger.info("Операции счёта " + log.account + " синхронизированы: " + result);
+            return result;
+        });
+    }
+
+    /**
+     * Чтение сохранённых операций без обращения к серверу.
+     *
+     * @param brokerAccountId Идентификатор брокерского счёта или null для счёта по умолчанию.
+     * @param from            Начало промежутка, включительно.
+     * @param to              Конец промежутка, не включительно.
+     *
+     * @return Операции в порядке времени.
+     *
+     * @throws IOException Если файл счёта не удалось прочитать.
+     */
+    @NotNull
+    public List<Operation> getOperations(@Nullable final String brokerAccountId,
+                                         @NotNull final OffsetDateTime from,
+                                         @NotNull final OffsetDateTime to) throws IOException {
+        final AccountLog log = account(brokerAccountId);
+        final List<Operation> result = new ArrayList<>();
+        synchronized (log) {
+            for (final Operation operation : log.operations.values()) {
+                final OffsetDateTime date = operation.getDate();
+                if (date != null && !date.isBefore(from) && date.isBefore(to)) {
+                    result.add(operation);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(Operation::getDate));
+        return result;
+    }
+
+    /**
+     * @param brokerAccountId Идентификатор брокерского счёта или null для счёта по умолчанию.
+     *
+     * @return Отметка последней завершённой операции или null, если их ещё нет.
+     *
+     * @throws IOException Если файл счёта не удалось прочитать.
+     */
+    @Nullable
+    public Watermark getWatermark(@Nullable final String brokerAccountId) throws IOException {
+        final AccountLog log = account(brokerAccountId);
+        synchronized (log) {
+            return log.watermark();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        synchronized (accounts) {
+            for (final AccountLog log : accounts.values()) {
+                try {
+                    synchronized (log) {
+                        log.close();
+                    }
+                } catch (IOException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else {
+                        failure.addSuppressed(ex);
+                    }
+                }
+            }
+            accounts.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @NotNull
+    private AccountLog account(@Nullable final String brokerAccountId) throws IOException {
+        final String account = brokerAccountId == null ? DEFAULT_ACCOUNT : brokerAccountId;
+        synchronized (accounts) {
+            AccountLog log = accounts.get(account);
+            if (log == null) {
+                log = new AccountLog(account, directory.resolve(fileName(account)));
+                accounts.put(account, log);
+            }
+            return log;
+        }
+    }
+
+    @NotNull
+    private static String fileName(@NotNull final String account) {
+        final StringBuilder sb = new StringBuilder(account.length() + 7);
+        for (int i = 0; i < account.length(); i++) {
+            final char c = account.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' ? c : '_');
+        }
+        return sb.append(".ndjson").toString();
+    }
+
+    private enum Merge {
+        ADDED,
+        UPDATED,
+        UNCHANGED
+    }
+
+    /**
+     * Операции одного счёта: актуальные версии в памяти и файл, в который дописываются изменения.
+     */
+    private final class AccountLog {
+        final String account;
+        final Path file;
+        final Map<String, Operation> operations = new LinkedHashMap<>();
+        final Map<String, String> lines = new HashMap<>();
+        BufferedWriter writer;
+
+        AccountLog(@NotNull final String account, @NotNull final Path file) throws IOException {
+            this.account = account;
+            this.file = file;
+            load();
+        }
+
+        private void load() throws IOException {
+            if (!Files.exists(file)) {
+                return;
+            }
+            repairTail();
+            long total = 0;
+            long broken = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                long lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    final Operation operation = parse(line);
+                    if (operation == null) {
+                        broken++;
+                        logger.warn("Пропущена неразборчивая строка " + lineNumber + " в " + file);
+                        continue;
+                    }
+                    operations.put(operation.getId(), operation);
+                    lines.put(operation.getId(), line);
+                    total++;
+                }
+            }
+            if (broken > 0 || total - operations.size() > operations.size()) {
+                compact();
+            }
+        }
+
+        // Завершение файла на границе строки: недописанная строка отрезается, а целая, которой не
+        // хватило только перевода строки, дополняется им.
+        private void repairTail() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final long size = channel.size();
+                final long end = lastLineEnd(channel, size);
+                if (end == size) {
+                    return;
+                }
+                final ByteBuffer tail = ByteBuffer.allocate(Math.toIntExact(size - end));
+                while (tail.hasRemaining() && channel.read(tail, end + tail.position()) >= 0) {
+                    // читаем хвост целиком
+                }
+                if (parse(new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8)) != null) {
+                    final ByteBuffer separator = ByteBuffer.wrap(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+                    while (separator.hasRemaining()) {
+                        channel.write(separator, size + separator.position());
+                    }
+                    logger.warn("Последняя строка " + file + " завершена переводом строки");
+                } else {
+                    channel.truncate(end);
+                    logger.warn("Отброшена недописанная последняя строка " + file + " (" + (size - end) + " байт)");
+                }
+            }
+        }
+
+        // Позиция сразу за последним переводом строки или 0, если его нет.
+        private long lastLineEnd(@NotNull final FileChannel channel, final long size) throws IOException {
+            final ByteBuffer chunk = ByteBuffer.allocate(4096);
+            long position = size;
+            while (position > 0) {
+                final int length = (int) Math.min(chunk.capacity(), position);
+                position -= length;
+                chunk.clear().limit(length);
+                while (chunk.hasRemaining() && channel.read(chunk, position + chunk.position()) >= 0) {
+                    // читаем блок целиком
+                }
+                for (int i = chunk.position() - 1; i >= 0; i--) {
+                    if (chunk.get(i) == '\n') {
+                        return position + i + 1;
+                    }
+                }
+            }
+            return 0;
+        }
+
+        @Nullable
+        private Operation parse(@NotNull final String line) {
+            try {
+                final Operation operation = mapper.readValue(line, Operation.class);
+                return operation.getId() == null ? null : operation;
+            } catch (JsonProcessingException ex) {
+                return null;
+            }
+        }
+
+        private void compact() throws IOException {
+            final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (final String id : operations.keySet()) {
+                    out.write(lines.get(id));
+                    out.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Файл операций " + file + " сжат до " + operations.size() + " строк");
+        }
+
+        @NotNull
+        OffsetDateTime syncFrom(@NotNull final OffsetDateTime initialFrom) {
+            final Watermark watermark = watermark();
+            OffsetDateTime from = watermark == null ? initialFrom : watermark.getTime().minus(overlap);
+            for (final Operation operation : operations.values()) {
+                if (operation.getStatus() == OperationStatus.PROGRESS && operation.getDate() != null
+                        && operation.getDate().isBefore(from)) {
+                    from = operation.getDate();
+                }
+            }
+            return from;
+        }
+
+        @Nullable
+        Watermark watermark() {
+            Operation last = null;
+            for (final Operation operation : operations.values()) {
+                if (operation.getStatus() == OperationStatus.PROGRESS || operation.getDate() == null) {
+                    continue;
+                }
+                if (last == null || operation.getDate().isAfter(last.getDate())) {
+                    last = operation;
+                }
+            }
+            return last == null ? null : new Watermark(last.getDate(), last.getId());
+        }
+
+        @NotNull
+        Merge merge(@NotNull final Operation operation) throws IOException {
+            final String line = mapper.writeValueAsString(operation);
+            final String previous = lines.get(operation.getId());
+            if (line.equals(previous)) {
+                return Merge.UNCHANGED;
+            }
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(line);
+            writer.newLine();
+            lines.put(operation.getId(), line);
+            operations.put(operation.getId(), operation);
+            return previous == null ? Merge.ADDED : Merge.UPDATED;
+        }
+
+        // После ошибки записи неизвестно, что из буфера дошло до диска, поэтому состояние счёта
+        // перечитывается из файла, а недописанная строка отрезается.
+        void recover(@NotNull final IOException cause) {
+            try {
+                close();
+            } catch (IOException ex) {
+                cause.addSuppressed(ex);
+            }
+            operations.clear();
+            lines.clear();
+            try {
+                load();
+            } catch (IOException ex) {
+                cause.addSuppressed(ex);
+            }
+        }
+
+        void flush() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Отметка синхронизации: время и идентификатор последней завершённой операции счёта.
+     */
+    public static final class Watermark {
+        private final OffsetDateTime time;
+        private final String operationId;
+
+        Watermark(@NotNull final OffsetDateTime time, @NotNull final String operationId) {
+            this.time = time;
+            this.operationId = operationId;
+        }
+
+        @NotNull
+        public OffsetDateTime getTime() {
+            return time;
+        }
+
+        @NotNull
+        public String getOperationId() {
+            return operationId;
+        }
+
+        @Override
+        public String toString() {
+            return "Watermark(time = " + time + ", operationId = " + operationId + ")";
+        }
+    }
+
+    /**
+     * Итог синхронизации счёта.
+     */
+    public static final class SyncResult {
+        private final OffsetDateTime from;
+        private final OffsetDateTime to;
+        private final int pages;
+        private final int fetched;
+        private final int added;
+        private final int updated;
+
+        SyncResult(@NotNull final OffsetDateTime from,
+                   @NotNull final OffsetDateTime to,
+                   final int pages,
+                   final int fetched,
+                   final int added,
+                   final int updated) {
+            this.from = from;
+            this.to = to;
+            this.pages = pages;
+            this.fetched = fetched;
+            this.added = added;
+            this.updated = updated;
+        }
+
+        /**
+         * @return Начало запрошенного окна.
+         */
+        @NotNull
+        public OffsetDateTime getFrom() {
+            return from;
+        }
+
+        /**
+         * @return Конец запрошенного окна.
+         */
+        @NotNull
+        public OffsetDateTime getTo() {
+            return to;
+        }
+
+        /**
+         * @return Количество запросов, на которые разбито окно.
+         */
+        public int getPages() {
+            return pages;
+        }
+
+        /**
+         * @return Количество полученных операций, включая повторы.
+         */
+        public int getFetched() {
+            return fetched;
+        }
+
+        /**
+         * @return Количество новых операций.
+         */
+        public int getAdded() {
+            return added;
+        }
+
+        /**
+         * @return Количество изменившихся операций.
+         */
+        public int getUpdated() {
+            return updated;
+        }
+
+        @Override
+        public String toString() {
+            return "SyncResult(from = " + from +
+                    ", to = " + to +
+                    ", pages = " + pages +
+                    ", fetched = " + fetched +
+                    ", added = " + added +
+                    ", updated = " + updated +
+                    ")";
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package ru.tinkoff.invest.openapi.orders;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.OrdersContext;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.PlacedLimitOrder;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Пакетное выставление и отзыв заявок.
+ *
+ * Одновременно выполняется не больше {@code parallelism} запросов; остальные ждут своей очереди
+ * здесь, а не в очереди {@link ru.tinkoff.invest.openapi.okhttp.RequestScheduler}, поэтому пакет
+ * не вытесняет другие запросы группы orders. Запросы по одному FIGI выполняются строго по очереди
+ * в порядке передачи, по разным FIGI - параллельно. Ошибка одного запроса не останавливает
+ * остальные, включая следующие по тому же FIGI.
+ *
+ * У пакета общий срок: по его истечении результат завершается сразу, запросы, которые ещё не
+ * начались, получают {@link BulkResult.Status#SKIPPED}, а уже отправленные -
+ * {@link BulkResult.Status#TIMED_OUT}, поскольку их исход неизвестен.
+ */
+public final class BulkOrders implements Closeable {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * Лимитная заявка для пакетного выставления.
+     */
+    public static final class LimitOrderPlacement {
+        private final String figi;
+        private final LimitOrderRequest request;
+        private final String brokerAccountId;
+
+        /**
+         * @param figi            Идентификатор инструмента.
+         * @param request         Параметры заявки.
+         * @param brokerAccountId Номер счета (по умолчанию - Тинькофф).
+         */
+        public LimitOrderPlacement(@NotNull final String figi,
+                                   @NotNull final LimitOrderRequest request,
+                                   @Nullable final String brokerAccountId) {
+            this.figi = figi;
+            this.request = request;
+            this.brokerAccountId = brokerAccountId;
+        }
+
+        @NotNull
+        public String getFigi() {
+            return figi;
+        }
+
+        @NotNull
+        public LimitOrderRequest getRequest() {
+            return request;
+        }
+
+        @Nullable
+        public String getBrokerAccountId() {
+            return brokerAccountId;
+        }
+
+        @Override
+        public String toString() {
+            return "LimitOrderPlacement(figi = " + figi +
+                    ", request = " + request +
+                    ", brokerAccountId = " + brokerAccountId +
+                    ")";
+        }
+    }
+
+    /**
+     * Итог одного запроса пакета.
+     *
+     * @param <I> Тип элемента пакета.
+     * @param <R> Тип ответа сервера.
+     */
+    public static final class BulkResult<I, R> {
+
+        public enum Status {
+            /** Запрос выполнен успешно. */
+            DONE,
+            /** Сервер вернул ошибку или запрос не удалось отправить. */
+            FAILED,
+            /** Запрос отправлен, но ответ не получен до истечения срока. */
+            TIMED_OUT,
+            /** Запрос не отправлялся: срок истёк раньше. */
+            SKIPPED
+        }
+
+        private final I item;
+        private final Status status;
+        private final R result;
+        private final Throwable error;
+
+        BulkResult(@NotNull final I item,
+                   @NotNull final Status status,
+                   @Nullable final R result,
+                   @Nullable final Throwable error) {
+            this.item = item;
+            this.status = status;
+            this.result = result;
+            this.error = error;
+        }
+
+        @NotNull
+        public I getItem() {
+            return item;
+        }
+
+        @NotNull
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isDone() {
+            return status == Status.DONE;
+        }
+
+        /**
+         * @return Ответ сервера, если запрос выполнен успешно.
+         */
+        @Nullable
+        public R getResult() {
+            return result;
+        }
+
+        /**
+         * @return Ошибка, если запрос завершился неудачно.
+         */
+        @Nullable
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "BulkResult(item = " + item +
+                    ", status = " + status +
+                    ", result = " + result +
+                    ", error = " + error +
+                    ")";
+        }
+    }
+
+    private final OrdersContext orders;
+    private final int parallelism;
+    private final ScheduledExecutorService timer;
+
+    /**
+     * @param orders      Контекст заявок.
+     * @param parallelism Наибольшее число одновременных запросов одного пакета.
+     */
+    public BulkOrders(@NotNull final OrdersContext orders, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Число одновременных запросов должно быть положительным");
+        }
+        this.orders = orders;
+        this.parallelism = parallelism;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "bulk-orders");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Создание исполнителя с числом одновременных запросов по умолчанию.
+     *
+     * @param orders Контекст заявок.
+     */
+    public BulkOrders(@NotNull final OrdersContext orders) {
+        this(orders, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Выставление пакета лимитных заявок.
+     *
+     * @param placements Заявки; заявки по одному FIGI выставляются в порядке перечисления.
+     * @param deadline   Срок на весь пакет.
+     *
+     * @return Итоги в порядке перечисления заявок.
+     */
+    @NotNull
+    public CompletableFuture<List<BulkResult<LimitOrderPlacement, PlacedLimitOrder>>> placeLimitOrders(
+            @NotNull final Collection<LimitOrderPlacement> placements,
+            @NotNull final Duration deadline) {
+        final long deadlineAt = System.nanoTime() + deadline.toNanos();
+        return run(new ArrayList<>(placements), deadlineAt, LimitOrderPlacement::getFigi,
+                placement -> orders.placeLimitOrder(placement.getFigi(), placement.getRequest(),
+                        placement.getBrokerAccountId()));
+    }
+
+    /**
+     * Отзыв всех активных заявок счёта, подходящих под фильтр.
+     *
+     * @param brokerAccountId Номер счета (по умолчанию - Тинькофф).
+     * @param filter          Какие заявки отзывать.
+     * @param deadline        Срок на весь пакет, включая получение списка заявок.
+     *
+     * @return Итоги по каждой отзываемой заявке.
+     */
+    @NotNull
+    public CompletableFuture<List<BulkResult<Order, Void>>> cancelAll(@Nullable final String brokerAccountId,
+                                                                      @NotNull final Predicate<Order> filter,
+                                                                      @NotNull final Duration deadline) {
+        final long deadlineAt = System.nanoTime() + deadline.toNanos();
+        final CompletableFuture<List<Order>> active = new CompletableFuture<>();
+        orders.getOrders(brokerAccountId).whenComplete((list, error) -> {
+            if (error == null) {
+                active.complete(list);
+            } else {
+                active.completeExceptionally(error);
+            }
+        });
+        final ScheduledFuture<?> expiry = timer.schedule(
+                () -> active.completeExceptionally(new TimeoutException(
+                        "Список заявок не получен до истечения срока")),
+                deadline.toNanos(), TimeUnit.NANOSECONDS);
+        return active.thenCompose(list -> {
+            expiry.cancel(false);
+            final List<Order> selected = new ArrayList<>();
+            for (final Order order : list) {
+                if (filter.test(order)) {
+                    selected.add(order);
+                }
+            }
+            return run(selected, deadlineAt, Order::getFigi,
+                    order -> orders.cancelOrder(order.getOrderId(), brokerAccountId));
+        });
+    }
+
+    /**
+     * Отзыв всех активных заявок счёта.
+     *
+     * @param brokerAccountId Номер счета (по умолчанию - Тинькофф).
+     * @param deadline        Срок на весь пакет, включая получение списка заявок.
+     *
+     * @return Итоги по каждой отзываемой заявке.
+     */
+    @NotNull
+    public CompletableFuture<List<BulkResult<Order, Void>>> cancelAll(@Nullable final String brokerAccountId,
+                                                                      @NotNull final Duration deadline) {
+        return cancelAll(brokerAccountId, order -> true, deadline);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    @NotNull
+    private <I, R> CompletableFuture<List<BulkResult<I, R>>> run(
+            @NotNull final List<I> items,
+            final long deadlineAt,
+            @NotNull final Function<I, String> laneKey,
+            @NotNull final Function<I, CompletableFuture<R>> call) {
+        final Batch<I, R> batch = new Batch<>(items, laneKey, call);
+        if (items.isEmpty()) {
+            batch.result.complete(Collections.emptyList());
+            return batch.result;
+        }
+        final ScheduledFuture<?> expiry = timer.schedule(batch::expire,
+                deadlineAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        batch.result.whenComplete((ignored, error) -> expiry.cancel(false));
+        batch.dispatch();
+        return batch.result;
+    }
+
+    /**
+     * Состояние выполнения одного пакета. Поля защищены монитором пакета.
+     */
+    private final class Batch<I, R> {
+        final List<I> items;
+        final Function<I, CompletableFuture<R>> call;
+        final List<BulkResult<I, R>> results;
+        final List<ArrayDeque<Integer>> laneOf;
+        final boolean[] sent;
+        final ArrayDeque<ArrayDeque<Integer>> ready = new ArrayDeque<>();
+        final CompletableFuture<List<BulkResult<I, R>>> result = new CompletableFuture<>();
+        int inFlight;
+        int finished;
+        boolean terminated;
+        boolean dispatching;
+
+        Batch(@NotNull final List<I> items,
+              @NotNull final Function<I, String> laneKey,
+              @NotNull final Function<I, CompletableFuture<R>> call) {
+            this.items = items;
+            this.call = call;
+            this.results = new ArrayList<>(Collections.nCopies(items.size(), (BulkResult<I, R>) null));
+            this.laneOf = new ArrayList<>(items.size());
+            this.sent = new boolean[items.size()];
+
+            final Map<String, ArrayDeque<Integer>> lanes = new LinkedHashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                final ArrayDeque<Integer> lane = lanes.computeIfAbsent(laneKey.apply(items.get(i)),
+                        key -> new ArrayDeque<>());
+                lane.add(i);
+                laneOf.add(lane);
+            }
+            ready.addAll(lanes.values());
+        }
+
+        /**
+         * Запуск запросов, пока есть свободные места и готовые полосы. Запрос, завершившийся прямо
+         * при вызове, снова вызывает dispatch; такой вложенный вызов только оставляет работу
+         * внешнему циклу, так что глубина стека не растёт с длиной полосы.
+         */
+        void dispatch() {
+            synchronized (this) {
+                if (dispatching) {
+                    return;
+                }
+                dispatching = true;
+            }
+            while (true) {
+                final List<Integer> started = new ArrayList<>();
+                synchronized (this) {
+                    while (!terminated && inFlight < parallelism && !ready.isEmpty()) {
+                        // Пока запрос полосы выполняется, её нет в ready: следующий запрос по тому же
+                        // FIGI начнётся только после ответа на предыдущий.
+                        final int index = ready.poll().peek();
+                        sent[index] = true;
+                        started.add(index);
+                        inFlight++;
+                    }
+                    if (started.isEmpty()) {
+                        dispatching = false;
+                        return;
+                    }
+                }
+                for (final Integer index : started) {
+                    start(index);
+                }
+            }
+        }
+
+        private void start(final int index) {
+            CompletableFuture<R> future;
+            try {
+                future = call.apply(items.get(index));
+            } catch (RuntimeException ex) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(ex);
+            }
+            future.whenComplete((value, error) -> complete(index, value, error));
+        }
+
+        private void complete(final int index, @Nullable final R value, @Nullable final Throwable error) {
+            final boolean last;
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                results.set(index, new BulkResult<>(items.get(index),
+                        error == null ? BulkResult.Status.DONE : BulkResult.Status.FAILED,
+                        value, unwrap(error)));
+                inFlight--;
+                finished++;
+                final ArrayDeque<Integer> lane = laneOf.get(index);
+                lane.poll();
+                if (!lane.isEmpty()) {
+                    ready.add(lane);
+                }
+                last = finished == items.size();
+                terminated = last;
+            }
+            if (last) {
+                result.complete(Collections.unmodifiableList(results));
+            } else {
+                dispatch();
+            }
+        }
+
+        void expire() {
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) == null) {
+                        results.set(i, new BulkResult<>(items.get(i),
+                                sent[i] ? BulkResult.Status.TIMED_OUT : BulkResult.Status.SKIPPED,
+                                null, null));
+                    }
+                }
+            }
+            result.complete(Collections.unmodifiableList(results));
+        }
+    }
+
+    @Nullable
+    private static Throwable unwrap(@Nullable final Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,141 @@
+package ru.tinkoff.invest.openapi.orders;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Изменение состояния отслеживаемой заявки.
+ */
+public final class OrderEvent {
+
+    /**
+     * Вид изменения.
+     */
+    public enum Type {
+        /** Заявка исполнена частично и остаётся активной. */
+        PARTIAL_FILL,
+        /** Заявка исполнена полностью. */
+        FILLED,
+        /** Заявка снята; исполненная часть, если была, указана в {@link #getExecutedLots()}. */
+        CANCELLED,
+        /** Заявка отклонена. */
+        REJECTED,
+        /** Заявка больше не активна, но её итог установить не удалось. */
+        CLOSED
+    }
+
+    private final Type type;
+    private final String orderId;
+    private final String figi;
+    private final String brokerAccountId;
+    private final OperationType operation;
+    private final int requestedLots;
+    private final int executedLots;
+    private final BigDecimal price;
+    private final String message;
+    private final Instant time;
+
+    OrderEvent(@NotNull final Type type,
+               @NotNull final String orderId,
+               @NotNull final String figi,
+               @Nullable final String brokerAccountId,
+               @Nullable final OperationType operation,
+               final int requestedLots,
+               final int executedLots,
+               @Nullable final BigDecimal price,
+               @Nullable final String message,
+               @NotNull final Instant time) {
+        this.type = type;
+        this.orderId = orderId;
+        this.figi = figi;
+        this.brokerAccountId = brokerAccountId;
+        this.operation = operation;
+        this.requestedLots = requestedLots;
+        this.executedLots = executedLots;
+        this.price = price;
+        this.message = message;
+        this.time = time;
+    }
+
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    @NotNull
+    public String getOrderId() {
+        return orderId;
+    }
+
+    @NotNull
+    public String getFigi() {
+        return figi;
+    }
+
+    /**
+     * @return Идентификатор брокерского счёта или null для счёта по умолчанию.
+     */
+    @Nullable
+    public String getBrokerAccountId() {
+        return brokerAccountId;
+    }
+
+    @Nullable
+    public OperationType getOperation() {
+        return operation;
+    }
+
+    public int getRequestedLots() {
+        return requestedLots;
+    }
+
+    /**
+     * @return Количество исполненных лотов на момент события.
+     */
+    public int getExecutedLots() {
+        return executedLots;
+    }
+
+    /**
+     * @return Цена лимитной заявки или null для рыночной.
+     */
+    @Nullable
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    /**
+     * @return Причина отклонения или сообщение сервера, если есть.
+     */
+    @Nullable
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return Момент, когда изменение обнаружено.
+     */
+    @NotNull
+    public Instant getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderEvent(type = " + type +
+                ", orderId = " + orderId +
+                ", figi = " + figi +
+                ", brokerAccountId = " + brokerAccountId +
+                ", operation = " + operation +
+                ", requestedLots = " + requestedLots +
+                ", executedLots = " + executedLots +
+                ", price = " + price +
+                ", message = " + message +
+                ", time = " + time +
+                ")";
+    }
+}
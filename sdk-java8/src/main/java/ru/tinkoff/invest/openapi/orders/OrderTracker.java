@@ -0,0 +1,659 @@
+package ru.tinkoff.invest.openapi.orders;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.OperationsContext;
+import ru.tinkoff.invest.openapi.OrdersContext;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.MarketOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.Operation;
+import ru.tinkoff.invest.openapi.model.rest.OperationStatus;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+import ru.tinkoff.invest.openapi.model.rest.Operations;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.OrderStatus;
+import ru.tinkoff.invest.openapi.model.rest.PlacedLimitOrder;
+import ru.tinkoff.invest.openapi.model.rest.PlacedMarketOrder;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отслеживание жизненного цикла заявок с рассылкой изменений подписчикам.
+ *
+ * Заявки, выставленные через {@link #placeLimitOrder} и {@link #placeMarketOrder} (или взятые на
+ * учёт через {@link #track}), опрашиваются одним запросом {@link OrdersContext#getOrders} на счёт
+ * за раунд, сколько бы заявок на нём ни было. Ответ сравнивается с последним известным состоянием
+ * каждой заявки, и подписчики получают {@link OrderEvent} о частичном и полном исполнении, снятии
+ * и отклонении.
+ *
+ * Период опроса - {@code maxInterval}, делённый на число открытых заявок, но не меньше
+ * {@code minInterval}, умноженного на число опрашиваемых счетов; пока открытых заявок нет, опрос не
+ * идёт. Лимит группы orders - 100 запросов в минуту, и он общий с выставлением и отзывом заявок,
+ * поэтому {@code minInterval} по умолчанию - 1,5 секунды: опрос занимает не больше 40 запросов в
+ * минуту при любом числе счетов, оставляя остальные 60 на сами заявки. Заявка, пропавшая из списка
+ * активных, разрешается по операции с тем же идентификатором: если задан {@link OperationsContext},
+ * по ней определяется исполненное количество, иначе заявка считается снятой, если её снимали через
+ * {@link #cancelOrder}, и закрытой с неизвестным итогом в остальных случаях.
+ *
+ * Всё состояние меняется и все события доставляются в одном потоке трекера, поэтому подписчики
+ * получают события последовательно и не должны блокироваться в обработчиках. События, на которые
+ * подписчик ещё не запросил спрос, копятся в его очереди.
+ */
+public final class OrderTracker implements Publisher<OrderEvent>, Closeable {
+
+    public static final Duration DEFAULT_MIN_INTERVAL = Duration.ofMillis(1500);
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(5);
+
+    /**
+     * Сколько раундов ждать появления операции по пропавшей заявке.
+     */
+    private static final int RESOLVE_ATTEMPTS = 3;
+
+    private final OrdersContext orders;
+    private final OperationsContext operations;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final ScheduledExecutorService timer;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OrderTracker.class);
+
+    // Поля ниже используются только в потоке трекера.
+    private final Map<String, TrackedOrder> tracked = new LinkedHashMap<>();
+    private ScheduledFuture<?> next;
+    private boolean polling;
+
+    private volatile int openOrders;
+    private volatile Map<String, Integer> openOrdersByAccount = Collections.emptyMap();
+    private volatile boolean closed;
+
+    /**
+     * @param orders      Контекст заявок.
+     * @param operations  Контекст операций для разрешения пропавших заявок или null.
+     * @param minInterval Наименьший период опроса.
+     * @param maxInterval Период опроса при одной открытой заявке.
+     */
+    public OrderTracker(@NotNull final OrdersContext orders,
+                        @Nullable final OperationsContext operations,
+                        @NotNull final Duration minInterval,
+                        @NotNull final Duration maxInterval) {
+        if (minInterval.isNegative() || minInterval.isZero() || maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Период опроса должен быть положительным и не больше наибольшего");
+        }
+        this.orders = orders;
+        this.operations = operations;
+        this.minIntervalNanos = minInterval.toNanos();
+        this.maxIntervalNanos = maxInterval.toNanos();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "order-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Создание трекера с периодами опроса по умолчанию.
+     *
+     * @param orders     Контекст заявок.
+     * @param operations Контекст операций для разрешения пропавших заявок или null.
+     */
+    public OrderTracker(@NotNull final OrdersContext orders, @Nullable final OperationsContext operations) {
+        this(orders, operations, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+    }
+
+    /**
+     * Выставление лимитной заявки с постановкой на учёт.
+     *
+     * @param figi             Идентификатор инструмента.
+     * @param limitOrder       Параметры отправляемой заявки.
+     * @param brokerAccountId  Номер счета (по умолчанию - Тинькофф).
+     *
+     * @return Информацию о выставлении заявки; к моменту завершения заявка уже на учёте.
+     */
+    @NotNull
+    public CompletableFuture<PlacedLimitOrder> placeLimitOrder(@NotNull final String figi,
+                                                               @NotNull final LimitOrderRequest limitOrder,
+                                                               @Nullable final String brokerAccountId) {
+        return orders.placeLimitOrder(figi, limitOrder, brokerAccountId).thenApplyAsync(placed -> {
+            register(new TrackedOrder(
+                    placed.getOrderId(),
+                    figi,
+                    brokerAccountId,
+                    placed.getOperation(),
+                    placed.getRequestedLots(),
+                    limitOrder.getPrice()
+            ), placed.getStatus(), placed.getExecutedLots(), placed.getRejectReason(), placed.getMessage());
+            return placed;
+        }, timer);
+    }
+
+    /**
+     * Выставление рыночной заявки с постановкой на учёт.
+     *
+     * @param figi             Идентификатор инструмента.
+     * @param marketOrder      Параметры отправляемой заявки.
+     * @param brokerAccountId  Номер счета (по умолчанию - Тинькофф).
+     *
+     * @return Информацию о выставлении заявки; к моменту завершения заявка уже на учёте.
+     */
+    @NotNull
+    public CompletableFuture<PlacedMarketOrder> placeMarketOrder(@NotNull final String figi,
+                                                                 @NotNull final MarketOrderRequest marketOrder,
+                                                                 @Nullable final String brokerAccountId) {
+        return orders.placeMarketOrder(figi, marketOrder, brokerAccountId).thenApplyAsync(placed -> {
+            register(new TrackedOrder(
+                    placed.getOrderId(),
+                    figi,
+                    brokerAccountId,
+                    placed.getOperation(),
+                    placed.getRequestedLots(),
+                    null
+            ), placed.getStatus(), placed.getExecutedLots(), placed.getRejectReason(), placed.getMessage());
+            return placed;
+        }, timer);
+    }
+
+    /**
+     * Постановка на учёт уже выставленной заявки, например, полученной через
+     * {@link OrdersContext#getOrders} после перезапуска.
+     *
+     * @param order           Активная заявка.
+     * @param brokerAccountId Номер счета (по умолчанию - Тинькофф).
+     */
+    public void track(@NotNull final Order order, @Nullable final String brokerAccountId) {
+        execute(() -> register(new TrackedOrder(
+                order.getOrderId(),
+                order.getFigi(),
+                brokerAccountId,
+                order.getOperation(),
+                order.getRequestedLots(),
+                order.getPrice()
+        ), order.getStatus(), order.getExecutedLots(), null, null));
+    }
+
+    /**
+     * Отзыв отслеживаемой заявки. Событие {@link OrderEvent.Type#CANCELLED} придёт, когда заявка
+     * пропадёт из списка активных.
+     *
+     * @param orderId         Идентификатор заявки.
+     * @param brokerAccountId Номер счета (по умолчанию - Тинькофф).
+     *
+     * @return Ничего.
+     */
+    @NotNull
+    public CompletableFuture<Void> cancelOrder(@NotNull final String orderId,
+                                               @Nullable final String brokerAccountId) {
+        execute(() -> {
+            final TrackedOrder order = tracked.get(orderId);
+            if (order != null) {
+                order.cancelRequested = true;
+            }
+        });
+        return orders.cancelOrder(orderId, brokerAccountId).thenRunAsync(() -> {
+            if (tracked.containsKey(orderId)) {
+                schedule(minRoundNanos());
+            }
+        }, timer);
+    }
+
+    /**
+     * @return Количество заявок, которые ещё не закрыты.
+     */
+    public int getOpenOrders() {
+        return openOrders;
+    }
+
+    /**
+     * @return Количество незакрытых заявок по номеру счёта; заявки, выставленные без номера счёта,
+     * учитываются под ключом null.
+     */
+    @NotNull
+    public Map<String, Integer> getOpenOrdersByAccount() {
+        return openOrdersByAccount;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super OrderEvent> subscriber) {
+        Objects.requireNonNull(subscriber);
+        final EventSubscription subscription = new EventSubscription(subscriber);
+        try {
+            subscriber.onSubscribe(subscription);
+        } catch (Throwable t) {
+            subscription.cancel();
+            logger.error("Подписчик на события заявок завершился с ошибкой в onSubscribe", t);
+            return;
+        }
+        // Подписка попадает в рассылку только после onSubscribe, иначе событие из потока трекера
+        // могло бы дойти до подписчика раньше, чем завершится onSubscribe.
+        subscriptions.add(subscription);
+        if (closed) {
+            subscription.completed = true;
+        }
+        subscription.start();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        for (final EventSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private void execute(@NotNull final Runnable task) {
+        try {
+            timer.execute(task);
+        } catch (RejectedExecutionException ex) {
+            throw new IllegalStateException("Трекер заявок остановлен", ex);
+        }
+    }
+
+    private void register(@NotNull final TrackedOrder order,
+                          @Nullable final OrderStatus status,
+                          @Nullable final Integer executedLots,
+                          @Nullable final String rejectReason,
+                          @Nullable final String message) {
+        if (tracked.containsKey(order.orderId)) {
+            return;
+        }
+        if (status == OrderStatus.REJECTED) {
+            emit(order, OrderEvent.Type.REJECTED, order.executedLots, rejectReason != null ? rejectReason : message);
+            return;
+        }
+
+        tracked.put(order.orderId, order);
+        final int executed = executedLots == null ? 0 : executedLots;
+        if (!apply(order, status, executed)) {
+            updateOpenOrders();
+            schedule(minRoundNanos());
+        }
+    }
+
+    /**
+     * Применение наблюдаемого состояния заявки.
+     *
+     * @return true, если заявка закрыта и снята с учёта.
+     */
+    private boolean apply(@NotNull final TrackedOrder order,
+                          @Nullable final OrderStatus status,
+                          final int executedLots) {
+        final boolean filled = status == OrderStatus.FILL || executedLots >= order.requestedLots;
+        if (filled) {
+            finish(order, OrderEvent.Type.FILLED, Math.max(executedLots, order.requestedLots), null);
+            return true;
+        }
+        if (status == OrderStatus.CANCELLED) {
+            finish(order, OrderEvent.Type.CANCELLED, executedLots, null);
+            return true;
+        }
+        if (status == OrderStatus.REJECTED) {
+            finish(order, OrderEvent.Type.REJECTED, executedLots, null);
+            return true;
+        }
+        if (executedLots > order.executedLots) {
+            order.executedLots = executedLots;
+            emit(order, OrderEvent.Type.PARTIAL_FILL, executedLots, null);
+        }
+        return false;
+    }
+
+    private void finish(@NotNull final TrackedOrder order,
+                       @NotNull final OrderEvent.Type type,
+                       final int executedLots,
+                       @Nullable final String message) {
+        tracked.remove(order.orderId);
+        order.executedLots = executedLots;
+        updateOpenOrders();
+        emit(order, type, executedLots, message);
+    }
+
+    private void updateOpenOrders() {
+        final Map<String, Integer> byAccount = new HashMap<>();
+        for (final TrackedOrder order : tracked.values()) {
+            byAccount.merge(order.brokerAccountId, 1, Integer::sum);
+        }
+        openOrdersByAccount = Collections.unmodifiableMap(byAccount);
+        openOrders = tracked.size();
+    }
+
+    /**
+     * Раунд стоит по запросу на счёт, поэтому нижняя граница периода растёт с числом счетов.
+     */
+    private long minRoundNanos() {
+        return minIntervalNanos * Math.max(1, openOrdersByAccount.size());
+    }
+
+    /**
+     * Период опроса при текущем числе открытых заявок и опрашиваемых счетов.
+     */
+    long pollDelayNanos() {
+        return Math.max(minRoundNanos(), maxIntervalNanos / Math.max(1, openOrders));
+    }
+
+    private void schedule(final long delayNanos) {
+        if (closed || polling || tracked.isEmpty()) {
+            return;
+        }
+        if (next != null) {
+            if (next.getDelay(TimeUnit.NANOSECONDS) <= delayNanos) {
+                return;
+            }
+            next.cancel(false);
+        }
+        next = timer.schedule(this::poll, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void poll() {
+        next = null;
+        if (closed || tracked.isEmpty()) {
+            return;
+        }
+        polling = true;
+
+        final Map<String, List<TrackedOrder>> byAccount = new HashMap<>();
+        for (final TrackedOrder order : tracked.values()) {
+            byAccount.computeIfAbsent(order.brokerAccountId, id -> new ArrayList<>()).add(order);
+        }
+
+        final List<CompletableFuture<?>> rounds = new ArrayList<>(byAccount.size());
+        for (final Map.Entry<String, List<TrackedOrder>> account : byAccount.entrySet()) {
+            rounds.add(orders.getOrders(account.getKey())
+                    .thenComposeAsync(active -> diff(account.getValue(), active), timer)
+                    .exceptionally(error -> {
+                        logger.error("Не удалось опросить заявки счёта " + account.getKey(), error);
+                        return null;
+                    }));
+        }
+
+        CompletableFuture.allOf(rounds.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((ignored, error) -> {
+            polling = false;
+            schedule(pollDelayNanos());
+        }, timer);
+    }
+
+    @NotNull
+    private CompletableFuture<Void> diff(@NotNull final List<TrackedOrder> accountOrders,
+                                         @NotNull final List<Order> active) {
+        final Map<String, Order> byId = new HashMap<>(active.size() * 2);
+        for (final Order order : active) {
+            byId.put(order.getOrderId(), order);
+        }
+
+        final List<CompletableFuture<Void>> resolutions = new ArrayList<>();
+        for (final TrackedOrder order : accountOrders) {
+            if (!tracked.containsKey(order.orderId)) {
+                continue;
+            }
+            final Order current = byId.get(order.orderId);
+            if (current != null) {
+                order.missingRounds = 0;
+                apply(order, current.getStatus(), current.getExecutedLots() == null ? 0 : current.getExecutedLots());
+            } else {
+                resolutions.add(resolve(order));
+            }
+        }
+        return CompletableFuture.allOf(resolutions.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Разрешение заявки, пропавшей из списка активных.
+     */
+    @NotNull
+    private CompletableFuture<Void> resolve(@NotNull final TrackedOrder order) {
+        order.missingRounds++;
+        if (operations == null) {
+            closeMissing(order);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Исполнения по заявке могут появиться в операциях с задержкой, поэтому окно с запасом.
+        final OffsetDateTime from = order.trackedAt.minusMinutes(5);
+        final OffsetDateTime to = OffsetDateTime.now().plusMinutes(1);
+        return operations.getOperations(from, to, order.figi, order.brokerAccountId)
+                .handleAsync((found, error) -> {
+                    if (error != null) {
+                        logger.warn("Не удалось получить операцию по заявке " + order.orderId, error);
+                    }
+                    if (tracked.containsKey(order.orderId)) {
+                        onOperation(order, error == null ? find(found, order.orderId) : null);
+                    }
+                    return null;
+                }, timer);
+    }
+
+    private void onOperation(@NotNull final TrackedOrder order, @Nullable final Operation operation) {
+        if (operation == null || operation.getStatus() == OperationStatus.PROGRESS) {
+            if (order.missingRounds >= RESOLVE_ATTEMPTS) {
+                closeMissing(order);
+            }
+            return;
+        }
+
+        final int executed = executedLots(order, operation);
+        if (operation.getStatus() == OperationStatus.DONE && executed >= order.requestedLots) {
+            finish(order, OrderEvent.Type.FILLED, executed, null);
+        } else {
+            finish(order, OrderEvent.Type.CANCELLED, Math.max(executed, order.executedLots), null);
+        }
+    }
+
+    private void closeMissing(@NotNull final TrackedOrder order) {
+        finish(order,
+                order.cancelRequested ? OrderEvent.Type.CANCELLED : OrderEvent.Type.CLOSED,
+                order.executedLots,
+                null);
+    }
+
+    @Nullable
+    private static Operation find(@Nullable final Operations found, @NotNull final String orderId) {
+        if (found == null || found.getOperations() == null) {
+            return null;
+        }
+        for (final Operation operation : found.getOperations()) {
+            if (orderId.equals(operation.getId())) {
+                return operation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Операция считает количество в штуках, заявка - в лотах; перевод идёт через их отношение.
+     */
+    private static int executedLots(@NotNull final TrackedOrder order, @NotNull final Operation operation) {
+        final Integer quantity = operation.getQuantity();
+        final Integer executed = operation.getQuantityExecuted();
+        if (quantity == null || quantity <= 0 || executed == null) {
+            return order.executedLots;
+        }
+        return (int) ((long) order.requestedLots * executed / quantity);
+    }
+
+    private void emit(@NotNull final TrackedOrder order,
+                      @NotNull final OrderEvent.Type type,
+                      final int executedLots,
+                      @Nullable final String message) {
+        final OrderEvent event = new OrderEvent(
+                type,
+                order.orderId,
+                order.figi,
+                order.brokerAccountId,
+                order.operation,
+                order.requestedLots,
+                executedLots,
+                order.price,
+                message,
+                Instant.now());
+        logger.debug("Заявка: {}", event);
+        for (final EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    private static final class TrackedOrder {
+        final String orderId;
+        final String figi;
+        final String brokerAccountId;
+        final OperationType operation;
+        final int requestedLots;
+        final BigDecimal price;
+        final OffsetDateTime trackedAt = OffsetDateTime.now();
+
+        int executedLots;
+        int missingRounds;
+        boolean cancelRequested;
+
+        TrackedOrder(@NotNull final String orderId,
+                     @NotNull final String figi,
+                     @Nullable final String brokerAccountId,
+                     @Nullable final OperationType operation,
+                     @Nullable final Integer requestedLots,
+                     @Nullable final BigDecimal price) {
+            this.orderId = orderId;
+            this.figi = figi;
+            this.brokerAccountId = brokerAccountId;
+            this.operation = operation;
+            this.requestedLots = requestedLots == null ? 0 : requestedLots;
+            this.price = price;
+        }
+    }
+
+    private final class EventSubscription implements Subscription, Runnable {
+        final Subscriber<? super OrderEvent> subscriber;
+        final Queue<OrderEvent> queue = new ConcurrentLinkedQueue<>();
+        final AtomicLong demand = new AtomicLong();
+        // Подписка создаётся занятой: сигналы, поданные во время onSubscribe, разбираются в start.
+        final AtomicInteger wip = new AtomicInteger(1);
+
+        volatile boolean cancelled = false;
+        volatile boolean completed = false;
+        volatile Throwable error;
+
+        EventSubscription(final Subscriber<? super OrderEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n < 1) {
+                error = new IllegalArgumentException(subscriber + " violated the Reactive Streams rule 3.9 by requesting a non-positive number of elements.");
+                drain();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            queue.clear();
+        }
+
+        void offer(@NotNull final OrderEvent event) {
+            if (!cancelled) {
+                queue.offer(event);
+                drain();
+            }
+        }
+
+        void complete() {
+            completed = true;
+            drain();
+        }
+
+        void start() {
+            schedule();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (closed) {
+                // Поток трекера остановлен, оставшиеся события доставляются в вызывающем потоке.
+                run();
+            } else {
+                try {
+                    timer.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    return;
+                }
+                if (error != null) {
+                    cancel();
+                    subscriber.onError(error);
+                    return;
+                }
+                long delivered = 0;
+                final long requested = demand.get();
+                while (delivered < requested && !cancelled) {
+                    final OrderEvent event = queue.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(event);
+                    } catch (Throwable t) {
+                        cancel();
+                        logger.error("Подписчик на события заявок завершился с ошибкой", t);
+                        return;
+                    }
+                    delivered++;
+                }
+                if (delivered > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-delivered);
+                }
+                if (completed && queue.isEmpty() && !cancelled) {
+                    cancel();
+                    subscriber.onComplete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
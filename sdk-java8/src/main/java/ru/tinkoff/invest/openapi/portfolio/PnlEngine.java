@@ -0,0 +1,553 @@
+package ru.tinkoff.invest.openapi.portfolio;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.PortfolioContext;
+import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.model.rest.Currency;
+import ru.tinkoff.invest.openapi.model.rest.MoneyAmount;
+import ru.tinkoff.invest.openapi.model.rest.PortfolioPosition;
+import ru.tinkoff.invest.openapi.model.streaming.CandleInterval;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Переоценка позиций и финансовый результат в реальном времени.
+ *
+ * Позиции загружаются из портфеля ({@link #seed(List)} и его варианты), после чего движок сам
+ * подписывается в Streaming API на минутные свечи или стаканы глубины 1 по каждому инструменту
+ * портфеля и пересчитывает результат на каждом событии. По каждому инструменту хранятся
+ * количество {@code Q} и стоимость приобретения {@code C} (сумма средней цены на количество по
+ * всем счетам), так что результат позиции - {@code P * Q - C}, где {@code P} - последняя цена, а
+ * обработка события - это поиск инструмента в {@link HashMap} и несколько операций над
+ * {@code long}, независимо от размера портфеля.
+ *
+ * Цены и результаты выражены в единицах {@code 10^-priceScale} валюты инструмента, количества -
+ * в целых штуках (дробные остатки валютных позиций округляются). С точностью по умолчанию в 6
+ * знаков произведение цены на количество не переполняется, пока стоимость позиции меньше
+ * 9 * 10^12 единиц валюты. Итог считается отдельно по каждой валюте.
+ *
+ * События обрабатываются одним потоком, как того требует Reactive Streams. Чтение не берёт
+ * блокировок: отдельные значения ({@link #getTotal(Currency)}, {@link #getPnl(String)}) читаются
+ * одним volatile-чтением, а {@link #snapshot()} копирует состояние под счётчиком версий,
+ * повторяя копирование, если оно пересеклось с обработкой события.
+ *
+ * Повторная загрузка позиций подменяет книгу целиком, перенося в неё последние известные цены.
+ * Событие, обработанное старой книгой во время замены, в новую не попадает и учитывается
+ * со следующим событием по инструменту.
+ */
+public final class PnlEngine implements Subscriber<StreamingEvent> {
+
+    /**
+     * Источник цены для переоценки.
+     */
+    public enum PriceSource {
+        /** Цена закрытия минутной свечи. */
+        CANDLE,
+        /** Середина между лучшими ценами стакана глубины 1. */
+        ORDERBOOK
+    }
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final StreamingContext streaming;
+    private final PriceSource source;
+    private final int priceScale;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PnlEngine.class);
+
+    private volatile Book book = new Book(Collections.emptyList(), null);
+    private volatile Subscription subscription;
+
+    /**
+     * @param streaming  Контекст, через который оформляются подписки на цены.
+     * @param source     Источник цены.
+     * @param priceScale Количество знаков после запятой, сохраняемое в ценах.
+     */
+    public PnlEngine(@NotNull final StreamingContext streaming,
+                     @NotNull final PriceSource source,
+                     final int priceScale) {
+        if (priceScale < 0 || priceScale > 9) {
+            throw new IllegalArgumentException("Точность цены должна быть от 0 до 9 знаков");
+        }
+        this.streaming = streaming;
+        this.source = source;
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * Создание движка с точностью цен в 6 знаков после запятой.
+     *
+     * @param streaming Контекст, через который оформляются подписки на цены.
+     * @param source    Источник цены.
+     */
+    public PnlEngine(@NotNull final StreamingContext streaming, @NotNull final PriceSource source) {
+        this(streaming, source, 6);
+    }
+
+    /**
+     * Загрузка позиций счёта через REST API.
+     *
+     * @param portfolioContext Контекст портфеля.
+     * @param brokerAccountId  Идентификатор брокерского счёта.
+     *
+     * @return Завершается после загрузки позиций и отправки подписок.
+     */
+    @NotNull
+    public CompletableFuture<Void> seed(@NotNull final PortfolioContext portfolioContext,
+                                        @Nullable final String brokerAccountId) {
+        return portfolioContext.getPortfolio(brokerAccountId).thenAccept(portfolio -> seed(portfolio.getPositions()));
+    }
+
+    /**
+     * Загрузка позиций всех счетов из снимка портфеля. Подходит в качестве получателя
+     * {@link PortfolioSnapshotService#addListener}.
+     *
+     * @param snapshot Снимок портфеля.
+     */
+    public void seed(@NotNull final PortfolioSnapshot snapshot) {
+        final List<PortfolioPosition> positions = new ArrayList<>();
+        for (final List<PortfolioPosition> account : snapshot.getPositionsByAccount().values()) {
+            positions.addAll(account);
+        }
+        seed(positions);
+    }
+
+    /**
+     * Загрузка позиций. Позиции одного инструмента с разных счетов складываются. Пока по
+     * инструменту не пришло ни одного события, цена выводится из ожидаемой доходности позиции.
+     * На новые инструменты оформляются подписки, от выбывших - отписка.
+     *
+     * @param positions Позиции портфеля.
+     */
+    public synchronized void seed(@NotNull final List<PortfolioPosition> positions) {
+        final Map<String, Seed> seeds = new LinkedHashMap<>();
+        for (final PortfolioPosition position : positions) {
+            final MoneyAmount average = position.getAveragePositionPrice();
+            if (average == null || average.getValue() == null || position.getBalance() == null) {
+                logger.warn("Позиция по инструменту " + position.getFigi() + " без средней цены пропущена");
+                continue;
+            }
+            final Seed seed = seeds.computeIfAbsent(position.getFigi(), figi -> new Seed(figi, average.getCurrency()));
+            if (seed.currency != average.getCurrency()) {
+                logger.warn("Позиция по инструменту " + position.getFigi() + " в разных валютах, часть пропущена");
+                continue;
+            }
+            seed.quantity = seed.quantity.add(position.getBalance());
+            seed.cost = seed.cost.add(average.getValue().multiply(position.getBalance()));
+            final MoneyAmount yield = position.getExpectedYield();
+            if (yield != null && yield.getValue() != null) {
+                seed.expectedYield = seed.expectedYield.add(yield.getValue());
+            }
+        }
+
+        final Book previous = this.book;
+        final Book next = new Book(new ArrayList<>(seeds.values()), previous);
+        this.book = next;
+
+        for (final String figi : next.index.keySet()) {
+            if (!previous.index.containsKey(figi)) {
+                streaming.sendRequest(source == PriceSource.CANDLE
+                        ? StreamingRequest.subscribeCandle(figi, CandleInterval._1MIN)
+                        : StreamingRequest.subscribeOrderbook(figi, 1));
+            }
+        }
+        for (final String figi : previous.index.keySet()) {
+            if (!next.index.containsKey(figi)) {
+                streaming.sendRequest(source == PriceSource.CANDLE
+                        ? StreamingRequest.unsubscribeCandle(figi, CandleInterval._1MIN)
+                        : StreamingRequest.unsubscribeOrderbook(figi, 1));
+            }
+        }
+    }
+
+    /**
+     * Учёт цены инструмента. Вызывается из потока событий или вместо подписки на них, но не
+     * одновременно из нескольких потоков.
+     *
+     * @param figi  Идентификатор инструмента.
+     * @param price Цена в единицах {@code 10^-priceScale}.
+     */
+    public void update(@NotNull final String figi, final long price) {
+        final Book book = this.book;
+        final Integer slot = book.index.get(figi);
+        if (slot != null) {
+            book.update(slot, price);
+        }
+    }
+
+    @Override
+    public void onSubscribe(final Subscription s) {
+        this.subscription = s;
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final StreamingEvent event) {
+        if (source == PriceSource.CANDLE && event instanceof StreamingEvent.Candle) {
+            final StreamingEvent.Candle candle = (StreamingEvent.Candle) event;
+            if (candle.getInterval() == CandleInterval._1MIN) {
+                update(candle.getFigi(), toUnits(candle.getClosingPrice()));
+            }
+        } else if (source == PriceSource.ORDERBOOK && event instanceof StreamingEvent.Orderbook) {
+            final StreamingEvent.Orderbook orderbook = (StreamingEvent.Orderbook) event;
+            final List<BigDecimal[]> bids = orderbook.getBids();
+            final List<BigDecimal[]> asks = orderbook.getAsks();
+            if (!bids.isEmpty() && !asks.isEmpty()) {
+                update(orderbook.getFigi(), (toUnits(bids.get(0)[0]) + toUnits(asks.get(0)[0])) / 2);
+            } else if (!bids.isEmpty()) {
+                update(orderbook.getFigi(), toUnits(bids.get(0)[0]));
+            } else if (!asks.isEmpty()) {
+                update(orderbook.getFigi(), toUnits(asks.get(0)[0]));
+            }
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        logger.error("Поток цен для переоценки прерван", t);
+    }
+
+    @Override
+    public void onComplete() {
+        logger.info("Поток цен для переоценки завершён");
+    }
+
+    /**
+     * Отписка от потока событий.
+     */
+    public void cancel() {
+        final Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+    }
+
+    /**
+     * @param currency Валюта.
+     *
+     * @return Суммарный результат позиций в валюте в единицах {@code 10^-priceScale}.
+     */
+    public long getTotal(@NotNull final Currency currency) {
+        return book.totals.get(currency.ordinal());
+    }
+
+    /**
+     * @param figi Идентификатор инструмента.
+     *
+     * @return Результат позиции в единицах {@code 10^-priceScale} или 0, если позиции нет.
+     */
+    public long getPnl(@NotNull final String figi) {
+        final Book book = this.book;
+        final Integer slot = book.index.get(figi);
+        return slot == null ? 0 : book.pnls.get(slot);
+    }
+
+    /**
+     * @return Согласованный снимок всех позиций и итогов.
+     */
+    @NotNull
+    public Snapshot snapshot() {
+        final Book book = this.book;
+        final int size = book.figis.length;
+        final long[] prices = new long[size];
+        final long[] pnls = new long[size];
+        final long[] totals = new long[CURRENCIES.length];
+        while (true) {
+            final long version = book.version.get();
+            if ((version & 1) == 0) {
+                for (int i = 0; i < size; i++) {
+                    prices[i] = book.prices.get(i);
+                    pnls[i] = book.pnls.get(i);
+                }
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] = book.totals.get(i);
+                }
+                if (book.version.get() == version) {
+                    break;
+                }
+            }
+            Thread.yield();
+        }
+
+        final Map<String, PositionPnl> positions = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            positions.put(book.figis[i], new PositionPnl(
+                    book.figis[i],
+                    book.currencies[i],
+                    book.quantities[i],
+                    book.costs[i],
+                    prices[i],
+                    pnls[i],
+                    book.streamed.get(i) != 0));
+        }
+        final Map<Currency, Long> totalsByCurrency = new EnumMap<>(Currency.class);
+        for (int i = 0; i < size; i++) {
+            final Currency currency = book.currencies[i];
+            totalsByCurrency.put(currency, totals[currency.ordinal()]);
+        }
+        return new Snapshot(priceScale, positions, totalsByCurrency);
+    }
+
+    /**
+     * Перевод цены в единицы {@code 10^-priceScale}.
+     *
+     * @param price Цена.
+     *
+     * @return Цена в единицах.
+     */
+    public long toUnits(@NotNull final BigDecimal price) {
+        return price.setScale(priceScale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Перевод суммы из единиц {@code 10^-priceScale} в BigDecimal.
+     *
+     * @param units Сумма в единицах.
+     *
+     * @return Сумма.
+     */
+    @NotNull
+    public BigDecimal toMoney(final long units) {
+        return BigDecimal.valueOf(units, priceScale);
+    }
+
+    private static final class Seed {
+        final String figi;
+        final Currency currency;
+        BigDecimal quantity = BigDecimal.ZERO;
+        BigDecimal cost = BigDecimal.ZERO;
+        BigDecimal expectedYield = BigDecimal.ZERO;
+
+        Seed(@NotNull final String figi, @NotNull final Currency currency) {
+            this.figi = figi;
+            this.currency = currency;
+        }
+    }
+
+    /**
+     * Набор позиций одной загрузки. Неизменяемые поля задаются при создании, изменяемые -
+     * цены, результаты и итоги - пишет только поток событий.
+     */
+    private final class Book {
+        final Map<String, Integer> index;
+        final String[] figis;
+        final Currency[] currencies;
+        final long[] quantities;
+        final long[] costs;
+        final AtomicLongArray prices;
+        final AtomicLongArray pnls;
+        final AtomicLongArray streamed;
+        final AtomicLongArray totals;
+        // Нечётное значение - идёт обновление.
+        final AtomicLong version = new AtomicLong();
+
+        Book(@NotNull final List<Seed> seeds, @Nullable final Book previous) {
+            final int size = seeds.size();
+            this.index = new HashMap<>(size * 2);
+            this.figis = new String[size];
+            this.currencies = new Currency[size];
+            this.quantities = new long[size];
+            this.costs = new long[size];
+            this.prices = new AtomicLongArray(size);
+            this.pnls = new AtomicLongArray(size);
+            this.streamed = new AtomicLongArray(size);
+            this.totals = new AtomicLongArray(CURRENCIES.length);
+
+            for (int i = 0; i < size; i++) {
+                final Seed seed = seeds.get(i);
+                index.put(seed.figi, i);
+                figis[i] = seed.figi;
+                currencies[i] = seed.currency;
+                final BigDecimal quantity = seed.quantity.setScale(0, RoundingMode.HALF_UP);
+                quantities[i] = quantity.longValueExact();
+                // Стоимость пересчитывается на округлённое количество, чтобы не появлялся
+                // результат от самого округления.
+                costs[i] = seed.quantity.signum() == 0
+                        ? toUnits(seed.cost)
+                        : toUnits(seed.cost.multiply(quantity).divide(seed.quantity, priceScale, RoundingMode.HALF_UP));
+
+                final Integer previousSlot = previous == null ? null : previous.index.get(seed.figi);
+                final long price;
+                if (previousSlot != null && previous.streamed.get(previousSlot) != 0) {
+                    price = previous.prices.get(previousSlot);
+                    streamed.set(i, 1);
+                } else if (quantities[i] != 0) {
+                    price = toUnits(seed.cost.add(seed.expectedYield)
+                            .divide(seed.quantity, priceScale, RoundingMode.HALF_UP));
+                } else {
+                    price = 0;
+                }
+                final long pnl = quantities[i] == 0 ? 0 : price * quantities[i] - costs[i];
+                prices.set(i, price);
+                pnls.set(i, pnl);
+                totals.set(seed.currency.ordinal(), totals.get(seed.currency.ordinal()) + pnl);
+            }
+        }
+
+        /**
+         * Обновление цены позиции. Вызывается только потоком событий, поэтому чтения текущих
+         * значений - это чтения собственных записей, а публикация идёт отложенными записями
+         * между двумя изменениями версии.
+         */
+        void update(final int slot, final long price) {
+            if (quantities[slot] == 0) {
+                return;
+            }
+            final long pnl = price * quantities[slot] - costs[slot];
+            final long delta = pnl - pnls.get(slot);
+            final int currency = currencies[slot].ordinal();
+            final long version = this.version.get();
+            this.version.set(version + 1);
+            prices.lazySet(slot, price);
+            pnls.lazySet(slot, pnl);
+            streamed.lazySet(slot, 1);
+            totals.lazySet(currency, totals.get(currency) + delta);
+            this.version.lazySet(version + 2);
+        }
+    }
+
+    /**
+     * Результат одной позиции. Цены и суммы выражены в единицах {@code 10^-priceScale}.
+     */
+    public static final class PositionPnl {
+        private final String figi;
+        private final Currency currency;
+        private final long quantity;
+        private final long cost;
+        private final long price;
+        private final long pnl;
+        private final boolean streamed;
+
+        PositionPnl(@NotNull final String figi,
+                    @NotNull final Currency currency,
+                    final long quantity,
+                    final long cost,
+                    final long price,
+                    final long pnl,
+                    final boolean streamed) {
+            this.figi = figi;
+            this.currency = currency;
+            this.quantity = quantity;
+            this.cost = cost;
+            this.price = price;
+            this.pnl = pnl;
+            this.streamed = streamed;
+        }
+
+        @NotNull
+        public String getFigi() {
+            return figi;
+        }
+
+        @NotNull
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        /**
+         * @return Количество на всех счетах.
+         */
+        public long getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * @return Стоимость приобретения по средним ценам.
+         */
+        public long getCost() {
+            return cost;
+        }
+
+        /**
+         * @return Последняя цена.
+         */
+        public long getPrice() {
+            return price;
+        }
+
+        /**
+         * @return Результат позиции.
+         */
+        public long getPnl() {
+            return pnl;
+        }
+
+        /**
+         * @return true, если цена получена из Streaming API, false - если выведена из ожидаемой
+         * доходности при загрузке позиций.
+         */
+        public boolean isStreamed() {
+            return streamed;
+        }
+
+        @Override
+        public String toString() {
+            return "PositionPnl(figi = " + figi +
+                    ", currency = " + currency +
+                    ", quantity = " + quantity +
+                    ", price = " + price +
+                    ", pnl = " + pnl +
+                    ", streamed = " + streamed +
+                    ")";
+        }
+    }
+
+    /**
+     * Согласованный снимок результатов.
+     */
+    public static final class Snapshot {
+        private final int priceScale;
+        private final Map<String, PositionPnl> positions;
+        private final Map<Currency, Long> totals;
+
+        Snapshot(final int priceScale,
+                 @NotNull final Map<String, PositionPnl> positions,
+                 @NotNull final Map<Currency, Long> totals) {
+            this.priceScale = priceScale;
+            this.positions = Collections.unmodifiableMap(positions);
+            this.totals = Collections.unmodifiableMap(totals);
+        }
+
+        /**
+         * @return Количество знаков после запятой в ценах и суммах снимка.
+         */
+        public int getPriceScale() {
+            return priceScale;
+        }
+
+        @NotNull
+        public Map<String, PositionPnl> getPositions() {
+            return positions;
+        }
+
+        /**
+         * @return Итоги по валютам, в которых есть позиции.
+         */
+        @NotNull
+        public Map<Currency, Long> getTotals() {
+            return totals;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot(positions = " + positions.values() +
+                    ", totals = " + totals +
+                    ")";
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package ru.tinkoff.invest.openapi.portfolio;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.model.rest.Currency;
+import ru.tinkoff.invest.openapi.model.rest.CurrencyPosition;
+import ru.tinkoff.invest.openapi.model.rest.InstrumentType;
+import ru.tinkoff.invest.openapi.model.rest.PortfolioPosition;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Согласованный снимок портфелей всех брокерских счетов.
+ *
+ * Снимок собирается из ответов одного раунда опроса: позиции, валюты и активные заявки всех
+ * счетов запрошены вместе и все получены успешно. Позиции по одному инструменту на разных счетах
+ * сводятся в одну {@link Position}, валютные остатки - по валютам; исходные позиции каждого счёта
+ * также доступны. Снимок неизменяем.
+ */
+public final class PortfolioSnapshot {
+
+    /**
+     * Позиция по инструменту, сведённая по всем счетам.
+     */
+    public static final class Position {
+        private final String figi;
+        private final String ticker;
+        private final String name;
+        private final InstrumentType instrumentType;
+        private final BigDecimal balance;
+        private final BigDecimal blocked;
+        private final int lots;
+        private final Map<String, BigDecimal> balanceByAccount;
+
+        Position(@NotNull final String figi,
+                 @Nullable final String ticker,
+                 @Nullable final String name,
+                 @Nullable final InstrumentType instrumentType,
+                 @NotNull final BigDecimal balance,
+                 @NotNull final BigDecimal blocked,
+                 final int lots,
+                 @NotNull final Map<String, BigDecimal> balanceByAccount) {
+            this.figi = figi;
+            this.ticker = ticker;
+            this.name = name;
+            this.instrumentType = instrumentType;
+            this.balance = balance;
+            this.blocked = blocked;
+            this.lots = lots;
+            this.balanceByAccount = Collections.unmodifiableMap(balanceByAccount);
+        }
+
+        @NotNull
+        public String getFigi() {
+            return figi;
+        }
+
+        @Nullable
+        public String getTicker() {
+            return ticker;
+        }
+
+        @Nullable
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        public InstrumentType getInstrumentType() {
+            return instrumentType;
+        }
+
+        /**
+         * @return Количество инструмента на всех счетах.
+         */
+        @NotNull
+        public BigDecimal getBalance() {
+            return balance;
+        }
+
+        /**
+         * @return Количество, заблокированное на всех счетах.
+         */
+        @NotNull
+        public BigDecimal getBlocked() {
+            return blocked;
+        }
+
+        /**
+         * @return Количество лотов на всех счетах.
+         */
+        public int getLots() {
+            return lots;
+        }
+
+        /**
+         * @return Количество инструмента по счетам.
+         */
+        @NotNull
+        public Map<String, BigDecimal> getBalanceByAccount() {
+            return balanceByAccount;
+        }
+
+        @Override
+        public String toString() {
+            return "Position(figi = " + figi +
+                    ", ticker = " + ticker +
+                    ", balance = " + balance +
+                    ", blocked = " + blocked +
+                    ", lots = " + lots +
+                    ", balanceByAccount = " + balanceByAccount +
+                    ")";
+        }
+    }
+
+    /**
+     * Остаток валюты, сведённый по всем счетам.
+     */
+    public static final class CurrencyBalance {
+        private final Currency currency;
+        private final BigDecimal balance;
+        private final BigDecimal blocked;
+
+        CurrencyBalance(@NotNull final Currency currency,
+                        @NotNull final BigDecimal balance,
+                        @NotNull final BigDecimal blocked) {
+            this.currency = currency;
+            this.balance = balance;
+            this.blocked = blocked;
+        }
+
+        @NotNull
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        @NotNull
+        public BigDecimal getBalance() {
+            return balance;
+        }
+
+        @NotNull
+        public BigDecimal getBlocked() {
+            return blocked;
+        }
+
+        @Override
+        public String toString() {
+            return "CurrencyBalance(currency = " + currency +
+                    ", balance = " + balance +
+                    ", blocked = " + blocked +
+                    ")";
+        }
+    }
+
+    private final Instant takenAt;
+    private final Map<String, List<PortfolioPosition>> positionsByAccount;
+    private final Map<String, List<CurrencyPosition>> currenciesByAccount;
+    private final Map<String, Integer> activeOrdersByAccount;
+    private final Map<String, Position> positions;
+    private final Map<Currency, CurrencyBalance> currencies;
+
+    /**
+     * @param takenAt               Время завершения раунда опроса.
+     * @param positionsByAccount    Позиции по счетам.
+     * @param currenciesByAccount   Валютные остатки по счетам.
+     * @param activeOrdersByAccount Количество активных заявок по счетам.
+     */
+    PortfolioSnapshot(@NotNull final Instant takenAt,
+                      @NotNull final Map<String, List<PortfolioPosition>> positionsByAccount,
+                      @NotNull final Map<String, List<CurrencyPosition>> currenciesByAccount,
+                      @NotNull final Map<String, Integer> activeOrdersByAccount) {
+        this.takenAt = takenAt;
+        this.positionsByAccount = Collections.unmodifiableMap(new LinkedHashMap<>(positionsByAccount));
+        this.currenciesByAccount = Collections.unmodifiableMap(new LinkedHashMap<>(currenciesByAccount));
+        this.activeOrdersByAccount = Collections.unmodifiableMap(new LinkedHashMap<>(activeOrdersByAccount));
+        this.positions = Collections.unmodifiableMap(mergePositions(positionsByAccount));
+        this.currencies = Collections.unmodifiableMap(mergeCurrencies(currenciesByAccount));
+    }
+
+    /**
+     * @return Время завершения раунда опроса, из которого собран снимок.
+     */
+    @NotNull
+    public Instant getTakenAt() {
+        return takenAt;
+    }
+
+    /**
+     * @return Идентификаторы опрошенных счетов.
+     */
+    @NotNull
+    public List<String> getAccounts() {
+        return new ArrayList<>(positionsByAccount.keySet());
+    }
+
+    /**
+     * @return Позиции, сведённые по всем счетам, по FIGI.
+     */
+    @NotNull
+    public Map<String, Position> getPositions() {
+        return positions;
+    }
+
+    /**
+     * @param figi Идентификатор инструмента.
+     *
+     * @return Сведённая позиция или null, если инструмента нет ни на одном счёте.
+     */
+    @Nullable
+    public Position getPosition(@NotNull final String figi) {
+        return positions.get(figi);
+    }
+
+    /**
+     * @return Валютные остатки, сведённые по всем счетам.
+     */
+    @NotNull
+    public Map<Currency, CurrencyBalance> getCurrencies() {
+        return currencies;
+    }
+
+    /**
+     * @return Позиции в том виде, в каком их вернул сервер, по счетам.
+     */
+    @NotNull
+    public Map<String, List<PortfolioPosition>> getPositionsByAccount() {
+        return positionsByAccount;
+    }
+
+    /**
+     * @return Валютные остатки в том виде, в каком их вернул сервер, по счетам.
+     */
+    @NotNull
+    public Map<String, List<CurrencyPosition>> getCurrenciesByAccount() {
+        return currenciesByAccount;
+    }
+
+    /**
+     * @return Количество активных заявок по счетам на момент опроса.
+     */
+    @NotNull
+    public Map<String, Integer> getActiveOrdersByAccount() {
+        return activeOrdersByAccount;
+    }
+
+    /**
+     * @return true, если хотя бы на одном счёте есть активные заявки.
+     */
+    public boolean hasActiveOrders() {
+        for (final Integer count : activeOrdersByAccount.values()) {
+            if (count > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private static Map<String, Position> mergePositions(
+            @NotNull final Map<String, List<PortfolioPosition>> positionsByAccount) {
+        final Map<String, List<Map.Entry<String, PortfolioPosition>>> byFigi = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<PortfolioPosition>> account : positionsByAccount.entrySet()) {
+            for (final PortfolioPosition position : account.getValue()) {
+                byFigi.computeIfAbsent(position.getFigi(), figi -> new ArrayList<>())
+                        .add(new AbstractMap.SimpleImmutableEntry<>(account.getKey(), position));
+            }
+        }
+
+        final Map<String, Position> result = new LinkedHashMap<>(byFigi.size() * 2);
+        for (final Map.Entry<String, List<Map.Entry<String, PortfolioPosition>>> entry : byFigi.entrySet()) {
+            final PortfolioPosition first = entry.getValue().get(0).getValue();
+            BigDecimal balance = BigDecimal.ZERO;
+            BigDecimal blocked = BigDecimal.ZERO;
+            int lots = 0;
+            final Map<String, BigDecimal> balanceByAccount = new LinkedHashMap<>();
+            for (final Map.Entry<String, PortfolioPosition> accountPosition : entry.getValue()) {
+                final PortfolioPosition position = accountPosition.getValue();
+                final BigDecimal positionBalance = orZero(position.getBalance());
+                balance = balance.add(positionBalance);
+                blocked = blocked.add(orZero(position.getBlocked()));
+                lots += position.getLots() == null ? 0 : position.getLots();
+                balanceByAccount.merge(accountPosition.getKey(), positionBalance, BigDecimal::add);
+            }
+            result.put(entry.getKey(), new Position(
+                    entry.getKey(),
+                    first.getTicker(),
+                    first.getName(),
+                    first.getInstrumentType(),
+                    balance,
+                    blocked,
+                    lots,
+                    balanceByAccount));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Map<Currency, CurrencyBalance> mergeCurrencies(
+            @NotNull final Map<String, List<CurrencyPosition>> currenciesByAccount) {
+        final Map<Currency, BigDecimal> balances = new EnumMap<>(Currency.class);
+        final Map<Currency, BigDecimal> blocked = new EnumMap<>(Currency.class);
+        for (final List<CurrencyPosition> account : currenciesByAccount.values()) {
+            for (final CurrencyPosition position : account) {
+                balances.merge(position.getCurrency(), orZero(position.getBalance()), BigDecimal::add);
+                blocked.merge(position.getCurrency(), orZero(position.getBlocked()), BigDecimal::add);
+            }
+        }
+
+        final Map<Currency, CurrencyBalance> result = new EnumMap<>(Currency.class);
+        for (final Map.Entry<Currency, BigDecimal> entry : balances.entrySet()) {
+            result.put(entry.getKey(), new CurrencyBalance(entry.getKey(), entry.getValue(), blocked.get(entry.getKey())));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static BigDecimal orZero(@Nullable final BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    @Override
+    public String toString() {
+        return "PortfolioSnapshot(takenAt = " + takenAt +
+                ", accounts = " + positionsByAccount.keySet() +
+                ", positions = " + positions.values() +
+                ", currencies = " + currencies.values() +
+                ", activeOrders = " + activeOrdersByAccount +
+                ")";
+    }
+}
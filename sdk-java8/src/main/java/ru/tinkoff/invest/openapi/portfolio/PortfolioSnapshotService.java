@@ -0,0 +1,445 @@
+package ru.tinkoff.invest.openapi.portfolio;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.OpenApi;
+import ru.tinkoff.invest.openapi.model.rest.BrokerAccountType;
+import ru.tinkoff.invest.openapi.model.rest.Currencies;
+import ru.tinkoff.invest.openapi.model.rest.CurrencyPosition;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.Portfolio;
+import ru.tinkoff.invest.openapi.model.rest.PortfolioPosition;
+import ru.tinkoff.invest.openapi.model.rest.UserAccount;
+import ru.tinkoff.invest.openapi.model.rest.UserAccounts;
+import ru.tinkoff.invest.openapi.okhttp.RequestScheduler;
+import ru.tinkoff.invest.openapi.orders.OrderEvent;
+import ru.tinkoff.invest.openapi.orders.OrderTracker;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Периодически обновляемый снимок портфелей всех брокерских счетов.
+ *
+ * Каждый раунд опроса запрашивает позиции, валюты и активные заявки всех счетов одновременно и
+ * публикует новый {@link PortfolioSnapshot}, только если все ответы получены успешно; при ошибке
+ * остаётся предыдущий снимок. Чтение снимка - это чтение volatile-ссылки, оно никогда не ждёт
+ * опроса. Список счетов запрашивается при первом раунде, затем раз в {@code accountsInterval} и
+ * после ошибки раунда.
+ *
+ * Частота опроса подстраивается под активность: пока на каком-либо счёте есть активные заявки
+ * или после {@link #notifyOrderActivity()} прошло меньше {@code idleInterval}, раунды идут раз в
+ * {@code activeInterval}, иначе - раз в {@code idleInterval}. Одновременно выполняется не более
+ * одного раунда.
+ *
+ * Раунд стоит два запроса группы portfolio (лимит 120 в минуту) и, без {@link OrderTracker}, один
+ * запрос группы orders (лимит 100 в минуту, общий с выставлением и отзывом заявок) на каждый счёт.
+ * Чтобы опрос занимал не больше половины каждого лимита, период между раундами не бывает меньше
+ * {@code 2 * N} секунд при N счетах, какой бы период ни был задан. Если передан {@link OrderTracker},
+ * активные заявки берутся из него, и getOrders в раундах не вызывается вовсе; заявки трекера,
+ * выставленные без номера счёта, относятся к первому счёту типа {@link BrokerAccountType#TINKOFF}.
+ */
+public final class PortfolioSnapshotService implements Closeable {
+
+    public static final Duration DEFAULT_ACTIVE_INTERVAL = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_IDLE_INTERVAL = Duration.ofSeconds(15);
+    public static final Duration DEFAULT_ACCOUNTS_INTERVAL = Duration.ofMinutes(10);
+
+    /**
+     * Доля лимита группы методов, которую может занимать опрос.
+     */
+    private static final double BUDGET_SHARE = 0.5;
+
+    private final OpenApi api;
+    private final OrderTracker orderTracker;
+    private final long activeIntervalNanos;
+    private final long idleIntervalNanos;
+    private final long accountsIntervalNanos;
+    private final ScheduledExecutorService timer;
+    private final List<Consumer<PortfolioSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PortfolioSnapshotService.class);
+
+    private volatile PortfolioSnapshot snapshot;
+    private volatile Throwable lastError;
+
+    // Поля ниже защищены монитором this.
+    private CompletableFuture<PortfolioSnapshot> inFlight;
+    private ScheduledFuture<?> next;
+    private List<String> accounts;
+    private String defaultAccount;
+    private Subscription trackerSubscription;
+    private long accountsLoadedAt;
+    private long activeUntil;
+    private long roundStartedAt;
+    private boolean closed;
+
+    /**
+     * @param api              Клиент OpenAPI.
+     * @param orderTracker     Источник активных заявок вместо getOrders или null.
+     * @param activeInterval   Период опроса при активных заявках.
+     * @param idleInterval     Период опроса без активных заявок.
+     * @param accountsInterval Период обновления списка счетов.
+     */
+    public PortfolioSnapshotService(@NotNull final OpenApi api,
+                                    @Nullable final OrderTracker orderTracker,
+                                    @NotNull final Duration activeInterval,
+                                    @NotNull final Duration idleInterval,
+                                    @NotNull final Duration accountsInterval) {
+        if (activeInterval.isNegative() || activeInterval.isZero()
+                || idleInterval.compareTo(activeInterval) < 0) {
+            throw new IllegalArgumentException("Период опроса должен быть положительным и не больше периода простоя");
+        }
+        this.api = api;
+        this.orderTracker = orderTracker;
+        this.activeIntervalNanos = activeInterval.toNanos();
+        this.idleIntervalNanos = idleInterval.toNanos();
+        this.accountsIntervalNanos = accountsInterval.toNanos();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "portfolio-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param api              Клиент OpenAPI.
+     * @param activeInterval   Период опроса при активных заявках.
+     * @param idleInterval     Период опроса без активных заявок.
+     * @param accountsInterval Период обновления списка счетов.
+     */
+    public PortfolioSnapshotService(@NotNull final OpenApi api,
+                                    @NotNull final Duration activeInterval,
+                                    @NotNull final Duration idleInterval,
+                                    @NotNull final Duration accountsInterval) {
+        this(api, null, activeInterval, idleInterval, accountsInterval);
+    }
+
+    /**
+     * Создание сервиса с периодами опроса по умолчанию.
+     *
+     * @param api          Клиент OpenAPI.
+     * @param orderTracker Источник активных заявок вместо getOrders или null.
+     */
+    public PortfolioSnapshotService(@NotNull final OpenApi api, @Nullable final OrderTracker orderTracker) {
+        this(api, orderTracker, DEFAULT_ACTIVE_INTERVAL, DEFAULT_IDLE_INTERVAL, DEFAULT_ACCOUNTS_INTERVAL);
+    }
+
+    /**
+     * Создание сервиса с периодами опроса по умолчанию.
+     *
+     * @param api Клиент OpenAPI.
+     */
+    public PortfolioSnapshotService(@NotNull final OpenApi api) {
+        this(api, null);
+    }
+
+    /**
+     * Наименьший период между раундами, при котором опрос занимает не больше половины лимитов
+     * групп portfolio и orders.
+     *
+     * @param accounts     Количество опрашиваемых счетов.
+     * @param pollsOrders  true, если раунд запрашивает активные заявки.
+     *
+     * @return Наименьший период опроса.
+     */
+    @NotNull
+    public static Duration minInterval(final int accounts, final boolean pollsOrders) {
+        long nanos = budgetNanos(RequestScheduler.EndpointGroup.PORTFOLIO, 2 * accounts);
+        if (pollsOrders) {
+            nanos = Math.max(nanos, budgetNanos(RequestScheduler.EndpointGroup.ORDERS, accounts));
+        }
+        return Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Запуск опроса.
+     *
+     * @return Первый снимок.
+     */
+    @NotNull
+    public CompletableFuture<PortfolioSnapshot> start() {
+        synchronized (this) {
+            if (orderTracker != null && trackerSubscription == null && !closed) {
+                orderTracker.subscribe(new TrackerSubscriber());
+            }
+        }
+        return refresh();
+    }
+
+    /**
+     * @return Последний успешно полученный снимок или null, если его ещё нет.
+     */
+    @Nullable
+    public PortfolioSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Внеочередной раунд опроса. Если раунд уже идёт, возвращается его результат.
+     *
+     * @return Снимок по итогам раунда.
+     */
+    @NotNull
+    public synchronized CompletableFuture<PortfolioSnapshot> refresh() {
+        if (closed) {
+            final CompletableFuture<PortfolioSnapshot> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Сервис остановлен"));
+            return failed;
+        }
+        if (inFlight != null) {
+            return inFlight;
+        }
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+
+        roundStartedAt = System.nanoTime();
+        final CompletableFuture<PortfolioSnapshot> round = loadAccounts().thenCompose(this::poll);
+        inFlight = round;
+        round.whenComplete(this::onRoundComplete);
+        return round;
+    }
+
+    /**
+     * Сообщение о выставлении или отзыве заявки: сервис обновляет снимок, как только это позволяет
+     * наименьший период опроса, и следующие {@code idleInterval} опрашивает счета в активном режиме.
+     */
+    public void notifyOrderActivity() {
+        synchronized (this) {
+            final long now = System.nanoTime();
+            activeUntil = now + idleIntervalNanos;
+            if (closed || inFlight != null) {
+                return;
+            }
+            final long wait = roundStartedAt + floorNanos() - now;
+            if (wait > 0) {
+                if (next != null) {
+                    next.cancel(false);
+                }
+                next = timer.schedule(this::refresh, wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+        refresh();
+    }
+
+    /**
+     * Добавление получателя новых снимков. Получатель вызывается в потоке, завершившем раунд,
+     * и не должен в нём блокироваться.
+     *
+     * @param listener Получатель снимков.
+     */
+    public void addListener(@NotNull final Consumer<PortfolioSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return Количество завершённых раундов опроса, включая неудачные.
+     */
+    public long getRounds() {
+        return rounds.sum();
+    }
+
+    /**
+     * @return Количество неудачных раундов опроса.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return Ошибка последнего неудачного раунда или null.
+     */
+    @Nullable
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (next != null) {
+                next.cancel(false);
+                next = null;
+            }
+            if (trackerSubscription != null) {
+                trackerSubscription.cancel();
+                trackerSubscription = null;
+            }
+        }
+        timer.shutdownNow();
+    }
+
+    @NotNull
+    private synchronized CompletableFuture<List<String>> loadAccounts() {
+        if (accounts != null && System.nanoTime() - accountsLoadedAt < accountsIntervalNanos) {
+            return CompletableFuture.completedFuture(accounts);
+        }
+        return api.getUserContext().getAccounts().thenApply(this::onAccounts);
+    }
+
+    @NotNull
+    private synchronized List<String> onAccounts(@NotNull final UserAccounts userAccounts) {
+        final List<String> ids = new ArrayList<>(userAccounts.getAccounts().size());
+        String tinkoff = null;
+        for (final UserAccount account : userAccounts.getAccounts()) {
+            ids.add(account.getBrokerAccountId());
+            if (tinkoff == null && account.getBrokerAccountType() == BrokerAccountType.TINKOFF) {
+                tinkoff = account.getBrokerAccountId();
+            }
+        }
+        accounts = Collections.unmodifiableList(ids);
+        defaultAccount = tinkoff;
+        accountsLoadedAt = System.nanoTime();
+        return accounts;
+    }
+
+    @NotNull
+    private CompletableFuture<PortfolioSnapshot> poll(@NotNull final List<String> accountIds) {
+        final int size = accountIds.size();
+        final List<CompletableFuture<Portfolio>> portfolios = new ArrayList<>(size);
+        final List<CompletableFuture<Currencies>> currencies = new ArrayList<>(size);
+        final List<CompletableFuture<List<Order>>> orders = new ArrayList<>(size);
+        final List<CompletableFuture<?>> all = new ArrayList<>(size * 3);
+        for (final String accountId : accountIds) {
+            portfolios.add(api.getPortfolioContext().getPortfolio(accountId));
+            currencies.add(api.getPortfolioContext().getPortfolioCurrencies(accountId));
+            if (orderTracker == null) {
+                orders.add(api.getOrdersContext().getOrders(accountId));
+            }
+        }
+        all.addAll(portfolios);
+        all.addAll(currencies);
+        all.addAll(orders);
+
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            final Map<String, List<PortfolioPosition>> positionsByAccount = new LinkedHashMap<>(size * 2);
+            final Map<String, List<CurrencyPosition>> currenciesByAccount = new LinkedHashMap<>(size * 2);
+            final Map<String, Integer> ordersByAccount = new LinkedHashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                final String accountId = accountIds.get(i);
+                positionsByAccount.put(accountId, portfolios.get(i).join().getPositions());
+                currenciesByAccount.put(accountId, currencies.get(i).join().getCurrencies());
+                ordersByAccount.put(accountId, orderTracker == null
+                        ? orders.get(i).join().size()
+                        : trackedOrders(accountId));
+            }
+            return new PortfolioSnapshot(Instant.now(), positionsByAccount, currenciesByAccount, ordersByAccount);
+        });
+    }
+
+    private void onRoundComplete(@Nullable final PortfolioSnapshot result, @Nullable final Throwable error) {
+        rounds.increment();
+        if (error == null) {
+            snapshot = result;
+            for (final Consumer<PortfolioSnapshot> listener : listeners) {
+                try {
+                    listener.accept(result);
+                } catch (RuntimeException ex) {
+                    logger.error("Получатель снимка портфеля завершился с ошибкой", ex);
+                }
+            }
+        } else {
+            failures.increment();
+            lastError = error;
+            logger.error("Не удалось обновить снимок портфеля", error);
+        }
+
+        synchronized (this) {
+            inFlight = null;
+            if (error != null) {
+                // Счёт мог быть закрыт; в следующем раунде список счетов запрашивается заново.
+                accounts = null;
+            }
+            if (closed) {
+                return;
+            }
+            final boolean active = (result != null && result.hasActiveOrders())
+                    || activeUntil - System.nanoTime() > 0;
+            final long interval = error == null && active ? activeIntervalNanos : idleIntervalNanos;
+            final long delay = Math.max(interval, floorNanos());
+            next = timer.schedule(this::refresh, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized long floorNanos() {
+        return minInterval(accounts != null ? accounts.size() : 1, orderTracker == null).toNanos();
+    }
+
+    private int trackedOrders(@NotNull final String accountId) {
+        final Map<String, Integer> byAccount = orderTracker.getOpenOrdersByAccount();
+        int count = byAccount.getOrDefault(accountId, 0);
+        final String tinkoff;
+        synchronized (this) {
+            tinkoff = defaultAccount;
+        }
+        if (accountId.equals(tinkoff)) {
+            count += byAccount.getOrDefault(null, 0);
+        }
+        return count;
+    }
+
+    private static long budgetNanos(@NotNull final RequestScheduler.EndpointGroup group, final int requests) {
+        final double perMinute = group.getDefaultRequestsPerMinute() * BUDGET_SHARE;
+        return (long) Math.ceil(TimeUnit.MINUTES.toNanos(1) * (Math.max(requests, 1) / perMinute));
+    }
+
+    /**
+     * Продлевает активный режим опроса при каждом событии трекера, не запуская внеочередных
+     * раундов: исполнение попадёт в ближайший плановый снимок.
+     */
+    private final class TrackerSubscriber implements Subscriber<OrderEvent> {
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            final boolean cancel;
+            synchronized (PortfolioSnapshotService.this) {
+                cancel = closed;
+                if (!cancel) {
+                    trackerSubscription = subscription;
+                }
+            }
+            if (cancel) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(final OrderEvent event) {
+            synchronized (PortfolioSnapshotService.this) {
+                activeUntil = System.nanoTime() + idleIntervalNanos;
+            }
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            logger.error("Трекер заявок завершился с ошибкой", error);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.tinkoff.invest.openapi.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Последовательное чтение событий из файлов, по одному JSON-объекту на строку.
+ *
+ * Понимает два вида строк: сообщение Streaming API как оно есть ({@code event}, {@code time},
+ * {@code payload}) и плоский объект, в котором поля события лежат рядом с {@code event}
+ * (служебные {@code @timestamp} и {@code received_at} при этом отбрасываются). Файлы с
+ * расширением {@code .gz} распаковываются на лету. Пустые и неразборчивые строки пропускаются.
+ */
+final class EventFileReader implements Closeable {
+
+    private final Iterator<Path> files;
+    private final ObjectMapper mapper;
+    private final Logger logger;
+
+    private BufferedReader reader;
+    private Path current;
+    private long lineNumber;
+    private long skipped;
+
+    EventFileReader(@NotNull final List<Path> files) {
+        this.files = files.iterator();
+        this.mapper = new ObjectMapper();
+        this.mapper.registerModule(new JavaTimeModule());
+        this.logger = org.slf4j.LoggerFactory.getLogger(EventFileReader.class);
+    }
+
+    /**
+     * @return Следующее событие или null, если файлы закончились.
+     */
+    @Nullable
+    StreamingEvent next() throws IOException {
+        while (true) {
+            if (reader == null) {
+                if (!files.hasNext()) {
+                    return null;
+                }
+                open(files.next());
+            }
+
+            final String line = reader.readLine();
+            if (line == null) {
+                reader.close();
+                reader = null;
+                continue;
+            }
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            try {
+                return decode(line);
+            } catch (IOException | IllegalArgumentException ex) {
+                skipped++;
+                logger.warn("Пропущена неразборчивая строка " + lineNumber + " файла " + current + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Количество пропущенных строк.
+     */
+    long getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    @NotNull
+    private StreamingEvent decode(@NotNull final String line) throws IOException {
+        final JsonNode node = mapper.readTree(line);
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Строка не является JSON-объектом");
+        }
+        if (node.has("payload")) {
+            return mapper.treeToValue(node, StreamingEvent.class);
+        }
+
+        final ObjectNode payload = ((ObjectNode) node).deepCopy();
+        payload.remove("event");
+        payload.remove("@timestamp");
+        payload.remove("received_at");
+
+        final ObjectNode wire = mapper.createObjectNode();
+        wire.set("event", node.get("event"));
+        wire.set("payload", payload);
+        return mapper.treeToValue(wire, StreamingEvent.class);
+    }
+
+    private void open(@NotNull final Path path) throws IOException {
+        InputStream input = Files.newInputStream(path);
+        if (path.getFileName().toString().endsWith(".gz")) {
+            input = new GZIPInputStream(input, 64 * 1024);
+        }
+        reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+        current = path;
+        lineNumber = 0;
+    }
+}
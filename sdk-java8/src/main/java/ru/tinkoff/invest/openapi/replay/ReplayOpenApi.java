@@ -0,0 +1,97 @@
+package ru.tinkoff.invest.openapi.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * {@link OpenApi} для бэктестов: события Streaming API берутся из записанных файлов, а не из
+ * веб-сокета.
+ *
+ * REST-контексты передаются от другого клиента, если он задан (например, чтобы искать
+ * инструменты в настоящем OpenAPI); без него обращение к ним приводит к
+ * {@link UnsupportedOperationException}.
+ */
+public final class ReplayOpenApi extends OpenApi {
+
+    private final StreamingContext streamingContext;
+    @Nullable private final OpenApi rest;
+
+    /**
+     * @param streamingContext Источник событий, например {@link ReplayStreamingContext}.
+     * @param rest             Клиент для REST-контекстов.
+     */
+    public ReplayOpenApi(@NotNull final StreamingContext streamingContext, @Nullable final OpenApi rest) {
+        super("", rest != null && rest.isSandboxMode());
+        this.streamingContext = streamingContext;
+        this.rest = rest;
+    }
+
+    /**
+     * @param files Файлы с событиями в порядке воспроизведения.
+     */
+    public ReplayOpenApi(@NotNull final List<Path> files) {
+        this(new ReplayStreamingContext(files), null);
+    }
+
+    @NotNull
+    @Override
+    public SandboxContext getSandboxContext() {
+        return rest().getSandboxContext();
+    }
+
+    @NotNull
+    @Override
+    public OrdersContext getOrdersContext() {
+        return rest().getOrdersContext();
+    }
+
+    @NotNull
+    @Override
+    public PortfolioContext getPortfolioContext() {
+        return rest().getPortfolioContext();
+    }
+
+    @NotNull
+    @Override
+    public MarketContext getMarketContext() {
+        return rest().getMarketContext();
+    }
+
+    @NotNull
+    @Override
+    public OperationsContext getOperationsContext() {
+        return rest().getOperationsContext();
+    }
+
+    @NotNull
+    @Override
+    public UserContext getUserContext() {
+        return rest().getUserContext();
+    }
+
+    @NotNull
+    @Override
+    public StreamingContext getStreamingContext() {
+        return streamingContext;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rest != null) {
+            rest.close();
+        }
+    }
+
+    @NotNull
+    private OpenApi rest() {
+        if (rest == null) {
+            throw new UnsupportedOperationException("При воспроизведении без REST-клиента доступен только Streaming API");
+        }
+        return rest;
+    }
+}
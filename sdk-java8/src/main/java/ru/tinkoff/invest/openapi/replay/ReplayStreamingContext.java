@@ -0,0 +1,208 @@
+package ru.tinkoff.invest.openapi.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link StreamingContext}, воспроизводящий записанные события из файлов (см. {@link EventFileReader}).
+ *
+ * Каждый подписчик читает файлы с начала. События выдаются без пауз ровно столько, сколько
+ * запрошено подписчиком: когда запрос исчерпан, чтение останавливается и не занимает поток
+ * исполнителя до следующего {@link Subscription#request(long)}. Так что воспроизведение идёт
+ * со скоростью потребителя. Запросы на подписку игнорируются: воспроизводится всё, что было
+ * записано.
+ */
+public final class ReplayStreamingContext implements StreamingContext {
+
+    private final List<Path> files;
+    private final Executor executor;
+    private final Logger logger;
+
+    /**
+     * @param files    Файлы в порядке воспроизведения.
+     * @param executor Исполнитель, в котором читаются файлы и вызываются подписчики.
+     */
+    public ReplayStreamingContext(@NotNull final List<Path> files, @NotNull final Executor executor) {
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.executor = executor;
+        this.logger = org.slf4j.LoggerFactory.getLogger(ReplayStreamingContext.class);
+    }
+
+    public ReplayStreamingContext(@NotNull final List<Path> files) {
+        this(files, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Список файлов каталога, подходящих под шаблон, в порядке имён. Ротированные файлы вида
+     * {@code events-20210501-100000.ndjson} при этом идут раньше текущего {@code events.ndjson}.
+     *
+     * @param directory Каталог.
+     * @param glob      Шаблон имён, например {@code "events*.ndjson*"}.
+     *
+     * @return Файлы в порядке имён.
+     */
+    @NotNull
+    public static List<Path> files(@NotNull final Path directory, @NotNull final String glob) throws IOException {
+        final List<Path> result = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (final Path path : stream) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @NotNull
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    @Override
+    public void sendRequest(@NotNull final StreamingRequest request) {
+        logger.debug("При воспроизведении запрос не отправляется: " + request.onOffPairId());
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super StreamingEvent> subscriber) {
+        final ReplaySubscription subscription = new ReplaySubscription(subscriber);
+        executor.execute(subscription::start);
+    }
+
+    private final class ReplaySubscription implements Subscription {
+        private final Subscriber<? super StreamingEvent> subscriber;
+        private final EventFileReader reader;
+        private final AtomicLong demand = new AtomicLong();
+        // Количество невыполненных просьб о выдаче; выдачей занимается тот, кто увеличил его с нуля.
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private volatile boolean cancelled;
+        private volatile Throwable violation;
+        private boolean done;
+
+        ReplaySubscription(@NotNull final Subscriber<? super StreamingEvent> subscriber) {
+            this.subscriber = subscriber;
+            this.reader = new EventFileReader(files);
+        }
+
+        void start() {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable t) {
+                cancelled = true;
+                logger.error(subscriber + " violated the Reactive Streams rule 2.13 by throwing an exception from onSubscribe.", t);
+            }
+            emit();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n < 1) {
+                violation = new IllegalArgumentException(subscriber + " violated the Reactive Streams rule 3.9 by requesting a non-positive number of elements.");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 1 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this::emit);
+            }
+        }
+
+        private void emit() {
+            int missed = pending.get();
+            while (true) {
+                drain();
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void drain() {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (violation != null) {
+                finish();
+                subscriber.onError(violation);
+                return;
+            }
+
+            try {
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested && !cancelled) {
+                    final StreamingEvent event = reader.next();
+                    if (event == null) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    try {
+                        subscriber.onNext(event);
+                    } catch (Throwable t) {
+                        finish();
+                        logger.error(subscriber + " violated the Reactive Streams rule 2.13 by throwing an exception from onNext.", t);
+                        return;
+                    }
+                    emitted++;
+                    if (emitted == requested && requested != Long.MAX_VALUE) {
+                        requested = demand.addAndGet(-emitted);
+                        emitted = 0;
+                    }
+                }
+                if (cancelled) {
+                    finish();
+                }
+            } catch (IOException ex) {
+                finish();
+                subscriber.onError(ex);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                logger.warn("Не удалось закрыть воспроизводимый файл", ex);
+            }
+        }
+    }
+}
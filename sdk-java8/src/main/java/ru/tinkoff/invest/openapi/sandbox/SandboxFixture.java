@@ -0,0 +1,61 @@
+package ru.tinkoff.invest.openapi.sandbox;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.invest.openapi.model.rest.SandboxCurrency;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Желаемое состояние "песочного" счёта: остатки валют и позиции по инструментам.
+ *
+ * Фикстура описывает счёт целиком: валюты и инструменты, которых в ней нет, при применении через
+ * {@link SandboxProvisioner} обнуляются. Фикстура неизменяема и может переиспользоваться между
+ * прогонами тестов.
+ */
+public final class SandboxFixture {
+
+    private final Map<SandboxCurrency, BigDecimal> currencies;
+    private final Map<String, BigDecimal> positions;
+
+    /**
+     * @param currencies Остатки валют.
+     * @param positions  Количество инструмента по FIGI.
+     */
+    public SandboxFixture(@NotNull final Map<SandboxCurrency, BigDecimal> currencies,
+                          @NotNull final Map<String, BigDecimal> positions) {
+        final Map<SandboxCurrency, BigDecimal> currenciesCopy = new EnumMap<>(SandboxCurrency.class);
+        currenciesCopy.putAll(currencies);
+        this.currencies = Collections.unmodifiableMap(currenciesCopy);
+        this.positions = Collections.unmodifiableMap(new LinkedHashMap<>(positions));
+    }
+
+    /**
+     * Фикстура с одними валютными остатками и без позиций.
+     *
+     * @param currencies Остатки валют.
+     */
+    public SandboxFixture(@NotNull final Map<SandboxCurrency, BigDecimal> currencies) {
+        this(currencies, Collections.emptyMap());
+    }
+
+    @NotNull
+    public Map<SandboxCurrency, BigDecimal> getCurrencies() {
+        return currencies;
+    }
+
+    @NotNull
+    public Map<String, BigDecimal> getPositions() {
+        return positions;
+    }
+
+    @Override
+    public String toString() {
+        return "SandboxFixture(currencies = " + currencies +
+                ", positions = " + positions +
+                ")";
+    }
+}
@@ -0,0 +1,239 @@
+package ru.tinkoff.invest.openapi.sandbox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.invest.openapi.OpenApi;
+import ru.tinkoff.invest.openapi.PortfolioContext;
+import ru.tinkoff.invest.openapi.SandboxContext;
+import ru.tinkoff.invest.openapi.model.rest.Currencies;
+import ru.tinkoff.invest.openapi.model.rest.CurrencyPosition;
+import ru.tinkoff.invest.openapi.model.rest.InstrumentType;
+import ru.tinkoff.invest.openapi.model.rest.Portfolio;
+import ru.tinkoff.invest.openapi.model.rest.PortfolioPosition;
+import ru.tinkoff.invest.openapi.model.rest.SandboxCurrency;
+import ru.tinkoff.invest.openapi.model.rest.SandboxSetCurrencyBalanceRequest;
+import ru.tinkoff.invest.openapi.model.rest.SandboxSetPositionBalanceRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Приведение "песочного" счёта к состоянию, описанному {@link SandboxFixture}.
+ *
+ * Вместо сброса счёта и последовательной установки каждого остатка текущий портфель и валюты
+ * запрашиваются одновременно, сравниваются с фикстурой, и отправляются только запросы на
+ * изменившиеся остатки - все сразу, ограничивает их лишь {@code RequestScheduler} группы sandbox.
+ * Если обнулять пришлось бы больше, чем заново задать, план начинается со
+ * {@link SandboxContext#clearAll}, после которого устанавливаются только ненулевые остатки.
+ *
+ * Валютные инструменты из портфеля (например, USD000UTSTOM) управляются остатками валют и сами
+ * по себе не обнуляются.
+ */
+public final class SandboxProvisioner {
+
+    /**
+     * Набор запросов, приводящий счёт к фикстуре.
+     */
+    public static final class Plan {
+        private final boolean clearFirst;
+        private final Map<SandboxCurrency, BigDecimal> currencies;
+        private final Map<String, BigDecimal> positions;
+
+        Plan(final boolean clearFirst,
+             @NotNull final Map<SandboxCurrency, BigDecimal> currencies,
+             @NotNull final Map<String, BigDecimal> positions) {
+            this.clearFirst = clearFirst;
+            this.currencies = Collections.unmodifiableMap(currencies);
+            this.positions = Collections.unmodifiableMap(positions);
+        }
+
+        /**
+         * @return true, если перед установкой остатков счёт сбрасывается.
+         */
+        public boolean isClearFirst() {
+            return clearFirst;
+        }
+
+        /**
+         * @return Устанавливаемые остатки валют.
+         */
+        @NotNull
+        public Map<SandboxCurrency, BigDecimal> getCurrencies() {
+            return currencies;
+        }
+
+        /**
+         * @return Устанавливаемые позиции по FIGI.
+         */
+        @NotNull
+        public Map<String, BigDecimal> getPositions() {
+            return positions;
+        }
+
+        /**
+         * @return Количество запросов к OpenAPI, из которых состоит план.
+         */
+        public int getCalls() {
+            return (clearFirst ? 1 : 0) + currencies.size() + positions.size();
+        }
+
+        /**
+         * @return true, если счёт уже соответствует фикстуре.
+         */
+        public boolean isEmpty() {
+            return getCalls() == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Plan(clearFirst = " + clearFirst +
+                    ", currencies = " + currencies +
+                    ", positions = " + positions +
+                    ")";
+        }
+    }
+
+    private final SandboxContext sandbox;
+    private final PortfolioContext portfolio;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SandboxProvisioner.class);
+
+    /**
+     * @param sandbox   Контекст "песочницы".
+     * @param portfolio Контекст портфеля, из которого читается текущее состояние счёта.
+     */
+    public SandboxProvisioner(@NotNull final SandboxContext sandbox, @NotNull final PortfolioContext portfolio) {
+        this.sandbox = sandbox;
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * @param api Клиент OpenAPI в режиме "песочницы".
+     */
+    public SandboxProvisioner(@NotNull final OpenApi api) {
+        this(api.getSandboxContext(), api.getPortfolioContext());
+    }
+
+    /**
+     * Расчёт запросов, нужных для приведения счёта к фикстуре, без их отправки.
+     *
+     * @param fixture         Желаемое состояние счёта.
+     * @param brokerAccountId Идентификатор брокерского счёта.
+     *
+     * @return План изменений.
+     */
+    @NotNull
+    public CompletableFuture<Plan> plan(@NotNull final SandboxFixture fixture,
+                                        @Nullable final String brokerAccountId) {
+        final CompletableFuture<Portfolio> positions = portfolio.getPortfolio(brokerAccountId);
+        final CompletableFuture<Currencies> currencies = portfolio.getPortfolioCurrencies(brokerAccountId);
+        return positions.thenCombine(currencies, (p, c) -> plan(fixture, p, c));
+    }
+
+    /**
+     * Приведение счёта к фикстуре.
+     *
+     * @param fixture         Желаемое состояние счёта.
+     * @param brokerAccountId Идентификатор брокерского счёта.
+     *
+     * @return Выполненный план; завершается ошибкой первого неудавшегося запроса.
+     */
+    @NotNull
+    public CompletableFuture<Plan> apply(@NotNull final SandboxFixture fixture,
+                                         @Nullable final String brokerAccountId) {
+        return plan(fixture, brokerAccountId).thenCompose(plan -> execute(plan, brokerAccountId));
+    }
+
+    @NotNull
+    private CompletableFuture<Plan> execute(@NotNull final Plan plan, @Nullable final String brokerAccountId) {
+        final CompletableFuture<Void> cleared = plan.isClearFirst()
+                ? sandbox.clearAll(brokerAccountId)
+                : CompletableFuture.completedFuture(null);
+        return cleared.thenCompose(ignored -> {
+            final List<CompletableFuture<Void>> calls =
+                    new ArrayList<>(plan.getCurrencies().size() + plan.getPositions().size());
+            for (final Map.Entry<SandboxCurrency, BigDecimal> entry : plan.getCurrencies().entrySet()) {
+                calls.add(sandbox.setCurrencyBalance(
+                        new SandboxSetCurrencyBalanceRequest().currency(entry.getKey()).balance(entry.getValue()),
+                        brokerAccountId));
+            }
+            for (final Map.Entry<String, BigDecimal> entry : plan.getPositions().entrySet()) {
+                calls.add(sandbox.setPositionBalance(
+                        new SandboxSetPositionBalanceRequest().figi(entry.getKey()).balance(entry.getValue()),
+                        brokerAccountId));
+            }
+            return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0]));
+        }).thenApply(ignored -> {
+            logger.info("Счёт песочницы приведён к фикстуре за {} запросов", plan.getCalls());
+            return plan;
+        });
+    }
+
+    @NotNull
+    static Plan plan(@NotNull final SandboxFixture fixture,
+                     @NotNull final Portfolio portfolio,
+                     @NotNull final Currencies currencies) {
+        final Map<SandboxCurrency, BigDecimal> currentCurrencies = new EnumMap<>(SandboxCurrency.class);
+        for (final CurrencyPosition position : currencies.getCurrencies()) {
+            if (position.getCurrency() != null && position.getBalance() != null) {
+                currentCurrencies.put(SandboxCurrency.valueOf(position.getCurrency().name()), position.getBalance());
+            }
+        }
+
+        final Map<SandboxCurrency, BigDecimal> currencyDelta = new EnumMap<>(SandboxCurrency.class);
+        for (final Map.Entry<SandboxCurrency, BigDecimal> entry : currentCurrencies.entrySet()) {
+            final BigDecimal target = fixture.getCurrencies().getOrDefault(entry.getKey(), BigDecimal.ZERO);
+            if (target.compareTo(entry.getValue()) != 0) {
+                currencyDelta.put(entry.getKey(), target);
+            }
+        }
+        for (final Map.Entry<SandboxCurrency, BigDecimal> entry : fixture.getCurrencies().entrySet()) {
+            if (!currentCurrencies.containsKey(entry.getKey()) && entry.getValue().signum() != 0) {
+                currencyDelta.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        final Map<String, BigDecimal> positionDelta = new LinkedHashMap<>();
+        final Map<String, BigDecimal> seen = new LinkedHashMap<>();
+        for (final PortfolioPosition position : portfolio.getPositions()) {
+            final BigDecimal balance = position.getBalance() == null ? BigDecimal.ZERO : position.getBalance();
+            seen.put(position.getFigi(), balance);
+            final BigDecimal target = fixture.getPositions().get(position.getFigi());
+            if (target != null) {
+                if (target.compareTo(balance) != 0) {
+                    positionDelta.put(position.getFigi(), target);
+                }
+            } else if (position.getInstrumentType() != InstrumentType.CURRENCY && balance.signum() != 0) {
+                positionDelta.put(position.getFigi(), BigDecimal.ZERO);
+            }
+        }
+        for (final Map.Entry<String, BigDecimal> entry : fixture.getPositions().entrySet()) {
+            if (!seen.containsKey(entry.getKey()) && entry.getValue().signum() != 0) {
+                positionDelta.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // После сброса остаётся задать только ненулевые значения фикстуры.
+        final Map<SandboxCurrency, BigDecimal> currencyReset = new EnumMap<>(SandboxCurrency.class);
+        for (final Map.Entry<SandboxCurrency, BigDecimal> entry : fixture.getCurrencies().entrySet()) {
+            if (entry.getValue().signum() != 0) {
+                currencyReset.put(entry.getKey(), entry.getValue());
+            }
+        }
+        final Map<String, BigDecimal> positionReset = new LinkedHashMap<>();
+        for (final Map.Entry<String, BigDecimal> entry : fixture.getPositions().entrySet()) {
+            if (entry.getValue().signum() != 0) {
+                positionReset.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        final Plan delta = new Plan(false, currencyDelta, positionDelta);
+        final Plan reset = new Plan(true, currencyReset, positionReset);
+        return reset.getCalls() < delta.getCalls() ? reset : delta;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.tinkoff.invest.openapi.journal;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameJournalTest {
+
+    // Помещается три записи по 10 байт текста.
+    private static final int SEGMENT_SIZE = 3 * (FrameJournal.HEADER_SIZE + 10);
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("frame-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void framesAreReadBackAcrossSegments() throws IOException {
+        try (FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 7; i++) {
+                journal.append(i % 2 + 1, 1000L + i, "message-" + i + "_");
+            }
+        }
+
+        final List<JournalFrame> frames = read();
+        assertEquals(7, frames.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i % 2 + 1, frames.get(i).connectionId);
+            assertEquals(1000L + i, frames.get(i).receivedAt);
+            assertEquals("message-" + i + "_", frames.get(i).text);
+        }
+        assertEquals(Arrays.asList(0L, 1L, 2L), indices());
+    }
+
+    @Test
+    void recordLargerThanSegmentGetsItsOwnSegment() throws IOException {
+        final char[] large = new char[SEGMENT_SIZE * 2];
+        Arrays.fill(large, 'x');
+        try (FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE)) {
+            journal.append(1, 1, "before____");
+            journal.append(1, 2, new String(large));
+            journal.append(1, 3, "after_____");
+        }
+
+        final List<JournalFrame> frames = read();
+        assertEquals(Arrays.asList("before____", new String(large), "after_____"), texts(frames));
+        assertEquals(Arrays.asList(0L, 1L, 2L), indices());
+        assertEquals(FrameJournal.HEADER_SIZE + large.length, Files.size(segment(1)));
+    }
+
+    @Test
+    void tornRecordEndsSegment() throws IOException {
+        try (FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE)) {
+            journal.append(1, 1, "first_____");
+            journal.append(1, 2, "second____");
+        }
+        // Запись оборвалась до длины: заголовок и текст на месте, длина нулевая.
+        try (FileChannel channel = FileChannel.open(segment(0), StandardOpenOption.WRITE)) {
+            final ByteBuffer torn = ByteBuffer.allocate(FrameJournal.HEADER_SIZE + 10);
+            torn.putInt(0).putInt(1).putLong(3).put("third_____".getBytes(StandardCharsets.UTF_8));
+            torn.flip();
+            channel.write(torn, 2 * (FrameJournal.HEADER_SIZE + 10));
+        }
+
+        assertEquals(Arrays.asList("first_____", "second____"), texts(read()));
+    }
+
+    @Test
+    void reopenedJournalContinuesNumbering() throws IOException {
+        try (FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 4; i++) {
+                journal.append(1, i, "first-" + i + "___");
+            }
+        }
+        try (FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE)) {
+            journal.append(1, 10, "second-0__");
+        }
+
+        assertEquals(Arrays.asList(0L, 1L, 2L), indices());
+        assertEquals(Arrays.asList("first-0___", "first-1___", "first-2___", "first-3___", "second-0__"),
+                texts(read()));
+    }
+
+    @Test
+    void nextSegmentIsPreparedAheadAndDiscardedOnClose() throws Exception {
+        final FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE);
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (indices().size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList(0L, 1L), indices());
+
+            for (int i = 0; i < 4; i++) {
+                journal.append(1, i, "message-" + i + "_");
+            }
+            assertTrue(indices().size() <= 3);
+        } finally {
+            journal.close();
+        }
+
+        assertEquals(Arrays.asList(0L, 1L), indices());
+        assertEquals(4, read().size());
+    }
+
+    @NotNull
+    private List<JournalFrame> read() throws IOException {
+        final List<JournalFrame> frames = new ArrayList<>();
+        final JournalReader reader = new JournalReader(directory);
+        while (reader.hasNext()) {
+            frames.add(reader.next());
+        }
+        return frames;
+    }
+
+    @NotNull
+    private List<Long> indices() throws IOException {
+        final List<Long> result = new ArrayList<>();
+        for (final Path path : JournalReader.segments(directory)) {
+            final String name = path.getFileName().toString();
+            result.add(Long.parseLong(name.substring(FrameJournal.SEGMENT_PREFIX.length(),
+                    name.length() - FrameJournal.SEGMENT_SUFFIX.length())));
+        }
+        return result;
+    }
+
+    @NotNull
+    private Path segment(final long index) {
+        return directory.resolve(String.format("%s%020d%s", FrameJournal.SEGMENT_PREFIX, index, FrameJournal.SEGMENT_SUFFIX));
+    }
+
+    @NotNull
+    private static List<String> texts(@NotNull final List<JournalFrame> frames) {
+        return frames.stream().map(frame -> frame.text).collect(Collectors.toList());
+    }
+}
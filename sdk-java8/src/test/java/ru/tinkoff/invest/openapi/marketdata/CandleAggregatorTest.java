@@ -0,0 +1,188 @@
+package ru.tinkoff.invest.openapi.marketdata;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.model.streaming.CandleInterval;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CandleAggregatorTest {
+
+    private static final String FIGI = "BBG000B9XRY4";
+
+    private final List<Emitted> emitted = new ArrayList<>();
+
+    @Test
+    void revisionOfTheSameMinuteReplacesItsVolume() {
+        final CandleAggregator aggregator = aggregator(Collections.singletonList(CandleInterval._5MIN), "UTC");
+
+        aggregator.update(FIGI, millis("2021-05-03T10:01:00Z"), 100, 105, 99, 102, 10);
+        aggregator.update(FIGI, millis("2021-05-03T10:01:00Z"), 100, 107, 98, 106, 15);
+
+        final Emitted revised = last();
+        assertEquals(millis("2021-05-03T10:00:00Z"), revised.start);
+        assertEquals(100, revised.open);
+        assertEquals(107, revised.high);
+        assertEquals(98, revised.low);
+        assertEquals(106, revised.close);
+        assertEquals(15, revised.volume);
+        assertFalse(revised.completed);
+
+        aggregator.update(FIGI, millis("2021-05-03T10:02:00Z"), 106, 106, 104, 105, 7);
+        aggregator.update(FIGI, millis("2021-05-03T10:02:00Z"), 106, 106, 103, 104, 9);
+        assertEquals(24, last().volume);
+        assertEquals(98, last().low);
+        assertEquals(104, last().close);
+    }
+
+    @Test
+    void lateMinuteIsIgnored() {
+        final CandleAggregator aggregator = aggregator(Collections.singletonList(CandleInterval._5MIN), "UTC");
+
+        aggregator.update(FIGI, millis("2021-05-03T10:02:00Z"), 100, 101, 99, 100, 10);
+        final int before = emitted.size();
+        aggregator.update(FIGI, millis("2021-05-03T10:01:00Z"), 100, 200, 1, 150, 1000);
+
+        assertEquals(before, emitted.size());
+        assertEquals(1, aggregator.getLateUpdates());
+
+        aggregator.update(FIGI, millis("2021-05-03T10:02:00Z"), 100, 101, 99, 101, 12);
+        assertEquals(101, last().high);
+        assertEquals(12, last().volume);
+    }
+
+    @Test
+    void newBucketCompletesThePreviousOne() {
+        final CandleAggregator aggregator = aggregator(Collections.singletonList(CandleInterval._5MIN), "UTC");
+
+        aggregator.update(FIGI, millis("2021-05-03T10:03:00Z"), 100, 101, 99, 100, 10);
+        aggregator.update(FIGI, millis("2021-05-03T10:04:00Z"), 100, 103, 100, 103, 5);
+        aggregator.update(FIGI, millis("2021-05-03T10:05:00Z"), 103, 104, 102, 104, 8);
+
+        final Emitted completed = emitted.get(emitted.size() - 2);
+        assertTrue(completed.completed);
+        assertEquals(millis("2021-05-03T10:00:00Z"), completed.start);
+        assertEquals(100, completed.open);
+        assertEquals(103, completed.high);
+        assertEquals(103, completed.close);
+        assertEquals(15, completed.volume);
+
+        final Emitted next = last();
+        assertFalse(next.completed);
+        assertEquals(millis("2021-05-03T10:05:00Z"), next.start);
+        assertEquals(103, next.open);
+        assertEquals(8, next.volume);
+    }
+
+    @Test
+    void hourIsAlignedToUtcAndLongerIntervalsToExchangeMidnight() {
+        // Смещение +05:30 не кратно часу, поэтому выравнивание по UTC и по поясу биржи различимо.
+        final CandleAggregator aggregator = aggregator(
+                Arrays.asList(CandleInterval.HOUR, CandleInterval._4HOUR, CandleInterval.DAY), "Asia/Kolkata");
+
+        aggregator.update(FIGI, millis("2021-05-03T20:10:00Z"), 100, 100, 100, 100, 1);
+
+        assertEquals(millis("2021-05-03T20:00:00Z"), startOf(CandleInterval.HOUR));
+        // 20:10Z - это 01:40 по Калькутте, 4-часовая свеча начинается в полночь, то есть в 18:30Z.
+        assertEquals(millis("2021-05-03T18:30:00Z"), startOf(CandleInterval._4HOUR));
+        assertEquals(millis("2021-05-03T18:30:00Z"), startOf(CandleInterval.DAY));
+    }
+
+    @Test
+    void dayRollsOverAtExchangeMidnight() {
+        final CandleAggregator aggregator = aggregator(Collections.singletonList(CandleInterval.DAY), "Europe/Moscow");
+
+        aggregator.update(FIGI, millis("2021-05-03T20:59:00Z"), 100, 100, 100, 100, 1);
+        assertEquals(millis("2021-05-02T21:00:00Z"), last().start);
+
+        aggregator.update(FIGI, millis("2021-05-03T21:00:00Z"), 101, 101, 101, 101, 2);
+        final Emitted completed = emitted.get(emitted.size() - 2);
+        assertTrue(completed.completed);
+        assertEquals(millis("2021-05-02T21:00:00Z"), completed.start);
+        assertEquals(millis("2021-05-03T21:00:00Z"), last().start);
+        assertEquals(2, last().volume);
+    }
+
+    @Test
+    void flushCompletesCurrentCandles() {
+        final CandleAggregator aggregator = aggregator(
+                Arrays.asList(CandleInterval._2MIN, CandleInterval._10MIN), "UTC");
+
+        aggregator.update(FIGI, millis("2021-05-03T10:01:00Z"), 100, 101, 99, 100, 10);
+        emitted.clear();
+        aggregator.flush(FIGI);
+
+        assertEquals(2, emitted.size());
+        for (final Emitted candle : emitted) {
+            assertTrue(candle.completed);
+            assertEquals(10, candle.volume);
+        }
+
+        emitted.clear();
+        aggregator.flush(FIGI);
+        assertTrue(emitted.isEmpty());
+    }
+
+    @NotNull
+    private CandleAggregator aggregator(@NotNull final List<CandleInterval> intervals, @NotNull final String zone) {
+        return new CandleAggregator(intervals, ZoneId.of(zone), 2,
+                (figi, interval, start, open, high, low, close, volume, completed) ->
+                        emitted.add(new Emitted(interval, start, open, high, low, close, volume, completed)));
+    }
+
+    @NotNull
+    private Emitted last() {
+        return emitted.get(emitted.size() - 1);
+    }
+
+    private long startOf(@NotNull final CandleInterval interval) {
+        for (int i = emitted.size() - 1; i >= 0; i--) {
+            if (emitted.get(i).interval == interval) {
+                return emitted.get(i).start;
+            }
+        }
+        throw new AssertionError("Нет свечи " + interval);
+    }
+
+    private static long millis(@NotNull final String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    private static final class Emitted {
+        final CandleInterval interval;
+        final long start;
+        final long open;
+        final long high;
+        final long low;
+        final long close;
+        final long volume;
+        final boolean completed;
+
+        Emitted(final CandleInterval interval,
+                final long start,
+                final long open,
+                final long high,
+                final long low,
+                final long close,
+                final long volume,
+                final boolean completed) {
+            this.interval = interval;
+            this.start = start;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+            this.completed = completed;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package ru.tinkoff.invest.openapi.marketdata;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.MarketContext;
+import ru.tinkoff.invest.openapi.StreamingContext;
+import ru.tinkoff.invest.openapi.model.rest.Candle;
+import ru.tinkoff.invest.openapi.model.rest.CandleResolution;
+import ru.tinkoff.invest.openapi.model.rest.Candles;
+import ru.tinkoff.invest.openapi.model.rest.InstrumentType;
+import ru.tinkoff.invest.openapi.model.rest.MarketInstrument;
+import ru.tinkoff.invest.openapi.model.rest.MarketInstrumentList;
+import ru.tinkoff.invest.openapi.model.rest.OrderResponse;
+import ru.tinkoff.invest.openapi.model.rest.Orderbook;
+import ru.tinkoff.invest.openapi.model.rest.SearchMarketInstrument;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingEvent;
+import ru.tinkoff.invest.openapi.model.streaming.StreamingRequest;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderbookBookTest {
+
+    private static final String FIGI = "BBG000B9XRY4";
+    private static final String OTHER = "BBG004730N88";
+    private static final int DEPTH = 10;
+
+    private final FakeMarketContext market = new FakeMarketContext();
+    private final OrderbookBook book = new OrderbookBook(market, DEPTH, 2);
+
+    @Test
+    void trackLoadsSnapshotFromRest() {
+        final CompletableFuture<Void> tracked = book.track(FIGI);
+        assertFalse(tracked.isDone());
+
+        market.respond(0, "100.10", "100.20");
+
+        assertTrue(tracked.isDone());
+        final OrderbookBook.Snapshot snapshot = book.get(FIGI);
+        assertEquals(OrderbookBook.Source.REST, snapshot.getSource());
+        assertEquals(10010, snapshot.getBestBid());
+        assertEquals(10020, snapshot.getBestAsk());
+        assertFalse(snapshot.isStale());
+    }
+
+    @Test
+    void gapsDuringResyncJoinIt() {
+        book.track(FIGI);
+        market.respond(0, "100.10", "100.20");
+
+        final CompletableFuture<Void> first = book.resync(FIGI);
+        book.update(event(FIGI, "100.30", "100.20"));
+        book.onError(new IllegalStateException("разрыв"));
+        book.onReconnect();
+        final CompletableFuture<Void> second = book.resync(FIGI);
+
+        assertSame(first, second);
+        assertEquals(2, market.requests.size());
+        assertTrue(book.get(FIGI).isStale());
+
+        market.respond(1, "100.15", "100.25");
+        assertTrue(first.isDone());
+        assertFalse(book.get(FIGI).isStale());
+
+        book.resync(FIGI);
+        assertEquals(3, market.requests.size());
+    }
+
+    @Test
+    void restSnapshotDoesNotOverwriteNewerStream() {
+        book.track(FIGI);
+        market.respond(0, "100.10", "100.20");
+
+        book.resync(FIGI);
+        book.update(event(FIGI, "100.12", "100.22"));
+        market.respond(1, "100.05", "100.25");
+
+        final OrderbookBook.Snapshot snapshot = book.get(FIGI);
+        assertEquals(OrderbookBook.Source.STREAM, snapshot.getSource());
+        assertEquals(10012, snapshot.getBestBid());
+    }
+
+    @Test
+    void restSnapshotReplacesStaleStream() {
+        book.track(FIGI);
+        market.respond(0, "100.10", "100.20");
+
+        book.update(event(FIGI, "100.30", "100.20"));
+        assertTrue(book.get(FIGI).isStale());
+        market.respond(1, "100.15", "100.25");
+
+        final OrderbookBook.Snapshot snapshot = book.get(FIGI);
+        assertEquals(OrderbookBook.Source.REST, snapshot.getSource());
+        assertEquals(10015, snapshot.getBestBid());
+        assertFalse(snapshot.isStale());
+    }
+
+    @Test
+    void reconnectResyncsEveryTrackedBook() {
+        final FakeStreamingContext streaming = new FakeStreamingContext();
+        book.subscribeTo(streaming);
+        book.track(FIGI);
+        book.track(OTHER);
+        market.respond(0, "100.10", "100.20");
+        market.respond(1, "250.00", "250.50");
+
+        streaming.reconnect();
+
+        assertTrue(book.get(FIGI).isStale());
+        assertTrue(book.get(OTHER).isStale());
+        assertEquals(4, market.requests.size());
+        market.respond(2, "100.15", "100.25");
+        market.respond(3, "250.10", "250.60");
+        assertFalse(book.get(FIGI).isStale());
+        assertFalse(book.get(OTHER).isStale());
+    }
+
+    @Test
+    void cancelRemovesReconnectListener() {
+        final FakeStreamingContext streaming = new FakeStreamingContext();
+        book.subscribeTo(streaming);
+        assertEquals(1, streaming.listeners.size());
+        assertTrue(streaming.subscription.requested > 0);
+
+        book.cancel();
+
+        assertTrue(streaming.listeners.isEmpty());
+        assertTrue(streaming.subscription.cancelled);
+    }
+
+    @Test
+    void resyncFinishedAfterUntrackDoesNotRestoreBook() {
+        book.track(FIGI);
+        book.untrack(FIGI);
+
+        market.respond(0, "100.10", "100.20");
+
+        assertNull(book.get(FIGI));
+    }
+
+    @NotNull
+    private static StreamingEvent.Orderbook event(@NotNull final String figi,
+                                                  @NotNull final String bid,
+                                                  @NotNull final String ask) {
+        return new StreamingEvent.Orderbook(
+                DEPTH,
+                Collections.singletonList(new BigDecimal[]{new BigDecimal(bid), BigDecimal.ONE}),
+                Collections.singletonList(new BigDecimal[]{new BigDecimal(ask), BigDecimal.ONE}),
+                figi);
+    }
+
+    /**
+     * Рыночный контекст, в котором запросы стаканов завершает тест.
+     */
+    private static final class FakeMarketContext implements MarketContext {
+        final List<String> requests = new ArrayList<>();
+        final List<CompletableFuture<Optional<Orderbook>>> results = new ArrayList<>();
+
+        void respond(final int index, @NotNull final String bid, @NotNull final String ask) {
+            final Orderbook orderbook = new Orderbook()
+                    .figi(requests.get(index))
+                    .depth(DEPTH)
+                    .bids(Collections.singletonList(new OrderResponse().price(new BigDecimal(bid)).quantity(1)))
+                    .asks(Collections.singletonList(new OrderResponse().price(new BigDecimal(ask)).quantity(1)));
+            results.get(index).complete(Optional.of(orderbook));
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<Optional<Orderbook>> getMarketOrderbook(@NotNull final String figi, final int depth) {
+            final CompletableFuture<Optional<Orderbook>> result = new CompletableFuture<>();
+            requests.add(figi);
+            results.add(result);
+            return result;
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<MarketInstrumentList> getMarketStocks() {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<MarketInstrumentList> getMarketBonds() {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<MarketInstrumentList> getMarketEtfs() {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<MarketInstrumentList> getMarketCurrencies() {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public Publisher<MarketInstrument> streamMarketInstruments(@NotNull final InstrumentType type) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<Optional<Candles>> getMarketCandles(@NotNull final String figi,
+                                                                     @NotNull final OffsetDateTime from,
+                                                                     @NotNull final OffsetDateTime to,
+                                                                     @NotNull final CandleResolution interval) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public Publisher<Candle> streamMarketCandles(@NotNull final String figi,
+                                                     @NotNull final OffsetDateTime from,
+                                                     @NotNull final OffsetDateTime to,
+                                                     @NotNull final CandleResolution interval) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<MarketInstrumentList> searchMarketInstrumentsByTicker(@NotNull final String ticker) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<Optional<SearchMarketInstrument>> searchMarketInstrumentByFigi(@NotNull final String figi) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public String getPath() {
+            return "market";
+        }
+    }
+
+    /**
+     * Контекст Streaming API, в котором восстановление соединения вызывает тест.
+     */
+    private static final class FakeStreamingContext implements StreamingContext {
+        final List<Runnable> listeners = new ArrayList<>();
+        final RecordingSubscription subscription = new RecordingSubscription();
+
+        void reconnect() {
+            for (final Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+
+        @Override
+        public void sendRequest(@NotNull final StreamingRequest request) {
+        }
+
+        @Override
+        public void addReconnectListener(@NotNull final Runnable listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeReconnectListener(@NotNull final Runnable listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super StreamingEvent> subscriber) {
+            subscriber.onSubscribe(subscription);
+        }
+    }
+
+    private static final class RecordingSubscription implements Subscription {
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(final long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
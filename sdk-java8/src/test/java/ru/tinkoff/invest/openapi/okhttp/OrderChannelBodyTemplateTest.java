@@ -0,0 +1,76 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.MarketOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderChannelBodyTemplateTest {
+
+    private static final int[] LOTS = {
+            0, 1, 7, 10, 99, 123456, -1, -42, Integer.MAX_VALUE, Integer.MIN_VALUE
+    };
+    private static final BigDecimal[] PRICES = {
+            new BigDecimal("250.5"),
+            new BigDecimal("250.50"),
+            new BigDecimal("0.0001"),
+            new BigDecimal("100").setScale(4),
+            new BigDecimal("1E+3"),
+            new BigDecimal("1E-9"),
+            new BigDecimal("-3.14"),
+            BigDecimal.ZERO,
+            new BigDecimal("98765.43210987"),
+            new BigDecimal("12345678901234567890.123456789")
+    };
+
+    private final ObjectMapper mapper = BaseContextImpl.createMapper();
+
+    @Test
+    void limitBodyMatchesJackson() throws Exception {
+        for (final OperationType operation : OperationType.values()) {
+            final OrderChannel.BodyTemplate template = OrderChannel.BodyTemplate.limit(mapper, operation);
+            assertTrue(template.isCompiled(), "шаблон " + operation + " не построен");
+            for (final int lots : LOTS) {
+                for (final BigDecimal price : PRICES) {
+                    final LimitOrderRequest request = new LimitOrderRequest()
+                            .lots(lots)
+                            .operation(operation)
+                            .price(price);
+                    assertArrayEquals(mapper.writeValueAsBytes(request), template.fill(lots, price),
+                            operation + ", lots = " + lots + ", price = " + price);
+                }
+            }
+        }
+    }
+
+    @Test
+    void marketBodyMatchesJackson() throws Exception {
+        for (final OperationType operation : OperationType.values()) {
+            final OrderChannel.BodyTemplate template = OrderChannel.BodyTemplate.market(mapper, operation);
+            assertTrue(template.isCompiled(), "шаблон " + operation + " не построен");
+            for (final int lots : LOTS) {
+                final MarketOrderRequest request = new MarketOrderRequest().lots(lots).operation(operation);
+                assertArrayEquals(mapper.writeValueAsBytes(request), template.fill(lots, null),
+                        operation + ", lots = " + lots);
+            }
+        }
+    }
+
+    @Test
+    void mismatchedArgumentsFallBackToJackson() {
+        final OrderChannel.BodyTemplate limit = OrderChannel.BodyTemplate.limit(mapper, OperationType.BUY);
+        final OrderChannel.BodyTemplate market = OrderChannel.BodyTemplate.market(mapper, OperationType.SELL);
+
+        assertNull(limit.fill(1, null));
+        assertNull(limit.fill(null, BigDecimal.ONE));
+        assertNull(market.fill(1, BigDecimal.ONE));
+        assertNull(market.fill(null, null));
+    }
+}
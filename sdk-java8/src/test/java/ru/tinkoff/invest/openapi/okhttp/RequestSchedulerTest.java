@@ -0,0 +1,279 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Timeout;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.metrics.NoopMetricsRegistry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestSchedulerTest {
+
+    // 6 запросов в минуту: в ведре помещается один токен, следующий появляется через 10 секунд.
+    private static final int SLOW_LIMIT = 6;
+    private static final long TOKEN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final List<String> dispatched = new CopyOnWriteArrayList<>();
+    private final List<String> failed = new CopyOnWriteArrayList<>();
+    private RequestScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void highPriorityOvertakesLowWithinGroup() {
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, SLOW_LIMIT);
+
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.LOW, "a");
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.LOW, "b");
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.LOW, "c");
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "d");
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.HIGH, "e");
+        assertEquals(Collections.singletonList("a"), dispatched);
+
+        for (int i = 0; i < 4; i++) {
+            now.addAndGet(TOKEN_NANOS);
+            scheduler.drain(RequestScheduler.EndpointGroup.MARKET);
+        }
+
+        assertEquals(Arrays.asList("a", "e", "d", "b", "c"), dispatched);
+        final RequestScheduler.GroupMetrics metrics = scheduler.getMetrics(RequestScheduler.EndpointGroup.MARKET);
+        assertEquals(5, metrics.getSubmitted());
+        assertEquals(5, metrics.getDispatched());
+        assertEquals(4, metrics.getThrottled());
+        assertEquals(0, metrics.getQueueDepth());
+    }
+
+    @Test
+    void drainSendsNothingBeforeTokenAppears() {
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, SLOW_LIMIT);
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "a");
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "b");
+
+        now.addAndGet(TOKEN_NANOS - 1);
+        scheduler.drain(RequestScheduler.EndpointGroup.MARKET);
+        assertEquals(Collections.singletonList("a"), dispatched);
+
+        now.addAndGet(1);
+        scheduler.drain(RequestScheduler.EndpointGroup.MARKET);
+        assertEquals(Arrays.asList("a", "b"), dispatched);
+    }
+
+    @Test
+    void groupsDoNotStarveEachOther() {
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, SLOW_LIMIT);
+        for (int i = 0; i < 10; i++) {
+            enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.HIGH, "market-" + i);
+        }
+
+        enqueue(RequestScheduler.EndpointGroup.ORDERS, RequestScheduler.Priority.LOW, "orders");
+        enqueue(RequestScheduler.EndpointGroup.PORTFOLIO, RequestScheduler.Priority.LOW, "portfolio");
+
+        assertEquals(Arrays.asList("market-0", "orders", "portfolio"), dispatched);
+        assertEquals(9, scheduler.getMetrics(RequestScheduler.EndpointGroup.MARKET).getQueueDepth());
+        assertEquals(0, scheduler.getMetrics(RequestScheduler.EndpointGroup.ORDERS).getThrottled());
+    }
+
+    @Test
+    void tooManyRequestsDrainsBucket() throws IOException {
+        // 60 запросов в минуту: в ведре 10 токенов, новый появляется каждую секунду.
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, 60);
+        final FakeCall first = enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "a");
+
+        first.respond(429);
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "b");
+
+        assertEquals(Collections.singletonList("a"), dispatched);
+        final RequestScheduler.GroupMetrics metrics = scheduler.getMetrics(RequestScheduler.EndpointGroup.MARKET);
+        assertEquals(1, metrics.getTooManyRequests());
+        assertEquals(1, metrics.getThrottled());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        scheduler.drain(RequestScheduler.EndpointGroup.MARKET);
+        assertEquals(Arrays.asList("a", "b"), dispatched);
+    }
+
+    @Test
+    void expiredQueuedCallFailsWithoutSpendingToken() {
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, SLOW_LIMIT);
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "a");
+        // Срок истекает раньше появления токена; таймер снятия с очереди не успеет сработать.
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.HIGH, "b",
+                now.get() + TimeUnit.MINUTES.toNanos(1), false);
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.LOW, "c");
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        scheduler.drain(RequestScheduler.EndpointGroup.MARKET);
+
+        assertEquals(Arrays.asList("a", "c"), dispatched);
+        assertEquals(Collections.singletonList("b:" + InterruptedIOException.class.getSimpleName()), failed);
+        assertEquals(0, scheduler.getMetrics(RequestScheduler.EndpointGroup.MARKET).getQueueDepth());
+    }
+
+    @Test
+    void expiredCallLeavesQueueWithoutWaitingForToken() throws InterruptedException {
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, SLOW_LIMIT);
+        enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "a");
+        final FakeCall expiring = enqueue(RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, "b",
+                now.get() + TimeUnit.MILLISECONDS.toNanos(50), false);
+
+        assertTrue(expiring.failure.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singletonList("b:" + InterruptedIOException.class.getSimpleName()), failed);
+        assertEquals(0, scheduler.getMetrics(RequestScheduler.EndpointGroup.MARKET).getQueueDepth());
+        now.addAndGet(TOKEN_NANOS);
+        scheduler.drain(RequestScheduler.EndpointGroup.MARKET);
+        assertEquals(Collections.singletonList("a"), dispatched);
+    }
+
+    @Test
+    void remainingDeadlineBecomesCallTimeout() {
+        scheduler = scheduler(RequestScheduler.EndpointGroup.MARKET, SLOW_LIMIT);
+        final long deadline = TimeUnit.SECONDS.toNanos(3);
+
+        final FakeCall regular = enqueue(RequestScheduler.EndpointGroup.ORDERS, RequestScheduler.Priority.HIGH, "a",
+                now.get() + deadline, false);
+        final FakeCall streamed = enqueue(RequestScheduler.EndpointGroup.PORTFOLIO, RequestScheduler.Priority.HIGH, "b",
+                now.get() + deadline, true);
+
+        assertEquals(deadline, regular.timeout.timeoutNanos());
+        // Потоковому вызову срок ограничивает только ожидание заголовков, а не чтение тела.
+        assertEquals(0, streamed.timeout.timeoutNanos());
+    }
+
+    @NotNull
+    private RequestScheduler scheduler(@NotNull final RequestScheduler.EndpointGroup group, final int limit) {
+        final Map<RequestScheduler.EndpointGroup, Integer> limits = new EnumMap<>(RequestScheduler.EndpointGroup.class);
+        limits.put(group, limit);
+        return new RequestScheduler(limits, NoopMetricsRegistry.INSTANCE, now::get);
+    }
+
+    @NotNull
+    private FakeCall enqueue(@NotNull final RequestScheduler.EndpointGroup group,
+                             @NotNull final RequestScheduler.Priority priority,
+                             @NotNull final String name) {
+        return enqueue(group, priority, name, RestCall.NO_DEADLINE, false);
+    }
+
+    @NotNull
+    private FakeCall enqueue(@NotNull final RequestScheduler.EndpointGroup group,
+                             @NotNull final RequestScheduler.Priority priority,
+                             @NotNull final String name,
+                             final long deadlineAt,
+                             final boolean streamed) {
+        final FakeCall call = new FakeCall(name, group);
+        scheduler.enqueue(group, priority, call, call.listener, deadlineAt, streamed);
+        return call;
+    }
+
+    /**
+     * Вызов, который вместо отправки на сервер записывает себя в список отправленных.
+     */
+    private final class FakeCall implements Call {
+        final String name;
+        final Request request;
+        final Timeout timeout = new Timeout();
+        final CountDownLatch failure = new CountDownLatch(1);
+        final Callback listener = new Callback() {
+            @Override
+            public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+                failed.add(name + ":" + e.getClass().getSimpleName());
+                failure.countDown();
+            }
+
+            @Override
+            public void onResponse(@NotNull final Call call, @NotNull final Response response) {
+                response.close();
+            }
+        };
+        Callback callback;
+        boolean canceled;
+
+        FakeCall(@NotNull final String name, @NotNull final RequestScheduler.EndpointGroup group) {
+            this.name = name;
+            this.request = new Request.Builder().url("http://localhost/" + group.getPath() + "/" + name).build();
+        }
+
+        void respond(final int code) throws IOException {
+            callback.onResponse(this, new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message("test")
+                    .body(ResponseBody.create("", (MediaType) null))
+                    .build());
+        }
+
+        @NotNull
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @NotNull
+        @Override
+        public Response execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enqueue(@NotNull final Callback callback) {
+            this.callback = callback;
+            dispatched.add(name);
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return callback != null;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @NotNull
+        @Override
+        public Timeout timeout() {
+            return timeout;
+        }
+
+        @NotNull
+        @Override
+        @SuppressWarnings("MethodDoesntCallSuperMethod")
+        public Call clone() {
+            return new FakeCall(name, RequestScheduler.EndpointGroup.MARKET);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.exceptions.NotEnoughBalanceException;
+import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
+import ru.tinkoff.invest.openapi.exceptions.OrderAlreadyCancelledException;
+import ru.tinkoff.invest.openapi.exceptions.WrongTokenException;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.Orderbook;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestExecutorTest {
+
+    private static final String TOKEN = "Bearer test-token";
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private RequestScheduler scheduler;
+    private OrdersContextImpl orders;
+    private MarketContextImpl market;
+    private PortfolioContextImpl portfolio;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient();
+        scheduler = new RequestScheduler();
+        final RestExecutor executor = new RestExecutor(
+                client,
+                scheduler,
+                Arrays.asList(RetryPolicy.noRetries(), new AuthInterceptor(TOKEN)),
+                RestExecutor.DEFAULT_ERROR_MAPPER);
+        final String url = server.url("/").toString();
+        orders = new OrdersContextImpl(executor, url);
+        market = new MarketContextImpl(executor, url);
+        portfolio = new PortfolioContextImpl(executor, url);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        scheduler.close();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Test
+    void successfulResponseIsParsed() throws Exception {
+        server.enqueue(ok("[{\"orderId\":\"1\",\"figi\":\"F\"},{\"orderId\":\"2\",\"figi\":\"G\"}]"));
+
+        final List<Order> result = orders.getOrders("acc").get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, result.size());
+        assertEquals("2", result.get(1).getOrderId());
+        final RecordedRequest request = server.takeRequest();
+        assertEquals("GET", request.getMethod());
+        assertEquals("/orders?brokerAccountId=acc", request.getPath());
+        assertEquals(TOKEN, request.getHeader("Authorization"));
+    }
+
+    @Test
+    void unauthorizedFailsWithWrongToken() {
+        server.enqueue(new MockResponse().setResponseCode(401));
+
+        final Throwable cause = failure(orders.getOrders(null));
+
+        assertTrue(cause instanceof WrongTokenException, String.valueOf(cause));
+    }
+
+    @Test
+    void notEnoughBalanceIsMappedForOrders() {
+        server.enqueue(error("NOT_ENOUGH_BALANCE"));
+
+        final Throwable cause = failure(orders.placeLimitOrder("F", limitOrder(), null));
+
+        assertTrue(cause instanceof NotEnoughBalanceException, String.valueOf(cause));
+        assertEquals("NOT_ENOUGH_BALANCE", ((OpenApiException) cause).getCode());
+    }
+
+    @Test
+    void notEnoughBalanceOutsideOrdersIsNotMapped() {
+        server.enqueue(error("NOT_ENOUGH_BALANCE"));
+
+        final Throwable cause = failure(portfolio.getPortfolio(null));
+
+        assertEquals(OpenApiException.class, cause.getClass());
+        assertEquals("NOT_ENOUGH_BALANCE", ((OpenApiException) cause).getCode());
+    }
+
+    @Test
+    void orderErrorIsMappedOnlyForCancel() {
+        server.enqueue(error("ORDER_ERROR"));
+        server.enqueue(error("ORDER_ERROR"));
+
+        final Throwable cancel = failure(orders.cancelOrder("1", null));
+        final Throwable place = failure(orders.placeLimitOrder("F", limitOrder(), null));
+
+        assertTrue(cancel instanceof OrderAlreadyCancelledException, String.valueOf(cancel));
+        assertEquals(OpenApiException.class, place.getClass());
+        assertEquals("ORDER_ERROR", ((OpenApiException) place).getCode());
+    }
+
+    @Test
+    void emptyResultCodeCompletesWithEmptyValue() throws Exception {
+        server.enqueue(error("INSTRUMENT_ERROR"));
+        server.enqueue(error("NOT_FOUND"));
+
+        final Optional<Orderbook> empty = market.getMarketOrderbook("F", 10).get(5, TimeUnit.SECONDS);
+        final Throwable other = failure(market.getMarketOrderbook("F", 10));
+
+        assertFalse(empty.isPresent());
+        assertEquals(OpenApiException.class, other.getClass());
+        assertEquals("NOT_FOUND", ((OpenApiException) other).getCode());
+    }
+
+    @Test
+    void responsesAreReleasedOnEveryPath() throws Exception {
+        server.enqueue(ok("[]"));
+        server.enqueue(new MockResponse().setResponseCode(401).setBody("{\"unread\":\"body\"}"));
+        server.enqueue(error("ORDER_ERROR"));
+        server.enqueue(error("INSTRUMENT_ERROR"));
+
+        orders.getOrders(null).handle((r, e) -> null).get(5, TimeUnit.SECONDS);
+        orders.getOrders(null).handle((r, e) -> null).get(5, TimeUnit.SECONDS);
+        orders.cancelOrder("1", null).handle((r, e) -> null).get(5, TimeUnit.SECONDS);
+        market.getMarketOrderbook("F", 10).handle((r, e) -> null).get(5, TimeUnit.SECONDS);
+
+        // Ответ закрывается после завершения результата, поэтому ждём возврата соединений в пул.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.connectionPool().idleConnectionCount() < client.connectionPool().connectionCount()
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(client.connectionPool().connectionCount() > 0);
+        assertEquals(client.connectionPool().connectionCount(), client.connectionPool().idleConnectionCount());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @NotNull
+    private static Throwable failure(@NotNull final CompletableFuture<?> future) {
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return ex.getCause();
+    }
+
+    @NotNull
+    private static LimitOrderRequest limitOrder() {
+        return new LimitOrderRequest().lots(1).operation(OperationType.BUY).price(new BigDecimal("100.5"));
+    }
+
+    @NotNull
+    private static MockResponse ok(@NotNull final String payload) {
+        return new MockResponse().setBody("{\"trackingId\":\"t\",\"status\":\"Ok\",\"payload\":" + payload + "}");
+    }
+
+    @NotNull
+    private static MockResponse error(@NotNull final String code) {
+        return new MockResponse()
+                .setResponseCode(500)
+                .setBody("{\"trackingId\":\"t\",\"status\":\"Error\",\"payload\":{\"message\":\"m\",\"code\":\"" + code + "\"}}");
+    }
+}
@@ -0,0 +1,274 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    private static final String LIMIT_ORDER = "/orders/limit-order";
+    private static final String PORTFOLIO = "/portfolio";
+
+    // Без пауз между попытками, чтобы повторы исполнялись сразу.
+    private final RetryPolicy policy = new RetryPolicy(3, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(30));
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Test
+    void readTimeoutOnPlaceLimitOrderIsNotRetried() {
+        final ScriptedChain chain = new ScriptedChain(new SocketTimeoutException("timeout"), 200);
+        final RecordingCallback callback = intercept(placeLimitOrder(), chain);
+
+        assertEquals(1, chain.attempts);
+        assertTrue(callback.failure instanceof SocketTimeoutException, String.valueOf(callback.failure));
+    }
+
+    @Test
+    void serverErrorOnPlaceLimitOrderIsNotRetried() {
+        final ScriptedChain chain = new ScriptedChain(500, 200);
+        final RecordingCallback callback = intercept(placeLimitOrder(), chain);
+
+        assertEquals(1, chain.attempts);
+        assertEquals(500, callback.code);
+    }
+
+    @Test
+    void connectFailureOnPlaceLimitOrderIsRetried() {
+        final ScriptedChain chain = new ScriptedChain(new ConnectException("refused"), 200);
+        final RecordingCallback callback = intercept(placeLimitOrder(), chain);
+
+        assertEquals(2, chain.attempts);
+        assertEquals(200, callback.code);
+    }
+
+    @Test
+    void tooManyRequestsOnPlaceLimitOrderIsRetried() {
+        final ScriptedChain chain = new ScriptedChain(429, 200);
+        final RecordingCallback callback = intercept(placeLimitOrder(), chain);
+
+        assertEquals(2, chain.attempts);
+        assertEquals(200, callback.code);
+    }
+
+    @Test
+    void idempotentCallIsRetriedAfterAnyTransientFailure() {
+        final ScriptedChain chain = new ScriptedChain(new SocketTimeoutException("timeout"), 503, 200);
+        final RecordingCallback callback = intercept(get(PORTFOLIO), chain);
+
+        assertEquals(3, chain.attempts);
+        assertEquals(200, callback.code);
+    }
+
+    @Test
+    void clientErrorIsNotRetried() {
+        final ScriptedChain chain = new ScriptedChain(400, 200);
+        final RecordingCallback callback = intercept(get(PORTFOLIO), chain);
+
+        assertEquals(1, chain.attempts);
+        assertEquals(400, callback.code);
+    }
+
+    @Test
+    void retryAfterHeaderSetsThePause() {
+        final ScriptedChain chain = new ScriptedChain(429, 200);
+        chain.retryAfter = "2";
+        intercept(placeLimitOrder(), chain);
+
+        assertEquals(Collections.singletonList(TimeUnit.SECONDS.toNanos(2)), chain.delays);
+    }
+
+    @Test
+    void retryIsSkippedWhenPauseOutlivesDeadline() {
+        final RetryPolicy shortDeadline = new RetryPolicy(3, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1));
+        final ScriptedChain chain = new ScriptedChain(429, 200);
+        chain.retryAfter = "5";
+
+        final RecordingCallback callback = new RecordingCallback();
+        shortDeadline.intercept(get(PORTFOLIO), chain, callback);
+
+        assertEquals(1, chain.attempts);
+        assertEquals(429, callback.code);
+    }
+
+    @Test
+    void callDeadlineOverridesPolicyDeadline() {
+        final ScriptedChain chain = new ScriptedChain(429, 200);
+        chain.retryAfter = "5";
+        final long before = System.nanoTime();
+
+        final RecordingCallback callback = intercept(get(PORTFOLIO).withDeadline(Duration.ofSeconds(1)), chain);
+        final long after = System.nanoTime();
+
+        assertEquals(1, chain.attempts);
+        assertEquals(429, callback.code);
+        final long deadlineAt = chain.calls.get(0).getDeadlineAt();
+        final long second = TimeUnit.SECONDS.toNanos(1);
+        assertTrue(deadlineAt - before >= second && deadlineAt - after <= second);
+    }
+
+    @Test
+    void countersTrackRetriesPerEndpoint() {
+        intercept(get(PORTFOLIO), new ScriptedChain(503, 503, 503));
+        intercept(get(PORTFOLIO), new ScriptedChain(new ConnectException("refused"), 200));
+        intercept(placeLimitOrder(), new ScriptedChain(200));
+
+        final RetryPolicy.EndpointMetrics portfolio = policy.getMetrics().get(PORTFOLIO);
+        assertEquals(2, portfolio.getCalls());
+        assertEquals(3, portfolio.getRetries());
+        assertEquals(1, portfolio.getRecovered());
+        assertEquals(1, portfolio.getExhausted());
+        final RetryPolicy.EndpointMetrics order = policy.getMetrics().get(LIMIT_ORDER);
+        assertEquals(1, order.getCalls());
+        assertEquals(0, order.getRetries());
+        assertEquals(Arrays.asList(LIMIT_ORDER, PORTFOLIO), new ArrayList<>(policy.getMetrics().keySet()));
+    }
+
+    @Test
+    void placeLimitOrderIsSentOnceWhenResponseTimesOut() throws Exception {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+            server.enqueue(new MockResponse().setBody("{\"trackingId\":\"t\",\"status\":\"Ok\",\"payload\":{}}"));
+            server.start();
+            final OkHttpClient timingOut = new OkHttpClient.Builder()
+                    .readTimeout(200, TimeUnit.MILLISECONDS)
+                    .build();
+            final RequestScheduler scheduler = new RequestScheduler();
+            try {
+                final RestExecutor executor = new RestExecutor(timingOut, scheduler,
+                        Collections.singletonList(policy), RestExecutor.DEFAULT_ERROR_MAPPER);
+                final OrdersContextImpl orders = new OrdersContextImpl(executor, server.url("/").toString());
+
+                final ExecutionException ex = assertThrows(ExecutionException.class, () -> orders
+                        .placeLimitOrder("F", new LimitOrderRequest().lots(1).operation(OperationType.BUY).price(BigDecimal.TEN), null)
+                        .get(5, TimeUnit.SECONDS));
+
+                assertTrue(ex.getCause() instanceof SocketTimeoutException, String.valueOf(ex.getCause()));
+                assertEquals(1, server.getRequestCount());
+            } finally {
+                scheduler.close();
+                timingOut.dispatcher().executorService().shutdown();
+            }
+        }
+    }
+
+    @NotNull
+    private RecordingCallback intercept(@NotNull final RestCall call, @NotNull final ScriptedChain chain) {
+        final RecordingCallback callback = new RecordingCallback();
+        policy.intercept(call, chain, callback);
+        return callback;
+    }
+
+    @NotNull
+    private static RestCall placeLimitOrder() {
+        final Request request = new Request.Builder()
+                .url("http://localhost" + LIMIT_ORDER + "?figi=F")
+                .post(RequestBody.create("{}", MediaType.get("application/json")))
+                .build();
+        return new RestCall(request, RequestScheduler.EndpointGroup.ORDERS, RequestScheduler.Priority.HIGH, false);
+    }
+
+    @NotNull
+    private static RestCall get(@NotNull final String path) {
+        final Request request = new Request.Builder().url("http://localhost" + path).build();
+        return new RestCall(request, RequestScheduler.EndpointGroup.PORTFOLIO, RequestScheduler.Priority.NORMAL, true);
+    }
+
+    /**
+     * Остаток конвейера, отвечающий на попытки по заранее заданному сценарию: исключением
+     * ввода-вывода или ответом с заданным кодом. Отложенные попытки исполняются сразу.
+     */
+    private final class ScriptedChain implements RestInterceptor.Chain {
+        final Deque<Object> outcomes;
+        final List<RestCall> calls = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+        String retryAfter;
+        int attempts;
+
+        ScriptedChain(@NotNull final Object... outcomes) {
+            this.outcomes = new ArrayDeque<>(Arrays.asList(outcomes));
+        }
+
+        @Override
+        public void proceed(@NotNull final RestCall call, @NotNull final Callback callback) {
+            attempts++;
+            calls.add(call);
+            final Call okCall = client.newCall(call.getRequest());
+            final Object outcome = outcomes.poll();
+            try {
+                if (outcome instanceof IOException) {
+                    callback.onFailure(okCall, (IOException) outcome);
+                } else {
+                    final Response.Builder response = new Response.Builder()
+                            .request(call.getRequest())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code((Integer) outcome)
+                            .message("test")
+                            .body(ResponseBody.create("", (MediaType) null));
+                    if (retryAfter != null) {
+                        response.header("Retry-After", retryAfter);
+                    }
+                    callback.onResponse(okCall, response.build());
+                }
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+
+        @Override
+        public boolean proceedAfter(@NotNull final RestCall call,
+                                    @NotNull final Callback callback,
+                                    final long delayNanos) {
+            delays.add(delayNanos);
+            proceed(call, callback);
+            return true;
+        }
+    }
+
+    private static final class RecordingCallback implements Callback {
+        @Nullable
+        IOException failure;
+        int code;
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            failure = e;
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) {
+            code = response.code();
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SingleFlightInterceptorTest {
+
+    private static final String URL = "http://localhost/market/orderbook?figi=F&depth=10";
+
+    private final SingleFlightInterceptor interceptor = new SingleFlightInterceptor();
+    private final ManualChain chain = new ManualChain();
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Test
+    void followersShareLeadersResponse() throws IOException {
+        final RecordingCallback first = intercept(get(RequestScheduler.Priority.NORMAL));
+        final RecordingCallback second = intercept(get(RequestScheduler.Priority.NORMAL));
+        final RecordingCallback third = intercept(get(RequestScheduler.Priority.NORMAL));
+
+        assertEquals(1, chain.proceeded.size());
+        chain.respond(0, "{\"payload\":1}");
+
+        assertEquals(Arrays.asList("{\"payload\":1}"), first.bodies);
+        assertEquals(Arrays.asList("{\"payload\":1}"), second.bodies);
+        assertEquals(Arrays.asList("{\"payload\":1}"), third.bodies);
+    }
+
+    @Test
+    void everyFollowerGetsItsOwnCopy() throws IOException {
+        final RecordingCallback first = intercept(get(RequestScheduler.Priority.NORMAL));
+        final RecordingCallback second = intercept(get(RequestScheduler.Priority.NORMAL));
+
+        chain.respond(0, "body");
+
+        assertNotSame(first.responses.get(0), second.responses.get(0));
+        assertNotSame(first.responses.get(0).body(), second.responses.get(0).body());
+        assertEquals(first.responses.get(0).code(), second.responses.get(0).code());
+    }
+
+    @Test
+    void singleCallerGetsOriginalResponse() throws IOException {
+        final RecordingCallback only = intercept(get(RequestScheduler.Priority.NORMAL));
+
+        final Response response = chain.respond(0, "body");
+
+        assertSame(response, only.responses.get(0));
+    }
+
+    @Test
+    void followersShareLeadersFailure() {
+        final RecordingCallback first = intercept(get(RequestScheduler.Priority.NORMAL));
+        final RecordingCallback second = intercept(get(RequestScheduler.Priority.NORMAL));
+        final IOException failure = new IOException("connection reset");
+
+        chain.fail(0, failure);
+
+        assertEquals(Arrays.asList(failure), first.failures);
+        assertEquals(Arrays.asList(failure), second.failures);
+    }
+
+    @Test
+    void callAfterCompletionGoesToServer() throws IOException {
+        intercept(get(RequestScheduler.Priority.NORMAL));
+        chain.respond(0, "first");
+
+        final RecordingCallback late = intercept(get(RequestScheduler.Priority.NORMAL));
+        chain.respond(1, "second");
+
+        assertEquals(2, chain.proceeded.size());
+        assertEquals(Arrays.asList("second"), late.bodies);
+    }
+
+    @Test
+    void differentPrioritiesAreNotCoalesced() {
+        intercept(get(RequestScheduler.Priority.LOW));
+        intercept(get(RequestScheduler.Priority.HIGH));
+        intercept(get(RequestScheduler.Priority.HIGH));
+
+        assertEquals(2, chain.proceeded.size());
+        assertEquals(RequestScheduler.Priority.LOW, chain.proceeded.get(0).getPriority());
+        assertEquals(RequestScheduler.Priority.HIGH, chain.proceeded.get(1).getPriority());
+    }
+
+    @Test
+    void postIsNeverCoalesced() {
+        final Request request = new Request.Builder()
+                .url(URL)
+                .post(RequestBody.create("{}", MediaType.get("application/json")))
+                .build();
+        final RestCall post = new RestCall(request, RequestScheduler.EndpointGroup.MARKET, RequestScheduler.Priority.NORMAL, true);
+
+        intercept(post);
+        intercept(post);
+
+        assertEquals(2, chain.proceeded.size());
+    }
+
+    @Test
+    void streamedCallIsNeverCoalesced() {
+        intercept(get(RequestScheduler.Priority.NORMAL));
+        intercept(get(RequestScheduler.Priority.NORMAL).asStreamed());
+        intercept(get(RequestScheduler.Priority.NORMAL).asStreamed());
+
+        assertEquals(3, chain.proceeded.size());
+    }
+
+    @NotNull
+    private RecordingCallback intercept(@NotNull final RestCall call) {
+        final RecordingCallback callback = new RecordingCallback();
+        interceptor.intercept(call, chain, callback);
+        return callback;
+    }
+
+    @NotNull
+    private static RestCall get(@NotNull final RequestScheduler.Priority priority) {
+        return new RestCall(new Request.Builder().url(URL).build(), RequestScheduler.EndpointGroup.MARKET, priority, true);
+    }
+
+    /**
+     * Остаток конвейера, запоминающий вызовы; завершает их тест.
+     */
+    private final class ManualChain implements RestInterceptor.Chain {
+        final List<RestCall> proceeded = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+
+        @Override
+        public void proceed(@NotNull final RestCall call, @NotNull final Callback callback) {
+            proceeded.add(call);
+            callbacks.add(callback);
+        }
+
+        @Override
+        public boolean proceedAfter(@NotNull final RestCall call,
+                                    @NotNull final Callback callback,
+                                    final long delayNanos) {
+            proceed(call, callback);
+            return true;
+        }
+
+        @NotNull
+        Response respond(final int index, @NotNull final String body) throws IOException {
+            final Request request = proceeded.get(index).getRequest();
+            final Response response = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(body, MediaType.get("application/json")))
+                    .build();
+            callbacks.get(index).onResponse(client.newCall(request), response);
+            return response;
+        }
+
+        void fail(final int index, @NotNull final IOException failure) {
+            callbacks.get(index).onFailure(client.newCall(proceeded.get(index).getRequest()), failure);
+        }
+    }
+
+    private static final class RecordingCallback implements Callback {
+        final List<Response> responses = new ArrayList<>();
+        final List<String> bodies = new ArrayList<>();
+        final List<IOException> failures = new ArrayList<>();
+
+        @Override
+        public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
+            failures.add(e);
+        }
+
+        @Override
+        public void onResponse(@NotNull final Call call, @NotNull final Response response) throws IOException {
+            responses.add(response);
+            try (ResponseBody body = response.body()) {
+                bodies.add(body.string());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.tinkoff.invest.openapi.okhttp;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.model.rest.InstrumentType;
+import ru.tinkoff.invest.openapi.model.rest.MarketInstrument;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamedCallDeadlineTest {
+
+    private static final Duration DEADLINE = Duration.ofMillis(300);
+    private static final int INSTRUMENTS = 5000;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private RequestScheduler scheduler;
+    private MarketContextImpl context;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient();
+        scheduler = new RequestScheduler();
+        final RestExecutor executor = new RestExecutor(
+                client,
+                scheduler,
+                Collections.singletonList(new RetryPolicy(1, Duration.ZERO, Duration.ZERO, DEADLINE)),
+                RestExecutor.DEFAULT_ERROR_MAPPER);
+        context = new MarketContextImpl(executor, server.url("/").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        scheduler.close();
+        client.dispatcher().executorService().shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    void pausedDemandOutlivesDeadline() throws Exception {
+        server.enqueue(new MockResponse().setBody(instruments(INSTRUMENTS)));
+        final PausingSubscriber subscriber = new PausingSubscriber();
+
+        context.streamMarketInstruments(InstrumentType.STOCK).subscribe(subscriber);
+        assertTrue(subscriber.first.await(5, TimeUnit.SECONDS));
+        Thread.sleep(DEADLINE.toMillis() * 2);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(INSTRUMENTS, subscriber.received.get());
+    }
+
+    @Test
+    void waitForHeadersIsBoundedByDeadline() throws Exception {
+        server.enqueue(new MockResponse()
+                .setBody(instruments(1))
+                .setHeadersDelay(DEADLINE.toMillis() * 5, TimeUnit.MILLISECONDS));
+        final PausingSubscriber subscriber = new PausingSubscriber();
+
+        context.streamMarketInstruments(InstrumentType.STOCK).subscribe(subscriber);
+
+        assertTrue(subscriber.done.await(DEADLINE.toMillis() * 4, TimeUnit.MILLISECONDS));
+        assertTrue(subscriber.error instanceof InterruptedIOException, String.valueOf(subscriber.error));
+        assertEquals(0, subscriber.received.get());
+    }
+
+    private static String instruments(final int count) {
+        final StringBuilder body = new StringBuilder("{\"trackingId\":\"t\",\"status\":\"Ok\",\"payload\":{\"total\":")
+                .append(count)
+                .append(",\"instruments\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"figi\":\"FIGI").append(i)
+                    .append("\",\"ticker\":\"T").append(i)
+                    .append("\",\"lot\":1,\"currency\":\"RUB\",\"name\":\"Instrument ").append(i)
+                    .append("\",\"type\":\"Stock\"}");
+        }
+        return body.append("]}}").toString();
+    }
+
+    /**
+     * Подписчик, запрашивающий сначала один элемент; остальные запрашиваются тестом.
+     */
+    private static final class PausingSubscriber implements Subscriber<MarketInstrument> {
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger received = new AtomicInteger();
+        volatile Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(final MarketInstrument instrument) {
+            received.incrementAndGet();
+            first.countDown();
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package ru.tinkoff.invest.openapi.operations;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import ru.tinkoff.invest.openapi.OperationsContext;
+import ru.tinkoff.invest.openapi.model.rest.Operation;
+import ru.tinkoff.invest.openapi.model.rest.OperationStatus;
+import ru.tinkoff.invest.openapi.model.rest.Operations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationStoreTest {
+
+    private static final String ACCOUNT = "2000000001";
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2020, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime INITIAL_FROM = NOW.minusDays(10);
+    private static final Duration OVERLAP = Duration.ofDays(1);
+
+    private Path directory;
+    private FakeOperationsContext context;
+    private OperationStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("operation-store");
+        context = new FakeOperationsContext();
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void syncedOperationsSurviveReopen() throws Exception {
+        context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.DONE));
+        context.operations.add(operation("2", NOW.minusDays(2), OperationStatus.DONE));
+
+        final OperationStore.SyncResult result = store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        assertEquals(2, result.getFetched());
+        assertEquals(2, result.getAdded());
+        reopen();
+        assertEquals(Arrays.asList("1", "2"), ids(store.getOperations(ACCOUNT, INITIAL_FROM, NOW)));
+        assertEquals("2", store.getWatermark(ACCOUNT).getOperationId());
+    }
+
+    @Test
+    void unchangedOperationIsNotWrittenAgain() throws Exception {
+        context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.DONE));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        final OperationStore.SyncResult result = store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        assertEquals(1, result.getFetched());
+        assertEquals(0, result.getAdded());
+        assertEquals(0, result.getUpdated());
+        assertEquals(1, lines().size());
+    }
+
+    @Test
+    void changedOperationSupersedesItsLine() throws Exception {
+        context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.PROGRESS));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+        context.operations.set(0, operation("1", NOW.minusDays(3), OperationStatus.DONE));
+
+        final OperationStore.SyncResult result = store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        assertEquals(1, result.getUpdated());
+        assertEquals(2, lines().size());
+        reopen();
+        final List<Operation> operations = store.getOperations(ACCOUNT, INITIAL_FROM, NOW);
+        assertEquals(1, operations.size());
+        assertEquals(OperationStatus.DONE, operations.get(0).getStatus());
+    }
+
+    @Test
+    void fileIsCompactedWhenSupersededLinesDominate() throws Exception {
+        for (int executed = 0; executed < 3; executed++) {
+            context.operations.clear();
+            context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.PROGRESS).quantityExecuted(executed));
+            store.sync(ACCOUNT, INITIAL_FROM).join();
+        }
+        assertEquals(3, lines().size());
+
+        reopen();
+        store.getWatermark(ACCOUNT);
+
+        final List<String> lines = lines();
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"quantityExecuted\":2"), lines.get(0));
+    }
+
+    @Test
+    void tornLastLineIsCutBeforeNextWrite() throws Exception {
+        context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.DONE));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+        store.close();
+        Files.write(file(), "{\"id\":\"2\",\"sta".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        store = open();
+        assertEquals(Arrays.asList("1"), ids(store.getOperations(ACCOUNT, INITIAL_FROM, NOW)));
+        context.operations.add(operation("3", NOW.minusDays(1), OperationStatus.DONE));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        reopen();
+        assertEquals(Arrays.asList("1", "3"), ids(store.getOperations(ACCOUNT, INITIAL_FROM, NOW)));
+        assertEquals(2, lines().size());
+    }
+
+    @Test
+    void completeLastLineWithoutSeparatorIsKept() throws Exception {
+        context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.DONE));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+        store.close();
+        final String content = new String(Files.readAllBytes(file()), StandardCharsets.UTF_8);
+        Files.write(file(), content.trim().getBytes(StandardCharsets.UTF_8));
+
+        store = open();
+        context.operations.add(operation("2", NOW.minusDays(1), OperationStatus.DONE));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        reopen();
+        assertEquals(Arrays.asList("1", "2"), ids(store.getOperations(ACCOUNT, INITIAL_FROM, NOW)));
+    }
+
+    @Test
+    void failedWriteLeavesNothingInMemory() throws Exception {
+        store.getWatermark(ACCOUNT);
+        Files.createDirectory(file());
+        context.operations.add(operation("1", NOW.minusDays(3), OperationStatus.DONE));
+
+        final CompletionException ex = assertThrows(CompletionException.class,
+                () -> store.sync(ACCOUNT, INITIAL_FROM).join());
+
+        assertTrue(ex.getCause() instanceof UncheckedIOException, String.valueOf(ex.getCause()));
+        assertTrue(store.getOperations(ACCOUNT, INITIAL_FROM, NOW).isEmpty());
+        assertNull(store.getWatermark(ACCOUNT));
+    }
+
+    @Test
+    void firstSyncStartsFromInitialFrom() {
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        assertEquals(INITIAL_FROM, context.requestedFrom.get(0));
+    }
+
+    @Test
+    void nextSyncStartsFromWatermarkMinusOverlap() {
+        context.operations.add(operation("1", NOW.minusDays(5), OperationStatus.DONE));
+        context.operations.add(operation("2", NOW.minusDays(2), OperationStatus.DONE));
+        context.operations.add(operation("3", NOW.minusDays(1), OperationStatus.PROGRESS));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+        context.requestedFrom.clear();
+
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        // Незавершённая операция моложе отметки и окно не сдвигает.
+        assertEquals(NOW.minusDays(2).minus(OVERLAP), context.requestedFrom.get(0));
+    }
+
+    @Test
+    void olderOperationInProgressMovesSyncBack() {
+        context.operations.add(operation("1", NOW.minusDays(6), OperationStatus.PROGRESS));
+        context.operations.add(operation("2", NOW.minusDays(2), OperationStatus.DONE));
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+        context.requestedFrom.clear();
+
+        store.sync(ACCOUNT, INITIAL_FROM).join();
+
+        assertEquals(NOW.minusDays(6), context.requestedFrom.get(0));
+    }
+
+    @Test
+    void longWindowIsSplitIntoPages() {
+        final OperationStore.SyncResult result = store.sync(ACCOUNT, NOW.minusDays(65)).join();
+
+        assertEquals(3, result.getPages());
+        assertEquals(Arrays.asList(NOW.minusDays(65), NOW.minusDays(35), NOW.minusDays(5)), context.requestedFrom);
+    }
+
+    @NotNull
+    private OperationStore open() throws IOException {
+        return new OperationStore(context, directory, Duration.ofDays(30), OVERLAP, Clock.fixed(NOW.toInstant(), ZoneOffset.UTC));
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        store = open();
+    }
+
+    @NotNull
+    private Path file() {
+        return directory.resolve(ACCOUNT + ".ndjson");
+    }
+
+    @NotNull
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(file(), StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    @NotNull
+    private static List<String> ids(@NotNull final List<Operation> operations) {
+        return operations.stream().map(Operation::getId).collect(Collectors.toList());
+    }
+
+    @NotNull
+    private static Operation operation(@NotNull final String id,
+                                       @NotNull final OffsetDateTime date,
+                                       @NotNull final OperationStatus status) {
+        return new Operation()
+                .id(id)
+                .date(date)
+                .status(status)
+                .figi("BBG000B9XRY4");
+    }
+
+    /**
+     * Контекст операций, отдающий операции из списка, попадающие в запрошенное окно.
+     */
+    private static final class FakeOperationsContext implements OperationsContext {
+        final List<Operation> operations = new ArrayList<>();
+        final List<OffsetDateTime> requestedFrom = new ArrayList<>();
+
+        @NotNull
+        @Override
+        public CompletableFuture<Operations> getOperations(@NotNull final OffsetDateTime from,
+                                                           @NotNull final OffsetDateTime to,
+                                                           @Nullable final String figi,
+                                                           @Nullable final String brokerAccountId) {
+            requestedFrom.add(from);
+            final List<Operation> page = operations.stream()
+                    .filter(operation -> !operation.getDate().isBefore(from) && operation.getDate().isBefore(to))
+                    .collect(Collectors.toList());
+            return CompletableFuture.completedFuture(new Operations().operations(page));
+        }
+
+        @NotNull
+        @Override
+        public Publisher<Operation> streamOperations(@NotNull final OffsetDateTime from,
+                                                     @NotNull final OffsetDateTime to,
+                                                     @Nullable final String figi,
+                                                     @Nullable final String brokerAccountId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public String getPath() {
+            return "operations";
+        }
+    }
+}
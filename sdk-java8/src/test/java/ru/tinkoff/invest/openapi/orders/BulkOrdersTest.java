@@ -0,0 +1,251 @@
+package ru.tinkoff.invest.openapi.orders;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.OrdersContext;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.MarketOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.PlacedLimitOrder;
+import ru.tinkoff.invest.openapi.model.rest.PlacedMarketOrder;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkOrdersTest {
+
+    private static final Duration LONG = Duration.ofSeconds(30);
+
+    private final FakeOrdersContext orders = new FakeOrdersContext();
+    private BulkOrders bulk;
+
+    @AfterEach
+    void tearDown() {
+        if (bulk != null) {
+            bulk.close();
+        }
+    }
+
+    @Test
+    void sameFigiIsPlacedInOrder() throws Exception {
+        bulk = new BulkOrders(orders, 8);
+
+        final CompletableFuture<List<BulkOrders.BulkResult<BulkOrders.LimitOrderPlacement, PlacedLimitOrder>>> result =
+                bulk.placeLimitOrders(Arrays.asList(
+                        placement("A", 1), placement("A", 2), placement("B", 1), placement("A", 3)), LONG);
+
+        assertEquals(Arrays.asList("A1", "B1"), orders.started);
+        orders.fail("A1");
+        assertEquals(Arrays.asList("A1", "B1", "A2"), orders.started);
+        orders.succeed("B1");
+        orders.succeed("A2");
+        assertEquals(Arrays.asList("A1", "B1", "A2", "A3"), orders.started);
+        orders.succeed("A3");
+
+        assertEquals(Arrays.asList(
+                BulkOrders.BulkResult.Status.FAILED,
+                BulkOrders.BulkResult.Status.DONE,
+                BulkOrders.BulkResult.Status.DONE,
+                BulkOrders.BulkResult.Status.DONE), statuses(result.get(5, TimeUnit.SECONDS)));
+        assertEquals("A3", result.get().get(3).getResult().getOrderId());
+    }
+
+    @Test
+    void parallelismIsBounded() throws Exception {
+        bulk = new BulkOrders(orders, 2);
+
+        final CompletableFuture<?> result = bulk.placeLimitOrders(Arrays.asList(
+                placement("A", 1), placement("B", 1), placement("C", 1), placement("D", 1), placement("E", 1)), LONG);
+
+        assertEquals(Arrays.asList("A1", "B1"), orders.started);
+        orders.succeed("B1");
+        assertEquals(Arrays.asList("A1", "B1", "C1"), orders.started);
+        orders.succeed("A1");
+        orders.succeed("C1");
+        assertEquals(Arrays.asList("A1", "B1", "C1", "D1", "E1"), orders.started);
+        orders.succeed("E1");
+        orders.succeed("D1");
+
+        result.get(5, TimeUnit.SECONDS);
+        assertEquals(2, orders.peakInFlight);
+    }
+
+    @Test
+    void deadlineSkipsUnsentAndTimesOutSent() throws Exception {
+        bulk = new BulkOrders(orders, 1);
+
+        final CompletableFuture<List<BulkOrders.BulkResult<BulkOrders.LimitOrderPlacement, PlacedLimitOrder>>> result =
+                bulk.placeLimitOrders(Arrays.asList(placement("A", 1), placement("B", 1), placement("C", 1)),
+                        Duration.ofMillis(200));
+        orders.succeed("A1");
+
+        final List<BulkOrders.BulkResult<BulkOrders.LimitOrderPlacement, PlacedLimitOrder>> results =
+                result.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(
+                BulkOrders.BulkResult.Status.DONE,
+                BulkOrders.BulkResult.Status.TIMED_OUT,
+                BulkOrders.BulkResult.Status.SKIPPED), statuses(results));
+        assertEquals(Arrays.asList("A1", "B1"), orders.started);
+
+        // Ответ, пришедший после срока, итог не меняет.
+        orders.succeed("B1");
+        assertEquals(BulkOrders.BulkResult.Status.TIMED_OUT, results.get(1).getStatus());
+        assertEquals(Arrays.asList("A1", "B1"), orders.started);
+    }
+
+    @Test
+    void synchronousFailuresDoNotGrowTheStack() throws Exception {
+        bulk = new BulkOrders(orders, 4);
+        orders.failImmediately = true;
+        final List<BulkOrders.LimitOrderPlacement> placements = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            placements.add(placement(i % 2 == 0 ? "A" : "B", i));
+        }
+
+        final List<BulkOrders.BulkResult<BulkOrders.LimitOrderPlacement, PlacedLimitOrder>> results =
+                bulk.placeLimitOrders(placements, LONG).get(5, TimeUnit.SECONDS);
+
+        assertEquals(placements.size(), results.size());
+        for (final BulkOrders.BulkResult<?, ?> result : results) {
+            assertEquals(BulkOrders.BulkResult.Status.FAILED, result.getStatus());
+            assertTrue(result.getError() instanceof IllegalStateException, String.valueOf(result.getError()));
+        }
+    }
+
+    @Test
+    void cancelAllCancelsOnlyMatchingOrders() throws Exception {
+        bulk = new BulkOrders(orders, 8);
+        orders.active.addAll(Arrays.asList(order("1", "A"), order("2", "B"), order("3", "A")));
+
+        final CompletableFuture<List<BulkOrders.BulkResult<Order, Void>>> result =
+                bulk.cancelAll("acc", order -> "A".equals(order.getFigi()), LONG);
+
+        assertEquals(Collections.singletonList("cancel-1"), orders.started);
+        orders.succeed("cancel-1");
+        orders.succeed("cancel-3");
+
+        final List<BulkOrders.BulkResult<Order, Void>> results = result.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("1", "3"),
+                results.stream().map(r -> r.getItem().getOrderId()).collect(Collectors.toList()));
+        assertTrue(results.stream().allMatch(BulkOrders.BulkResult::isDone));
+    }
+
+    @Test
+    void emptyBatchCompletesImmediately() {
+        bulk = new BulkOrders(orders, 8);
+
+        final CompletableFuture<?> result = bulk.placeLimitOrders(Collections.emptyList(), LONG);
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+    }
+
+    @NotNull
+    private static BulkOrders.LimitOrderPlacement placement(@NotNull final String figi, final int lots) {
+        return new BulkOrders.LimitOrderPlacement(figi,
+                new LimitOrderRequest().lots(lots).operation(OperationType.BUY).price(BigDecimal.TEN), null);
+    }
+
+    @NotNull
+    private static Order order(@NotNull final String orderId, @NotNull final String figi) {
+        return new Order().orderId(orderId).figi(figi).operation(OperationType.SELL).requestedLots(1);
+    }
+
+    @NotNull
+    private static List<BulkOrders.BulkResult.Status> statuses(@NotNull final List<? extends BulkOrders.BulkResult<?, ?>> results) {
+        return results.stream().map(BulkOrders.BulkResult::getStatus).collect(Collectors.toList());
+    }
+
+    /**
+     * Контекст заявок, в котором ответы на выставление и отзыв завершает тест. Запрос называется
+     * FIGI и количеством лотов ("A1") или номером отзываемой заявки ("cancel-1").
+     */
+    private static final class FakeOrdersContext implements OrdersContext {
+        final List<Order> active = new CopyOnWriteArrayList<>();
+        final List<String> started = new CopyOnWriteArrayList<>();
+        final Map<String, CompletableFuture<?>> pending = new ConcurrentHashMap<>();
+        volatile boolean failImmediately;
+        int current;
+        int peakInFlight;
+
+        @SuppressWarnings("unchecked")
+        void succeed(@NotNull final String name) {
+            final CompletableFuture<Object> future = (CompletableFuture<Object>) finish(name);
+            future.complete(name.startsWith("cancel-") ? null : new PlacedLimitOrder().orderId(name));
+        }
+
+        void fail(@NotNull final String name) {
+            finish(name).completeExceptionally(new IllegalStateException("Отказ по " + name));
+        }
+
+        @NotNull
+        private synchronized CompletableFuture<?> finish(@NotNull final String name) {
+            current--;
+            return pending.remove(name);
+        }
+
+        @NotNull
+        private synchronized <T> CompletableFuture<T> begin(@NotNull final String name) {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            if (failImmediately) {
+                future.completeExceptionally(new IllegalStateException("Отказ по " + name));
+                return future;
+            }
+            started.add(name);
+            pending.put(name, future);
+            peakInFlight = Math.max(peakInFlight, ++current);
+            return future;
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<PlacedLimitOrder> placeLimitOrder(@NotNull final String figi,
+                                                                   @NotNull final LimitOrderRequest limitOrder,
+                                                                   @Nullable final String brokerAccountId) {
+            return begin(figi + limitOrder.getLots());
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<Void> cancelOrder(@NotNull final String orderId, @Nullable final String brokerAccountId) {
+            return begin("cancel-" + orderId);
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<List<Order>> getOrders(@Nullable final String brokerAccountId) {
+            return CompletableFuture.completedFuture(new ArrayList<>(active));
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<PlacedMarketOrder> placeMarketOrder(@NotNull final String figi,
+                                                                     @NotNull final MarketOrderRequest marketOrder,
+                                                                     @Nullable final String brokerAccountId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public String getPath() {
+            return "orders";
+        }
+    }
+}
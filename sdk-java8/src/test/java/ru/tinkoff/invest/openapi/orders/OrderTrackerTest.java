@@ -0,0 +1,424 @@
+package ru.tinkoff.invest.openapi.orders;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ru.tinkoff.invest.openapi.OperationsContext;
+import ru.tinkoff.invest.openapi.OrdersContext;
+import ru.tinkoff.invest.openapi.model.rest.LimitOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.MarketOrderRequest;
+import ru.tinkoff.invest.openapi.model.rest.Operation;
+import ru.tinkoff.invest.openapi.model.rest.OperationStatus;
+import ru.tinkoff.invest.openapi.model.rest.OperationType;
+import ru.tinkoff.invest.openapi.model.rest.OperationTypeWithCommission;
+import ru.tinkoff.invest.openapi.model.rest.Operations;
+import ru.tinkoff.invest.openapi.model.rest.Order;
+import ru.tinkoff.invest.openapi.model.rest.OrderStatus;
+import ru.tinkoff.invest.openapi.model.rest.PlacedLimitOrder;
+import ru.tinkoff.invest.openapi.model.rest.PlacedMarketOrder;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderTrackerTest {
+
+    private static final String FIGI = "BBG000B9XRY4";
+    private static final String ACCOUNT = "2000000001";
+    private static final String OTHER_ACCOUNT = "2000000002";
+    private static final Duration FAST = Duration.ofMillis(10);
+
+    private final FakeOrdersContext orders = new FakeOrdersContext();
+    private final FakeOperationsContext operations = new FakeOperationsContext();
+    private final BlockingQueue<OrderEvent> events = new LinkedBlockingQueue<>();
+    private OrderTracker tracker;
+
+    @AfterEach
+    void tearDown() {
+        if (tracker != null) {
+            tracker.close();
+        }
+    }
+
+    @Test
+    void partialFillThenFill() throws InterruptedException {
+        tracker = subscribed(new OrderTracker(orders, null, FAST, FAST));
+        orders.put(ACCOUNT, order("1", OrderStatus.NEW, 0));
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+
+        orders.put(ACCOUNT, order("1", OrderStatus.PARTIALLYFILL, 4));
+        final OrderEvent partial = next();
+        assertEquals(OrderEvent.Type.PARTIAL_FILL, partial.getType());
+        assertEquals(4, partial.getExecutedLots());
+
+        orders.put(ACCOUNT, order("1", OrderStatus.FILL, 10));
+        final OrderEvent filled = next();
+        assertEquals(OrderEvent.Type.FILLED, filled.getType());
+        assertEquals(10, filled.getExecutedLots());
+        assertEquals(ACCOUNT, filled.getBrokerAccountId());
+        awaitOpenOrders(0);
+    }
+
+    @Test
+    void missingOrderIsResolvedByOperation() throws InterruptedException {
+        tracker = subscribed(new OrderTracker(orders, operations, FAST, FAST));
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+        tracker.track(order("2", OrderStatus.NEW, 0), ACCOUNT);
+        // Лот - 10 штук: заявка 1 исполнена полностью, заявка 2 - на 3 лота из 10.
+        operations.operations.add(operation("1", OperationStatus.DONE, 100, 100));
+        operations.operations.add(operation("2", OperationStatus.DONE, 100, 30));
+
+        // Пропавшие заявки разрешаются параллельно, поэтому события упорядочиваются по заявке.
+        final Map<String, OrderEvent> resolved = new TreeMap<>();
+        for (int i = 0; i < 2; i++) {
+            final OrderEvent event = next();
+            resolved.put(event.getOrderId(), event);
+        }
+        final OrderEvent first = resolved.get("1");
+        final OrderEvent second = resolved.get("2");
+
+        assertEquals(OrderEvent.Type.FILLED, first.getType());
+        assertEquals(10, first.getExecutedLots());
+        assertEquals(OrderEvent.Type.CANCELLED, second.getType());
+        assertEquals(3, second.getExecutedLots());
+    }
+
+    @Test
+    void missingOrderWithoutOperationIsClosedAfterAttempts() throws InterruptedException {
+        tracker = subscribed(new OrderTracker(orders, operations, FAST, FAST));
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+        operations.operations.add(operation("1", OperationStatus.PROGRESS, 100, 0));
+
+        final OrderEvent closed = next();
+
+        assertEquals(OrderEvent.Type.CLOSED, closed.getType());
+        assertEquals(3, operations.requests.get());
+    }
+
+    @Test
+    void missingOrderWithoutOperationsContextIsClosed() throws InterruptedException {
+        tracker = subscribed(new OrderTracker(orders, null, FAST, FAST));
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+
+        final OrderEvent closed = next();
+
+        assertEquals(OrderEvent.Type.CLOSED, closed.getType());
+        assertEquals(0, operations.requests.get());
+    }
+
+    @Test
+    void missingOrderAfterCancelIsCancelled() throws Exception {
+        tracker = subscribed(new OrderTracker(orders, null, FAST, Duration.ofSeconds(5)));
+        orders.put(ACCOUNT, order("1", OrderStatus.NEW, 0));
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+        awaitOpenOrders(1);
+
+        tracker.cancelOrder("1", ACCOUNT).get(5, TimeUnit.SECONDS);
+
+        final OrderEvent cancelled = next();
+        assertEquals(OrderEvent.Type.CANCELLED, cancelled.getType());
+        assertEquals(Collections.singletonList("1"), orders.cancelled);
+    }
+
+    @Test
+    void pollPeriodIsNotShorterThanMinIntervalPerAccount() throws InterruptedException {
+        tracker = new OrderTracker(orders, null);
+        orders.put(ACCOUNT, order("1", OrderStatus.NEW, 0));
+
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+        awaitOpenOrders(1);
+        assertEquals(TimeUnit.SECONDS.toNanos(5), tracker.pollDelayNanos());
+
+        for (int i = 2; i <= 10; i++) {
+            final Order order = order(String.valueOf(i), OrderStatus.NEW, 0);
+            orders.put(ACCOUNT, order);
+            tracker.track(order, ACCOUNT);
+        }
+        awaitOpenOrders(10);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1500), tracker.pollDelayNanos());
+
+        orders.put(OTHER_ACCOUNT, order("11", OrderStatus.NEW, 0));
+        tracker.track(order("11", OrderStatus.NEW, 0), OTHER_ACCOUNT);
+        awaitOpenOrders(11);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3000), tracker.pollDelayNanos());
+    }
+
+    @Test
+    void roundsAreSpacedByMinIntervalPerAccount() throws InterruptedException {
+        tracker = new OrderTracker(orders, null, Duration.ofMillis(50), Duration.ofMillis(50));
+        orders.put(ACCOUNT, order("1", OrderStatus.NEW, 0));
+        orders.put(OTHER_ACCOUNT, order("2", OrderStatus.NEW, 0));
+        tracker.track(order("1", OrderStatus.NEW, 0), ACCOUNT);
+        tracker.track(order("2", OrderStatus.NEW, 0), OTHER_ACCOUNT);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (orders.polls(ACCOUNT).size() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        final List<Long> polls = orders.polls(ACCOUNT);
+        assertTrue(polls.size() >= 4, String.valueOf(polls.size()));
+        for (int i = 2; i < polls.size(); i++) {
+            final long gap = polls.get(i) - polls.get(i - 1);
+            assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(100), "Период " + gap + " нс");
+        }
+    }
+
+    @Test
+    void noEventIsDeliveredBeforeOnSubscribeReturns() throws InterruptedException {
+        tracker = new OrderTracker(orders, null, FAST, FAST);
+        final OverlapSubscriber subscriber = new OverlapSubscriber();
+
+        tracker.subscribe(subscriber);
+        tracker.track(order("2", OrderStatus.REJECTED, 0), ACCOUNT);
+
+        final OrderEvent rejected = subscriber.events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(rejected);
+        assertEquals("2", rejected.getOrderId());
+        assertFalse(subscriber.overlapped);
+    }
+
+    @Test
+    void subscriberOfClosedTrackerIsCompleted() {
+        tracker = new OrderTracker(orders, null, FAST, FAST);
+        tracker.close();
+        final List<String> signals = new CopyOnWriteArrayList<>();
+
+        tracker.subscribe(new Subscriber<OrderEvent>() {
+            @Override
+            public void onSubscribe(final Subscription s) {
+                signals.add("subscribe");
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(final OrderEvent event) {
+                signals.add("next");
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                signals.add("error");
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+
+        assertEquals(Arrays.asList("subscribe", "complete"), signals);
+    }
+
+    @NotNull
+    private OrderTracker subscribed(@NotNull final OrderTracker tracker) {
+        tracker.subscribe(new Subscriber<OrderEvent>() {
+            @Override
+            public void onSubscribe(final Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final OrderEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return tracker;
+    }
+
+    @NotNull
+    private OrderEvent next() throws InterruptedException {
+        final OrderEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "Событие не пришло");
+        return event;
+    }
+
+    private void awaitOpenOrders(final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (tracker.getOpenOrders() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, tracker.getOpenOrders());
+    }
+
+    @NotNull
+    private static Order order(@NotNull final String orderId, @NotNull final OrderStatus status, final int executedLots) {
+        return new Order()
+                .orderId(orderId)
+                .figi(FIGI)
+                .operation(OperationType.BUY)
+                .status(status)
+                .requestedLots(10)
+                .executedLots(executedLots)
+                .price(new BigDecimal("100.5"));
+    }
+
+    @NotNull
+    private static Operation operation(@NotNull final String id,
+                                       @NotNull final OperationStatus status,
+                                       final int quantity,
+                                       final int quantityExecuted) {
+        return new Operation()
+                .id(id)
+                .figi(FIGI)
+                .status(status)
+                .quantity(quantity)
+                .quantityExecuted(quantityExecuted)
+                .operationType(OperationTypeWithCommission.BUY);
+    }
+
+    /**
+     * Подписчик, который долго выполняет onSubscribe и замечает события, пришедшие за это время.
+     */
+    private final class OverlapSubscriber implements Subscriber<OrderEvent> {
+        final BlockingQueue<OrderEvent> events = new LinkedBlockingQueue<>();
+        volatile boolean subscribing;
+        volatile boolean overlapped;
+
+        @Override
+        public void onSubscribe(final Subscription s) {
+            subscribing = true;
+            s.request(Long.MAX_VALUE);
+            // Событие, выпущенное до завершения onSubscribe, не должно дойти до подписчика.
+            tracker.track(order("1", OrderStatus.REJECTED, 0), ACCOUNT);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            subscribing = false;
+        }
+
+        @Override
+        public void onNext(final OrderEvent event) {
+            if (subscribing) {
+                overlapped = true;
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    /**
+     * Контекст заявок, возвращающий активные заявки, заданные тестом.
+     */
+    private static final class FakeOrdersContext implements OrdersContext {
+        final Map<String, Map<String, Order>> active = new ConcurrentHashMap<>();
+        final Map<String, List<Long>> polls = new ConcurrentHashMap<>();
+        final List<String> cancelled = new CopyOnWriteArrayList<>();
+
+        void put(@NotNull final String account, @NotNull final Order order) {
+            active.computeIfAbsent(account, key -> new ConcurrentHashMap<>()).put(order.getOrderId(), order);
+        }
+
+        @NotNull
+        List<Long> polls(@NotNull final String account) {
+            return new ArrayList<>(polls.getOrDefault(account, Collections.emptyList()));
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<List<Order>> getOrders(@Nullable final String brokerAccountId) {
+            polls.computeIfAbsent(brokerAccountId, key -> new CopyOnWriteArrayList<>()).add(System.nanoTime());
+            final Map<String, Order> orders = active.getOrDefault(brokerAccountId, Collections.emptyMap());
+            return CompletableFuture.completedFuture(new ArrayList<>(orders.values()));
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<Void> cancelOrder(@NotNull final String orderId, @Nullable final String brokerAccountId) {
+            cancelled.add(orderId);
+            active.getOrDefault(brokerAccountId, Collections.emptyMap()).remove(orderId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<PlacedLimitOrder> placeLimitOrder(@NotNull final String figi,
+                                                                   @NotNull final LimitOrderRequest limitOrder,
+                                                                   @Nullable final String brokerAccountId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<PlacedMarketOrder> placeMarketOrder(@NotNull final String figi,
+                                                                     @NotNull final MarketOrderRequest marketOrder,
+                                                                     @Nullable final String brokerAccountId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public String getPath() {
+            return "orders";
+        }
+    }
+
+    private static final class FakeOperationsContext implements OperationsContext {
+        final List<Operation> operations = new CopyOnWriteArrayList<>();
+        final AtomicInteger requests = new AtomicInteger();
+
+        @NotNull
+        @Override
+        public CompletableFuture<Operations> getOperations(@NotNull final OffsetDateTime from,
+                                                           @NotNull final OffsetDateTime to,
+                                                           @Nullable final String figi,
+                                                           @Nullable final String brokerAccountId) {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(new Operations().operations(new ArrayList<>(operations)));
+        }
+
+        @NotNull
+        @Override
+        public Publisher<Operation> streamOperations(@NotNull final OffsetDateTime from,
+                                                     @NotNull final OffsetDateTime to,
+                                                     @Nullable final String figi,
+                                                     @Nullable final String brokerAccountId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public String getPath() {
+            return "operations";
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ru.tinkoff.invest.openapi.sandbox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.model.rest.Currencies;
+import ru.tinkoff.invest.openapi.model.rest.Currency;
+import ru.tinkoff.invest.openapi.model.rest.CurrencyPosition;
+import ru.tinkoff.invest.openapi.model.rest.InstrumentType;
+import ru.tinkoff.invest.openapi.model.rest.Portfolio;
+import ru.tinkoff.invest.openapi.model.rest.PortfolioPosition;
+import ru.tinkoff.invest.openapi.model.rest.SandboxCurrency;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SandboxProvisionerTest {
+
+    @Test
+    void deltaSetsChangedAndZeroesMissingBalances() {
+        final SandboxFixture fixture = new SandboxFixture(
+                currencies(SandboxCurrency.RUB, "1000", SandboxCurrency.EUR, "50"),
+                positions("A", "10", "C", "3"));
+        final Portfolio portfolio = portfolio(
+                position("A", InstrumentType.STOCK, "10"),
+                position("B", InstrumentType.BOND, "5"),
+                position("USD000UTSTOM", InstrumentType.CURRENCY, "100"));
+        final Currencies current = balances(
+currency(Currency.RUB, "1000.00"),
+                currency(Currency.USD, "100"));
+
+        final SandboxProvisioner.Plan plan = SandboxProvisioner.plan(fixture, portfolio, current);
+
+        assertFalse(plan.isClearFirst());
+        // Рубли совпадают с точностью до масштаба, доллары обнуляются, евро задаются.
+        assertEquals(currencies(SandboxCurrency.USD, "0", SandboxCurrency.EUR, "50"), plan.getCurrencies());
+        // Валютный инструмент USD000UTSTOM не обнуляется: им управляет остаток долларов.
+        assertEquals(positions("B", "0", "C", "3"), plan.getPositions());
+        assertEquals(4, plan.getCalls());
+    }
+
+    @Test
+    void matchingAccountNeedsNoCalls() {
+        final SandboxFixture fixture = new SandboxFixture(
+                currencies(SandboxCurrency.RUB, "1000", SandboxCurrency.USD, "0"),
+                positions("A", "10", "B", "0"));
+        final Portfolio portfolio = portfolio(position("A", InstrumentType.STOCK, "10.0"));
+        final Currencies current = balances(currency(Currency.RUB, "1000"));
+
+        final SandboxProvisioner.Plan plan = SandboxProvisioner.plan(fixture, portfolio, current);
+
+        assertTrue(plan.isEmpty());
+        assertFalse(plan.isClearFirst());
+    }
+
+    @Test
+    void clearFirstWhenZeroingCostsMore() {
+        final SandboxFixture fixture = new SandboxFixture(
+                currencies(SandboxCurrency.RUB, "500"),
+                positions("A", "1"));
+        final Portfolio portfolio = portfolio(
+                position("B", InstrumentType.STOCK, "1"),
+                position("C", InstrumentType.STOCK, "2"),
+                position("D", InstrumentType.ETF, "3"),
+                position("E", InstrumentType.BOND, "4"));
+        final Currencies current = balances(
+currency(Currency.RUB, "100"),
+                currency(Currency.USD, "10"),
+                currency(Currency.EUR, "10"));
+
+        final SandboxProvisioner.Plan plan = SandboxProvisioner.plan(fixture, portfolio, current);
+
+        // Разница - 8 запросов, сброс и два ненулевых значения фикстуры - 3.
+        assertTrue(plan.isClearFirst());
+        assertEquals(currencies(SandboxCurrency.RUB, "500"), plan.getCurrencies());
+        assertEquals(positions("A", "1"), plan.getPositions());
+        assertEquals(3, plan.getCalls());
+    }
+
+    @Test
+    void deltaWinsWhenAsCheapAsClearing() {
+        final SandboxFixture fixture = new SandboxFixture(
+                currencies(SandboxCurrency.RUB, "500"),
+                positions("A", "1"));
+        final Portfolio portfolio = portfolio(
+                position("A", InstrumentType.STOCK, "1"),
+                position("B", InstrumentType.STOCK, "1"),
+                position("C", InstrumentType.STOCK, "1"));
+        final Currencies current = balances(currency(Currency.RUB, "100"));
+
+        final SandboxProvisioner.Plan plan = SandboxProvisioner.plan(fixture, portfolio, current);
+
+        assertFalse(plan.isClearFirst());
+        assertEquals(currencies(SandboxCurrency.RUB, "500"), plan.getCurrencies());
+        assertEquals(positions("B", "0", "C", "0"), plan.getPositions());
+    }
+
+    @Test
+    void emptyFixtureClearsAccount() {
+        final SandboxFixture fixture = new SandboxFixture(Collections.emptyMap());
+        final Portfolio portfolio = portfolio(position("A", InstrumentType.STOCK, "1"));
+        final Currencies current = balances(currency(Currency.RUB, "100"));
+
+        final SandboxProvisioner.Plan plan = SandboxProvisioner.plan(fixture, portfolio, current);
+
+        assertTrue(plan.isClearFirst());
+        assertEquals(1, plan.getCalls());
+    }
+
+    @NotNull
+    private static Map<SandboxCurrency, BigDecimal> currencies(@NotNull final Object... pairs) {
+        final Map<SandboxCurrency, BigDecimal> result = new EnumMap<>(SandboxCurrency.class);
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.put((SandboxCurrency) pairs[i], new BigDecimal((String) pairs[i + 1]));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Map<String, BigDecimal> positions(@NotNull final String... pairs) {
+        final Map<String, BigDecimal> result = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.put(pairs[i], new BigDecimal(pairs[i + 1]));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Portfolio portfolio(@NotNull final PortfolioPosition... positions) {
+        return new Portfolio().positions(Arrays.asList(positions));
+    }
+
+    @NotNull
+    private static PortfolioPosition position(@NotNull final String figi,
+                                              @NotNull final InstrumentType type,
+                                              @NotNull final String balance) {
+        return new PortfolioPosition().figi(figi).instrumentType(type).balance(new BigDecimal(balance));
+    }
+
+    @NotNull
+    private static Currencies balances(@NotNull final CurrencyPosition... positions) {
+        return new Currencies().currencies(Arrays.asList(positions));
+    }
+
+    @NotNull
+    private static CurrencyPosition currency(@NotNull final Currency currency, @NotNull final String balance) {
+        return new CurrencyPosition().currency(currency).balance(new BigDecimal(balance));
+    }
+}